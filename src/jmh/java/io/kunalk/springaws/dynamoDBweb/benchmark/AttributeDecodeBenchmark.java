@@ -0,0 +1,87 @@
+package io.kunalk.springaws.dynamoDBweb.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.DynamoDBUtil;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <h4>
+ * AttributeDecodeBenchmark
+ * </h4>
+ * <p>
+ * The time to decode the rows of a scan into BookInfo objects. reflectiveSetterSearch is the original
+ * DynamoDBUtil.setValue() algorithm (a getMethods() search for each attribute of each row), kept here as the
+ * baseline. attributesToObject is the current DynamoDBUtil code, which uses the cached AttributeCodec.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttributeDecodeBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int itemCount;
+
+    private List<Map<String, AttributeValue>> items;
+
+    @Setup
+    public void setup() {
+        items = BookData.items( itemCount );
+    }
+
+    @Benchmark
+    public void reflectiveSetterSearch(Blackhole blackhole) throws ReflectiveOperationException {
+        for (Map<String, AttributeValue> item : items) {
+            BookInfo info = new BookInfo();
+            for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+                legacySetValue( info, entry.getKey(), entry.getValue().getS() );
+            }
+            blackhole.consume( info );
+        }
+    }
+
+    @Benchmark
+    public void attributesToObject(Blackhole blackhole) throws ReflectiveOperationException {
+        for (Map<String, AttributeValue> item : items) {
+            BookInfo info = new BookInfo();
+            DynamoDBUtil.attributesToObject( info, item );
+            blackhole.consume( info );
+        }
+    }
+
+    /**
+     * The setter search that DynamoDBUtil used before AttributeCodec.
+     */
+    private static void legacySetValue(Object obj, String fieldName, String attrValStr) throws ReflectiveOperationException {
+        String fieldNameLC = fieldName.toLowerCase();
+        Method[] methods = obj.getClass().getMethods();
+        for (Method m : methods) {
+            String methodName = m.getName().toLowerCase();
+            if (methodName.startsWith("set")) {
+                if (methodName.endsWith(fieldNameLC)) {
+                    m.invoke(obj, attrValStr);
+                }
+            }
+        }
+    }
+}
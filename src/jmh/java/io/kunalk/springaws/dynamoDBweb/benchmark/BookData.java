@@ -0,0 +1,82 @@
+package io.kunalk.springaws.dynamoDBweb.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+import io.kunalk.springaws.dynamoDBweb.model.GenreEnum;
+
+/**
+ * <h4>
+ * BookData
+ * </h4>
+ * <p>
+ * Synthetic book table rows for the benchmarks. The data is generated from a fixed seed, so every run (and every
+ * build) measures the same rows.
+ * </p>
+ */
+final class BookData {
+    private static final String[] WORDS = { "the", "peripheral", "bangkok", "haunts", "neuromancer", "history",
+            "of", "a", "dark", "city", "river", "night", "guide", "to", "cooking", "finance", "mathematics",
+            "travel", "science", "computer", "future", "empire", "garden", "winter", "machine" };
+    private static final String[] FIRST = { "William", "John", "Ursula", "Neal", "Margaret", "Iain", "Octavia",
+            "Ted", "Ann", "Kim", "Liu", "Mary", "Ian", "Donald", "Alan" };
+    private static final String[] LAST = { "Gibson", "Burdett", "Le Guin", "Stephenson", "Atwood", "Banks",
+            "Butler", "Chiang", "Leckie", "Robinson", "Cixin", "Beard", "Kaplan", "Knuth", "Turing" };
+
+    private BookData() {
+    }
+
+    static List<Map<String, AttributeValue>> items(int count) {
+        Random random = new Random( 42 );
+        GenreEnum[] genres = GenreEnum.values();
+        List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>( count );
+        for (int i = 0; i < count; i++) {
+            Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+            item.put("title", new AttributeValue( title(random) + " " + i ));
+            item.put("author", new AttributeValue( FIRST[random.nextInt(FIRST.length)] + " " + LAST[random.nextInt(LAST.length)] ));
+            item.put("genre", new AttributeValue( genres[1 + random.nextInt(genres.length - 1)].getName() ));
+            item.put("publisher", new AttributeValue( "  Publisher " + random.nextInt(200) + "  " ));
+            item.put("year", new AttributeValue( Integer.toString( 1900 + random.nextInt(120) ) ));
+            item.put("price", new AttributeValue( random.nextInt(100) + "." + (10 + random.nextInt(90)) ));
+            items.add( item );
+        }
+        return items;
+    }
+
+    /**
+     * @return the rows as BookInfo objects, in table (unsorted) order.
+     */
+    static List<BookInfo> books(int count) {
+        List<Map<String, AttributeValue>> items = items( count );
+        List<BookInfo> books = new ArrayList<BookInfo>( count );
+        for (Map<String, AttributeValue> item : items) {
+            BookInfo info = new BookInfo();
+            info.setTitle( item.get("title").getS() );
+            info.setAuthor( item.get("author").getS() );
+            info.setGenre( item.get("genre").getS() );
+            info.setPublisher( item.get("publisher").getS() );
+            info.setYear( item.get("year").getS() );
+            info.setPrice( item.get("price").getS() );
+            books.add( info );
+        }
+        return books;
+    }
+
+    private static String title(Random random) {
+        StringBuilder title = new StringBuilder();
+        int words = 1 + random.nextInt(4);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                title.append(' ');
+            }
+            String word = WORDS[random.nextInt(WORDS.length)];
+            title.append( Character.toUpperCase(word.charAt(0)) ).append( word, 1, word.length() );
+        }
+        return title.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package io.kunalk.springaws.dynamoDBweb.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <h4>
+ * BookInfoBenchmark
+ * </h4>
+ * <p>
+ * BookInfo construction: a new object and the six setters, each of which trims its argument (trimString). The
+ * attribute strings are extracted in setup, so only the model code is measured.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookInfoBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int itemCount;
+
+    private String[][] rows;
+
+    @Setup
+    public void setup() {
+        List<Map<String, AttributeValue>> items = BookData.items( itemCount );
+        rows = new String[ items.size() ][];
+        for (int i = 0; i < rows.length; i++) {
+            Map<String, AttributeValue> item = items.get(i);
+            rows[i] = new String[] { item.get("title").getS(), item.get("author").getS(), item.get("genre").getS(),
+                                     item.get("publisher").getS(), item.get("year").getS(), item.get("price").getS() };
+        }
+    }
+
+    @Benchmark
+    public void construct(Blackhole blackhole) {
+        for (String[] row : rows) {
+            BookInfo info = new BookInfo();
+            info.setTitle( row[0] );
+            info.setAuthor( row[1] );
+            info.setGenre( row[2] );
+            info.setPublisher( row[3] );
+            info.setYear( row[4] );
+            info.setPrice( row[5] );
+            blackhole.consume( info );
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.kunalk.springaws.dynamoDBweb.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfoComparator;
+import io.kunalk.springaws.dynamoDBweb.model.BookSorter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <h4>
+ * BookSortBenchmark
+ * </h4>
+ * <p>
+ * The getBooks() sort: a list of books in table order sorted with BookInfoComparator (genre, author, title). The
+ * list is copied before each sort, so copyBaseline is the part of the time that is not the sort.
+ * </p>
+ * <p>
+ * sortWithKeys and sortWithKeysSequential are the BookSorter sort (a sort key built once per book), with and
+ * without the parallel sort. top100 is the first page of a paged listing (BookSorter.top()).
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookSortBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int itemCount;
+
+    private List<BookInfo> books;
+
+    @Setup
+    public void setup() {
+        books = BookData.books( itemCount );
+    }
+
+    @Benchmark
+    public List<BookInfo> copyBaseline() {
+        return new ArrayList<BookInfo>( books );
+    }
+
+    @Benchmark
+    public List<BookInfo> sortWithComparator() {
+        List<BookInfo> bookList = new ArrayList<BookInfo>( books );
+        bookList.sort( new BookInfoComparator() );
+        return bookList;
+    }
+
+    @Benchmark
+    public List<BookInfo> sortWithKeys() {
+        return BookSorter.sort( books );
+    }
+
+    @Benchmark
+    public List<BookInfo> sortWithKeysSequential() {
+        return BookSorter.sort( books, Integer.MAX_VALUE );
+    }
+
+    @Benchmark
+    public List<BookInfo> top100() {
+        return BookSorter.top( books, 0, 100 );
+    }
+}
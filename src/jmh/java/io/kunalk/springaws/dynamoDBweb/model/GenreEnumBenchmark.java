@@ -0,0 +1,59 @@
+package io.kunalk.springaws.dynamoDBweb.model;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <h4>
+ * GenreEnumBenchmark
+ * </h4>
+ * <p>
+ * GenreEnum.stringToEnum() over a mix of genre names (and a few unknown names, which fall through every
+ * comparison). BookInfoComparator calls stringToEnum twice per comparison. This benchmark is in the model package
+ * because stringToEnum is package private.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenreEnumBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int itemCount;
+
+    private String[] names;
+
+    @Setup
+    public void setup() {
+        Random random = new Random( 42 );
+        GenreEnum[] genres = GenreEnum.values();
+        names = new String[ itemCount ];
+        for (int i = 0; i < names.length; i++) {
+            // about 1 in 20 names is not a genre
+            names[i] = (random.nextInt(20) == 0) ? "Poetry" : genres[1 + random.nextInt(genres.length - 1)].getName();
+        }
+    }
+
+    @Benchmark
+    public void stringToEnum(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume( GenreEnum.stringToEnum( name ) );
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.kunalk.springaws.dynamoDBweb.loadtest;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+import io.kunalk.springaws.dynamoDBweb.service.BookTableService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <h4>
+ * BookEndpointsLoadTest
+ * </h4>
+ * <p>
+ * Boots the application on a random port against an in-process DynamoDB (see LoadTestConfiguration), seeds the
+ * book table and drives the /save-book, /author-search, /title-search, /title-author-search and /list-all-books
+ * endpoints with a LoadGenerator. The report (requests per second and p50/p95/p99 latency per endpoint) is
+ * printed and written to loadtest.report. The run is configured with system properties:
+ * </p>
+ * <pre>
+ * mvn -Ploadtest verify -Dloadtest.threads=32 -Dloadtest.duration-seconds=60 \
+ *     -Dloadtest.mix=save-book=1,author-search=4,title-search=3,title-author-search=2,list-all-books=0
+ * </pre>
+ * <p>
+ * The in-memory DynamoDB has no capacity limit, so the client side rate limiter is off.
+ * </p>
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+                properties = { "book.rate-limit.enabled=false" })
+@Import(LoadTestConfiguration.class)
+public class BookEndpointsLoadTest {
+    private static final Logger log = Logger.getLogger( BookEndpointsLoadTest.class.getName() );
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BookTableService bookTableService;
+
+    @Value("${loadtest.books:1000}")
+    private int seedBooks;
+
+    @Value("${loadtest.threads:16}")
+    private int threads;
+
+    @Value("${loadtest.warmup-seconds:5}")
+    private int warmupSeconds;
+
+    @Value("${loadtest.duration-seconds:20}")
+    private int durationSeconds;
+
+    @Value("${loadtest.mix:save-book=1,author-search=4,title-search=3,title-author-search=2,list-all-books=1}")
+    private String mix;
+
+    @Value("${loadtest.max-error-rate:0.01}")
+    private double maxErrorRate;
+
+    @Value("${loadtest.report:target/loadtest-report.txt}")
+    private String reportFile;
+
+    @Test
+    public void bookEndpoints() throws Exception {
+        bookTableService.getTableReady().get( 30, TimeUnit.SECONDS );
+        List<BookInfo> books = LoadGenerator.seedBooks( seedBooks );
+        bookTableService.writeBooks( books );
+
+        LoadGenerator generator = new LoadGenerator( "http://localhost:" + port, LoadGenerator.parseMix( mix ), books );
+        LoadReport report = generator.run( threads, TimeUnit.SECONDS.toMillis( warmupSeconds ),
+                                           TimeUnit.SECONDS.toMillis( durationSeconds ) );
+        writeReport( report );
+        log.info("Load test report (written to " + reportFile + "):\n" + report);
+
+        assertTrue("no requests were recorded", report.getRequests() > 0);
+        assertTrue("error rate above " + maxErrorRate + ": " + report.getErrors() + " of " + report.getRequests(),
+                   report.getErrors() <= maxErrorRate * report.getRequests());
+    }
+
+    private void writeReport(LoadReport report) throws IOException {
+        Path path = Paths.get( reportFile );
+        if (path.getParent() != null) {
+            Files.createDirectories( path.getParent() );
+        }
+        Files.write( path, report.toString().getBytes( StandardCharsets.UTF_8 ) );
+    }
+}
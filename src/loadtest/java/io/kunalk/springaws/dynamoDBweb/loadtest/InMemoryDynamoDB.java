@@ -0,0 +1,803 @@
+package io.kunalk.springaws.dynamoDBweb.loadtest;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeAction;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.AttributeValueUpdate;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.CreateTableResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.IndexStatus;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.KeyType;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ResourceInUseException;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.TableStatus;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * <h4>
+ * InMemoryDynamoDB
+ * </h4>
+ * <p>
+ * An in-process stand-in for DynamoDB, so that the load tests run without an AWS account or a network. It
+ * implements the calls that the application makes: CreateTable, DescribeTable, PutItem (with the legacy Expected
+ * conditions), UpdateItem (with AttributeUpdates), GetItem, DeleteItem, BatchWriteItem, BatchGetItem, and Query and Scan
+ * with the legacy KeyConditions, QueryFilter and ScanFilter conditions, AttributesToGet, Limit, ExclusiveStartKey,
+ * parallel scan segments and global secondary indexes. An index only holds its projected attributes (ALL,
+ * KEYS_ONLY or INCLUDE), and a read of an attribute that the index does not project fails, as it does on DynamoDB. The asynchronous calls run the synchronous call on a thread pool. Other calls throw
+ * UnsupportedOperationException and expressions (KeyConditionExpression, FilterExpression, ...) fail with a
+ * ValidationException.
+ * </p>
+ * <p>
+ * Each table and index is a sorted map, so a query reads one key range, like DynamoDB, and the latency of a
+ * query does not grow with the size of the table. Tables are ACTIVE as soon as they are created. An optional
+ * per-call delay stands in for the DynamoDB round trip, so that the thread pools and connection limits of the
+ * application matter in a load test.
+ * </p>
+ * <p>
+ * The client does not run the SDK request pipeline, so request handlers (DynamoDBMetrics, CapacityRateLimiter) and
+ * request metric collectors are not called.
+ * </p>
+ */
+public class InMemoryDynamoDB extends AbstractAmazonDynamoDBAsync {
+    private static final char SEP = '\u0000';
+
+    private final ConcurrentMap<String, Table> tables = new ConcurrentHashMap<String, Table>();
+    private final ExecutorService executor;
+    private final long latencyMicros;
+
+    /**
+     * @param asyncThreads the number of threads for the asynchronous calls.
+     * @param latencyMicros a delay added to each call, in microseconds (0 for none).
+     */
+    public InMemoryDynamoDB(int asyncThreads, long latencyMicros) {
+        this.executor = Executors.newFixedThreadPool( asyncThreads, runnable -> {
+            Thread thread = new Thread( runnable, "in-memory-dynamodb" );
+            thread.setDaemon( true );
+            return thread;
+        });
+        this.latencyMicros = latencyMicros;
+    }
+
+    /**
+     * @return the number of items in a table.
+     */
+    public int itemCount(String tableName) {
+        return table( tableName ).primary.items.size();
+    }
+
+    @Override
+    public CreateTableResult createTable(CreateTableRequest request) {
+        delay();
+        Table table = new Table( request );
+        if (tables.putIfAbsent( request.getTableName(), table ) != null) {
+            throw new ResourceInUseException("Table already exists: " + request.getTableName());
+        }
+        return new CreateTableResult().withTableDescription( table.describe() );
+    }
+
+    @Override
+    public DescribeTableResult describeTable(DescribeTableRequest request) {
+        delay();
+        return new DescribeTableResult().withTable( table( request.getTableName() ).describe() );
+    }
+
+    @Override
+    public DescribeTableResult describeTable(String tableName) {
+        return describeTable( new DescribeTableRequest().withTableName( tableName ) );
+    }
+
+    @Override
+    public PutItemResult putItem(PutItemRequest request) {
+        delay();
+        unsupported( request.getConditionExpression(), "ConditionExpression" );
+        Table table = table( request.getTableName() );
+        Map<String, AttributeValue> old;
+        synchronized (table) {
+            checkExpected( request.getExpected(), table.get( request.getItem() ) );
+            old = table.put( new HashMap<String, AttributeValue>( request.getItem() ) );
+        }
+        PutItemResult result = new PutItemResult();
+        if (ReturnValue.ALL_OLD.toString().equals( request.getReturnValues() ) && old != null) {
+            result.setAttributes( old );
+        }
+        return result;
+    }
+
+    @Override
+    public UpdateItemResult updateItem(UpdateItemRequest request) {
+        delay();
+        unsupported( request.getUpdateExpression(), "UpdateExpression" );
+        unsupported( request.getConditionExpression(), "ConditionExpression" );
+        unsupported( request.getExpected(), "Expected" );
+        Table table = table( request.getTableName() );
+        Map<String, AttributeValue> updated;
+        synchronized (table) {
+            Map<String, AttributeValue> old = table.get( request.getKey() );
+            updated = (old != null) ? new HashMap<String, AttributeValue>( old )
+                                    : new HashMap<String, AttributeValue>( request.getKey() );
+            if (request.getAttributeUpdates() != null) {
+                for (Map.Entry<String, AttributeValueUpdate> entry : request.getAttributeUpdates().entrySet()) {
+                    applyUpdate( updated, entry.getKey(), entry.getValue() );
+                }
+            }
+            table.put( updated );
+        }
+        UpdateItemResult result = new UpdateItemResult();
+        if (ReturnValue.ALL_NEW.toString().equals( request.getReturnValues() )) {
+            result.setAttributes( updated );
+        }
+        return result;
+    }
+
+    private static void applyUpdate(Map<String, AttributeValue> item, String name, AttributeValueUpdate update) {
+        String action = (update.getAction() != null) ? update.getAction() : AttributeAction.PUT.toString();
+        if (AttributeAction.PUT.toString().equals( action )) {
+            item.put( name, update.getValue() );
+        } else if (AttributeAction.DELETE.toString().equals( action )) {
+            if (update.getValue() != null) {
+                throw validation("Deleting values from a set is not supported: " + name);
+            }
+            item.remove( name );
+        } else if (AttributeAction.ADD.toString().equals( action )) {
+            AttributeValue old = item.get( name );
+            BigDecimal sum = new BigDecimal( update.getValue().getN() );
+            if (old != null && old.getN() != null) {
+                sum = sum.add( new BigDecimal( old.getN() ) );
+            }
+            item.put( name, new AttributeValue().withN( sum.toPlainString() ) );
+        }
+    }
+
+    @Override
+    public GetItemResult getItem(GetItemRequest request) {
+        delay();
+        unsupported( request.getProjectionExpression(), "ProjectionExpression" );
+        Map<String, AttributeValue> item = table( request.getTableName() ).get( request.getKey() );
+        return new GetItemResult().withItem( project( item, request.getAttributesToGet() ) );
+    }
+
+    @Override
+    public BatchGetItemResult batchGetItem(BatchGetItemRequest request) {
+        delay();
+        Map<String, List<Map<String, AttributeValue>>> responses = new HashMap<String, List<Map<String, AttributeValue>>>();
+        for (Map.Entry<String, KeysAndAttributes> entry : request.getRequestItems().entrySet()) {
+            KeysAndAttributes keys = entry.getValue();
+            unsupported( keys.getProjectionExpression(), "ProjectionExpression" );
+            if (keys.getKeys().size() > 100) {
+                throw validation("Too many items requested for the BatchGetItem call");
+            }
+            Table table = table( entry.getKey() );
+            List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+            for (Map<String, AttributeValue> key : keys.getKeys()) {
+                Map<String, AttributeValue> item = table.get( key );
+                if (item != null) {
+                    items.add( project( item, keys.getAttributesToGet() ) );
+                }
+            }
+            responses.put( entry.getKey(), items );
+        }
+        return new BatchGetItemResult().withResponses( responses )
+                                       .withUnprocessedKeys( Collections.<String, KeysAndAttributes>emptyMap() );
+    }
+
+    @Override
+    public DeleteItemResult deleteItem(DeleteItemRequest request) {
+        delay();
+        unsupported( request.getConditionExpression(), "ConditionExpression" );
+        unsupported( request.getExpected(), "Expected" );
+        Map<String, AttributeValue> old = table( request.getTableName() ).delete( request.getKey() );
+        DeleteItemResult result = new DeleteItemResult();
+        if (ReturnValue.ALL_OLD.toString().equals( request.getReturnValues() ) && old != null) {
+            result.setAttributes( old );
+        }
+        return result;
+    }
+
+    @Override
+    public BatchWriteItemResult batchWriteItem(BatchWriteItemRequest request) {
+        delay();
+        for (Map.Entry<String, List<WriteRequest>> entry : request.getRequestItems().entrySet()) {
+            Table table = table( entry.getKey() );
+            for (WriteRequest write : entry.getValue()) {
+                if (write.getPutRequest() != null) {
+                    table.put( new HashMap<String, AttributeValue>( write.getPutRequest().getItem() ) );
+                } else if (write.getDeleteRequest() != null) {
+                    table.delete( write.getDeleteRequest().getKey() );
+                }
+            }
+        }
+        return new BatchWriteItemResult().withUnprocessedItems( Collections.<String, List<WriteRequest>>emptyMap() );
+    }
+
+    @Override
+    public QueryResult query(QueryRequest request) {
+        delay();
+        unsupported( request.getKeyConditionExpression(), "KeyConditionExpression" );
+        unsupported( request.getFilterExpression(), "FilterExpression" );
+        unsupported( request.getProjectionExpression(), "ProjectionExpression" );
+        Table table = table( request.getTableName() );
+        View view = table.view( request.getIndexName() );
+        view.checkProjected( request.getAttributesToGet() );
+        Map<String, Condition> keyConditions = request.getKeyConditions();
+        Condition hashCondition = (keyConditions != null) ? keyConditions.get( view.hashKey ) : null;
+        if (hashCondition == null || ! ComparisonOperator.EQ.toString().equals( hashCondition.getComparisonOperator() )) {
+            throw validation("The query must have an EQ condition on the hash key " + view.hashKey);
+        }
+        String hashValue = keyString( hashCondition.getAttributeValueList().get( 0 ) );
+        NavigableMap<String, Map<String, AttributeValue>> range =
+            view.items.subMap( hashValue + SEP, true, hashValue + (char)(SEP + 1), false );
+        boolean forward = ! Boolean.FALSE.equals( request.getScanIndexForward() );
+        if (! forward) {
+            range = range.descendingMap();
+        }
+        if (request.getExclusiveStartKey() != null) {
+            range = range.tailMap( view.keyOf( request.getExclusiveStartKey() ), false );
+        }
+        Condition rangeCondition = (keyConditions != null && view.rangeKey != null) ? keyConditions.get( view.rangeKey ) : null;
+        Page page = readPage( range, request.getLimit(), item -> (rangeCondition == null
+                                                                  || matches( rangeCondition, item.get( view.rangeKey ) ))
+                                                                 && matchesAll( request.getQueryFilter(), item ),
+                              request.getAttributesToGet(), view, null, null );
+        return new QueryResult().withItems( page.items )
+                                .withCount( page.items.size() )
+                                .withScannedCount( page.scanned )
+                                .withLastEvaluatedKey( page.lastKey );
+    }
+
+    @Override
+    public ScanResult scan(ScanRequest request) {
+        delay();
+        unsupported( request.getFilterExpression(), "FilterExpression" );
+        unsupported( request.getProjectionExpression(), "ProjectionExpression" );
+        View view = table( request.getTableName() ).view( request.getIndexName() );
+        view.checkProjected( request.getAttributesToGet() );
+        NavigableMap<String, Map<String, AttributeValue>> range = view.items;
+        if (request.getExclusiveStartKey() != null) {
+            range = range.tailMap( view.keyOf( request.getExclusiveStartKey() ), false );
+        }
+        Integer segment = request.getSegment();
+        Integer totalSegments = request.getTotalSegments();
+        Page page = readPage( range, request.getLimit(), item -> matchesAll( request.getScanFilter(), item ),
+                              request.getAttributesToGet(), view, segment, totalSegments );
+        return new ScanResult().withItems( page.items )
+                               .withCount( page.items.size() )
+                               .withScannedCount( page.scanned )
+                               .withLastEvaluatedKey( page.lastKey );
+    }
+
+    /**
+     * Read items from the range until Limit items have been read (DynamoDB applies the limit before the filter).
+     */
+    private static Page readPage(NavigableMap<String, Map<String, AttributeValue>> range, Integer limit,
+                                 Function<Map<String, AttributeValue>, Boolean> filter, List<String> attributesToGet,
+                                 View view, Integer segment, Integer totalSegments) {
+        Page page = new Page();
+        Map<String, AttributeValue> last = null;
+        for (Map<String, AttributeValue> item : range.values()) {
+            if (totalSegments != null && totalSegments > 1
+                && Math.floorMod( keyString( item.get( view.hashKey ) ).hashCode(), totalSegments ) != segment) {
+                continue;
+            }
+            if (limit != null && page.scanned == limit) {
+                page.lastKey = view.keyAttributes( last );
+                break;
+            }
+            page.scanned++;
+            last = item;
+            if (filter.apply( item )) {
+                page.items.add( project( item, attributesToGet ) );
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Check legacy Expected conditions against the stored item (null if there is none). The conditions are ANDed.
+     */
+    private static void checkExpected(Map<String, ExpectedAttributeValue> expected, Map<String, AttributeValue> item) {
+        if (expected == null) {
+            return;
+        }
+        for (Map.Entry<String, ExpectedAttributeValue> entry : expected.entrySet()) {
+            ExpectedAttributeValue condition = entry.getValue();
+            AttributeValue value = (item != null) ? item.get( entry.getKey() ) : null;
+            boolean passed;
+            if (condition.getComparisonOperator() != null) {
+                passed = matches( new Condition().withComparisonOperator( condition.getComparisonOperator() )
+                                                 .withAttributeValueList( condition.getAttributeValueList() ), value );
+            } else if (Boolean.FALSE.equals( condition.getExists() )) {
+                passed = value == null;
+            } else {
+                if (condition.getValue() == null) {
+                    throw validation("Exists is true but no Value is given for " + entry.getKey());
+                }
+                passed = value != null && compare( value, condition.getValue() ) == 0;
+            }
+            if (! passed) {
+                ConditionalCheckFailedException e = new ConditionalCheckFailedException("The conditional request failed");
+                e.setErrorCode("ConditionalCheckFailedException");
+                e.setStatusCode( 400 );
+                e.setServiceName("AmazonDynamoDBv2");
+                throw e;
+            }
+        }
+    }
+
+    private static boolean matchesAll(Map<String, Condition> conditions, Map<String, AttributeValue> item) {
+        if (conditions != null) {
+            for (Map.Entry<String, Condition> entry : conditions.entrySet()) {
+                if (! matches( entry.getValue(), item.get( entry.getKey() ) )) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluate a legacy condition on a string or number attribute.
+     */
+    static boolean matches(Condition condition, AttributeValue value) {
+        ComparisonOperator op = ComparisonOperator.fromValue( condition.getComparisonOperator() );
+        List<AttributeValue> args = (condition.getAttributeValueList() != null) ? condition.getAttributeValueList()
+                                                                                  : Collections.<AttributeValue>emptyList();
+        switch (op) {
+        case NULL:
+            return value == null;
+        case NOT_NULL:
+            return value != null;
+        default:
+            break;
+        }
+        if (value == null) {
+            return op == ComparisonOperator.NE || op == ComparisonOperator.NOT_CONTAINS;
+        }
+        switch (op) {
+        case EQ:
+            return compare( value, args.get( 0 ) ) == 0;
+        case NE:
+            return compare( value, args.get( 0 ) ) != 0;
+        case LT:
+            return compare( value, args.get( 0 ) ) < 0;
+        case LE:
+            return compare( value, args.get( 0 ) ) <= 0;
+        case GT:
+            return compare( value, args.get( 0 ) ) > 0;
+        case GE:
+            return compare( value, args.get( 0 ) ) >= 0;
+        case BETWEEN:
+            return compare( value, args.get( 0 ) ) >= 0 && compare( value, args.get( 1 ) ) <= 0;
+        case BEGINS_WITH:
+            return value.getS() != null && value.getS().startsWith( args.get( 0 ).getS() );
+        case CONTAINS:
+            return contains( value, args.get( 0 ) );
+        case NOT_CONTAINS:
+            return ! contains( value, args.get( 0 ) );
+        case IN:
+            for (AttributeValue arg : args) {
+                if (compare( value, arg ) == 0) {
+                    return true;
+                }
+            }
+            return false;
+        default:
+            throw validation("Unsupported comparison operator: " + op);
+        }
+    }
+
+    private static boolean contains(AttributeValue value, AttributeValue arg) {
+        if (value.getS() != null) {
+            return arg.getS() != null && value.getS().contains( arg.getS() );
+        }
+        if (value.getSS() != null) {
+            return value.getSS().contains( arg.getS() );
+        }
+        return false;
+    }
+
+    private static int compare(AttributeValue value, AttributeValue arg) {
+        if (value.getN() != null && arg.getN() != null) {
+            return new BigDecimal( value.getN() ).compareTo( new BigDecimal( arg.getN() ) );
+        }
+        if (value.getS() != null && arg.getS() != null) {
+            return value.getS().compareTo( arg.getS() );
+        }
+        return value.equals( arg ) ? 0 : -1;
+    }
+
+    private static Map<String, AttributeValue> project(Map<String, AttributeValue> item, List<String> attributesToGet) {
+        if (item == null || attributesToGet == null || attributesToGet.isEmpty()) {
+            return item;
+        }
+        Map<String, AttributeValue> projected = new HashMap<String, AttributeValue>();
+        for (String name : attributesToGet) {
+            AttributeValue value = item.get( name );
+            if (value != null) {
+                projected.put( name, value );
+            }
+        }
+        return projected;
+    }
+
+    @Override
+    public Future<QueryResult> queryAsync(QueryRequest request, AsyncHandler<QueryRequest, QueryResult> asyncHandler) {
+        return submit( request, () -> query( request ), asyncHandler );
+    }
+
+    @Override
+    public Future<ScanResult> scanAsync(ScanRequest request, AsyncHandler<ScanRequest, ScanResult> asyncHandler) {
+        return submit( request, () -> scan( request ), asyncHandler );
+    }
+
+    @Override
+    public Future<PutItemResult> putItemAsync(PutItemRequest request, AsyncHandler<PutItemRequest, PutItemResult> asyncHandler) {
+        return submit( request, () -> putItem( request ), asyncHandler );
+    }
+
+    @Override
+    public Future<UpdateItemResult> updateItemAsync(UpdateItemRequest request,
+                                                    AsyncHandler<UpdateItemRequest, UpdateItemResult> asyncHandler) {
+        return submit( request, () -> updateItem( request ), asyncHandler );
+    }
+
+    @Override
+    public Future<BatchGetItemResult> batchGetItemAsync(BatchGetItemRequest request,
+                                                        AsyncHandler<BatchGetItemRequest, BatchGetItemResult> asyncHandler) {
+        return submit( request, () -> batchGetItem( request ), asyncHandler );
+    }
+
+    @Override
+    public Future<BatchWriteItemResult> batchWriteItemAsync(BatchWriteItemRequest request,
+                                                            AsyncHandler<BatchWriteItemRequest, BatchWriteItemResult> asyncHandler) {
+        return submit( request, () -> batchWriteItem( request ), asyncHandler );
+    }
+
+    private <REQUEST extends AmazonWebServiceRequest, RESULT> Future<RESULT> submit(REQUEST request, Callable<RESULT> call,
+                                                                                   AsyncHandler<REQUEST, RESULT> asyncHandler) {
+        return executor.submit( () -> {
+            RESULT result;
+            try {
+                result = call.call();
+            } catch (Exception e) {
+                if (asyncHandler != null) {
+                    asyncHandler.onError( e );
+                }
+                throw e;
+            }
+            if (asyncHandler != null) {
+                asyncHandler.onSuccess( request, result );
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void delay() {
+        if (latencyMicros > 0) {
+            try {
+                TimeUnit.MICROSECONDS.sleep( latencyMicros );
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Table table(String tableName) {
+        Table table = tables.get( tableName );
+        if (table == null) {
+            throw new ResourceNotFoundException("Requested resource not found: Table: " + tableName + " not found");
+        }
+        return table;
+    }
+
+    private static void unsupported(Object parameter, String name) {
+        if (parameter != null && ! (parameter instanceof Map && ((Map<?, ?>)parameter).isEmpty())) {
+            throw validation(name + " is not supported by InMemoryDynamoDB");
+        }
+    }
+
+    private static AmazonServiceException validation(String message) {
+        AmazonServiceException e = new AmazonServiceException( message );
+        e.setErrorCode("ValidationException");
+        e.setStatusCode( 400 );
+        e.setServiceName("AmazonDynamoDBv2");
+        return e;
+    }
+
+    /**
+     * @return the string form of a key attribute (S, N or B).
+     */
+    private static String keyString(AttributeValue value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.getS() != null) {
+            return value.getS();
+        }
+        if (value.getN() != null) {
+            return value.getN();
+        }
+        if (value.getB() != null) {
+            return value.getB().toString();
+        }
+        throw validation("Key attributes must be S, N or B");
+    }
+
+    private static class Page {
+        final List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+        int scanned = 0;
+        Map<String, AttributeValue> lastKey = null;
+    }
+
+    /**
+     * A table or a global secondary index: the items sorted by hash key, range key and (for an index) the table key.
+     */
+    private static class View {
+        final String name;
+        final String hashKey;
+        final String rangeKey;
+        final View table;
+        /** The attributes of an index that does not project ALL, or null */
+        final Set<String> projected;
+        final ConcurrentSkipListMap<String, Map<String, AttributeValue>> items =
+            new ConcurrentSkipListMap<String, Map<String, AttributeValue>>();
+
+        View(String name, List<KeySchemaElement> keySchema, View table, Projection projection) {
+            String hash = null;
+            String range = null;
+            for (KeySchemaElement element : keySchema) {
+                if (KeyType.HASH.toString().equals( element.getKeyType() )) {
+                    hash = element.getAttributeName();
+                } else {
+                    range = element.getAttributeName();
+                }
+            }
+            this.name = name;
+            this.hashKey = hash;
+            this.rangeKey = range;
+            this.table = table;
+            if (projection != null && ! ProjectionType.ALL.toString().equals( projection.getProjectionType() )) {
+                Set<String> attributes = new HashSet<String>();
+                attributes.add( hashKey );
+                if (rangeKey != null) {
+                    attributes.add( rangeKey );
+                }
+                attributes.add( table.hashKey );
+                if (table.rangeKey != null) {
+                    attributes.add( table.rangeKey );
+                }
+                if (ProjectionType.INCLUDE.toString().equals( projection.getProjectionType() )
+                    && projection.getNonKeyAttributes() != null) {
+                    attributes.addAll( projection.getNonKeyAttributes() );
+                }
+                this.projected = attributes;
+            } else {
+                this.projected = null;
+            }
+        }
+
+        /**
+         * @return the attributes of the item that this view holds.
+         */
+        Map<String, AttributeValue> project(Map<String, AttributeValue> item) {
+            if (projected == null) {
+                return item;
+            }
+            Map<String, AttributeValue> projectedItem = new HashMap<String, AttributeValue>();
+            for (String attribute : projected) {
+                AttributeValue value = item.get( attribute );
+                if (value != null) {
+                    projectedItem.put( attribute, value );
+                }
+            }
+            return projectedItem;
+        }
+
+        /**
+         * A read of a global secondary index can't fetch attributes that the index does not project.
+         */
+        void checkProjected(List<String> attributesToGet) {
+            if (projected != null && attributesToGet != null && ! projected.containsAll( attributesToGet )) {
+                List<String> missing = new ArrayList<String>( attributesToGet );
+                missing.removeAll( projected );
+                throw validation("One or more parameter values were invalid: Global secondary index " + name
+                                 + " does not project " + missing);
+            }
+        }
+
+        /**
+         * @return the sort key of an item, or null if the item is not in this view (a sparse index).
+         */
+        String keyOf(Map<String, AttributeValue> item) {
+            String hash = keyString( item.get( hashKey ) );
+            String range = (rangeKey != null) ? keyString( item.get( rangeKey ) ) : "";
+            if (hash == null || range == null) {
+                return null;
+            }
+            String key = hash + SEP + range;
+            return (table != null) ? key + SEP + table.keyOf( item ) : key;
+        }
+
+        /**
+         * @return the key attributes of an item in this view (the LastEvaluatedKey of a page that ends with the item).
+         */
+        Map<String, AttributeValue> keyAttributes(Map<String, AttributeValue> item) {
+            Map<String, AttributeValue> key = (table != null) ? table.keyAttributes( item ) : new HashMap<String, AttributeValue>();
+            key.put( hashKey, item.get( hashKey ) );
+            if (rangeKey != null) {
+                key.put( rangeKey, item.get( rangeKey ) );
+            }
+            return key;
+        }
+
+        List<KeySchemaElement> keySchema() {
+            List<KeySchemaElement> keySchema = new ArrayList<KeySchemaElement>();
+            keySchema.add( new KeySchemaElement( hashKey, KeyType.HASH ) );
+            if (rangeKey != null) {
+                keySchema.add( new KeySchemaElement( rangeKey, KeyType.RANGE ) );
+            }
+            return keySchema;
+        }
+    }
+
+    private static class Table {
+        final CreateTableRequest definition;
+        final View primary;
+        final Map<String, View> indexes = new HashMap<String, View>();
+
+        Table(CreateTableRequest definition) {
+            this.definition = definition;
+            this.primary = new View( definition.getTableName(), definition.getKeySchema(), null, null );
+            if (definition.getGlobalSecondaryIndexes() != null) {
+                for (GlobalSecondaryIndex index : definition.getGlobalSecondaryIndexes()) {
+                    indexes.put( index.getIndexName(), new View( index.getIndexName(), index.getKeySchema(), primary,
+                                                                 index.getProjection() ) );
+                }
+            }
+        }
+
+        View view(String indexName) {
+            if (indexName == null) {
+                return primary;
+            }
+            View view = indexes.get( indexName );
+            if (view == null) {
+                throw validation("The table does not have the specified index: " + indexName);
+            }
+            return view;
+        }
+
+        Map<String, AttributeValue> get(Map<String, AttributeValue> key) {
+            String primaryKey = primary.keyOf( key );
+            if (primaryKey == null) {
+                throw validation("The provided key element does not match the schema");
+            }
+            return primary.items.get( primaryKey );
+        }
+
+        synchronized Map<String, AttributeValue> put(Map<String, AttributeValue> item) {
+            String primaryKey = primary.keyOf( item );
+            if (primaryKey == null) {
+                throw validation("One or more parameter values were invalid: Missing the key " + primary.hashKey
+                                 + " or " + primary.rangeKey + " in the item");
+            }
+            Map<String, AttributeValue> old = primary.items.put( primaryKey, item );
+            for (View index : indexes.values()) {
+                if (old != null) {
+                    String oldKey = index.keyOf( old );
+                    if (oldKey != null) {
+                        index.items.remove( oldKey );
+                    }
+                }
+                String indexKey = index.keyOf( item );
+                if (indexKey != null) {
+                    index.items.put( indexKey, index.project( item ) );
+                }
+            }
+            return old;
+        }
+
+        synchronized Map<String, AttributeValue> delete(Map<String, AttributeValue> key) {
+            String primaryKey = primary.keyOf( key );
+            Map<String, AttributeValue> old = (primaryKey != null) ? primary.items.remove( primaryKey ) : null;
+            if (old != null) {
+                for (View index : indexes.values()) {
+                    String oldKey = index.keyOf( old );
+                    if (oldKey != null) {
+                        index.items.remove( oldKey );
+                    }
+                }
+            }
+            return old;
+        }
+
+        TableDescription describe() {
+            List<GlobalSecondaryIndexDescription> indexDescriptions = new ArrayList<GlobalSecondaryIndexDescription>();
+            if (definition.getGlobalSecondaryIndexes() != null) {
+                for (GlobalSecondaryIndex index : definition.getGlobalSecondaryIndexes()) {
+                    indexDescriptions.add( new GlobalSecondaryIndexDescription()
+                                           .withIndexName( index.getIndexName() )
+                                           .withKeySchema( index.getKeySchema() )
+                                           .withProjection( index.getProjection() )
+                                           .withIndexStatus( IndexStatus.ACTIVE )
+                                           .withItemCount( (long)indexes.get( index.getIndexName() ).items.size() )
+                                           .withProvisionedThroughput( throughput( index.getProvisionedThroughput()
+                                                                                       .getReadCapacityUnits(),
+                                                                                   index.getProvisionedThroughput()
+                                                                                       .getWriteCapacityUnits() ) ) );
+                }
+            }
+            return new TableDescription().withTableName( definition.getTableName() )
+                                         .withTableStatus( TableStatus.ACTIVE )
+                                         .withKeySchema( primary.keySchema() )
+                                         .withAttributeDefinitions( definition.getAttributeDefinitions() )
+                                         .withGlobalSecondaryIndexes( indexDescriptions.isEmpty() ? null : indexDescriptions )
+                                         .withItemCount( (long)primary.items.size() )
+                                         .withProvisionedThroughput( throughput( definition.getProvisionedThroughput()
+                                                                                     .getReadCapacityUnits(),
+                                                                                 definition.getProvisionedThroughput()
+                                                                                     .getWriteCapacityUnits() ) );
+        }
+
+        private static ProvisionedThroughputDescription throughput(Long read, Long write) {
+            return new ProvisionedThroughputDescription().withReadCapacityUnits( read ).withWriteCapacityUnits( write );
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package io.kunalk.springaws.dynamoDBweb.loadtest;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import io.kunalk.springaws.dynamoDBweb.service.DynamoDBService;
+
+/**
+ * <h4>
+ * InMemoryDynamoDBService
+ * </h4>
+ * <p>
+ * A DynamoDBService whose synchronous and asynchronous clients (for every region) are one InMemoryDynamoDB. The
+ * mappers are built by DynamoDBService, on the in-memory client.
+ * </p>
+ */
+public class InMemoryDynamoDBService extends DynamoDBService {
+    private final InMemoryDynamoDB dynamoDB;
+
+    public InMemoryDynamoDBService(Regions region, InMemoryDynamoDB dynamoDB) {
+        super( region, "in-memory", "in-memory" );
+        this.dynamoDB = dynamoDB;
+    }
+
+    public InMemoryDynamoDB getDynamoDB() {
+        return dynamoDB;
+    }
+
+    @Override
+    public AmazonDynamoDB getClient(Regions clientRegion) {
+        return dynamoDB;
+    }
+
+    @Override
+    public AmazonDynamoDBAsync getAsyncClient(Regions clientRegion) {
+        return dynamoDB;
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        dynamoDB.shutdown();
+    }
+}
@@ -0,0 +1,60 @@
+package io.kunalk.springaws.dynamoDBweb.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * <h4>
+ * LatencyRecorder
+ * </h4>
+ * <p>
+ * The request latencies and errors for one endpoint. A recorder is not thread safe: each load generator thread
+ * records into its own recorders and the recorders are merged when the run is over.
+ * </p>
+ */
+public class LatencyRecorder {
+    private long[] latencyNanos = new long[ 1024 ];
+    private int count = 0;
+    private int errors = 0;
+
+    public void record(long nanos, boolean error) {
+        if (count == latencyNanos.length) {
+            latencyNanos = Arrays.copyOf( latencyNanos, count * 2 );
+        }
+        latencyNanos[ count++ ] = nanos;
+        if (error) {
+            errors++;
+        }
+    }
+
+    public void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record( other.latencyNanos[ i ], false );
+        }
+        errors += other.errors;
+    }
+
+    /**
+     * @return the number of requests (including the errors).
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * @param percentile the percentile, from 0 to 100.
+     * @return the latency at the percentile (nearest rank), in milliseconds, or 0 if there are no requests.
+     */
+    public double percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf( latencyNanos, count );
+        Arrays.sort( sorted );
+        int rank = (int)Math.ceil( (percentile / 100.0) * count );
+        return sorted[ Math.max( 0, Math.min( count, rank ) - 1 ) ] / 1.0e6;
+    }
+}
@@ -0,0 +1,228 @@
+package io.kunalk.springaws.dynamoDBweb.loadtest;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+import io.kunalk.springaws.dynamoDBweb.model.GenreEnum;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h4>
+ * LoadGenerator
+ * </h4>
+ * <p>
+ * Drives the form endpoints of the application with a weighted mix of requests from a number of threads (a closed
+ * model: each thread sends its next request when the previous one has completed). The requests in the warmup
+ * period are not recorded. A request succeeds if the response status is below 400 (the endpoints answer with a
+ * redirect). Redirects are not followed, so only the endpoint itself is measured.
+ * </p>
+ * <p>
+ * The search terms are taken from the seed books, so the searches find books. Each save-book request saves a new
+ * book.
+ * </p>
+ */
+public class LoadGenerator {
+    public static final String SAVE_BOOK = "save-book";
+    public static final String AUTHOR_SEARCH = "author-search";
+    public static final String TITLE_SEARCH = "title-search";
+    public static final String TITLE_AUTHOR_SEARCH = "title-author-search";
+    public static final String GENRE_SEARCH = "genre-search";
+    public static final String LIST_ALL_BOOKS = "list-all-books";
+    public static final List<String> ENDPOINTS = Arrays.asList( SAVE_BOOK, AUTHOR_SEARCH, TITLE_SEARCH,
+                                                                TITLE_AUTHOR_SEARCH, GENRE_SEARCH, LIST_ALL_BOOKS );
+
+    private static final String[] TITLE_WORDS = { "Shadow", "Empire", "Garden", "River", "Machine", "Winter",
+                                                  "Algorithm", "Harbor", "Silence", "Kingdom", "Voyage", "Ledger" };
+
+    private final String baseUrl;
+    private final List<BookInfo> books;
+    private final String[] weightedEndpoints;
+    private final AtomicLong savedBooks = new AtomicLong();
+
+    /**
+     * @param baseUrl the application URL, e.g., http://localhost:8080
+     * @param mix the relative weight of each endpoint (see parseMix())
+     * @param books the books in the table, for the search terms
+     */
+    public LoadGenerator(String baseUrl, Map<String, Integer> mix, List<BookInfo> books) {
+        this.baseUrl = baseUrl;
+        this.books = books;
+        List<String> weighted = new ArrayList<String>();
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                weighted.add( entry.getKey() );
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("The request mix is empty");
+        }
+        this.weightedEndpoints = weighted.toArray( new String[ weighted.size() ] );
+    }
+
+    /**
+     * Parse a request mix: a comma separated list of endpoint=weight, e.g.,
+     * "save-book=1,author-search=4,title-search=3,title-author-search=2,list-all-books=0"
+     */
+    public static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<String, Integer>();
+        for (String part : mix.split(",")) {
+            String[] endpointWeight = part.trim().split("=");
+            String endpoint = endpointWeight[0].trim();
+            if (! ENDPOINTS.contains( endpoint ) || endpointWeight.length != 2) {
+                throw new IllegalArgumentException("Bad request mix entry \"" + part + "\", expected one of " + ENDPOINTS + "=weight");
+            }
+            weights.put( endpoint, Integer.parseInt( endpointWeight[1].trim() ) );
+        }
+        return weights;
+    }
+
+    /**
+     * @return count books with titles made of a few words, by count / 10 authors, with the genres in rotation.
+     */
+    public static List<BookInfo> seedBooks(int count) {
+        List<BookInfo> seed = new ArrayList<BookInfo>( count );
+        GenreEnum[] genres = GenreEnum.values();
+        int authors = Math.max( 1, count / 10 );
+        for (int i = 0; i < count; i++) {
+            BookInfo book = new BookInfo();
+            book.setTitle( "The " + TITLE_WORDS[ i % TITLE_WORDS.length ] + " of the "
+                           + TITLE_WORDS[ (i / TITLE_WORDS.length) % TITLE_WORDS.length ] + " " + i );
+            book.setAuthor( "Author " + (i % authors) );
+            book.setGenre( genres[ 1 + (i % (genres.length - 1)) ].toString() );
+            book.setPublisher( "Load Test Press" );
+            book.setYear( Integer.toString( 1950 + (i % 70) ) );
+            book.setPrice( "12.95" );
+            seed.add( book );
+        }
+        return seed;
+    }
+
+    /**
+     * Run the load.
+     * @param threads the number of concurrent clients
+     * @param warmupMillis the time before the requests are recorded
+     * @param durationMillis the time that the requests are recorded
+     * @return the latencies for each endpoint
+     * @throws InterruptedException
+     */
+    public LoadReport run(int threads, long warmupMillis, long durationMillis) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        long recordNanos = startNanos + warmupMillis * 1000000L;
+        long endNanos = recordNanos + durationMillis * 1000000L;
+        List<Map<String, LatencyRecorder>> threadRecorders = new ArrayList<Map<String, LatencyRecorder>>();
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            Map<String, LatencyRecorder> recorders = new LinkedHashMap<String, LatencyRecorder>();
+            for (String endpoint : ENDPOINTS) {
+                recorders.put( endpoint, new LatencyRecorder() );
+            }
+            threadRecorders.add( recorders );
+            Thread worker = new Thread( () -> drive( recorders, recordNanos, endNanos ), "load-generator-" + i );
+            workers.add( worker );
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Map<String, LatencyRecorder> total = new LinkedHashMap<String, LatencyRecorder>();
+        for (String endpoint : ENDPOINTS) {
+            LatencyRecorder merged = new LatencyRecorder();
+            for (Map<String, LatencyRecorder> recorders : threadRecorders) {
+                merged.merge( recorders.get( endpoint ) );
+            }
+            total.put( endpoint, merged );
+        }
+        return new LoadReport( total, durationMillis / 1000.0, threads );
+    }
+
+    private void drive(Map<String, LatencyRecorder> recorders, long recordNanos, long endNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now;
+        while ((now = System.nanoTime()) < endNanos) {
+            String endpoint = weightedEndpoints[ random.nextInt( weightedEndpoints.length ) ];
+            boolean error;
+            try {
+                error = post( endpoint, formFor( endpoint, random ) ) >= 400;
+            } catch (IOException e) {
+                error = true;
+            }
+            if (now >= recordNanos) {
+                recorders.get( endpoint ).record( System.nanoTime() - now, error );
+            }
+        }
+    }
+
+    private String formFor(String endpoint, ThreadLocalRandom random) throws UnsupportedEncodingException {
+        BookInfo book = books.get( random.nextInt( books.size() ) );
+        switch (endpoint) {
+        case SAVE_BOOK:
+            return form( "title", "Saved Book " + savedBooks.incrementAndGet(), "author", book.getAuthor(),
+                         "genre", book.getGenre(), "publisher", book.getPublisher(), "year", book.getYear(),
+                         "price", book.getPrice() );
+        case AUTHOR_SEARCH:
+            return form( "author", book.getAuthor() );
+        case TITLE_SEARCH:
+            return form( "title", TITLE_WORDS[ random.nextInt( TITLE_WORDS.length ) ] + " of" );
+        case TITLE_AUTHOR_SEARCH:
+            return form( "title", book.getTitle(), "author", book.getAuthor() );
+        case GENRE_SEARCH:
+            return form( "genre", book.getGenre(), "limit", "50" );
+        default:
+            return "";
+        }
+    }
+
+    private static String form(String... namesAndValues) throws UnsupportedEncodingException {
+        StringBuilder form = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) {
+                form.append('&');
+            }
+            form.append( namesAndValues[i] ).append('=').append( URLEncoder.encode( namesAndValues[i + 1], "UTF-8" ) );
+        }
+        return form.toString();
+    }
+
+    /**
+     * POST a form and read the response, so that the connection is returned to the keep-alive cache.
+     * @return the response status
+     */
+    private int post(String endpoint, String form) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)new URL( baseUrl + "/" + endpoint ).openConnection();
+        connection.setInstanceFollowRedirects( false );
+        connection.setRequestMethod("POST");
+        connection.setDoOutput( true );
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        byte[] body = form.getBytes( StandardCharsets.UTF_8 );
+        connection.setFixedLengthStreamingMode( body.length );
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write( body );
+        }
+        int status = connection.getResponseCode();
+        InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            try {
+                byte[] buffer = new byte[ 4096 ];
+                while (in.read( buffer ) >= 0) {
+                    // discard the body
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return status;
+    }
+}
@@ -0,0 +1,68 @@
+package io.kunalk.springaws.dynamoDBweb.loadtest;
+
+import java.util.Map;
+
+/**
+ * <h4>
+ * LoadReport
+ * </h4>
+ * <p>
+ * The result of a load run: for each endpoint, the requests, errors, requests per second and the p50, p95 and
+ * p99 latency.
+ * </p>
+ */
+public class LoadReport {
+    private final Map<String, LatencyRecorder> endpoints;
+    private final double seconds;
+    private final int threads;
+
+    public LoadReport(Map<String, LatencyRecorder> endpoints, double seconds, int threads) {
+        this.endpoints = endpoints;
+        this.seconds = seconds;
+        this.threads = threads;
+    }
+
+    public Map<String, LatencyRecorder> getEndpoints() {
+        return endpoints;
+    }
+
+    public int getRequests() {
+        int requests = 0;
+        for (LatencyRecorder recorder : endpoints.values()) {
+            requests += recorder.getCount();
+        }
+        return requests;
+    }
+
+    public int getErrors() {
+        int errors = 0;
+        for (LatencyRecorder recorder : endpoints.values()) {
+            errors += recorder.getErrors();
+        }
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append( String.format("%d threads, %.1f seconds%n", threads, seconds) );
+        report.append( String.format("%-20s %9s %7s %9s %9s %9s %9s%n",
+                                     "endpoint", "requests", "errors", "req/sec", "p50 ms", "p95 ms", "p99 ms") );
+        for (Map.Entry<String, LatencyRecorder> entry : endpoints.entrySet()) {
+            appendLine( report, entry.getKey(), entry.getValue() );
+        }
+        LatencyRecorder all = new LatencyRecorder();
+        for (LatencyRecorder recorder : endpoints.values()) {
+            all.merge( recorder );
+        }
+        appendLine( report, "total", all );
+        return report.toString();
+    }
+
+    private void appendLine(StringBuilder report, String name, LatencyRecorder recorder) {
+        int count = recorder.getCount();
+        report.append( String.format("%-20s %9d %7d %9.1f %9.2f %9.2f %9.2f%n", name, count, recorder.getErrors(),
+                                     count / seconds, recorder.percentileMillis( 50 ),
+                                     recorder.percentileMillis( 95 ), recorder.percentileMillis( 99 )) );
+    }
+}
@@ -0,0 +1,33 @@
+package io.kunalk.springaws.dynamoDBweb.loadtest;
+
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.IDynamoDBKeys;
+import io.kunalk.springaws.dynamoDBweb.service.DynamoDBService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * <h4>
+ * LoadTestConfiguration
+ * </h4>
+ * <p>
+ * Replaces the DynamoDBService of the application with an InMemoryDynamoDBService, so that the book table service,
+ * the controllers and the table bootstrap run unchanged against an in-process DynamoDB.
+ * </p>
+ */
+@TestConfiguration
+public class LoadTestConfiguration {
+
+    @Value("${loadtest.dynamodb.latency-micros:1000}")
+    private long latencyMicros;
+
+    @Value("${loadtest.dynamodb.async-threads:" + DynamoDBService.DEFAULT_ASYNC_THREADS + "}")
+    private int asyncThreads;
+
+    @Bean
+    @Primary
+    public InMemoryDynamoDBService inMemoryDynamoDBService() {
+        return new InMemoryDynamoDBService( IDynamoDBKeys.region, new InMemoryDynamoDB( asyncThreads, latencyMicros ) );
+    }
+}
@@ -0,0 +1,303 @@
+package io.kunalk.springaws.dynamoDBweb.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * <h4>
+ * ResultCache
+ * </h4>
+ * <p>
+ * A bounded, least recently used, cache for query results. Entries are evicted when the cache is full and when
+ * they are older than the time to live. Empty results are cached like any other result, so a search that finds
+ * nothing does not go back to the database until the entry expires or is invalidated.
+ * </p>
+ * <p>
+ * The cache is synchronized. The loader is called outside of the lock, so two threads that miss on the same key
+ * at the same time may both load the value.
+ * </p>
+ * <p>
+ * A load that is running when its key is invalidated (e.g., a search for an author that started before a book by
+ * the author was written) may have read the old result. Each key that is being loaded has a generation, which
+ * invalidate() increments, and a loaded value is only cached if the generation of its key did not change while
+ * it was loaded. The value is still returned to the caller of get().
+ * </p>
+ * <p>
+ * A load that starts just after the invalidation can read the old result as well, when the result comes from an
+ * eventually consistent read (e.g., the author index, which is updated shortly after the table). For the settle
+ * time after a key is invalidated its loaded values are returned but not cached, so that an old result is not
+ * cached for the whole time to live.
+ * </p>
+ */
+public class ResultCache<K, V> {
+    private final String name;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long settleNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    /** The keys that are being loaded (guarded by entries) */
+    private final Map<K, Load> loads = new HashMap<K, Load>();
+    /**
+     * The end of the settle time of each invalidated key, oldest first (guarded by entries). Since the settle time
+     * is the same for every key, the keys are in the order of their end times.
+     */
+    private final LinkedHashMap<K, Long> settling = new LinkedHashMap<K, Long>();
+    private final LongSupplier nanoTime;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param name the cache name, used as the metrics tag
+     * @param maxSize the maximum number of entries
+     * @param ttl the time to live for an entry
+     * @param unit the time unit for ttl
+     */
+    public ResultCache(String name, int maxSize, long ttl, TimeUnit unit) {
+        this( name, maxSize, ttl, 0, unit, System::nanoTime );
+    }
+
+    /**
+     * @param name the cache name, used as the metrics tag
+     * @param maxSize the maximum number of entries
+     * @param ttl the time to live for an entry
+     * @param settle the time after a key is invalidated during which its loaded values are not cached
+     * @param unit the time unit for ttl and settle
+     */
+    public ResultCache(String name, int maxSize, long ttl, long settle, TimeUnit unit) {
+        this( name, maxSize, ttl, settle, unit, System::nanoTime );
+    }
+
+    /**
+     * @param nanoTime the clock for the time to live (System.nanoTime(), except in tests)
+     */
+    ResultCache(String name, int maxSize, long ttl, long settle, TimeUnit unit, LongSupplier nanoTime) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than zero: " + maxSize);
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos( ttl );
+        this.settleNanos = unit.toNanos( settle );
+        this.nanoTime = nanoTime;
+        this.entries = new LinkedHashMap<K, Entry<V>>( 16, 0.75f, true ) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                boolean evict = size() > ResultCache.this.maxSize;
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the cached value for key. If there is no value, or the value has expired, the value is loaded
+     * and cached.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = getIfPresent( key );
+        if (value == null) {
+            long generation = startLoad( key );
+            try {
+                value = loader.apply( key );
+            } finally {
+                finishLoad( key, generation, value );
+            }
+        }
+        return value;
+    }
+
+    /**
+     * The asynchronous version of get(): the loader returns a future, and the value is cached when the future
+     * completes (unless the key was invalidated in the meantime).
+     */
+    public CompletableFuture<V> getAsync(K key, Function<? super K, CompletableFuture<V>> loader) {
+        V value = getIfPresent( key );
+        if (value != null) {
+            return CompletableFuture.completedFuture( value );
+        }
+        long generation = startLoad( key );
+        CompletableFuture<V> loaded;
+        try {
+            loaded = loader.apply( key );
+        } catch (RuntimeException e) {
+            finishLoad( key, generation, null );
+            throw e;
+        }
+        return loaded.whenComplete( (v, e) -> finishLoad( key, generation, v ) );
+    }
+
+    /**
+     * @return the generation of the key when the load starts
+     */
+    private long startLoad(K key) {
+        synchronized (entries) {
+            Load load = loads.get( key );
+            if (load == null) {
+                load = new Load();
+                loads.put( key, load );
+            }
+            load.count++;
+            return load.generation;
+        }
+    }
+
+    /**
+     * Cache the loaded value (if there is one) if the key was not invalidated while it was loaded, and is not
+     * settling.
+     */
+    private void finishLoad(K key, long generation, V value) {
+        synchronized (entries) {
+            Load load = loads.get( key );
+            if (value != null && load.generation == generation && !isSettling( key )) {
+                entries.put( key, new Entry<V>( value, nanoTime.getAsLong() + ttlNanos ) );
+            }
+            if (--load.count == 0) {
+                loads.remove( key );
+            }
+        }
+    }
+
+    public V getIfPresent(K key) {
+        V value = null;
+        synchronized (entries) {
+            Entry<V> entry = entries.get( key );
+            if (entry != null) {
+                if (entry.expiresAt - nanoTime.getAsLong() > 0) {
+                    value = entry.value;
+                } else {
+                    entries.remove( key );
+                    evictions.increment();
+                }
+            }
+        }
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        synchronized (entries) {
+            entries.put( key, new Entry<V>( value, nanoTime.getAsLong() + ttlNanos ) );
+        }
+    }
+
+    /**
+     * Remove the entry for key. A load of the key that is running is not cached, and neither are the loads of the
+     * key that finish in the settle time.
+     */
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove( key );
+            Load load = loads.get( key );
+            if (load != null) {
+                load.generation++;
+            }
+            if (settleNanos > 0) {
+                long now = nanoTime.getAsLong();
+                removeSettled( now );
+                settling.remove( key );
+                settling.put( key, now + settleNanos );
+            }
+        }
+    }
+
+    /**
+     * @return true if key was invalidated less than the settle time ago (the caller holds the lock)
+     */
+    private boolean isSettling(K key) {
+        if (settling.isEmpty()) {
+            return false;
+        }
+        removeSettled( nanoTime.getAsLong() );
+        return settling.containsKey( key );
+    }
+
+    /**
+     * Remove the keys whose settle time ended (the caller holds the lock).
+     */
+    private void removeSettled(long now) {
+        Iterator<Long> ends = settling.values().iterator();
+        while (ends.hasNext() && ends.next() - now <= 0) {
+            ends.remove();
+        }
+    }
+
+    public void invalidateIf(Predicate<? super K> predicate) {
+        synchronized (entries) {
+            Iterator<K> keys = entries.keySet().iterator();
+            while (keys.hasNext()) {
+                if (predicate.test( keys.next() )) {
+                    keys.remove();
+                }
+            }
+            for (Map.Entry<K, Load> load : loads.entrySet()) {
+                if (predicate.test( load.getKey() )) {
+                    load.getValue().generation++;
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            for (Load load : loads.values()) {
+                load.generation++;
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    private static class Load {
+        /** The number of loads of the key that are running */
+        int count = 0;
+        long generation = 0;
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
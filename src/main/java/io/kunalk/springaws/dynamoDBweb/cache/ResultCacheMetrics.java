@@ -0,0 +1,54 @@
+package io.kunalk.springaws.dynamoDBweb.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * <h4>
+ * ResultCacheMetrics
+ * </h4>
+ * <p>
+ * Publishes ResultCache statistics to Micrometer (and so to the actuator metrics endpoint). The meter names follow
+ * the Micrometer cache conventions: cache.gets (tagged result=hit or result=miss), cache.evictions and cache.size,
+ * all tagged with the cache name.
+ * </p>
+ */
+public class ResultCacheMetrics implements MeterBinder {
+    private final Collection<ResultCache<?, ?>> caches;
+
+    public ResultCacheMetrics(ResultCache<?, ?>... caches) {
+        this.caches = Arrays.asList( caches );
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (ResultCache<?, ?> cache : caches) {
+            if (cache == null) {
+                continue;
+            }
+            FunctionCounter.builder("cache.gets", cache, ResultCache::hitCount)
+                           .tag("cache", cache.getName())
+                           .tag("result", "hit")
+                           .description("The number of times a cache lookup returned a cached value")
+                           .register(registry);
+            FunctionCounter.builder("cache.gets", cache, ResultCache::missCount)
+                           .tag("cache", cache.getName())
+                           .tag("result", "miss")
+                           .description("The number of times a cache lookup had to go to DynamoDB")
+                           .register(registry);
+            FunctionCounter.builder("cache.evictions", cache, ResultCache::evictionCount)
+                           .tag("cache", cache.getName())
+                           .description("The number of entries evicted for size or age")
+                           .register(registry);
+            Gauge.builder("cache.size", cache, ResultCache::size)
+                 .tag("cache", cache.getName())
+                 .description("The number of entries in the cache")
+                 .register(registry);
+        }
+    }
+}
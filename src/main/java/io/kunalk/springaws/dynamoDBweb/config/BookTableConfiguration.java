@@ -0,0 +1,271 @@
+package io.kunalk.springaws.dynamoDBweb.config;
+
+import io.kunalk.springaws.dynamoDBweb.cache.ResultCacheMetrics;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.CapacityRateLimiter;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.ConnectionPoolMetrics;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.CreateBookTable;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.DynamoDBMetrics;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.IDynamoDBKeys;
+import io.kunalk.springaws.dynamoDBweb.index.BookSuggester;
+import io.kunalk.springaws.dynamoDBweb.service.BookTableService;
+import io.kunalk.springaws.dynamoDBweb.service.DynamoDBService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h4>
+ * BookTableConfiguration
+ * </h4>
+ * <p>
+ * Builds the BookTableService that is shared by the controllers. The settings come from application.properties.
+ * </p>
+ */
+@Configuration
+@EnableConfigurationProperties(DynamoDBClientProperties.class)
+public class BookTableConfiguration {
+    private static final Log logger = LogFactory.getLog(BookTableConfiguration.class);
+
+    @Value("${book.table.name:book_table}")
+    private String bookTableName;
+
+    @Value("${book.scan.page-limit:" + BookTableService.DEFAULT_PAGE_LIMIT + "}")
+    private int pageLimit;
+
+    /** The number of parallel scan segments. Zero (the default) uses one segment per available core. */
+    @Value("${book.scan.segments:0}")
+    private int scanSegments;
+
+    @Value("${book.title-index.enabled:true}")
+    private boolean titleIndexEnabled;
+
+    /** Typeahead completions of the authors and titles (loaded with the title index) */
+    @Value("${book.suggest.enabled:true}")
+    private boolean suggestEnabled;
+
+    @Value("${book.suggest.top-count:" + BookSuggester.DEFAULT_TOP_COUNT + "}")
+    private int suggestTopCount;
+
+    /** The time between updates of the suggestion popularity with the recorded searches */
+    @Value("${book.suggest.search-interval-seconds:10}")
+    private long suggestSearchIntervalSeconds;
+
+    /** Answer title searches with one query per word of the title token table, instead of a scan */
+    @Value("${book.title-tokens.enabled:false}")
+    private boolean titleTokensEnabled;
+
+    @Value("${book.title-tokens.table-name:book_title_tokens}")
+    private String titleTokensTableName;
+
+    /** The provisioned capacity units of the title token table (used when it is created, and by the rate limiter) */
+    @Value("${book.title-tokens.read-capacity:" + BookTableService.READ_THROUGHPUT + "}")
+    private long titleTokensReadCapacity;
+
+    @Value("${book.title-tokens.write-capacity:10}")
+    private long titleTokensWriteCapacity;
+
+    /** Keep the title index in a snapshot file, so that a restart loads it instead of scanning the table */
+    @Value("${book.snapshot.enabled:false}")
+    private boolean snapshotEnabled;
+
+    @Value("${book.snapshot.file:book-catalog.snapshot}")
+    private String snapshotFile;
+
+    @Value("${book.snapshot.interval-seconds:300}")
+    private long snapshotIntervalSeconds;
+
+    /** Read genre searches and the sorted book list from the genre index (if the table has it) */
+    @Value("${book.genre-index.enabled:true}")
+    private boolean genreIndexEnabled;
+
+    /** The author index projection (ALL, KEYS_ONLY or INCLUDE), used when the book table is created */
+    @Value("${book.author-index.projection:ALL}")
+    private String authorIndexProjection;
+
+    /** The attributes that an INCLUDE author index projects, in addition to the keys */
+    @Value("${book.author-index.include-attributes:}")
+    private String[] authorIndexIncludeAttributes;
+
+    /** The maximum number of entries in each result cache. Zero turns the result cache off. */
+    @Value("${book.cache.max-size:1000}")
+    private int cacheMaxSize;
+
+    @Value("${book.cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    @Value("${book.cache.settle-millis:2000}")
+    private long cacheSettleMillis;
+
+    @Value("${book.batch-write.threads:" + BookTableService.DEFAULT_BATCH_WRITE_THREADS + "}")
+    private int batchWriteThreads;
+
+    /** Acknowledge book saves when they are in a local write-ahead log and write them to DynamoDB in batches */
+    @Value("${book.write-behind.enabled:false}")
+    private boolean writeBehindEnabled;
+
+    @Value("${book.write-behind.directory:book-wal}")
+    private String writeBehindDirectory;
+
+    @Value("${book.write-behind.segment-bytes:4194304}")
+    private int writeBehindSegmentBytes;
+
+    @Value("${book.write-behind.flush-interval-millis:200}")
+    private long writeBehindFlushIntervalMillis;
+
+    @Value("${book.write-behind.max-pending:100000}")
+    private int writeBehindMaxPending;
+
+    /** Sync the write-behind log on every save, so that an acknowledged save survives a machine crash */
+    @Value("${book.write-behind.force-on-write:true}")
+    private boolean writeBehindForceOnWrite;
+
+    /** Read the book table stream, to see the writes made by the other application instances */
+    @Value("${book.stream.enabled:false}")
+    private boolean streamEnabled;
+
+    @Value("${book.stream.checkpoint-file:book-stream.checkpoints}")
+    private String streamCheckpointFile;
+
+    @Value("${book.stream.poll-interval-millis:500}")
+    private long streamPollIntervalMillis;
+
+    /** Use the asynchronous DynamoDB client for the search and save requests */
+    @Value("${dynamodb.async.enabled:true}")
+    private boolean asyncEnabled;
+
+    @Value("${dynamodb.async.threads:" + DynamoDBService.DEFAULT_ASYNC_THREADS + "}")
+    private int asyncThreads;
+
+    @Value("${book.rate-limit.enabled:true}")
+    private boolean rateLimitEnabled;
+
+    /** The provisioned capacity units of the book table and of the author index */
+    @Value("${book.rate-limit.read-capacity:" + BookTableService.READ_THROUGHPUT + "}")
+    private double readCapacity;
+
+    @Value("${book.rate-limit.write-capacity:" + BookTableService.WRITE_THROUGHPUT + "}")
+    private double writeCapacity;
+
+    @Value("${book.rate-limit.index-read-capacity:" + BookTableService.READ_THROUGHPUT + "}")
+    private double indexReadCapacity;
+
+    @Value("${book.rate-limit.index-write-capacity:" + BookTableService.WRITE_THROUGHPUT + "}")
+    private double indexWriteCapacity;
+
+    /** The token bucket size, in seconds of capacity */
+    @Value("${book.rate-limit.burst-seconds:2}")
+    private double burstSeconds;
+
+    /** The fraction of the bucket that scans and batch writes leave for interactive requests */
+    @Value("${book.rate-limit.background-reserve:0.25}")
+    private double backgroundReserve;
+
+    /**
+     * The DynamoDB client connection pool gauges, and the connection wait timer if dynamodb.client.pool-wait-metrics
+     * is on. The wait timer needs the SDK's global metric collector, which is shared by every SDK client in the JVM,
+     * so it is opt-in and an installed collector is not replaced.
+     */
+    @Bean
+    public ConnectionPoolMetrics dynamoDBConnectionPoolMetrics(DynamoDBClientProperties clientProperties) {
+        ConnectionPoolMetrics poolMetrics = new ConnectionPoolMetrics();
+        if (clientProperties.isPoolWaitMetrics() && ! poolMetrics.install()) {
+            logger.warn("The AWS SDK metric collector is already installed: the DynamoDB connection wait time is not published");
+        }
+        return poolMetrics;
+    }
+
+    /**
+     * Paces the book table requests to the provisioned read and write capacity of the table and its indexes.
+     */
+    @Bean
+    public CapacityRateLimiter capacityRateLimiter() {
+        CapacityRateLimiter limiter = new CapacityRateLimiter( burstSeconds, backgroundReserve );
+        limiter.setLimit( bookTableName, null, readCapacity, writeCapacity );
+        limiter.setLimit( bookTableName, CreateBookTable.AUTHOR_INDEX_NAME, indexReadCapacity, indexWriteCapacity );
+        limiter.setLimit( bookTableName, CreateBookTable.GENRE_INDEX_NAME, indexReadCapacity, indexWriteCapacity );
+        limiter.setLimit( bookTableName, CreateBookTable.UPDATED_INDEX_NAME, indexReadCapacity, indexWriteCapacity );
+        limiter.setLimit( titleTokensTableName, null, titleTokensReadCapacity, titleTokensWriteCapacity );
+        return limiter;
+    }
+
+    /**
+     * The DynamoDB clients are built with a DynamoDBMetrics request handler, which publishes the latency, consumed
+     * capacity, items scanned/returned and throttling for every DynamoDB call. When the rate limit is enabled,
+     * the CapacityRateLimiter is a second request handler.
+     */
+    @Bean
+    public DynamoDBService dynamoDBService(DynamoDBClientProperties clientProperties, ConnectionPoolMetrics poolMetrics,
+                                           MeterRegistry meterRegistry, CapacityRateLimiter capacityRateLimiter) {
+        DynamoDBService dynamoDBService = new DynamoDBService( IDynamoDBKeys.region, 
+                                                               IDynamoDBKeys.full_dynamodb_access_ID, 
+                                                               IDynamoDBKeys.full_dynamodb_access_KEY );
+        dynamoDBService.setClientConfiguration( clientProperties.toClientConfiguration() );
+        dynamoDBService.setEndpoint( clientProperties.getEndpoint() );
+        dynamoDBService.setRequestMetricCollector( poolMetrics );
+        if (rateLimitEnabled) {
+            dynamoDBService.setRequestHandlers( new DynamoDBMetrics( meterRegistry ), capacityRateLimiter );
+        } else {
+            dynamoDBService.setRequestHandlers( new DynamoDBMetrics( meterRegistry ) );
+        }
+        return dynamoDBService;
+    }
+
+    /**
+     * The result cache hit, miss and eviction counts are published on the actuator metrics endpoint. They are bound
+     * here rather than by a MeterBinder bean: the registry binds its MeterBinder beans when it is created, and the
+     * registry is a dependency of dynamoDBService(), so a binder that needs this service would be a bean cycle.
+     */
+    @Bean
+    public BookTableService bookTableService(DynamoDBService dynamoDBService, MeterRegistry meterRegistry) throws IOException {
+        BookTableService service = new BookTableService( bookTableName, dynamoDBService,
+                                                         CreateBookTable.indexProjection( authorIndexProjection,
+                                                                                          Arrays.asList( authorIndexIncludeAttributes ) ) );
+        service.setPageLimit( pageLimit );
+        service.setScanSegments( scanSegments > 0 ? scanSegments : Runtime.getRuntime().availableProcessors() );
+        service.setBatchWriteThreads( batchWriteThreads );
+        service.setAsyncMode( asyncEnabled, asyncThreads );
+        service.setGenreIndexEnabled( genreIndexEnabled );
+        if (cacheMaxSize > 0) {
+            service.enableResultCache( cacheMaxSize, cacheTtlSeconds, cacheSettleMillis );
+            new ResultCacheMetrics( service.getAuthorCache(), service.getTitleAuthorCache() ).bindTo( meterRegistry );
+        }
+        if (titleIndexEnabled) {
+            if (suggestEnabled) {
+                service.enableSuggestions( suggestTopCount, TimeUnit.SECONDS.toMillis( suggestSearchIntervalSeconds ) );
+            }
+            if (snapshotEnabled) {
+                service.enableCatalogSnapshot( Paths.get( snapshotFile ), TimeUnit.SECONDS.toMillis( snapshotIntervalSeconds ) );
+            }
+            service.buildTitleIndexWhenReady();
+        }
+        if (titleTokensEnabled) {
+            service.enableTitleTokens( titleTokensTableName, titleTokensReadCapacity, titleTokensWriteCapacity );
+        }
+        if (streamEnabled) {
+            service.enableStreamConsumer( Paths.get( streamCheckpointFile ), streamPollIntervalMillis );
+        }
+        if (writeBehindEnabled) {
+            service.enableWriteBehind( Paths.get( writeBehindDirectory ), writeBehindSegmentBytes, writeBehindFlushIntervalMillis,
+                                       writeBehindMaxPending, writeBehindForceOnWrite );
+        }
+        return service;
+    }
+
+    /**
+     * Report the book table status on the actuator health endpoint. The application is OUT_OF_SERVICE until the
+     * book table is ACTIVE.
+     */
+    @Bean
+    public BookTableHealthIndicator bookTableHealthIndicator(BookTableService bookTableService) {
+        return new BookTableHealthIndicator( bookTableService.getTableBootstrap() );
+    }
+}
@@ -0,0 +1,39 @@
+package io.kunalk.springaws.dynamoDBweb.config;
+
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.TableBootstrap;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+/**
+ * <h4>
+ * BookTableHealthIndicator
+ * </h4>
+ * <p>
+ * A readiness check for the book table. The health is UP when the table is ACTIVE and OUT_OF_SERVICE while the
+ * table is being checked or created. A load balancer (or Kubernetes readiness probe) that uses /actuator/health
+ * will not send requests to the application until the table is ready.
+ * </p>
+ */
+public class BookTableHealthIndicator implements HealthIndicator {
+    private final TableBootstrap tableBootstrap;
+
+    public BookTableHealthIndicator(TableBootstrap tableBootstrap) {
+        this.tableBootstrap = tableBootstrap;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = tableBootstrap.isReady() ? Health.up() : Health.outOfService();
+        builder.withDetail("table", tableBootstrap.getTableName())
+               .withDetail("state", tableBootstrap.getState().toString());
+        String tableStatus = tableBootstrap.getTableStatus();
+        if (tableStatus != null) {
+            builder.withDetail("tableStatus", tableStatus);
+        }
+        Exception lastError = tableBootstrap.getLastError();
+        if (lastError != null) {
+            builder.withDetail("error", lastError.getClass().getSimpleName() + ": " + lastError.getLocalizedMessage());
+        }
+        return builder.build();
+    }
+}
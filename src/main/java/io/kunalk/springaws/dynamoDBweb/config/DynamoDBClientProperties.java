@@ -0,0 +1,172 @@
+package io.kunalk.springaws.dynamoDBweb.config;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Protocol;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * <h4>
+ * DynamoDBClientProperties
+ * </h4>
+ * <p>
+ * The HTTP client settings for the DynamoDB clients, from the dynamodb.client.* properties in
+ * application.properties. A setting that is not given keeps the AWS SDK default, except for the protocol, which
+ * is HTTP (as it was before these settings were added).
+ * </p>
+ * <p>
+ * The synchronous and asynchronous clients each have their own connection pool of maxConnections connections.
+ * </p>
+ * <p>
+ * The endpoint is not an HTTP client setting: it replaces the AWS endpoint of the region (e.g., with
+ * http://localhost:8000 for DynamoDB Local) and is passed to DynamoDBService.setEndpoint(). Neither is
+ * poolWaitMetrics, which installs the SDK global metric collector for the connection wait timer (see
+ * ConnectionPoolMetrics.install()).
+ * </p>
+ */
+@ConfigurationProperties(prefix = "dynamodb.client")
+public class DynamoDBClientProperties {
+    private Protocol protocol = Protocol.HTTP;
+    /** The maximum number of open HTTP connections in the pool */
+    private int maxConnections = ClientConfiguration.DEFAULT_MAX_CONNECTIONS;
+    /** The time to live of a pooled connection, in milliseconds (-1 = no limit) */
+    private long connectionTtlMillis = ClientConfiguration.DEFAULT_CONNECTION_TTL;
+    /** The maximum time a connection can sit idle in the pool before the reaper closes it */
+    private long connectionMaxIdleMillis = ClientConfiguration.DEFAULT_CONNECTION_MAX_IDLE_MILLIS;
+    private int connectionTimeoutMillis = ClientConfiguration.DEFAULT_CONNECTION_TIMEOUT;
+    private int socketTimeoutMillis = ClientConfiguration.DEFAULT_SOCKET_TIMEOUT;
+    /** The timeout for a single HTTP request (0 = no timeout) */
+    private int requestTimeoutMillis = ClientConfiguration.DEFAULT_REQUEST_TIMEOUT;
+    /** The timeout for a client call, including retries (0 = no timeout) */
+    private int clientExecutionTimeoutMillis = ClientConfiguration.DEFAULT_CLIENT_EXECUTION_TIMEOUT;
+    private boolean tcpKeepAlive = ClientConfiguration.DEFAULT_TCP_KEEP_ALIVE;
+    /** Close idle and expired connections on a background thread */
+    private boolean useReaper = ClientConfiguration.DEFAULT_USE_REAPER;
+    private boolean useGzip = ClientConfiguration.DEFAULT_USE_GZIP;
+    /** The DynamoDB endpoint URL, or empty for the AWS endpoint of the region */
+    private String endpoint = "";
+    /** Publish the connection pool wait time, with the SDK global metric collector */
+    private boolean poolWaitMetrics = false;
+
+    /**
+     * @return a new AWS SDK client configuration with these settings.
+     */
+    public ClientConfiguration toClientConfiguration() {
+        ClientConfiguration config = new ClientConfiguration();
+        config.setProtocol( protocol );
+        config.setMaxConnections( maxConnections );
+        config.setConnectionTTL( connectionTtlMillis );
+        config.setConnectionMaxIdleMillis( connectionMaxIdleMillis );
+        config.setConnectionTimeout( connectionTimeoutMillis );
+        config.setSocketTimeout( socketTimeoutMillis );
+        config.setRequestTimeout( requestTimeoutMillis );
+        config.setClientExecutionTimeout( clientExecutionTimeoutMillis );
+        config.setUseTcpKeepAlive( tcpKeepAlive );
+        config.setUseReaper( useReaper );
+        config.setUseGzip( useGzip );
+        return config;
+    }
+
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    public void setProtocol(Protocol protocol) {
+        this.protocol = protocol;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public long getConnectionTtlMillis() {
+        return connectionTtlMillis;
+    }
+
+    public void setConnectionTtlMillis(long connectionTtlMillis) {
+        this.connectionTtlMillis = connectionTtlMillis;
+    }
+
+    public long getConnectionMaxIdleMillis() {
+        return connectionMaxIdleMillis;
+    }
+
+    public void setConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        this.connectionMaxIdleMillis = connectionMaxIdleMillis;
+    }
+
+    public int getConnectionTimeoutMillis() {
+        return connectionTimeoutMillis;
+    }
+
+    public void setConnectionTimeoutMillis(int connectionTimeoutMillis) {
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+    }
+
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    public int getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    public void setRequestTimeoutMillis(int requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    public int getClientExecutionTimeoutMillis() {
+        return clientExecutionTimeoutMillis;
+    }
+
+    public void setClientExecutionTimeoutMillis(int clientExecutionTimeoutMillis) {
+        this.clientExecutionTimeoutMillis = clientExecutionTimeoutMillis;
+    }
+
+    public boolean isTcpKeepAlive() {
+        return tcpKeepAlive;
+    }
+
+    public void setTcpKeepAlive(boolean tcpKeepAlive) {
+        this.tcpKeepAlive = tcpKeepAlive;
+    }
+
+    public boolean isUseReaper() {
+        return useReaper;
+    }
+
+    public void setUseReaper(boolean useReaper) {
+        this.useReaper = useReaper;
+    }
+
+    public boolean isUseGzip() {
+        return useGzip;
+    }
+
+    public void setUseGzip(boolean useGzip) {
+        this.useGzip = useGzip;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public boolean isPoolWaitMetrics() {
+        return poolWaitMetrics;
+    }
+
+    public void setPoolWaitMetrics(boolean poolWaitMetrics) {
+        this.poolWaitMetrics = poolWaitMetrics;
+    }
+}
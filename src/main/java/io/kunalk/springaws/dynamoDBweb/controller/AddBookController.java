@@ -8,6 +8,8 @@
  */
 package io.kunalk.springaws.dynamoDBweb.controller;
 
+import java.util.concurrent.CompletableFuture;
+
 import javax.validation.Valid;
 
 import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
@@ -43,18 +45,20 @@ public class AddBookController extends BookControllerBase {
     
 
     @RequestMapping( value="/save-book", method = RequestMethod.POST)
-    public String saveBook(@Valid BookInfo bookForm, Errors errors, RedirectAttributes redirectAttributes) {
+    public CompletableFuture<String> saveBook(@Valid BookInfo bookForm, Errors errors, RedirectAttributes redirectAttributes) {
         if (! errors.hasErrors()) {
             if (bookForm != null) {
-                getBookTableService().writeToBookTable(bookForm);
-                redirectAttributes.addFlashAttribute("book_saved", "Saved the information for " + bookForm.getTitle());
+                return getBookTableService().writeToBookTableAsync(bookForm).thenApply( v -> {
+                    redirectAttributes.addFlashAttribute("book_saved", "Saved the information for " + bookForm.getTitle());
+                    return "redirect:addbook";
+                });
             } else {
                 logger.info("bookForm argument is null");
             }
         } else {
             redirectAttributes.addFlashAttribute("errors", errors);
         }
-        return "redirect:addbook";
+        return CompletableFuture.completedFuture( "redirect:addbook" );
     }
 
 }
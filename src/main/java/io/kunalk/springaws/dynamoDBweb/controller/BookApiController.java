@@ -0,0 +1,312 @@
+package io.kunalk.springaws.dynamoDBweb.controller;
+
+import com.amazonaws.AmazonServiceException;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.DynamoDBRequests;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.PageCursor;
+import io.kunalk.springaws.dynamoDBweb.model.BookField;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+import io.kunalk.springaws.dynamoDBweb.service.BookPage;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <h4>
+ * BookApiController
+ * </h4>
+ * <p>
+ * A JSON API for book listing and search. Unlike the form controllers, the result is not kept in the session
+ * and there is no redirect: each request returns one page of books. A page has at most limit books and a cursor,
+ * an opaque token that is passed back to get the next page (see PageCursor). The last page has no cursor.
+ * </p>
+ * <pre>
+ * GET /api/books?limit=50&amp;cursor=...&amp;fields=title,author,year
+ * GET /api/books/by-author?author=William+Gibson&amp;limit=50
+ * GET /api/books/search?title=Bangkok&amp;limit=50
+ *
+ * { "books": [ { "title": ..., "author": ..., ... }, ... ], "count": 50, "cursor": "AQAAA..." }
+ * </pre>
+ * <p>
+ * The fields parameter (optional) lists the book fields to return. Fields that are not read are left out of the
+ * JSON. The page is written with a Jackson JsonGenerator directly to the response, one book at a time.
+ * </p>
+ * <p>
+ * GET /api/books/export writes the whole table as newline delimited JSON (one book per line), in table order. The
+ * table is read one scan page at a time as the response is written, so the heap use does not depend on the size
+ * of the table. The response is written with blocking writes, so when the client reads slowly the writes wait
+ * and the next scan page is not read until the previous one has been sent. With gzip=true the output is a gzip
+ * file (books.ndjson.gz). The number of exports that run at the same time is limited (book.export.max-concurrent);
+ * an export request over the limit gets an HTTP 503. The export's permit is returned when the async request
+ * completes for any reason (the body was written, the request timed out, the client went away or the async
+ * executor rejected the body), not only when the body has run. An export has its own time limit
+ * (book.export.timeout-millis); the other async requests keep the server's default timeout.
+ * </p>
+ * <p>
+ * A bad limit, fields list or cursor gets an HTTP 400 response.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/books")
+public class BookApiController extends BookControllerBase {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 1000;
+
+    private static final Log logger = LogFactory.getLog(BookApiController.class);
+    private static final String BOOKS_SCOPE = "books";
+    private static final String AUTHOR_SCOPE = "author\u0000";
+    private static final String TITLE_SCOPE = "title\u0000";
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final Semaphore exportPermits;
+    private final long exportTimeoutMillis;
+
+    @Autowired
+    public BookApiController(ObjectMapper objectMapper, @Value("${book.export.max-concurrent:2}") int maxConcurrentExports,
+                             @Value("${book.export.timeout-millis:3600000}") long exportTimeoutMillis) {
+        // each book is written to the generator, so don't flush the response after each one
+        this.objectMapper = objectMapper.copy()
+                                        .setSerializationInclusion( JsonInclude.Include.NON_NULL )
+                                        .disable( SerializationFeature.FLUSH_AFTER_WRITE_VALUE );
+        this.exportPermits = new Semaphore( maxConcurrentExports );
+        this.exportTimeoutMillis = exportTimeoutMillis;
+    }
+
+    /**
+     * One page of the book table, in table order.
+     */
+    @GetMapping
+    public void listBooks(@RequestParam(value = "limit", defaultValue = "" + DEFAULT_LIMIT) int limit,
+                          @RequestParam(value = "cursor", required = false) String cursor,
+                          @RequestParam(value = "fields", required = false) String fields,
+                          HttpServletResponse response) throws IOException {
+        BookPage page = getBookTableService().getBookPage( checkLimit( limit ), PageCursor.decode( BOOKS_SCOPE, cursor ),
+                                                           BookField.parse( fields ) );
+        writePage( page, BOOKS_SCOPE, response );
+    }
+
+    /**
+     * One page of the books by an author.
+     */
+    @GetMapping("/by-author")
+    public void findByAuthor(@RequestParam("author") String author,
+                             @RequestParam(value = "limit", defaultValue = "" + DEFAULT_LIMIT) int limit,
+                             @RequestParam(value = "cursor", required = false) String cursor,
+                             @RequestParam(value = "fields", required = false) String fields,
+                             HttpServletResponse response) throws IOException {
+        String scope = AUTHOR_SCOPE + author;
+        BookPage page = getBookTableService().findBookPageByAuthor( author, checkLimit( limit ), PageCursor.decode( scope, cursor ),
+                                                                    BookField.parse( fields ) );
+        writePage( page, scope, response );
+    }
+
+    /**
+     * One page of the books with the words in their title.
+     */
+    @GetMapping("/search")
+    public void searchByTitle(@RequestParam("title") String title,
+                              @RequestParam(value = "limit", defaultValue = "" + DEFAULT_LIMIT) int limit,
+                              @RequestParam(value = "cursor", required = false) String cursor,
+                              @RequestParam(value = "fields", required = false) String fields,
+                              HttpServletResponse response) throws IOException {
+        if (title.isEmpty()) {
+            throw new IllegalArgumentException("title must not be empty");
+        }
+        String scope = TITLE_SCOPE + title;
+        BookPage page = getBookTableService().findBookPageByTitle( title, checkLimit( limit ), PageCursor.decode( scope, cursor ),
+                                                                   BookField.parse( fields ) );
+        writePage( page, scope, response );
+    }
+
+    /**
+     * Export the book table as newline delimited JSON. The body is written on the MVC async executor, so the
+     * servlet thread is released (see book.export.timeout-millis for the time limit on an export).
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(@RequestParam(value = "fields", required = false) String fields,
+                                                             @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+                                                             HttpServletRequest request) {
+        Set<BookField> fieldSet = BookField.parse( fields );
+        if (! exportPermits.tryAcquire()) {
+            return ResponseEntity.status( HttpStatus.SERVICE_UNAVAILABLE ).build();
+        }
+        Stream<BookInfo> books;
+        try {
+            // the table check happens here, so a table that is not ready gets a 503 before the response starts
+            books = getBookTableService().streamBooks( fieldSet );
+        } catch (RuntimeException e) {
+            exportPermits.release();
+            throw e;
+        }
+        ExportPermit permit = new ExportPermit( books );
+        WebAsyncUtils.getAsyncManager( request ).registerCallableInterceptor( ExportPermit.class.getName(), permit );
+        int flushInterval = getBookTableService().getPageLimit();
+        StreamingResponseBody body = out -> {
+            long startMsec = System.currentTimeMillis();
+            try {
+                long count = writeNdjson( books.iterator(), out, gzip, flushInterval );
+                logger.info("exportBooks: " + count + " books in " + (System.currentTimeMillis() - startMsec) + " msec");
+            } finally {
+                permit.release();
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (gzip) {
+            response.contentType( MediaType.parseMediaType("application/gzip") )
+                    .header( HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books.ndjson.gz\"" );
+        } else {
+            response.contentType( MediaType.parseMediaType( NDJSON_CONTENT_TYPE ) );
+        }
+        return response.body( body );
+    }
+
+    /**
+     * Write one JSON object per line. The output is flushed every flushInterval books (about once per scan page), 
+     * so the client gets the rows as they are read. The response stream is not closed here.
+     * 
+     * @return the number of books written
+     */
+    private long writeNdjson(Iterator<BookInfo> books, OutputStream out, boolean gzip, int flushInterval) throws IOException {
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream( out, GZIP_BUFFER_SIZE, true ) : null;
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator( gzip ? gzipStream : out )) {
+            generator.disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
+            generator.setRootValueSeparator( null );
+            while (books.hasNext()) {
+                objectMapper.writeValue( generator, books.next() );
+                generator.writeRaw('\n');
+                count++;
+                if (count % flushInterval == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * <p>
+     * The permit of one export. The permit is released (and the book stream closed) once, by the body when it
+     * ends or by afterCompletion() when the async request completes, whichever comes first. afterCompletion() is
+     * called for a timeout, a network error or a rejected body too, when the body may never run.
+     * </p>
+     * <p>
+     * The export's time limit is set in beforeConcurrentHandling(), which runs before the async request starts, so
+     * that only the export gets the long timeout.
+     * </p>
+     */
+    private class ExportPermit implements CallableProcessingInterceptor {
+        private final Stream<BookInfo> books;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ExportPermit(Stream<BookInfo> books) {
+            this.books = books;
+        }
+
+        void release() {
+            if (released.compareAndSet( false, true )) {
+                try {
+                    books.close();
+                } finally {
+                    exportPermits.release();
+                }
+            }
+        }
+
+        @Override
+        public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+            if (request instanceof AsyncWebRequest) {
+                ((AsyncWebRequest) request).setTimeout( exportTimeoutMillis );
+            }
+        }
+
+        @Override
+        public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+            release();
+        }
+    }
+
+    private static int checkLimit(int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT + ": " + limit);
+        }
+        return limit;
+    }
+
+    private void writePage(BookPage page, String scope, HttpServletResponse response) throws IOException {
+        response.setContentType( MediaType.APPLICATION_JSON_UTF8_VALUE );
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator( response.getOutputStream() )) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("books");
+            for (BookInfo book : page.getBooks()) {
+                objectMapper.writeValue( generator, book );
+            }
+            generator.writeEndArray();
+            generator.writeNumberField("count", page.getBooks().size());
+            String nextCursor = PageCursor.encode( scope, page.getLastEvaluatedKey() );
+            if (nextCursor != null) {
+                generator.writeStringField("cursor", nextCursor);
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body( Collections.singletonMap( "error", e.getMessage() ) );
+    }
+
+    /**
+     * DynamoDB rejects a start key that does not match the table or index key (a cursor that was built by hand).
+     * A request that is still throttled after the SDK retries gets a 503, so the client can retry.
+     */
+    @ExceptionHandler(AmazonServiceException.class)
+    public ResponseEntity<Map<String, String>> dynamoDBError(AmazonServiceException e) {
+        if ("ValidationException".equals( e.getErrorCode() )) {
+            return ResponseEntity.badRequest().body( Collections.singletonMap( "error", "Invalid request: " + e.getErrorMessage() ) );
+        }
+        if (DynamoDBRequests.isThrottle( e.getErrorCode() )) {
+            return ResponseEntity.status( HttpStatus.SERVICE_UNAVAILABLE ).body( Collections.singletonMap( "error", "Throttled, retry later" ) );
+        }
+        logger.error("DynamoDB request failed: " + e.getLocalizedMessage());
+        return ResponseEntity.status( HttpStatus.BAD_GATEWAY ).body( Collections.singletonMap( "error", "DynamoDB request failed" ) );
+    }
+}
@@ -10,21 +10,22 @@ package io.kunalk.springaws.dynamoDBweb.controller;
 
 
 import io.kunalk.springaws.dynamoDBweb.service.BookTableService;
+import org.springframework.beans.factory.annotation.Autowired;
 
 /**
  * <h4>
  * BookControllerBase
  * </h4>
  * <p>
- * This base class provides the BookTableService object to its subclasses. This allows a single BookTableService object
- * to be shared by all subclasses (which makes them all singleton classes).
+ * This base class provides the BookTableService object to its subclasses. The BookTableService is a Spring bean
+ * (see BookTableConfiguration), so a single BookTableService object is shared by all subclasses.
  * </p>
 
 
  */
 abstract class BookControllerBase {
-    private final static String BOOK_TABLE_NAME = "book_table";
-    private final static BookTableService bookTableService = new BookTableService( BOOK_TABLE_NAME );
+    @Autowired
+    private BookTableService bookTableService;
     protected static final String BOOK_LIST = "bookList";
     
     protected BookTableService getBookTableService() {
@@ -9,7 +9,9 @@
 package io.kunalk.springaws.dynamoDBweb.controller;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import io.kunalk.springaws.dynamoDBweb.model.BookField;
 import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,6 +35,13 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
  * to strings, as are attributes.  See https://stackoverflow.com/a/24302616
  * </p>
  * <p>
+ * The handlers return a CompletableFuture, so the servlet thread is released while the DynamoDB request is in
+ * flight (when the BookTableService is in async mode). Spring MVC completes the request when the future completes.
+ * </p>
+ * <p>
+ * The author and title searches are counted in the popularity of the typeahead suggestions (see SuggestController).
+ * </p>
+ * <p>
  * For a reference on Spring controllers, see http://www.codejava.net/frameworks/spring/14-tips-for-writing-spring-mvc-controller
  * </p>
 
@@ -53,16 +62,16 @@ public class BookSearchController extends BookControllerBase {
      * @return the redirect page.
      */
     @RequestMapping(value = "/title-author-search", method = RequestMethod.POST)
-    public String searchByTitleAuthor(@RequestParam("title")  String title,
-                                      @RequestParam("author") String author,
-                                      RedirectAttributes redirect) {
+    public CompletableFuture<String> searchByTitleAuthor(@RequestParam("title")  String title,
+                                                         @RequestParam("author") String author,
+                                                         RedirectAttributes redirect) {
         if (title != null && title.length() > 0) {
             if (author != null && author.length() > 0) {
                 logger.info("searchByTitleAuthor: title = " + title + ", author = " + author);
-                List<BookInfo> bookInfoList = getBookTableService().findBookByTitleAuthor(author, title);
-                if (bookInfoList != null && bookInfoList.size() > 0) {
-                    redirect.addFlashAttribute(BOOK_LIST, bookInfoList);
-                }
+                getBookTableService().recordSearch( BookField.TITLE, title );
+                getBookTableService().recordSearch( BookField.AUTHOR, author );
+                return getBookTableService().findBookByTitleAuthorAsync(author, title)
+                                            .thenApply( bookInfoList -> redirectWithBooks(bookInfoList, redirect) );
             } else {
                 redirect.addFlashAttribute("title_author_author_error", "Author must be specified");
             }
@@ -70,7 +79,7 @@ public class BookSearchController extends BookControllerBase {
             redirect.addFlashAttribute("title_author_title_error", "Title must be specified");
         }
         
-        return "redirect:/";
+        return CompletableFuture.completedFuture( "redirect:/" );
     }
     
     /**
@@ -82,14 +91,13 @@ public class BookSearchController extends BookControllerBase {
      * @return the redirect page.
      */
     @RequestMapping(value = "/author-search", method = RequestMethod.POST)
-    public String searchByAuthor(@RequestParam("author") String author, RedirectAttributes redirect) {
+    public CompletableFuture<String> searchByAuthor(@RequestParam("author") String author, RedirectAttributes redirect) {
         if (author != null && author.length() > 0) {
-            List<BookInfo> bookInfoList = getBookTableService().findBookByAuthor(author);
-            if (bookInfoList != null && bookInfoList.size() > 0) {
-                redirect.addFlashAttribute(BOOK_LIST, bookInfoList);
-            }
+            getBookTableService().recordSearch( BookField.AUTHOR, author );
+            return getBookTableService().findBookByAuthorAsync(author)
+                                        .thenApply( bookInfoList -> redirectWithBooks(bookInfoList, redirect) );
         }
-        return "redirect:/";
+        return CompletableFuture.completedFuture( "redirect:/" );
     }
     
     /**
@@ -102,27 +110,67 @@ public class BookSearchController extends BookControllerBase {
      * @return the redirect page
      */
     @RequestMapping(value = "/title-search", method = RequestMethod.POST)
-    public String searchByTitle(@RequestParam("title") String title, RedirectAttributes redirect) {
+    public CompletableFuture<String> searchByTitle(@RequestParam("title") String title, RedirectAttributes redirect) {
         if (title != null && title.length() > 0) {
-            List<BookInfo> bookInfoList = getBookTableService().findBookByTitle(title);
-            if (bookInfoList != null && bookInfoList.size() > 0) {
-                redirect.addFlashAttribute(BOOK_LIST, bookInfoList);
-            }
+            getBookTableService().recordSearch( BookField.TITLE, title );
+            return getBookTableService().findBookByTitleAsync(title)
+                                        .thenApply( bookInfoList -> redirectWithBooks(bookInfoList, redirect) );
         }
-        return "redirect:/";
+        return CompletableFuture.completedFuture( "redirect:/" );
     }
     
     /**
      * <p>
-     * Return all books in the database
+     * Return all books in the database or, if a limit is given, one page of the sorted books.
      * </p>
      * 
+     * @param offset the number of books to skip (with limit)
+     * @param limit the page size, or null for all of the books
      * @param redirect
      * @return
      */
     @RequestMapping(value = "/list-all-books", method = RequestMethod.POST)
-    public String getAllBooks( RedirectAttributes redirect ) {
-        List<BookInfo> bookInfoList = getBookTableService().getBooks();
+    public CompletableFuture<String> getAllBooks( @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                  @RequestParam(value = "limit", required = false) Integer limit,
+                                                  RedirectAttributes redirect ) {
+        CompletableFuture<List<BookInfo>> books;
+        if (limit != null && limit >= 0 && offset >= 0) {
+            books = getBookTableService().getBooksAsync( offset, limit );
+        } else {
+            books = getBookTableService().getBooksAsync();
+        }
+        return books.thenApply( bookInfoList -> redirectWithBooks(bookInfoList, redirect) );
+    }
+    
+    /**
+     * <p>
+     * Find the books in a genre, sorted by author and title, or, if a limit is given, one page of them.
+     * </p>
+     * 
+     * @param genre the genre name, e.g., "Science Fiction"
+     * @param offset the number of books to skip (with limit)
+     * @param limit the page size, or null for all of the books in the genre
+     * @param redirect
+     * @return
+     */
+    @RequestMapping(value = "/genre-search", method = RequestMethod.POST)
+    public CompletableFuture<String> searchByGenre( @RequestParam("genre") String genre,
+                                                    @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                    @RequestParam(value = "limit", required = false) Integer limit,
+                                                    RedirectAttributes redirect ) {
+        CompletableFuture<List<BookInfo>> books;
+        if (limit != null && limit >= 0 && offset >= 0) {
+            books = getBookTableService().findBooksByGenreAsync( genre, offset, limit );
+        } else {
+            books = getBookTableService().findBooksByGenreAsync( genre );
+        }
+        return books.thenApply( bookInfoList -> redirectWithBooks(bookInfoList, redirect) );
+    }
+    
+    /**
+     * Return the search result as a flash attribute (if there is a result) and redirect to the index page.
+     */
+    private String redirectWithBooks(List<BookInfo> bookInfoList, RedirectAttributes redirect) {
         if (bookInfoList != null && bookInfoList.size() > 0) {
             redirect.addFlashAttribute(BOOK_LIST, bookInfoList);
         }
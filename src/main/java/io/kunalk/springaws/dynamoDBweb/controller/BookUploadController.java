@@ -0,0 +1,105 @@
+package io.kunalk.springaws.dynamoDBweb.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Validator;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+import io.kunalk.springaws.dynamoDBweb.upload.BookCsvReader;
+import io.kunalk.springaws.dynamoDBweb.upload.ChunkedBookWriter;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * <h4>
+ * BookUploadController
+ * </h4>
+ * <p>
+ * Bulk book upload. The request body is CSV (text/csv, with a header row), a JSON array of books
+ * (application/json) or newline delimited JSON (application/x-ndjson). The body is parsed as it is read, and
+ * the books are written in chunks with BatchWriteItem, so only one chunk of books is held in memory (see
+ * ChunkedBookWriter).
+ * </p>
+ * <p>
+ * Books that fail the same validation as the add book form are counted as rejected and are not written.
+ * </p>
+ */
+@RestController
+public class BookUploadController extends BookControllerBase {
+
+    private static final Log logger = LogFactory.getLog(BookUploadController.class);
+
+    @Value("${book.upload.chunk-size:500}")
+    private int chunkSize;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @PostMapping(value = "/api/books/upload", consumes = { "text/csv", "application/json", "application/x-ndjson" })
+    public ResponseEntity<Map<String, Object>> uploadBooks(HttpServletRequest request) throws IOException {
+        long read = 0;
+        long rejected = 0;
+        ChunkedBookWriter writer = new ChunkedBookWriter( getBookTableService()::writeBooks, chunkSize );
+        String error = null;
+        try (InputStream body = request.getInputStream()) {
+            Iterator<BookInfo> books = bookReader( request.getContentType(), body );
+            while (books.hasNext()) {
+                BookInfo info = books.next();
+                read++;
+                if (validator.validate( info ).isEmpty()) {
+                    writer.add( info );
+                } else {
+                    rejected++;
+                }
+            }
+        } catch (IOException | UncheckedIOException | RuntimeJsonMappingException e) {
+            error = "Could not parse book " + (read + 1) + ": " + e.getLocalizedMessage();
+            logger.info("uploadBooks: " + error);
+        }
+        writer.flush();
+        Map<String, Object> response = new LinkedHashMap<String, Object>();
+        response.put("read", read);
+        response.put("written", writer.getWritten());
+        response.put("rejected", rejected);
+        response.put("failed", writer.getFailed());
+        if (error != null) {
+            response.put("error", error);
+        }
+        HttpStatus status = (error == null) ? HttpStatus.OK : HttpStatus.BAD_REQUEST;
+        return new ResponseEntity<Map<String, Object>>( response, status );
+    }
+
+    private Iterator<BookInfo> bookReader(String contentType, InputStream body) throws IOException {
+        Iterator<BookInfo> books;
+        if (contentType != null && contentType.toLowerCase().startsWith("text/csv")) {
+            books = new BookCsvReader( new BufferedReader( new InputStreamReader( body, StandardCharsets.UTF_8 ) ) );
+        } else {
+            // a JSON array or a sequence of JSON objects (NDJSON)
+            books = objectMapper.readerFor( BookInfo.class )
+                                .without( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES )
+                                .readValues( body );
+        }
+        return books;
+    }
+}
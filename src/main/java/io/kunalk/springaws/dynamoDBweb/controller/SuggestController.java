@@ -0,0 +1,58 @@
+package io.kunalk.springaws.dynamoDBweb.controller;
+
+import io.kunalk.springaws.dynamoDBweb.index.Suggestion;
+import io.kunalk.springaws.dynamoDBweb.model.BookField;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h4>
+ * SuggestController
+ * </h4>
+ * <p>
+ * Typeahead completions for the author and title search forms. The completions come from memory (see
+ * BookTableService.getSuggestions()), so a request does not read DynamoDB. Until the suggestions are loaded (or
+ * if they are not enabled) the list is empty.
+ * </p>
+ * <pre>
+ * GET /api/suggest?prefix=wil&amp;fields=author&amp;limit=5
+ *
+ * { "prefix": "wil", "suggestions": [ { "text": "William Gibson", "field": "author", "weight": 12 }, ... ] }
+ * </pre>
+ * <p>
+ * The fields parameter (optional) is author, title or both (the default). A bad fields list or limit gets an
+ * HTTP 400 response.
+ * </p>
+ */
+@RestController
+public class SuggestController extends BookControllerBase {
+    public static final int DEFAULT_LIMIT = 10;
+    public static final int MAX_LIMIT = 100;
+
+    @GetMapping("/api/suggest")
+    public Map<String, Object> suggest(@RequestParam("prefix") String prefix,
+                                       @RequestParam(value = "fields", required = false) String fields,
+                                       @RequestParam(value = "limit", defaultValue = "" + DEFAULT_LIMIT) int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT + ": " + limit);
+        }
+        List<Suggestion> suggestions = getBookTableService().getSuggestions( prefix, BookField.parse( fields ), limit );
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("prefix", prefix);
+        body.put("suggestions", suggestions);
+        return body;
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body( Collections.singletonMap( "error", e.getMessage() ) );
+    }
+}
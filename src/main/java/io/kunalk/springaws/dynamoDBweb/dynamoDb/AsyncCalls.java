@@ -0,0 +1,170 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * <h4>
+ * AsyncCalls
+ * </h4>
+ * <p>
+ * Adapts the AmazonDynamoDBAsync Future/AsyncHandler methods to CompletableFuture, and follows LastEvaluatedKey
+ * for paged reads without blocking a thread between pages.
+ * </p>
+ * <p>
+ * The requests of a client that is paced (see pace()) are submitted when its CapacityRateLimiter has the capacity
+ * for them. Until then a request is held by a timer, not by a thread of the client's pool.
+ * </p>
+ */
+public final class AsyncCalls {
+    /** The rate limiters of the paced clients */
+    private static final Map<AmazonDynamoDBAsync, CapacityRateLimiter> pacedClients =
+        Collections.synchronizedMap( new WeakHashMap<AmazonDynamoDBAsync, CapacityRateLimiter>() );
+    private static volatile ScheduledExecutorService pacer = null;
+
+    private AsyncCalls() {
+    }
+
+    /**
+     * Pace the requests of a client: a request is submitted when the limiter has the capacity for it. The client
+     * should be built with limiter.nonBlocking() as its request handler, so that it does not wait again.
+     */
+    public static void pace(AmazonDynamoDBAsync client, CapacityRateLimiter limiter) {
+        pacedClients.put( client, limiter );
+    }
+
+    public static CompletableFuture<QueryResult> query(AmazonDynamoDBAsync client, QueryRequest request) {
+        return whenPaced( client, request, () -> {
+            CompletableFuture<QueryResult> future = new CompletableFuture<QueryResult>();
+            client.queryAsync( request, completing( future ) );
+            return future;
+        });
+    }
+
+    public static CompletableFuture<ScanResult> scan(AmazonDynamoDBAsync client, ScanRequest request) {
+        return whenPaced( client, request, () -> {
+            CompletableFuture<ScanResult> future = new CompletableFuture<ScanResult>();
+            client.scanAsync( request, completing( future ) );
+            return future;
+        });
+    }
+
+    public static CompletableFuture<PutItemResult> putItem(AmazonDynamoDBAsync client, PutItemRequest request) {
+        return whenPaced( client, request, () -> {
+            CompletableFuture<PutItemResult> future = new CompletableFuture<PutItemResult>();
+            client.putItemAsync( request, completing( future ) );
+            return future;
+        });
+    }
+
+    /**
+     * Submit a request now, or (if the client is paced and the capacity is not there yet) after a delay, when the
+     * limiter is asked again.
+     */
+    private static <R> CompletableFuture<R> whenPaced(AmazonDynamoDBAsync client, AmazonWebServiceRequest request,
+                                                      Supplier<CompletableFuture<R>> submit) {
+        CapacityRateLimiter limiter = pacedClients.get( client );
+        long delayNanos = (limiter != null) ? limiter.delayNanos( request ) : 0;
+        if (delayNanos <= 0) {
+            return submit.get();
+        }
+        CompletableFuture<R> future = new CompletableFuture<R>();
+        getPacer().schedule( () -> {
+            whenPaced( client, request, submit ).whenComplete( (result, e) -> {
+                if (e != null) {
+                    future.completeExceptionally( e );
+                } else {
+                    future.complete( result );
+                }
+            });
+        }, delayNanos, TimeUnit.NANOSECONDS );
+        return future;
+    }
+
+    private static ScheduledExecutorService getPacer() {
+        ScheduledExecutorService executor = pacer;
+        if (executor == null) {
+            synchronized (AsyncCalls.class) {
+                if (pacer == null) {
+                    pacer = Executors.newSingleThreadScheduledExecutor( r -> {
+                        Thread thread = new Thread( r, "async-call-pacer" );
+                        thread.setDaemon( true );
+                        return thread;
+                    });
+                }
+                executor = pacer;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Read all of the query pages. Each page is requested when the previous page arrives.
+     *
+     * @param items the list that the rows are added to
+     * @return a future that completes with items when the last page has been read.
+     */
+    public static CompletableFuture<List<Map<String, AttributeValue>>> queryAll(AmazonDynamoDBAsync client,
+                                                                                 QueryRequest request,
+                                                                                 List<Map<String, AttributeValue>> items) {
+        return query( client, request ).thenCompose( result -> {
+            items.addAll( result.getItems() );
+            Map<String, AttributeValue> lastKey = result.getLastEvaluatedKey();
+            if (lastKey != null && lastKey.size() > 0) {
+                return queryAll( client, request.withExclusiveStartKey( lastKey ), items );
+            }
+            return CompletableFuture.completedFuture( items );
+        });
+    }
+
+    /**
+     * Read all of the scan pages. Each page is requested when the previous page arrives.
+     *
+     * @param items the list that the rows are added to
+     * @return a future that completes with items when the last page has been read.
+     */
+    public static CompletableFuture<List<Map<String, AttributeValue>>> scanAll(AmazonDynamoDBAsync client,
+                                                                                ScanRequest request,
+                                                                                List<Map<String, AttributeValue>> items) {
+        return scan( client, request ).thenCompose( result -> {
+            items.addAll( result.getItems() );
+            Map<String, AttributeValue> lastKey = result.getLastEvaluatedKey();
+            if (lastKey != null && lastKey.size() > 0) {
+                return scanAll( client, request.withExclusiveStartKey( lastKey ), items );
+            }
+            return CompletableFuture.completedFuture( items );
+        });
+    }
+
+    private static <Q extends AmazonWebServiceRequest, R> AsyncHandler<Q, R> completing(CompletableFuture<R> future) {
+        return new AsyncHandler<Q, R>() {
+            @Override
+            public void onError(Exception exception) {
+                future.completeExceptionally( exception );
+            }
+
+            @Override
+            public void onSuccess(Q request, R result) {
+                future.complete( result );
+            }
+        };
+    }
+}
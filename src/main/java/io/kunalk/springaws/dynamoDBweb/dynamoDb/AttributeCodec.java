@@ -0,0 +1,318 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIndexRangeKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBRangeKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBVersionAttribute;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * <h4>
+ * AttributeCodec
+ * </h4>
+ * <p>
+ * Converts DynamoDB attribute maps to objects and objects to attribute maps. The codec for a class is built once, the first time that the class
+ * is used, and then cached. Building the codec finds the setter for each DynamoDB attribute (using the DynamoDB
+ * mapper annotations for the attribute name, or the property name if there is no annotation) and compiles it
+ * to a MethodHandle. Decoding a row is then a hash lookup and a MethodHandle call per attribute. The getters are
+ * compiled in the same way for encoding.
+ * </p>
+ * <p>
+ * The attribute value is converted to the setter parameter type. String, Integer, Long, Double, BigDecimal and
+ * Boolean parameters (and their primitive types) are supported. Attributes without a matching setter, and
+ * attribute values that can't be converted, are skipped. When an object is encoded, String values become S
+ * attributes, numbers become N attributes and Booleans become BOOL attributes. Null values and empty strings
+ * are left out, since DynamoDB does not store empty strings.
+ * </p>
+ */
+public final class AttributeCodec<T> {
+    private static final ClassValue<AttributeCodec<?>> CODECS = new ClassValue<AttributeCodec<?>>() {
+        @Override
+        protected AttributeCodec<?> computeValue(Class<?> type) {
+            return create( type );
+        }
+    };
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Class<T> type;
+    private final Map<String, PropertyWriter> writers;
+    private final Map<String, MethodHandle> readers;
+
+    @SuppressWarnings("unchecked")
+    public static <T> AttributeCodec<T> forClass(Class<T> type) {
+        return (AttributeCodec<T>) CODECS.get( type );
+    }
+
+    private static <X> AttributeCodec<X> create(Class<X> type) {
+        return new AttributeCodec<X>( type );
+    }
+
+    private AttributeCodec(Class<T> type) {
+        this.type = type;
+        Map<String, PropertyWriter> writerMap = new HashMap<String, PropertyWriter>();
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (Method m : type.getMethods()) {
+            if (isSetter( m )) {
+                String propertyName = decapitalize( m.getName().substring(3) );
+                Method getter = findGetter( type, propertyName );
+                if (m.isAnnotationPresent( DynamoDBIgnore.class ) || (getter != null && getter.isAnnotationPresent( DynamoDBIgnore.class ))) {
+                    continue;
+                }
+                Function<AttributeValue, Object> converter = converterFor( m.getParameterTypes()[0] );
+                if (converter == null) {
+                    continue;
+                }
+                String attributeName = attributeName( m );
+                if (attributeName == null && getter != null) {
+                    attributeName = attributeName( getter );
+                }
+                if (attributeName == null) {
+                    attributeName = propertyName;
+                }
+                try {
+                    MethodHandle handle = lookup.unreflect( m ).asType( SETTER_TYPE );
+                    writerMap.put( attributeName, new PropertyWriter( handle, converter, m.getParameterTypes()[0].isPrimitive() ) );
+                } catch (IllegalAccessException e) {
+                    // not accessible from here: the attribute will not be decoded
+                }
+            }
+        }
+        this.writers = Collections.unmodifiableMap( writerMap );
+
+        Map<String, MethodHandle> readerMap = new HashMap<String, MethodHandle>();
+        for (Method m : type.getMethods()) {
+            if (isGetter( m ) && ! m.isAnnotationPresent( DynamoDBIgnore.class )) {
+                String prefix = m.getName().startsWith("is") ? "is" : "get";
+                String propertyName = decapitalize( m.getName().substring( prefix.length() ) );
+                String attributeName = attributeName( m );
+                if (attributeName == null) {
+                    Method setter = findSetter( type, propertyName, m.getReturnType() );
+                    attributeName = (setter != null) ? attributeName( setter ) : null;
+                }
+                if (attributeName == null) {
+                    attributeName = propertyName;
+                }
+                try {
+                    readerMap.put( attributeName, lookup.unreflect( m ).asType( GETTER_TYPE ) );
+                } catch (IllegalAccessException e) {
+                    // not accessible from here: the attribute will not be encoded
+                }
+            }
+        }
+        this.readers = Collections.unmodifiableMap( readerMap );
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return true if the codec has a setter for the DynamoDB attribute.
+     */
+    public boolean hasAttribute(String attributeName) {
+        return writers.containsKey( attributeName );
+    }
+
+    /**
+     * Set the properties of obj from a DynamoDB row.
+     *
+     * @param obj the object to populate
+     * @param item the DynamoDB attribute map for the row
+     * @throws ReflectiveOperationException if a setter throws an exception
+     */
+    public void decode(T obj, Map<String, AttributeValue> item) throws ReflectiveOperationException {
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            PropertyWriter writer = writers.get( entry.getKey() );
+            if (writer != null && entry.getValue() != null) {
+                writer.write( obj, entry.getValue() );
+            }
+        }
+    }
+
+    /**
+     * Build the DynamoDB attribute map for an object.
+     *
+     * @param obj the object to encode
+     * @return the attribute map. Null values and empty strings are not included.
+     * @throws ReflectiveOperationException if a getter throws an exception
+     */
+    public Map<String, AttributeValue> encode(T obj) throws ReflectiveOperationException {
+        Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+        for (Map.Entry<String, MethodHandle> entry : readers.entrySet()) {
+            Object value;
+            try {
+                value = (Object) entry.getValue().invokeExact( (Object) obj );
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new InvocationTargetException( t );
+            }
+            AttributeValue attributeValue = toAttributeValue( value );
+            if (attributeValue != null) {
+                item.put( entry.getKey(), attributeValue );
+            }
+        }
+        return item;
+    }
+
+    private static AttributeValue toAttributeValue(Object value) {
+        AttributeValue attributeValue = null;
+        if (value instanceof String) {
+            String s = (String)value;
+            if (s.length() > 0) {
+                attributeValue = new AttributeValue().withS( s );
+            }
+        } else if (value instanceof BigDecimal) {
+            attributeValue = new AttributeValue().withN( ((BigDecimal)value).toPlainString() );
+        } else if (value instanceof Number) {
+            attributeValue = new AttributeValue().withN( value.toString() );
+        } else if (value instanceof Boolean) {
+            attributeValue = new AttributeValue().withBOOL( (Boolean)value );
+        }
+        return attributeValue;
+    }
+
+    private static boolean isGetter(Method m) {
+        String name = m.getName();
+        boolean named = (name.startsWith("get") && name.length() > 3 && ! name.equals("getClass"))
+                        || (name.startsWith("is") && name.length() > 2
+                            && (m.getReturnType() == boolean.class || m.getReturnType() == Boolean.class));
+        return named && m.getParameterCount() == 0
+               && m.getReturnType() != void.class
+               && ! Modifier.isStatic( m.getModifiers() );
+    }
+
+    private static Method findSetter(Class<?> type, String propertyName, Class<?> valueType) {
+        String name = "set" + Character.toUpperCase( propertyName.charAt(0) ) + propertyName.substring(1);
+        try {
+            return type.getMethod( name, valueType );
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static boolean isSetter(Method m) {
+        return m.getName().startsWith("set") && m.getName().length() > 3
+               && m.getParameterCount() == 1
+               && ! Modifier.isStatic( m.getModifiers() );
+    }
+
+    private static Method findGetter(Class<?> type, String propertyName) {
+        String suffix = Character.toUpperCase( propertyName.charAt(0) ) + propertyName.substring(1);
+        for (String prefix : new String[]{ "get", "is" }) {
+            try {
+                return type.getMethod( prefix + suffix );
+            } catch (NoSuchMethodException e) {
+                // try the next prefix
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the attribute name from a DynamoDB mapper annotation, or null if there is no annotation with a name.
+     */
+    static String attributeName(Method m) {
+        String name = null;
+        if (m.isAnnotationPresent( DynamoDBHashKey.class )) {
+            name = m.getAnnotation( DynamoDBHashKey.class ).attributeName();
+        } else if (m.isAnnotationPresent( DynamoDBRangeKey.class )) {
+            name = m.getAnnotation( DynamoDBRangeKey.class ).attributeName();
+        } else if (m.isAnnotationPresent( DynamoDBAttribute.class )) {
+            name = m.getAnnotation( DynamoDBAttribute.class ).attributeName();
+        } else if (m.isAnnotationPresent( DynamoDBVersionAttribute.class )) {
+            name = m.getAnnotation( DynamoDBVersionAttribute.class ).attributeName();
+        } else if (m.isAnnotationPresent( DynamoDBIndexHashKey.class )) {
+            name = m.getAnnotation( DynamoDBIndexHashKey.class ).attributeName();
+        } else if (m.isAnnotationPresent( DynamoDBIndexRangeKey.class )) {
+            name = m.getAnnotation( DynamoDBIndexRangeKey.class ).attributeName();
+        }
+        return (name != null && name.length() > 0) ? name : null;
+    }
+
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase( name.charAt(1) ) && Character.isUpperCase( name.charAt(0) )) {
+            return name;
+        }
+        return Character.toLowerCase( name.charAt(0) ) + name.substring(1);
+    }
+
+    /**
+     * The text of a scalar attribute value (S, N or BOOL), or null for other attribute types.
+     */
+    private static String scalarText(AttributeValue value) {
+        String text = value.getS();
+        if (text == null) {
+            text = value.getN();
+        }
+        if (text == null && value.getBOOL() != null) {
+            text = value.getBOOL().toString();
+        }
+        return text;
+    }
+
+    private static Function<AttributeValue, Object> converterFor(Class<?> paramType) {
+        Function<AttributeValue, Object> converter = null;
+        if (paramType == String.class) {
+            converter = AttributeCodec::scalarText;
+        } else if (paramType == Integer.class || paramType == int.class) {
+            converter = v -> { String n = scalarText(v); return (n != null) ? Integer.valueOf( n.trim() ) : null; };
+        } else if (paramType == Long.class || paramType == long.class) {
+            converter = v -> { String n = scalarText(v); return (n != null) ? Long.valueOf( n.trim() ) : null; };
+        } else if (paramType == Double.class || paramType == double.class) {
+            converter = v -> { String n = scalarText(v); return (n != null) ? Double.valueOf( n.trim() ) : null; };
+        } else if (paramType == BigDecimal.class) {
+            converter = v -> { String n = scalarText(v); return (n != null) ? new BigDecimal( n.trim() ) : null; };
+        } else if (paramType == Boolean.class || paramType == boolean.class) {
+            converter = v -> (v.getBOOL() != null) ? v.getBOOL() : (v.getN() != null ? Boolean.valueOf( ! "0".equals(v.getN()) ) : null);
+        }
+        return converter;
+    }
+
+    private static class PropertyWriter {
+        private final MethodHandle setter;
+        private final Function<AttributeValue, Object> converter;
+        private final boolean primitive;
+
+        PropertyWriter(MethodHandle setter, Function<AttributeValue, Object> converter, boolean primitive) {
+            this.setter = setter;
+            this.converter = converter;
+            this.primitive = primitive;
+        }
+
+        void write(Object obj, AttributeValue attributeValue) throws ReflectiveOperationException {
+            Object value;
+            try {
+                value = converter.apply( attributeValue );
+            } catch (NumberFormatException e) {
+                return;
+            }
+            if (value == null && primitive) {
+                return;
+            }
+            try {
+                setter.invokeExact( obj, value );
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new InvocationTargetException( t );
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * <h4>
+ * BatchItemReader
+ * </h4>
+ * <p>
+ * Reads items from a DynamoDB table by key with BatchGetItem. The keys are grouped into batches of 100 (the
+ * DynamoDB limit) and the batches are sent one after the other on the calling thread. This is used to read
+ * the attributes that a KEYS_ONLY or INCLUDE global secondary index does not have from the table.
+ * </p>
+ * <p>
+ * As with BatchItemWriter, keys that DynamoDB returns as UnprocessedKeys are sent again after an exponential backoff
+ * with full jitter. If keys are still unprocessed after maxRetries, an AmazonClientException is thrown: a read
+ * can't return part of its result.
+ * </p>
+ */
+public class BatchItemReader {
+    /** The maximum number of keys in a BatchGetItem request */
+    public final static int MAX_BATCH_SIZE = 100;
+
+    private final Function<BatchGetItemRequest, BatchGetItemResult> batchReader;
+    private final String tableName;
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param batchReader the function that sends a batch request (e.g., AmazonDynamoDB::batchGetItem)
+     * @param tableName the table the items are read from
+     * @param maxRetries the number of times unprocessed keys are retried
+     * @param baseDelayMillis the backoff delay for the first retry
+     * @param maxDelayMillis the maximum backoff delay
+     */
+    public BatchItemReader(Function<BatchGetItemRequest, BatchGetItemResult> batchReader,
+                           String tableName,
+                           int maxRetries,
+                           long baseDelayMillis,
+                           long maxDelayMillis) {
+        this.batchReader = batchReader;
+        this.tableName = tableName;
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Read the items with the keys. The items are not returned in key order and keys without an item are skipped.
+     *
+     * @param keys the table keys of the items. No two keys may be the same.
+     * @param attributesToGet the attributes to read (they must include the key attributes if the caller matches
+     *                        the items to the keys), or null for all of the attributes.
+     * @return the items that were found.
+     */
+    public List<Map<String, AttributeValue>> readAll(List<Map<String, AttributeValue>> keys, List<String> attributesToGet) {
+        List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>( keys.size() );
+        for (int start = 0; start < keys.size(); start += MAX_BATCH_SIZE) {
+            List<Map<String, AttributeValue>> batch = keys.subList( start, Math.min( keys.size(), start + MAX_BATCH_SIZE ) );
+            readBatch( batch, attributesToGet, items );
+        }
+        return items;
+    }
+
+    private void readBatch(List<Map<String, AttributeValue>> keys, List<String> attributesToGet,
+                           List<Map<String, AttributeValue>> items) {
+        KeysAndAttributes pending = new KeysAndAttributes().withKeys( keys ).withAttributesToGet( attributesToGet );
+        int attempt = 0;
+        while (pending != null && pending.getKeys() != null && ! pending.getKeys().isEmpty()) {
+            if (attempt > 0) {
+                if (attempt > maxRetries) {
+                    throw new AmazonClientException(pending.getKeys().size() + " keys were still unprocessed after "
+                                                    + maxRetries + " retries");
+                }
+                backoff( attempt - 1 );
+            }
+            BatchGetItemResult result = batchReader.apply( new BatchGetItemRequest()
+                                                           .withRequestItems( Collections.singletonMap( tableName, pending ) ) );
+            if (result.getResponses() != null && result.getResponses().get( tableName ) != null) {
+                items.addAll( result.getResponses().get( tableName ) );
+            }
+            pending = (result.getUnprocessedKeys() != null) ? result.getUnprocessedKeys().get( tableName ) : null;
+            attempt++;
+        }
+    }
+
+    /**
+     * Sleep for a random time between zero and min(maxDelay, baseDelay * 2^attempt).
+     */
+    private void backoff(int attempt) {
+        long ceiling = Math.min( maxDelayMillis, baseDelayMillis << Math.min( attempt, 20 ) );
+        long delay = ThreadLocalRandom.current().nextLong( ceiling + 1 );
+        try {
+            Thread.sleep( delay );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while retrying a BatchGetItem request", e);
+        }
+    }
+}
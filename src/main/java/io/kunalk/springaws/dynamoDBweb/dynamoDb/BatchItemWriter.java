@@ -0,0 +1,209 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * <h4>
+ * BatchItemWriter
+ * </h4>
+ * <p>
+ * Writes items to a DynamoDB table with BatchWriteItem. The items are grouped into batches of 25 (the DynamoDB
+ * limit) and the batches are sent concurrently on a fixed size thread pool.
+ * </p>
+ * <p>
+ * DynamoDB may return some of the items of a batch as UnprocessedItems (usually because the table is being
+ * throttled). These items are sent again after an exponential backoff with full jitter: the delay before retry n
+ * is a random value between zero and min(maxDelay, baseDelay * 2^n). Items that are still unprocessed after
+ * maxRetries are reported as failed.
+ * </p>
+ * <p>
+ * A batch request that fails with a throttling error, a server error or a client error (e.g., a connection
+ * timeout) after the SDK's own retries is sent again with the same backoff, and the retries count against the
+ * same maxRetries. A request that DynamoDB rejects (e.g., a ValidationException) is not retried: its items are
+ * reported as failed.
+ * </p>
+ * <p>
+ * A BatchWriteItem request may not contain two items with the same key. The caller is responsible for
+ * removing duplicates.
+ * </p>
+ */
+public class BatchItemWriter {
+    /** The maximum number of items in a BatchWriteItem request */
+    public final static int MAX_BATCH_SIZE = 25;
+
+    private final Function<BatchWriteItemRequest, BatchWriteItemResult> batchWriter;
+    private final String tableName;
+    private final ExecutorService executor;
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Logger log;
+
+    /**
+     * @param batchWriter the function that sends a batch request (e.g., AmazonDynamoDB::batchWriteItem)
+     * @param tableName the table the items are written to
+     * @param threads the number of batches that are sent concurrently
+     * @param maxRetries the number of times unprocessed items are retried
+     * @param baseDelayMillis the backoff delay for the first retry
+     * @param maxDelayMillis the maximum backoff delay
+     */
+    public BatchItemWriter(Function<BatchWriteItemRequest, BatchWriteItemResult> batchWriter,
+                           String tableName,
+                           int threads,
+                           int maxRetries,
+                           long baseDelayMillis,
+                           long maxDelayMillis) {
+        this.batchWriter = batchWriter;
+        this.tableName = tableName;
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.log = Logger.getLogger( this.getClass().getName() );
+        final AtomicInteger threadNumber = new AtomicInteger(1);
+        this.executor = Executors.newFixedThreadPool( threads, r -> {
+            Thread thread = new Thread( r, "batch-write-" + tableName + "-" + threadNumber.getAndIncrement() );
+            thread.setDaemon( true );
+            return thread;
+        });
+    }
+
+    /**
+     * Write the items and wait for all of the batches to complete.
+     *
+     * @param items the items to write. No two items may have the same key.
+     * @return the number of items written and the items that failed.
+     */
+    public BatchWriteResult writeAll(List<Map<String, AttributeValue>> items) {
+        List<Future<BatchWriteResult>> futures = new ArrayList<Future<BatchWriteResult>>();
+        for (int start = 0; start < items.size(); start += MAX_BATCH_SIZE) {
+            List<Map<String, AttributeValue>> batch = items.subList( start, Math.min( items.size(), start + MAX_BATCH_SIZE ) );
+            futures.add( executor.submit( () -> writeBatch( batch ) ) );
+        }
+        BatchWriteResult result = new BatchWriteResult();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                result.add( futures.get(i).get() );
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Batch write interrupted", e);
+            } catch (ExecutionException e) {
+                // writeBatch() reports request failures in its result, so this is unexpected
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                }
+                throw new IllegalStateException("Batch write failed", cause);
+            }
+        }
+        return result;
+    }
+
+    private BatchWriteResult writeBatch(List<Map<String, AttributeValue>> items) {
+        BatchWriteResult result = new BatchWriteResult();
+        List<WriteRequest> pending = new ArrayList<WriteRequest>( items.size() );
+        for (Map<String, AttributeValue> item : items) {
+            pending.add( new WriteRequest().withPutRequest( new PutRequest().withItem( item ) ) );
+        }
+        int attempt = 0;
+        while (! pending.isEmpty()) {
+            BatchWriteItemRequest request = new BatchWriteItemRequest()
+                    .withRequestItems( Collections.singletonMap( tableName, pending ) );
+            BatchWriteItemResult batchResult;
+            try {
+                batchResult = batchWriter.apply( request );
+            } catch (AmazonClientException e) {
+                if (isRetryable( e ) && attempt < maxRetries) {
+                    if (! backoff( attempt )) {
+                        result.addFailed( putItems( pending ) );
+                        break;
+                    }
+                    attempt++;
+                    continue;
+                }
+                log.warning("BatchWriteItem failed for " + pending.size() + " items: " + e.getLocalizedMessage());
+                result.addFailed( putItems( pending ) );
+                break;
+            }
+            List<WriteRequest> unprocessed = null;
+            if (batchResult.getUnprocessedItems() != null) {
+                unprocessed = batchResult.getUnprocessedItems().get( tableName );
+            }
+            int unprocessedCount = (unprocessed != null) ? unprocessed.size() : 0;
+            result.addWritten( pending.size() - unprocessedCount );
+            if (unprocessedCount == 0) {
+                break;
+            }
+            if (attempt >= maxRetries) {
+                log.warning(unprocessedCount + " items were still unprocessed after " + maxRetries + " retries");
+                result.addFailed( putItems( unprocessed ) );
+                break;
+            }
+            pending = new ArrayList<WriteRequest>( unprocessed );
+            if (! backoff( attempt )) {
+                result.addFailed( putItems( pending ) );
+                break;
+            }
+            attempt++;
+        }
+        return result;
+    }
+
+    /**
+     * @return true if a batch request that failed with e may succeed if it is sent again.
+     */
+    static boolean isRetryable(AmazonClientException e) {
+        if (e instanceof AmazonServiceException) {
+            AmazonServiceException serviceException = (AmazonServiceException)e;
+            return serviceException.getStatusCode() >= 500 || DynamoDBRequests.isThrottle( serviceException.getErrorCode() );
+        }
+        return e.isRetryable();
+    }
+
+    /**
+     * Sleep for a random time between zero and min(maxDelay, baseDelay * 2^attempt).
+     *
+     * @return false if the thread was interrupted.
+     */
+    private boolean backoff(int attempt) {
+        long ceiling = Math.min( maxDelayMillis, baseDelayMillis << Math.min( attempt, 20 ) );
+        long delay = ThreadLocalRandom.current().nextLong( ceiling + 1 );
+        try {
+            Thread.sleep( delay );
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static List<Map<String, AttributeValue>> putItems(List<WriteRequest> requests) {
+        List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>( requests.size() );
+        for (WriteRequest request : requests) {
+            items.add( request.getPutRequest().getItem() );
+        }
+        return items;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,54 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h4>
+ * BatchWriteResult
+ * </h4>
+ * <p>
+ * The outcome of a batch write: the number of items written and the items that could not be written (after
+ * the retries for unprocessed items ran out, or because the batch request failed).
+ * </p>
+ */
+public class BatchWriteResult {
+    private long written = 0;
+    private final List<Map<String, AttributeValue>> failedItems = new ArrayList<Map<String, AttributeValue>>();
+
+    public long getWritten() {
+        return written;
+    }
+
+    public long getFailed() {
+        return failedItems.size();
+    }
+
+    public List<Map<String, AttributeValue>> getFailedItems() {
+        return failedItems;
+    }
+
+    void addWritten(long count) {
+        written += count;
+    }
+
+    /**
+     * Add items that were not written (e.g., items that were not sent because an earlier write for them failed).
+     */
+    public void addFailed(List<Map<String, AttributeValue>> items) {
+        failedItems.addAll( items );
+    }
+
+    public void add(BatchWriteResult other) {
+        written += other.written;
+        failedItems.addAll( other.failedItems );
+    }
+
+    @Override
+    public String toString() {
+        return "BatchWriteResult [written=" + written + ", failed=" + failedItems.size() + "]";
+    }
+}
@@ -0,0 +1,165 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h4>
+ * CapacityLimiter
+ * </h4>
+ * <p>
+ * A token bucket for DynamoDB capacity units. The bucket refills at the provisioned rate (units per second) up to
+ * a burst size. A request takes its estimated cost before it is sent and the difference between the estimate and
+ * the capacity that DynamoDB reports is settled when the response arrives, so the bucket follows the consumed
+ * capacity, not the estimate. The balance can go negative (a large scan page), and the requests that follow wait
+ * until the debt has been repaid.
+ * </p>
+ * <p>
+ * There are two lanes. An interactive request (a point query) only waits for the balance to be positive. A
+ * background request (a scan page or a batch write) also leaves a reserve in the bucket and waits while any
+ * interactive request is waiting, so a long scan cannot starve the interactive requests.
+ * </p>
+ * <p>
+ * acquire() waits on the caller's thread. A caller that must not block (a request of the asynchronous client)
+ * asks for delayNanos() instead, delays the request by that time without holding a thread, and takes the cost
+ * with take() when the request is sent.
+ * </p>
+ */
+public class CapacityLimiter {
+    private final String name;
+    private final double unitsPerSecond;
+    private final double burst;
+    private final double reserve;
+    private double available;
+    private long lastRefillNanos;
+    private int interactiveWaiting = 0;
+
+    /**
+     * @param name the limiter name (e.g., the table and index), for logging and metrics.
+     * @param unitsPerSecond the refill rate: the provisioned capacity units per second.
+     * @param burstSeconds the bucket size, in seconds of capacity.
+     * @param reserveFraction the fraction of the bucket that background requests leave for interactive requests.
+     */
+    public CapacityLimiter(String name, double unitsPerSecond, double burstSeconds, double reserveFraction) {
+        if (unitsPerSecond <= 0) {
+            throw new IllegalArgumentException("unitsPerSecond must be greater than zero: " + unitsPerSecond);
+        }
+        if (reserveFraction < 0 || reserveFraction >= 1) {
+            throw new IllegalArgumentException("reserveFraction must be in [0, 1): " + reserveFraction);
+        }
+        this.name = name;
+        this.unitsPerSecond = unitsPerSecond;
+        this.burst = Math.max( 1.0, unitsPerSecond * burstSeconds );
+        this.reserve = burst * reserveFraction;
+        this.available = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getUnitsPerSecond() {
+        return unitsPerSecond;
+    }
+
+    /**
+     * @return the current balance, in capacity units (negative when requests have consumed more than the bucket held).
+     */
+    public synchronized double getAvailable() {
+        refill();
+        return available;
+    }
+
+    /**
+     * <p>
+     * Wait until the request can be sent and take its estimated cost from the bucket.
+     * </p>
+     * @param estimatedUnits the expected capacity units for the request.
+     * @param interactive true for the interactive lane, false for the background lane.
+     * @return the time spent waiting, in nanoseconds.
+     * @throws InterruptedException
+     */
+    public synchronized long acquire(double estimatedUnits, boolean interactive) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        refill();
+        if (interactive) {
+            interactiveWaiting++;
+            try {
+                while (available <= 0) {
+                    waitFor( 0 );
+                }
+            } finally {
+                interactiveWaiting--;
+                if (interactiveWaiting == 0) {
+                    notifyAll();
+                }
+            }
+        } else {
+            while (available <= reserve || interactiveWaiting > 0) {
+                waitFor( reserve );
+            }
+        }
+        available -= estimatedUnits;
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @param interactive true for the interactive lane, false for the background lane.
+     * @return zero if a request of the lane would be sent now by acquire(), otherwise the time (at least a
+     *         millisecond, in nanoseconds) after which it should be asked again.
+     */
+    public synchronized long delayNanos(boolean interactive) {
+        refill();
+        double target = interactive ? 0 : reserve;
+        if (available > target && (interactive || interactiveWaiting == 0)) {
+            return 0;
+        }
+        double deficit = Math.max( 0, target - available );
+        return Math.max( TimeUnit.MILLISECONDS.toNanos( 1 ), (long)Math.ceil( (deficit / unitsPerSecond) * 1.0e9 ) );
+    }
+
+    /**
+     * Take the estimated cost of a request without waiting (see delayNanos()). The balance can go negative.
+     */
+    public synchronized void take(double estimatedUnits) {
+        refill();
+        available -= estimatedUnits;
+    }
+
+    /**
+     * Settle a request: replace the estimate taken by acquire() with the capacity that DynamoDB reported.
+     */
+    public synchronized void settle(double estimatedUnits, double consumedUnits) {
+        refill();
+        available = Math.min( burst, available + estimatedUnits - consumedUnits );
+        notifyAll();
+    }
+
+    /**
+     * DynamoDB throttled a request, so the table has no capacity left. Empty the bucket.
+     */
+    public synchronized void drain() {
+        refill();
+        if (available > 0) {
+            available = 0;
+        }
+    }
+
+    /**
+     * Wait (releasing the monitor) until the balance should have refilled to more than target, or until another
+     * thread settles or leaves the interactive lane.
+     */
+    private void waitFor(double target) throws InterruptedException {
+        double deficit = target - available;
+        long waitMillis = Math.max( 1, (long)Math.ceil( (deficit / unitsPerSecond) * 1000.0 ) );
+        TimeUnit.MILLISECONDS.timedWait( this, waitMillis );
+        refill();
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double refilled = unitsPerSecond * ((now - lastRefillNanos) / 1.0e9);
+        lastRefillNanos = now;
+        available = Math.min( burst, available + refilled );
+    }
+}
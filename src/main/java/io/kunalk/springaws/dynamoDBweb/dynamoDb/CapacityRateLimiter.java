@@ -0,0 +1,344 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.Capacity;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h4>
+ * CapacityRateLimiter
+ * </h4>
+ * <p>
+ * An AWS SDK request handler that paces DynamoDB requests to the provisioned capacity of the table and its global
+ * secondary indexes, so that bursts wait on the client instead of being throttled (and retried) by DynamoDB.
+ * </p>
+ * <p>
+ * Each table and index that has a limit has a read and a write CapacityLimiter. A read takes capacity from the
+ * limiter for the table or index that it reads. A write takes capacity from the table write limiter and from the
+ * write limiters of the table's indexes, since DynamoDB also writes the indexes. The cost of a request is
+ * estimated from the capacity consumed by recent requests of the same operation. When the response arrives, the
+ * estimate is replaced by the consumed capacity that DynamoDB reports (ReturnConsumedCapacity=INDEXES is set on the
+ * requests). A throttling error empties the bucket.
+ * </p>
+ * <p>
+ * Scans and batch requests use the background lane of the limiter, and all other requests use the interactive lane,
+ * so point queries are not starved by a list-all scan or a bulk upload. Requests for tables without a limit are
+ * not paced.
+ * </p>
+ * <p>
+ * The wait happens on the thread that makes the request (a servlet thread or a scan worker). The asynchronous
+ * client runs its requests on a small fixed pool, so it must not wait there: it is built with the nonBlocking()
+ * handler, which takes the capacity without waiting, and AsyncCalls delays a request until delayNanos() is zero
+ * before it submits it (see AsyncCalls.pace()), so the delay does not hold a thread.
+ * </p>
+ */
+public class CapacityRateLimiter extends RequestHandler2 implements MeterBinder {
+    private static final HandlerContextKey<List<Acquired>> ACQUIRED =
+        new HandlerContextKey<List<Acquired>>( "CapacityRateLimiter.acquired" );
+    /** The initial estimate for an operation, before any consumed capacity has been reported */
+    private static final double INITIAL_ESTIMATE = 1.0;
+    /** The weight of the most recent request in the estimate */
+    private static final double ESTIMATE_WEIGHT = 0.2;
+
+    private final double burstSeconds;
+    private final double reserveFraction;
+    private final ConcurrentMap<String, CapacityLimiter> readLimiters = new ConcurrentHashMap<String, CapacityLimiter>();
+    private final ConcurrentMap<String, CapacityLimiter> writeLimiters = new ConcurrentHashMap<String, CapacityLimiter>();
+    private final ConcurrentMap<String, Double> estimates = new ConcurrentHashMap<String, Double>();
+    private volatile MeterRegistry registry = null;
+
+    /**
+     * @param burstSeconds the size of each token bucket, in seconds of provisioned capacity.
+     * @param reserveFraction the fraction of each bucket that scans and batch requests leave for interactive requests.
+     */
+    public CapacityRateLimiter(double burstSeconds, double reserveFraction) {
+        this.burstSeconds = burstSeconds;
+        this.reserveFraction = reserveFraction;
+    }
+
+    /**
+     * <p>
+     * Set the capacity for a table or an index. A capacity of zero (or less) means that the reads or writes are not
+     * paced.
+     * </p>
+     * @param table the table name
+     * @param index the global secondary index name, or null for the table.
+     * @param readUnitsPerSecond the provisioned read capacity units.
+     * @param writeUnitsPerSecond the provisioned write capacity units.
+     */
+    public void setLimit(String table, String index, double readUnitsPerSecond, double writeUnitsPerSecond) {
+        String key = limiterKey( table, (index != null) ? index : DynamoDBRequests.NO_INDEX );
+        setLimiter( readLimiters, key + "/read", key, readUnitsPerSecond );
+        setLimiter( writeLimiters, key + "/write", key, writeUnitsPerSecond );
+    }
+
+    private void setLimiter(ConcurrentMap<String, CapacityLimiter> limiters, String name, String key, double units) {
+        if (units > 0) {
+            limiters.put( key, new CapacityLimiter( name, units, burstSeconds, reserveFraction ) );
+        } else {
+            limiters.remove( key );
+        }
+    }
+
+    @Override
+    public AmazonWebServiceRequest beforeExecution(AmazonWebServiceRequest request) {
+        DynamoDBRequests.requestConsumedCapacity( request );
+        return request;
+    }
+
+    @Override
+    public void beforeRequest(Request<?> request) {
+        AmazonWebServiceRequest original = request.getOriginalRequest();
+        List<Acquired> acquired = limitersFor( original );
+        if (acquired.isEmpty()) {
+            return;
+        }
+        boolean interactive = isInteractive( original );
+        try {
+            for (Acquired a : acquired) {
+                long waitNanos = a.limiter.acquire( a.estimate, interactive );
+                recordWait( a.limiter, interactive, waitNanos );
+            }
+        } catch (InterruptedException e) {
+            for (Acquired a : acquired) {
+                a.limiter.settle( a.estimate, 0 );
+            }
+            Thread.currentThread().interrupt();
+            throw new AbortedException("Interrupted while waiting for DynamoDB capacity", e);
+        }
+        request.addHandlerContext( ACQUIRED, acquired );
+    }
+
+    /**
+     * @return zero if the request can be sent now without waiting for capacity, otherwise the time to delay it (in
+     *         nanoseconds) before asking again.
+     */
+    public long delayNanos(AmazonWebServiceRequest request) {
+        boolean interactive = isInteractive( request );
+        long delay = 0;
+        for (Acquired a : limitersFor( request )) {
+            delay = Math.max( delay, a.limiter.delayNanos( interactive ) );
+        }
+        return delay;
+    }
+
+    /**
+     * @return a handler for a client whose threads must not wait (the asynchronous client): it takes the capacity
+     *         of a request without waiting, and settles it as this handler does. The requests are paced before they
+     *         are submitted (see delayNanos()).
+     */
+    public RequestHandler2 nonBlocking() {
+        return new RequestHandler2() {
+            @Override
+            public AmazonWebServiceRequest beforeExecution(AmazonWebServiceRequest request) {
+                return CapacityRateLimiter.this.beforeExecution( request );
+            }
+
+            @Override
+            public void beforeRequest(Request<?> request) {
+                List<Acquired> acquired = limitersFor( request.getOriginalRequest() );
+                if (! acquired.isEmpty()) {
+                    for (Acquired a : acquired) {
+                        a.limiter.take( a.estimate );
+                    }
+                    request.addHandlerContext( ACQUIRED, acquired );
+                }
+            }
+
+            @Override
+            public void afterResponse(Request<?> request, Response<?> response) {
+                CapacityRateLimiter.this.afterResponse( request, response );
+            }
+
+            @Override
+            public void afterError(Request<?> request, Response<?> response, Exception e) {
+                CapacityRateLimiter.this.afterError( request, response, e );
+            }
+        };
+    }
+
+    /**
+     * @return the limiters that a request takes capacity from, with the estimated cost for each.
+     */
+    private List<Acquired> limitersFor(AmazonWebServiceRequest original) {
+        List<Acquired> acquired = new ArrayList<Acquired>( 2 );
+        String table = DynamoDBRequests.tableName( original );
+        String operation = DynamoDBRequests.operationName( original );
+        if (DynamoDBRequests.isRead( original )) {
+            String index = DynamoDBRequests.indexName( original );
+            CapacityLimiter limiter = readLimiters.get( limiterKey( table, index ) );
+            if (limiter != null) {
+                acquired.add( new Acquired( limiter, table, index, operation ) );
+            }
+        } else if (DynamoDBRequests.isWrite( original )) {
+            String prefix = table + '/';
+            for (Map.Entry<String, CapacityLimiter> entry : writeLimiters.entrySet()) {
+                if (entry.getKey().startsWith( prefix )) {
+                    String index = entry.getKey().substring( prefix.length() );
+                    acquired.add( new Acquired( entry.getValue(), table, index, operation ) );
+                }
+            }
+        }
+        return acquired;
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        List<Acquired> acquired = request.getHandlerContext( ACQUIRED );
+        if (acquired == null) {
+            return;
+        }
+        Object result = (response != null) ? response.getAwsResponse() : null;
+        List<ConsumedCapacity> consumed = DynamoDBRequests.consumedCapacity( result );
+        for (Acquired a : acquired) {
+            Double units = consumedUnits( consumed, a.table, a.index );
+            if (units != null) {
+                a.limiter.settle( a.estimate, units );
+                updateEstimate( a.estimateKey, units );
+            } else {
+                a.limiter.settle( a.estimate, a.estimate );
+            }
+        }
+    }
+
+    @Override
+    public void afterError(Request<?> request, Response<?> response, Exception e) {
+        List<Acquired> acquired = request.getHandlerContext( ACQUIRED );
+        if (acquired == null) {
+            return;
+        }
+        boolean throttled = (e instanceof AmazonServiceException)
+                            && DynamoDBRequests.isThrottle( ((AmazonServiceException)e).getErrorCode() );
+        for (Acquired a : acquired) {
+            if (throttled) {
+                a.limiter.drain();
+            } else {
+                // the request failed, so no capacity was used
+                a.limiter.settle( a.estimate, 0 );
+            }
+        }
+    }
+
+    /**
+     * Scans and batch requests are background work. Everything else is an interactive request.
+     */
+    static boolean isInteractive(AmazonWebServiceRequest request) {
+        return ! (request instanceof ScanRequest
+                  || request instanceof BatchWriteItemRequest
+                  || request instanceof BatchGetItemRequest);
+    }
+
+    /**
+     * @return the capacity units that DynamoDB reported for the table or index, or null if they were not reported.
+     */
+    static Double consumedUnits(List<ConsumedCapacity> consumed, String table, String index) {
+        Double units = null;
+        for (ConsumedCapacity capacity : consumed) {
+            if (capacity == null || ! table.equals( capacity.getTableName() )) {
+                continue;
+            }
+            Capacity indexCapacity = null;
+            if (DynamoDBRequests.NO_INDEX.equals( index )) {
+                indexCapacity = capacity.getTable();
+                if (indexCapacity == null && capacity.getCapacityUnits() != null) {
+                    units = add( units, capacity.getCapacityUnits() );
+                    continue;
+                }
+            } else {
+                if (capacity.getGlobalSecondaryIndexes() != null) {
+                    indexCapacity = capacity.getGlobalSecondaryIndexes().get( index );
+                }
+                if (indexCapacity == null && capacity.getLocalSecondaryIndexes() != null) {
+                    indexCapacity = capacity.getLocalSecondaryIndexes().get( index );
+                }
+            }
+            if (indexCapacity != null && indexCapacity.getCapacityUnits() != null) {
+                units = add( units, indexCapacity.getCapacityUnits() );
+            }
+        }
+        return units;
+    }
+
+    private static Double add(Double sum, double units) {
+        return (sum != null) ? sum + units : units;
+    }
+
+    private void updateEstimate(String estimateKey, double units) {
+        estimates.merge( estimateKey, units, (old, latest) -> old + ESTIMATE_WEIGHT * (latest - old) );
+    }
+
+    private void recordWait(CapacityLimiter limiter, boolean interactive, long waitNanos) {
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry != null) {
+            Timer.builder("dynamodb.ratelimit.wait")
+                 .description("Time spent waiting for DynamoDB capacity")
+                 .tag("limiter", limiter.getName())
+                 .tag("lane", interactive ? "interactive" : "background")
+                 .register(meterRegistry)
+                 .record( waitNanos, TimeUnit.NANOSECONDS );
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (CapacityLimiter limiter : readLimiters.values()) {
+            bindLimiter( registry, limiter );
+        }
+        for (CapacityLimiter limiter : writeLimiters.values()) {
+            bindLimiter( registry, limiter );
+        }
+        this.registry = registry;
+    }
+
+    private static void bindLimiter(MeterRegistry registry, CapacityLimiter limiter) {
+        Gauge.builder("dynamodb.ratelimit.available", limiter, CapacityLimiter::getAvailable)
+             .description("The capacity units left in the limiter bucket")
+             .baseUnit("capacity_units")
+             .tag("limiter", limiter.getName())
+             .register(registry);
+    }
+
+    private static String limiterKey(String table, String index) {
+        return table + '/' + index;
+    }
+
+    /**
+     * The capacity taken from one limiter for a request.
+     */
+    private class Acquired {
+        private final CapacityLimiter limiter;
+        private final String table;
+        private final String index;
+        private final String estimateKey;
+        private final double estimate;
+
+        Acquired(CapacityLimiter limiter, String table, String index, String operation) {
+            this.limiter = limiter;
+            this.table = table;
+            this.index = index;
+            this.estimateKey = limiter.getName() + '/' + operation;
+            Double recent = estimates.get( estimateKey );
+            this.estimate = (recent != null) ? recent : INITIAL_ESTIMATE;
+        }
+    }
+}
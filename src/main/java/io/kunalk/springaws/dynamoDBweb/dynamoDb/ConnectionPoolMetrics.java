@@ -0,0 +1,156 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.metrics.ByteThroughputProvider;
+import com.amazonaws.metrics.MetricCollector;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.metrics.ServiceLatencyProvider;
+import com.amazonaws.metrics.ServiceMetricCollector;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSServiceMetrics;
+import com.amazonaws.util.TimingInfo;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h4>
+ * ConnectionPoolMetrics
+ * </h4>
+ * <p>
+ * Publishes the state of the DynamoDB client HTTP connection pool to Micrometer:
+ * </p>
+ * <ul>
+ * <li>dynamodb.client.pool.leased, pending and available: the number of connections in use, the number of requests
+ * waiting for a connection and the number of idle connections. These gauges show the pool state reported with
+ * the most recent request.</li>
+ * <li>dynamodb.client.pool.acquire: a timer for the time spent waiting for a connection from the pool, if
+ * install() registered the collector for it.</li>
+ * </ul>
+ * <p>
+ * The pool counts are reported by the SDK to the client's RequestMetricCollector, so this object must be passed
+ * to the client builder (withMetricsCollector). The connection wait time is only reported to the SDK's global
+ * service metric collector, which is shared by every SDK client in the JVM, so it is only registered there when
+ * install() is called and no other collector is installed.
+ * </p>
+ */
+public class ConnectionPoolMetrics extends RequestMetricCollector implements MeterBinder {
+    private final AtomicLong leased = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong available = new AtomicLong();
+    private volatile Timer acquireTimer = null;
+
+    /**
+     * <p>
+     * Register the connection wait time collector as the SDK's global metric collector. Only the service metrics
+     * (the connection wait time and throughput) are collected by it. Clients that were not built with a request
+     * metric collector are not affected.
+     * </p>
+     * <p>
+     * The global collector is not replaced if one is already enabled (e.g., the SDK's CloudWatch metrics), or if
+     * the SDK's default metrics are turned on with the com.amazonaws.sdk.enableDefaultMetrics system property.
+     * </p>
+     * 
+     * @return true if the collector was installed.
+     */
+    public boolean install() {
+        synchronized (AwsSdkMetrics.class) {
+            if (AwsSdkMetrics.isMetricsEnabled() || AwsSdkMetrics.isDefaultMetricsEnabled()) {
+                return false;
+            }
+            AwsSdkMetrics.setMetricCollector( new PoolWaitCollector() );
+            return true;
+        }
+    }
+
+    @Override
+    public void collectMetrics(Request<?> request, Response<?> response) {
+        AWSRequestMetrics requestMetrics = request.getAWSRequestMetrics();
+        if (requestMetrics == null) {
+            return;
+        }
+        TimingInfo timing = requestMetrics.getTimingInfo();
+        update( leased, timing.getCounter( AWSRequestMetrics.Field.HttpClientPoolLeasedCount.name() ) );
+        update( pending, timing.getCounter( AWSRequestMetrics.Field.HttpClientPoolPendingCount.name() ) );
+        update( available, timing.getCounter( AWSRequestMetrics.Field.HttpClientPoolAvailableCount.name() ) );
+    }
+
+    private static void update(AtomicLong gauge, Number count) {
+        if (count != null) {
+            gauge.set( count.longValue() );
+        }
+    }
+
+    void recordAcquireTime(double millis) {
+        Timer timer = acquireTimer;
+        if (timer != null) {
+            timer.record( (long)(millis * 1000000.0), TimeUnit.NANOSECONDS );
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("dynamodb.client.pool.leased", leased, AtomicLong::get)
+             .description("The number of pooled HTTP connections in use")
+             .register(registry);
+        Gauge.builder("dynamodb.client.pool.pending", pending, AtomicLong::get)
+             .description("The number of requests waiting for a pooled HTTP connection")
+             .register(registry);
+        Gauge.builder("dynamodb.client.pool.available", available, AtomicLong::get)
+             .description("The number of idle pooled HTTP connections")
+             .register(registry);
+        acquireTimer = Timer.builder("dynamodb.client.pool.acquire")
+                            .description("The time spent waiting for a pooled HTTP connection")
+                            .publishPercentileHistogram()
+                            .register(registry);
+    }
+
+    /**
+     * The SDK global metric collector. Request metrics are left to each client's own collector.
+     */
+    private class PoolWaitCollector extends MetricCollector {
+        private final ServiceMetricCollector serviceCollector = new ServiceMetricCollector() {
+            @Override
+            public void collectByteThroughput(ByteThroughputProvider provider) {
+            }
+
+            @Override
+            public void collectLatency(ServiceLatencyProvider provider) {
+                if (provider.getServiceMetricType() == AWSServiceMetrics.HttpClientGetConnectionTime) {
+                    recordAcquireTime( provider.getDurationMilli() );
+                }
+            }
+        };
+
+        @Override
+        public boolean start() {
+            return true;
+        }
+
+        @Override
+        public boolean stop() {
+            return true;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public RequestMetricCollector getRequestMetricCollector() {
+            return RequestMetricCollector.NONE;
+        }
+
+        @Override
+        public ServiceMetricCollector getServiceMetricCollector() {
+            return serviceCollector;
+        }
+    }
+}
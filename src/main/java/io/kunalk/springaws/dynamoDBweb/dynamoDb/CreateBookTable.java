@@ -13,7 +13,9 @@ import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Table;
 import com.amazonaws.services.dynamodbv2.model.*;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.logging.Logger;
 
 
@@ -27,18 +29,43 @@ import java.util.logging.Logger;
  * Create a a DynamoDB table for books information. 
  * </p>
  * <p>
- * The book table can be searched in two ways:
+ * The book table can be searched in three ways:
  * </p>
  * <ol>
  * <li>By title and author (which will result in a single book being returned)</li>
  * <li>By author</li>
+ * <li>By genre</li>
  * </ol>
  * <p>
  * The book title title is the primary hash index for the table. The author is the range key for this hash index.
  * </p>
  * <p>
  * There is also a global secondary index on the author, which allows the table to be searched by author. This query
- * may return multiple books.
+ * may return multiple books. The author index projection is ALL by default. It can be built as KEYS_ONLY or
+ * INCLUDE (see indexProjection()), which cuts the storage and write capacity that the index uses: each book write
+ * is also a write of the projected attributes to the index. A query for attributes that the index does not have
+ * then reads them from the table (see BookTableService.findBookByAuthor()).
+ * </p>
+ * <p>
+ * The genre global secondary index has the GenreEnum name of the genre (genre_key) as its hash key and the case
+ * folded author and title (author_title) as its range key. A query returns the books of a genre in catalog order
+ * (author, then title), so the whole catalog can be read in order with one query per genre, without a scan and a
+ * sort. BookInfo derives both attributes and BookTableService adds them to every item that it writes.
+ * </p>
+ * <p>
+ * The updated global secondary index has the UTC day of the last write of a book and a shard number as its hash
+ * key (update_day, e.g., 2018-03-28#5) and the time of the write (updated, in epoch milliseconds) as its range key.
+ * BookTableService sets both attributes on every write (see updateDayKey()). The shard is a hash of the title and
+ * author, so the writes of a day (e.g., a bulk upload) are spread over UPDATED_SHARDS index partitions instead of
+ * one, which would throttle the index, and the index throttling would hold back the table writes. A query for each
+ * shard of a day and a range of times returns the keys of the books written in that time, so the books that
+ * changed since a catalog snapshot are read without a scan. The index is KEYS_ONLY: the books are then read from
+ * the table by key.
+ * </p>
+ * <p>
+ * The table is created with a DynamoDB stream of the new image of each changed item (STREAM_VIEW_TYPE), which
+ * StreamConsumer reads to bring the in-memory state of every application instance up to date. A REMOVE
+ * record has the key of the deleted book.
  * </p>
  * <p>
 
@@ -46,20 +73,78 @@ import java.util.logging.Logger;
 public class CreateBookTable extends CreateTableBase {
     /** The name of the DynamoDB global secondary index for the author column */
 	private Logger log = null;
+	private final Projection authorIndexProjection;
     public final static String AUTHOR_INDEX_NAME = "author_index";
     public final static String AUTHOR_HASH_NAME = "author";
+    /** The global secondary index on genre, sorted by author and title */
+    public final static String GENRE_INDEX_NAME = "genre_index";
+    public final static String GENRE_HASH_NAME = "genre_key";
+    public final static String GENRE_RANGE_NAME = "author_title";
+    /** The global secondary index on the write day and time of a book */
+    public final static String UPDATED_INDEX_NAME = "updated_index";
+    public final static String UPDATED_HASH_NAME = "update_day";
+    public final static String UPDATED_RANGE_NAME = "updated";
+    /** The number of update_day hash keys per day */
+    public final static int UPDATED_SHARDS = 16;
+    /** The stream records have the item after the change (and the key, for a delete) */
+    public final static StreamViewType STREAM_VIEW_TYPE = StreamViewType.NEW_IMAGE;
 
 	public CreateBookTable(String bookTableName) {
+		this(bookTableName, null);
+	}
+
+	/**
+	 * @param bookTableName the table name
+	 * @param authorIndexProjection the projection of the author index, or null for ALL.
+	 */
+	public CreateBookTable(String bookTableName, Projection authorIndexProjection) {
 		super(bookTableName);
 		log = Logger.getLogger( this.getClass().getName() );
+		this.authorIndexProjection = (authorIndexProjection != null) ? authorIndexProjection 
+		                                                             : new Projection().withProjectionType(ProjectionType.ALL);
 	}
 
-	@Override
-	public void createTable(AmazonDynamoDB client, long readThroughput, long writeThroughput) {
-		boolean tableOK = false;
-		DynamoDB dynamoDB = new DynamoDB( client );
-		log.info("Creating " + getTableName() + " table");
+	/**
+	 * @return the shard of the updated index that the writes of a book go to
+	 */
+	public static int updatedShard(String title, String author) {
+		return Math.floorMod( (title + '\u0000' + author).hashCode(), UPDATED_SHARDS );
+	}
+
+	/**
+	 * @return the updated index hash key of a day and shard (e.g., 2018-03-28#5)
+	 */
+	public static String updateDayKey(LocalDate day, int shard) {
+		return day.toString() + '#' + shard;
+	}
 
+	public Projection getAuthorIndexProjection() {
+		return authorIndexProjection;
+	}
+
+	/**
+	 * Build a global secondary index projection.
+	 * 
+	 * @param projectionType ALL, KEYS_ONLY or INCLUDE (not case sensitive)
+	 * @param nonKeyAttributes the attributes that an INCLUDE projection adds to the keys. Ignored for the other types.
+	 * @return the projection
+	 * @throws IllegalArgumentException if the type is not a projection type, or if an INCLUDE projection has no 
+	 *         attributes.
+	 */
+	public static Projection indexProjection(String projectionType, Collection<String> nonKeyAttributes) {
+		ProjectionType type = ProjectionType.fromValue( projectionType.trim().toUpperCase() );
+		Projection projection = new Projection().withProjectionType(type);
+		if (type == ProjectionType.INCLUDE) {
+			if (nonKeyAttributes == null || nonKeyAttributes.isEmpty()) {
+				throw new IllegalArgumentException("An INCLUDE projection must list the attributes that it includes");
+			}
+			projection.withNonKeyAttributes(nonKeyAttributes);
+		}
+		return projection;
+	}
+
+	@Override
+	public CreateTableRequest buildCreateTableRequest(long readThroughput, long writeThroughput) {
 		ArrayList<KeySchemaElement> keySchema = new ArrayList<KeySchemaElement>();
 		ArrayList<AttributeDefinition> attributeDefinitions = new ArrayList<AttributeDefinition>();
 
@@ -76,23 +161,54 @@ public class CreateBookTable extends CreateTableBase {
 		throughPut.withWriteCapacityUnits(writeThroughput);
 		
 		// Now create a global secondary index for the book author
-        // ProjectType.ALL is used so that a query will return all of the table attributes, not just the key attributes
+        // With ProjectType.ALL a query will return all of the table attributes, not just the key attributes
         GlobalSecondaryIndex authorGlobalIndex = new GlobalSecondaryIndex();
         authorGlobalIndex.withIndexName(AUTHOR_INDEX_NAME)
                                         .withProvisionedThroughput(throughPut)
-                                        .withProjection( new Projection().withProjectionType(ProjectionType.ALL) );
+                                        .withProjection( authorIndexProjection );
         
         ArrayList<KeySchemaElement> indexKeySchema = new ArrayList<KeySchemaElement>();
         indexKeySchema.add(new KeySchemaElement().withAttributeName(AUTHOR_HASH_NAME).withKeyType(KeyType.HASH));
         
         authorGlobalIndex.setKeySchema(indexKeySchema);
 
+        // The genre index: genre_key is the hash key and author_title is the range key
+        attributeDefinitions.add(new AttributeDefinition().withAttributeName(GENRE_HASH_NAME).withAttributeType(ScalarAttributeType.S));
+        attributeDefinitions.add(new AttributeDefinition().withAttributeName(GENRE_RANGE_NAME).withAttributeType(ScalarAttributeType.S));
+        GlobalSecondaryIndex genreGlobalIndex = new GlobalSecondaryIndex();
+        genreGlobalIndex.withIndexName(GENRE_INDEX_NAME)
+                        .withProvisionedThroughput(throughPut)
+                        .withProjection( new Projection().withProjectionType(ProjectionType.ALL) )
+                        .withKeySchema(new KeySchemaElement().withAttributeName(GENRE_HASH_NAME).withKeyType(KeyType.HASH),
+                                       new KeySchemaElement().withAttributeName(GENRE_RANGE_NAME).withKeyType(KeyType.RANGE));
+
+        // The updated index: update_day is the hash key and updated is the range key
+        attributeDefinitions.add(new AttributeDefinition().withAttributeName(UPDATED_HASH_NAME).withAttributeType(ScalarAttributeType.S));
+        attributeDefinitions.add(new AttributeDefinition().withAttributeName(UPDATED_RANGE_NAME).withAttributeType(ScalarAttributeType.N));
+        GlobalSecondaryIndex updatedGlobalIndex = new GlobalSecondaryIndex();
+        updatedGlobalIndex.withIndexName(UPDATED_INDEX_NAME)
+                          .withProvisionedThroughput(throughPut)
+                          .withProjection( new Projection().withProjectionType(ProjectionType.KEYS_ONLY) )
+                          .withKeySchema(new KeySchemaElement().withAttributeName(UPDATED_HASH_NAME).withKeyType(KeyType.HASH),
+                                         new KeySchemaElement().withAttributeName(UPDATED_RANGE_NAME).withKeyType(KeyType.RANGE));
+
 		CreateTableRequest request = new CreateTableRequest()
 		                                 .withTableName( getTableName() )
 		                                 .withKeySchema(keySchema)
-		                                 .withGlobalSecondaryIndexes(authorGlobalIndex)
-				                         .withProvisionedThroughput( throughPut );
+		                                 .withGlobalSecondaryIndexes(authorGlobalIndex, genreGlobalIndex, updatedGlobalIndex)
+				                         .withProvisionedThroughput( throughPut )
+				                         .withStreamSpecification( new StreamSpecification().withStreamEnabled(true)
+				                                                                             .withStreamViewType(STREAM_VIEW_TYPE) );
         request.setAttributeDefinitions(attributeDefinitions);
+        return request;
+	}
+
+	@Override
+	public void createTable(AmazonDynamoDB client, long readThroughput, long writeThroughput) {
+		boolean tableOK = false;
+		DynamoDB dynamoDB = new DynamoDB( client );
+		log.info("Creating " + getTableName() + " table");
+		CreateTableRequest request = buildCreateTableRequest(readThroughput, writeThroughput);
 
 		Long startMsec = System.currentTimeMillis();
 		Table table = dynamoDB.createTable(request);
@@ -10,9 +10,12 @@ package io.kunalk.springaws.dynamoDBweb.dynamoDb;
 
 import java.util.logging.Logger;
 
-import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
-import com.amazonaws.services.dynamodbv2.util.TableUtils;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
 
 
 /**
@@ -58,32 +61,52 @@ public abstract class CreateTableBase {
         return builder.toString();
     }
     
+    /**
+     * <p>
+     * Read the table status with a single DescribeTable request.
+     * </p>
+     * @param dynamoDBClient
+     * @return the table status (e.g., CREATING or ACTIVE), or null if the table does not exist.
+     */
+    public String describeTableStatus(AmazonDynamoDB dynamoDBClient) {
+        TableDescription description = describeTable( dynamoDBClient );
+        return (description != null) ? description.getTableStatus() : null;
+    }
+    
+    /**
+     * @return the table description (status, key schema, indexes) from a single DescribeTable request, or null if
+     *         the table does not exist.
+     */
+    public TableDescription describeTable(AmazonDynamoDB dynamoDBClient) {
+        TableDescription description = null;
+        try {
+            DescribeTableResult result = dynamoDBClient.describeTable( new DescribeTableRequest().withTableName( getTableName() ) );
+            description = result.getTable();
+        } catch (ResourceNotFoundException e) {
+            // the table does not exist
+        }
+        return description;
+    }
+    
     public boolean tableExists(AmazonDynamoDB dynamoDBClient) {
-    	boolean exists = true;
-        final int timeout = 60 * 1000; // 60 seconds x 1000 msec/second
-        final int pollInterval = 250; // polling interval in milliseconds (e.g., 1/4 second)
         String tableName = getTableName();
         Long startMsec = System.currentTimeMillis();
-        try {
-            TableUtils.waitUntilExists(dynamoDBClient, tableName, timeout, pollInterval);
-        } catch (AmazonClientException e) {
-        	exists = false;
-            Long endMsec = System.currentTimeMillis();
-            String elapsedTime = (endMsec - startMsec) + " msec";
-            log.info("Did not find " + tableName + " (" + elapsedTime + ")");
-        }
-        catch (InterruptedException e) {
-        	exists = false;
-        	log.severe("InterruptedExcepion in CreateTableBase::tableExits: " + e.getLocalizedMessage());
-        }
+        boolean exists = describeTableStatus(dynamoDBClient) != null;
+        Long endMsec = System.currentTimeMillis();
+        String elapsedTime = (endMsec - startMsec) + " msec";
         if (exists) {
-            Long endMsec = System.currentTimeMillis();
-            String elapsedTime = (endMsec - startMsec) + " msec";
             log.info("Found table " + tableName + " (" + elapsedTime + ")");
+        } else {
+            log.info("Did not find " + tableName + " (" + elapsedTime + ")");
         }
         return exists;
     }
 
+    /**
+     * @return the request that creates the table (and its indexes) with the given provisioned throughput.
+     */
+    public abstract CreateTableRequest buildCreateTableRequest(long readThroughput, long writeThroughput);
+
     public abstract void createTable(AmazonDynamoDB client, long readThroughput, long writeThroughput);
 
 }
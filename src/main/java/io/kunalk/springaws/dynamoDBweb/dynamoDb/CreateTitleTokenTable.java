@@ -0,0 +1,74 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.model.*;
+
+import java.util.logging.Logger;
+
+/**
+ * <h4>
+ * CreateTitleTokenTable
+ * </h4>
+ * <p>
+ * Create the title token table: a persistent inverted index of the book titles, kept next to the book table. Each
+ * item is one word of one title. The normalised word (token) is the hash key and the book key (the title and the
+ * author, separated by a NUL character) is the range key, so a query for a token returns the books whose titles
+ * have the word, in title order. The items also have the title and author attributes: they are the book table
+ * key of the book, so the books are read with a BatchGetItem without decoding the book key.
+ * </p>
+ * <p>
+ * The table has no secondary indexes and no stream. See TitleTokens for the tokens and TitleTokenIndex for the
+ * reads and writes.
+ * </p>
+ */
+public class CreateTitleTokenTable extends CreateTableBase {
+	/** The hash key: a normalised word of a title */
+	public final static String TOKEN_HASH_NAME = "token";
+	/** The range key: the title and author of the book */
+	public final static String BOOK_KEY_RANGE_NAME = "book_key";
+	private Logger log = null;
+
+	public CreateTitleTokenTable(String tokenTableName) {
+		super(tokenTableName);
+		log = Logger.getLogger( this.getClass().getName() );
+	}
+
+	@Override
+	public CreateTableRequest buildCreateTableRequest(long readThroughput, long writeThroughput) {
+		ProvisionedThroughput throughPut = new ProvisionedThroughput()
+		                                       .withReadCapacityUnits(readThroughput)
+		                                       .withWriteCapacityUnits(writeThroughput);
+		return new CreateTableRequest()
+		           .withTableName( getTableName() )
+		           .withKeySchema(new KeySchemaElement().withAttributeName(TOKEN_HASH_NAME).withKeyType(KeyType.HASH),
+		                          new KeySchemaElement().withAttributeName(BOOK_KEY_RANGE_NAME).withKeyType(KeyType.RANGE))
+		           .withAttributeDefinitions(new AttributeDefinition().withAttributeName(TOKEN_HASH_NAME).withAttributeType(ScalarAttributeType.S),
+		                                     new AttributeDefinition().withAttributeName(BOOK_KEY_RANGE_NAME).withAttributeType(ScalarAttributeType.S))
+		           .withProvisionedThroughput( throughPut );
+	}
+
+	@Override
+	public void createTable(AmazonDynamoDB client, long readThroughput, long writeThroughput) {
+		boolean tableOK = false;
+		DynamoDB dynamoDB = new DynamoDB( client );
+		log.info("Creating " + getTableName() + " table");
+		CreateTableRequest request = buildCreateTableRequest(readThroughput, writeThroughput);
+
+		Long startMsec = System.currentTimeMillis();
+		Table table = dynamoDB.createTable(request);
+		log.info("Waiting for '" + getTableName() + "' table to be created...");
+		try {
+			table.waitForActive();
+			tableOK = true;
+		} catch (InterruptedException e) {
+			log.warning("Creation of '" + getTableName() + "' table interrupted");
+		}
+		Long endMsec = System.currentTimeMillis();
+		if (tableOK) {
+			log.info("Elapsed time: " + toMinuteSecString(startMsec, endMsec) );
+		}
+	} // createTable
+
+}
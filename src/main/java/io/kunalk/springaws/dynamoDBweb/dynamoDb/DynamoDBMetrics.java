@@ -0,0 +1,201 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.handlers.HandlerContextKey;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.services.dynamodbv2.model.Capacity;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.util.AWSRequestMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h4>
+ * DynamoDBMetrics
+ * </h4>
+ * <p>
+ * An AWS SDK request handler that publishes per-operation DynamoDB metrics to Micrometer. It is added to each
+ * client built by DynamoDBService, so every call is measured: the low level query, scan and batch calls, the
+ * DynamoDBMapper save and query calls, the asynchronous client calls and the table DescribeTable calls.
+ * </p>
+ * <ul>
+ * <li>dynamodb.operation: a timer for each call, including SDK retries, tagged with the operation (e.g., Query),
+ * table, index ("none" for the table itself) and outcome (success or the error code).</li>
+ * <li>dynamodb.capacity.consumed: the capacity units that DynamoDB reports, tagged with the operation, table,
+ * index and type (read or write). ReturnConsumedCapacity=INDEXES is set on the read and write requests that do not
+ * already ask for the consumed capacity.</li>
+ * <li>dynamodb.items.scanned and dynamodb.items.returned: the items that a query or scan read and the items that
+ * it returned after filtering. A large difference is a filter that should be a key condition or an index.</li>
+ * <li>dynamodb.throttles: throttled requests. kind=retried counts the throttled attempts that the SDK retried and
+ * kind=failed counts the calls that failed with a throttling error after the retries.</li>
+ * </ul>
+ */
+public class DynamoDBMetrics extends RequestHandler2 {
+    private static final HandlerContextKey<Long> START_NANOS = new HandlerContextKey<Long>( "DynamoDBMetrics.startNanos" );
+    private static final String NO_INDEX = DynamoDBRequests.NO_INDEX;
+    private static final String READ = "read";
+    private static final String WRITE = "write";
+
+    private final MeterRegistry registry;
+
+    public DynamoDBMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public AmazonWebServiceRequest beforeExecution(AmazonWebServiceRequest request) {
+        DynamoDBRequests.requestConsumedCapacity( request );
+        return request;
+    }
+
+    @Override
+    public void beforeRequest(Request<?> request) {
+        request.addHandlerContext( START_NANOS, System.nanoTime() );
+    }
+
+    @Override
+    public void afterResponse(Request<?> request, Response<?> response) {
+        AmazonWebServiceRequest original = request.getOriginalRequest();
+        String operation = DynamoDBRequests.operationName( original );
+        String table = DynamoDBRequests.tableName( original );
+        String index = DynamoDBRequests.indexName( original );
+        recordTime( request, operation, table, index, "success" );
+        recordRetriedThrottles( request, operation, table );
+        Object result = (response != null) ? response.getAwsResponse() : null;
+        if (result instanceof QueryResult) {
+            QueryResult query = (QueryResult)result;
+            recordItems( operation, table, index, query.getScannedCount(), query.getCount() );
+        } else if (result instanceof ScanResult) {
+            ScanResult scan = (ScanResult)result;
+            recordItems( operation, table, index, scan.getScannedCount(), scan.getCount() );
+        }
+        if (DynamoDBRequests.isRead( original )) {
+            recordCapacity( operation, READ, DynamoDBRequests.consumedCapacity( result ) );
+        } else if (DynamoDBRequests.isWrite( original )) {
+            recordCapacity( operation, WRITE, DynamoDBRequests.consumedCapacity( result ) );
+        }
+    }
+
+    @Override
+    public void afterError(Request<?> request, Response<?> response, Exception e) {
+        AmazonWebServiceRequest original = request.getOriginalRequest();
+        String operation = DynamoDBRequests.operationName( original );
+        String table = DynamoDBRequests.tableName( original );
+        String outcome = "client_error";
+        if (e instanceof AmazonServiceException) {
+            String errorCode = ((AmazonServiceException)e).getErrorCode();
+            outcome = (errorCode != null) ? errorCode : "service_error";
+            if (DynamoDBRequests.isThrottle( errorCode )) {
+                throttleCounter( operation, table, "failed" ).increment();
+            }
+        }
+        recordTime( request, operation, table, DynamoDBRequests.indexName( original ), outcome );
+        recordRetriedThrottles( request, operation, table );
+    }
+
+    private void recordTime(Request<?> request, String operation, String table, String index, String outcome) {
+        Long startNanos = request.getHandlerContext( START_NANOS );
+        if (startNanos != null) {
+            Timer.builder("dynamodb.operation")
+                 .description("DynamoDB call latency, including SDK retries")
+                 .tag("operation", operation)
+                 .tag("table", table)
+                 .tag("index", index)
+                 .tag("outcome", outcome)
+                 .publishPercentileHistogram()
+                 .register(registry)
+                 .record( System.nanoTime() - startNanos, TimeUnit.NANOSECONDS );
+        }
+    }
+
+    /**
+     * The SDK records each throttled attempt that it retries in the request metrics (when request metrics are on).
+     */
+    private void recordRetriedThrottles(Request<?> request, String operation, String table) {
+        AWSRequestMetrics requestMetrics = request.getAWSRequestMetrics();
+        if (requestMetrics != null) {
+            List<Object> throttles = requestMetrics.getProperty( AWSRequestMetrics.Field.ThrottleException );
+            if (throttles != null && throttles.size() > 0) {
+                throttleCounter( operation, table, "retried" ).increment( throttles.size() );
+            }
+        }
+    }
+
+    private void recordItems(String operation, String table, String index, Integer scanned, Integer returned) {
+        if (scanned != null) {
+            itemCounter( "dynamodb.items.scanned", "Items read by queries and scans", operation, table, index ).increment( scanned );
+        }
+        if (returned != null) {
+            itemCounter( "dynamodb.items.returned", "Items returned by queries and scans", operation, table, index ).increment( returned );
+        }
+    }
+
+    private void recordCapacity(String operation, String type, List<ConsumedCapacity> consumed) {
+        for (ConsumedCapacity capacity : consumed) {
+            if (capacity == null) {
+                continue;
+            }
+            String table = DynamoDBRequests.orUnknown( capacity.getTableName() );
+            if (capacity.getTable() != null) {
+                recordCapacityUnits( operation, type, table, NO_INDEX, capacity.getTable() );
+                recordIndexCapacity( operation, type, table, capacity.getGlobalSecondaryIndexes() );
+                recordIndexCapacity( operation, type, table, capacity.getLocalSecondaryIndexes() );
+            } else if (capacity.getCapacityUnits() != null) {
+                capacityCounter( operation, type, table, NO_INDEX ).increment( capacity.getCapacityUnits() );
+            }
+        }
+    }
+
+    private void recordIndexCapacity(String operation, String type, String table, Map<String, Capacity> indexes) {
+        if (indexes != null) {
+            for (Map.Entry<String, Capacity> entry : indexes.entrySet()) {
+                recordCapacityUnits( operation, type, table, entry.getKey(), entry.getValue() );
+            }
+        }
+    }
+
+    private void recordCapacityUnits(String operation, String type, String table, String index, Capacity capacity) {
+        if (capacity != null && capacity.getCapacityUnits() != null) {
+            capacityCounter( operation, type, table, index ).increment( capacity.getCapacityUnits() );
+        }
+    }
+
+    private Counter capacityCounter(String operation, String type, String table, String index) {
+        return Counter.builder("dynamodb.capacity.consumed")
+                      .description("Consumed DynamoDB capacity units")
+                      .baseUnit("capacity_units")
+                      .tag("operation", operation)
+                      .tag("table", table)
+                      .tag("index", index)
+                      .tag("type", type)
+                      .register(registry);
+    }
+
+    private Counter itemCounter(String name, String description, String operation, String table, String index) {
+        return Counter.builder(name)
+                      .description(description)
+                      .tag("operation", operation)
+                      .tag("table", table)
+                      .tag("index", index)
+                      .register(registry);
+    }
+
+    private Counter throttleCounter(String operation, String table, String kind) {
+        return Counter.builder("dynamodb.throttles")
+                      .description("Throttled DynamoDB requests")
+                      .tag("operation", operation)
+                      .tag("table", table)
+                      .tag("kind", kind)
+                      .register(registry);
+    }
+}
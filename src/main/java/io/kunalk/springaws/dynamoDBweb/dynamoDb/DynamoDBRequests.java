@@ -0,0 +1,203 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h4>
+ * DynamoDBRequests
+ * </h4>
+ * <p>
+ * Helpers for the SDK request handlers (DynamoDBMetrics, CapacityRateLimiter) that need the table, index and consumed
+ * capacity of a DynamoDB request without knowing its type.
+ * </p>
+ */
+public final class DynamoDBRequests {
+    /** The index name used for requests on the table itself */
+    public static final String NO_INDEX = "none";
+
+    private DynamoDBRequests() {
+    }
+
+    /**
+     * Ask DynamoDB to return the consumed capacity (per table and index) for a read or write request, unless the
+     * request already asks for it.
+     */
+    public static void requestConsumedCapacity(AmazonWebServiceRequest request) {
+        if (request instanceof QueryRequest) {
+            QueryRequest query = (QueryRequest)request;
+            if (query.getReturnConsumedCapacity() == null) {
+                query.setReturnConsumedCapacity( ReturnConsumedCapacity.INDEXES );
+            }
+        } else if (request instanceof ScanRequest) {
+            ScanRequest scan = (ScanRequest)request;
+            if (scan.getReturnConsumedCapacity() == null) {
+                scan.setReturnConsumedCapacity( ReturnConsumedCapacity.INDEXES );
+            }
+        } else if (request instanceof GetItemRequest) {
+            GetItemRequest get = (GetItemRequest)request;
+            if (get.getReturnConsumedCapacity() == null) {
+                get.setReturnConsumedCapacity( ReturnConsumedCapacity.INDEXES );
+            }
+        } else if (request instanceof PutItemRequest) {
+            PutItemRequest put = (PutItemRequest)request;
+            if (put.getReturnConsumedCapacity() == null) {
+                put.setReturnConsumedCapacity( ReturnConsumedCapacity.INDEXES );
+            }
+        } else if (request instanceof UpdateItemRequest) {
+            UpdateItemRequest update = (UpdateItemRequest)request;
+            if (update.getReturnConsumedCapacity() == null) {
+                update.setReturnConsumedCapacity( ReturnConsumedCapacity.INDEXES );
+            }
+        } else if (request instanceof DeleteItemRequest) {
+            DeleteItemRequest delete = (DeleteItemRequest)request;
+            if (delete.getReturnConsumedCapacity() == null) {
+                delete.setReturnConsumedCapacity( ReturnConsumedCapacity.INDEXES );
+            }
+        } else if (request instanceof BatchWriteItemRequest) {
+            BatchWriteItemRequest batchWrite = (BatchWriteItemRequest)request;
+            if (batchWrite.getReturnConsumedCapacity() == null) {
+                batchWrite.setReturnConsumedCapacity( ReturnConsumedCapacity.INDEXES );
+            }
+        } else if (request instanceof BatchGetItemRequest) {
+            BatchGetItemRequest batchGet = (BatchGetItemRequest)request;
+            if (batchGet.getReturnConsumedCapacity() == null) {
+                batchGet.setReturnConsumedCapacity( ReturnConsumedCapacity.INDEXES );
+            }
+        }
+    }
+
+    /**
+     * @return true for the requests that consume read capacity.
+     */
+    public static boolean isRead(AmazonWebServiceRequest request) {
+        return request instanceof QueryRequest || request instanceof ScanRequest
+               || request instanceof GetItemRequest || request instanceof BatchGetItemRequest;
+    }
+
+    /**
+     * @return true for the requests that consume write capacity.
+     */
+    public static boolean isWrite(AmazonWebServiceRequest request) {
+        return request instanceof PutItemRequest || request instanceof UpdateItemRequest
+               || request instanceof DeleteItemRequest || request instanceof BatchWriteItemRequest;
+    }
+
+    /**
+     * @param result a DynamoDB result object
+     * @return the consumed capacity in the result, or an empty list if the result has none.
+     */
+    public static List<ConsumedCapacity> consumedCapacity(Object result) {
+        ConsumedCapacity consumed = null;
+        if (result instanceof QueryResult) {
+            consumed = ((QueryResult)result).getConsumedCapacity();
+        } else if (result instanceof ScanResult) {
+            consumed = ((ScanResult)result).getConsumedCapacity();
+        } else if (result instanceof GetItemResult) {
+            consumed = ((GetItemResult)result).getConsumedCapacity();
+        } else if (result instanceof PutItemResult) {
+            consumed = ((PutItemResult)result).getConsumedCapacity();
+        } else if (result instanceof UpdateItemResult) {
+            consumed = ((UpdateItemResult)result).getConsumedCapacity();
+        } else if (result instanceof DeleteItemResult) {
+            consumed = ((DeleteItemResult)result).getConsumedCapacity();
+        } else if (result instanceof BatchWriteItemResult) {
+            List<ConsumedCapacity> list = ((BatchWriteItemResult)result).getConsumedCapacity();
+            return (list != null) ? list : Collections.<ConsumedCapacity>emptyList();
+        } else if (result instanceof BatchGetItemResult) {
+            List<ConsumedCapacity> list = ((BatchGetItemResult)result).getConsumedCapacity();
+            return (list != null) ? list : Collections.<ConsumedCapacity>emptyList();
+        }
+        return (consumed != null) ? Collections.singletonList( consumed ) : Collections.<ConsumedCapacity>emptyList();
+    }
+
+    /**
+     * @return the operation name from the request class (e.g., QueryRequest is "Query").
+     */
+    public static String operationName(AmazonWebServiceRequest request) {
+        if (request == null) {
+            return "unknown";
+        }
+        String name = request.getClass().getSimpleName();
+        return name.endsWith("Request") ? name.substring(0, name.length() - "Request".length()) : name;
+    }
+
+    /**
+     * @return the table name of the request (for a batch request, the first table), or "unknown".
+     */
+    public static String tableName(AmazonWebServiceRequest request) {
+        String table = null;
+        if (request instanceof QueryRequest) {
+            table = ((QueryRequest)request).getTableName();
+        } else if (request instanceof ScanRequest) {
+            table = ((ScanRequest)request).getTableName();
+        } else if (request instanceof GetItemRequest) {
+            table = ((GetItemRequest)request).getTableName();
+        } else if (request instanceof PutItemRequest) {
+            table = ((PutItemRequest)request).getTableName();
+        } else if (request instanceof UpdateItemRequest) {
+            table = ((UpdateItemRequest)request).getTableName();
+        } else if (request instanceof DeleteItemRequest) {
+            table = ((DeleteItemRequest)request).getTableName();
+        } else if (request instanceof DescribeTableRequest) {
+            table = ((DescribeTableRequest)request).getTableName();
+        } else if (request instanceof CreateTableRequest) {
+            table = ((CreateTableRequest)request).getTableName();
+        } else if (request instanceof BatchWriteItemRequest) {
+            table = firstKey( ((BatchWriteItemRequest)request).getRequestItems() );
+        } else if (request instanceof BatchGetItemRequest) {
+            table = firstKey( ((BatchGetItemRequest)request).getRequestItems() );
+        }
+        return orUnknown( table );
+    }
+
+    /**
+     * @return the index name of a query or scan, or NO_INDEX.
+     */
+    public static String indexName(AmazonWebServiceRequest request) {
+        String index = null;
+        if (request instanceof QueryRequest) {
+            index = ((QueryRequest)request).getIndexName();
+        } else if (request instanceof ScanRequest) {
+            index = ((ScanRequest)request).getIndexName();
+        }
+        return (index != null) ? index : NO_INDEX;
+    }
+
+    public static boolean isThrottle(String errorCode) {
+        return "ProvisionedThroughputExceededException".equals( errorCode )
+               || "ThrottlingException".equals( errorCode )
+               || "RequestLimitExceeded".equals( errorCode );
+    }
+
+    private static String firstKey(Map<String, ?> map) {
+        return (map != null && map.size() > 0) ? map.keySet().iterator().next() : null;
+    }
+
+    static String orUnknown(String name) {
+        return (name != null) ? name : "unknown";
+    }
+}
@@ -10,9 +10,7 @@ package io.kunalk.springaws.dynamoDBweb.dynamoDb;
 
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 
-import java.lang.reflect.Method;
 import java.util.Map;
-import java.util.Set;
 
 
 /**
@@ -26,26 +24,6 @@ import java.util.Set;
 public class DynamoDBUtil {
 
 
-    /**
-     * Use the "setter" 
-     * @param methods
-     * @param fieldName
-     * @param attrVal
-     * @throws ReflectiveOperationException 
-     */
-    private static void setValue(Object obj, String fieldName, String attrValStr) throws ReflectiveOperationException {
-        String fieldNameLC = fieldName.toLowerCase();
-        Method[] methods = obj.getClass().getMethods();
-        for (Method m : methods) {
-            String methodName = m.getName().toLowerCase();
-            if (methodName.startsWith("set")) {
-                if (methodName.endsWith(fieldNameLC)) {
-                    m.invoke(obj, attrValStr);
-                }
-            }
-        }
-    } // setValue
-    
     /**
      * <p>
      * Populate an object with values from a DynamoDB query.
@@ -58,9 +36,12 @@ public class DynamoDBUtil {
      * </p>
      * <p>
      * For example, if the DynamoDB table has an attribute named "author" this code assumes that there is a
-     * setter with the name setAuthor().  Further, it is assumed that all attribute values are String values.
-     * This requirement is imposed by the fact that a specific get[Type] method has to be used for the DynamoDB
-     * attribute.
+     * setter with the name setAuthor(), or a setter whose getter is annotated with attributeName="author".
+     * The attribute value is converted to the setter parameter type (see AttributeCodec).
+     * </p>
+     * <p>
+     * The attribute to setter mapping is built once per class and cached, so there is no reflective method search
+     * for each row.
      * </p>
      * <p>
      * If the class meets the criteria outlined above, the "obj" argument will be populated with values
@@ -73,15 +54,25 @@ public class DynamoDBUtil {
     public static void attributesToObject(Object obj, Map<String, AttributeValue> dynamoDBAttributes)
             throws ReflectiveOperationException {
         if (obj != null && dynamoDBAttributes != null) {
-            Set<String> fieldNames = dynamoDBAttributes.keySet();
-            if (fieldNames.size() > 0) {
-                for (String fieldName : fieldNames) {
-                    AttributeValue attrVal = dynamoDBAttributes.get(fieldName);
-                    String attrValStr = attrVal.getS();
-                    setValue(obj, fieldName, attrValStr );
-                } // for
-            }
+            @SuppressWarnings("unchecked")
+            AttributeCodec<Object> codec = (AttributeCodec<Object>) AttributeCodec.forClass( obj.getClass() );
+            codec.decode(obj, dynamoDBAttributes);
         }
     }
+    
+    /**
+     * <p>
+     * Build the DynamoDB attribute map for an object. This is the reverse of attributesToObject(): the
+     * attribute names come from the DynamoDB mapper annotations on the getters (or the property names).
+     * </p>
+     * @param obj the object to convert
+     * @return the attribute map for the object. Null values and empty strings are not included.
+     * @throws ReflectiveOperationException
+     */
+    public static Map<String, AttributeValue> objectToAttributes(Object obj) throws ReflectiveOperationException {
+        @SuppressWarnings("unchecked")
+        AttributeCodec<Object> codec = (AttributeCodec<Object>) AttributeCodec.forClass( obj.getClass() );
+        return codec.encode( obj );
+    }
 
 }
@@ -0,0 +1,110 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <h4>
+ * PageCursor
+ * </h4>
+ * <p>
+ * Encodes a DynamoDB LastEvaluatedKey as an opaque, URL safe, cursor token and decodes a token back to the
+ * ExclusiveStartKey of the next page. A client pages through a result by passing back the token of the previous
+ * page, so the server keeps no state between pages.
+ * </p>
+ * <p>
+ * A token is bound to a scope (e.g., the endpoint and the search term): decoding it with another scope fails, so a
+ * cursor from one search can't be used to start another. The key attributes must be strings or numbers, which
+ * is the case for the book table and its indexes. A token is not signed: a client can build its own start key,
+ * but that only lets it read the pages it could read anyway.
+ * </p>
+ */
+public final class PageCursor {
+    private static final int VERSION = 1;
+    private static final int MAX_ATTRIBUTES = 8;
+
+    private PageCursor() {}
+
+    /**
+     * @param scope the query that the cursor belongs to
+     * @param lastEvaluatedKey the LastEvaluatedKey of a page
+     * @return the cursor token, or null if there is no next page (lastEvaluatedKey is null or empty).
+     */
+    public static String encode(String scope, Map<String, AttributeValue> lastEvaluatedKey) {
+        if (lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream( bytes )) {
+            out.writeByte( VERSION );
+            out.writeInt( scope.hashCode() );
+            out.writeByte( lastEvaluatedKey.size() );
+            for (Map.Entry<String, AttributeValue> entry : lastEvaluatedKey.entrySet()) {
+                AttributeValue value = entry.getValue();
+                out.writeUTF( entry.getKey() );
+                if (value.getS() != null) {
+                    out.writeByte( 'S' );
+                    out.writeUTF( value.getS() );
+                } else if (value.getN() != null) {
+                    out.writeByte( 'N' );
+                    out.writeUTF( value.getN() );
+                } else {
+                    throw new IllegalArgumentException("Key attribute " + entry.getKey() + " is not a string or a number");
+                }
+            }
+        } catch (IOException e) {
+            // a ByteArrayOutputStream does not throw IOException (only writeUTF, for a string over 64K)
+            throw new IllegalArgumentException("The key can't be encoded: " + e.getLocalizedMessage(), e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString( bytes.toByteArray() );
+    }
+
+    /**
+     * @param scope the query that the cursor must belong to
+     * @param cursor a token from encode(), or null (or empty) for the first page
+     * @return the ExclusiveStartKey for the next page, or null for the first page.
+     * @throws IllegalArgumentException if the token is not valid or belongs to another scope.
+     */
+    public static Map<String, AttributeValue> decode(String scope, String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+        try (DataInputStream in = new DataInputStream( new ByteArrayInputStream( Base64.getUrlDecoder().decode( cursor ) ) )) {
+            if (in.readByte() != VERSION || in.readInt() != scope.hashCode()) {
+                throw new IllegalArgumentException("The cursor does not belong to this query");
+            }
+            int count = in.readByte();
+            if (count <= 0 || count > MAX_ATTRIBUTES) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                int type = in.readByte();
+                String value = in.readUTF();
+                if (type == 'S') {
+                    key.put( name, new AttributeValue().withS( value ) );
+                } else if (type == 'N') {
+                    key.put( name, new AttributeValue().withN( value ) );
+                } else {
+                    throw new IllegalArgumentException("Invalid cursor");
+                }
+            }
+            if (in.read() != -1) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        } catch (IOException e) {
+            // a truncated token
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        return key;
+    }
+}
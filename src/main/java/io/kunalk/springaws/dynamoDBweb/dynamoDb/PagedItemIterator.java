@@ -0,0 +1,111 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <h4>
+ * PagedItemIterator
+ * </h4>
+ * <p>
+ * An iterator over the rows returned by a paged DynamoDB read (a scan or a query). DynamoDB returns at most
+ * 1 MB (or the request Limit) per call, along with a LastEvaluatedKey when there are more rows. This iterator
+ * follows the LastEvaluatedKey, but it only reads the next page when the current page has been consumed. A caller
+ * that stops early never pays for the rest of the table.
+ * </p>
+ */
+public abstract class PagedItemIterator implements Iterator<Map<String, AttributeValue>> {
+    private Iterator<Map<String, AttributeValue>> pageItems = Collections.emptyIterator();
+    private Map<String, AttributeValue> lastEvaluatedKey = null;
+    private boolean morePages = true;
+    private int pagesRead = 0;
+
+    /**
+     * @param exclusiveStartKey the key to start reading after, or null to start at the beginning.
+     */
+    protected PagedItemIterator(Map<String, AttributeValue> exclusiveStartKey) {
+        lastEvaluatedKey = exclusiveStartKey;
+    }
+
+    /**
+     * Read the page that starts after exclusiveStartKey. The subclass passes the result to setPage().
+     *
+     * @param exclusiveStartKey the LastEvaluatedKey of the previous page, or null for the first page.
+     */
+    protected abstract void readPage(Map<String, AttributeValue> exclusiveStartKey);
+
+    protected void setPage(List<Map<String, AttributeValue>> items, Map<String, AttributeValue> lastKey) {
+        pagesRead++;
+        pageItems = (items != null) ? items.iterator() : Collections.<Map<String, AttributeValue>>emptyIterator();
+        lastEvaluatedKey = lastKey;
+        morePages = (lastKey != null && lastKey.size() > 0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        // a page may be empty (for example, when a filter removed every row) and still have a LastEvaluatedKey
+        while (! pageItems.hasNext() && morePages) {
+            readPage( lastEvaluatedKey );
+        }
+        return pageItems.hasNext();
+    }
+
+    @Override
+    public Map<String, AttributeValue> next() {
+        if (! hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return pageItems.next();
+    }
+
+    /**
+     * @return true if the page that has been read has rows that have not been returned. This does not read a page.
+     */
+    public boolean hasBufferedItems() {
+        return pageItems.hasNext();
+    }
+
+    /**
+     * <p>
+     * Read the next page now, if the rows of the current page have all been returned and there is a next page.
+     * This lets a caller bound the number of requests: hasNext() keeps reading while the pages are empty.
+     * </p>
+     * @return true if a page was read.
+     */
+    public boolean readNextPage() {
+        if (pageItems.hasNext() || ! morePages) {
+            return false;
+        }
+        readPage( lastEvaluatedKey );
+        return true;
+    }
+
+    /**
+     * @return the LastEvaluatedKey of the most recently read page. This is null once the last page has been read.
+     */
+    public Map<String, AttributeValue> getLastEvaluatedKey() {
+        return lastEvaluatedKey;
+    }
+
+    public int getPagesRead() {
+        return pagesRead;
+    }
+
+    /**
+     * @return a sequential, lazy, stream over the rows.
+     */
+    public Stream<Map<String, AttributeValue>> stream() {
+        Spliterator<Map<String, AttributeValue>> spliterator =
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+}
@@ -0,0 +1,182 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * <h4>
+ * ParallelScanner
+ * </h4>
+ * <p>
+ * A DynamoDB parallel scan. The table is divided into TotalSegments segments and each segment is scanned
+ * (following LastEvaluatedKey) by a worker on a fixed size thread pool. The pool has one thread per segment, so
+ * concurrent scans queue for the pool instead of creating more threads.
+ * </p>
+ * <p>
+ * When an ordering is supplied, each worker sorts its own segment and the sorted segments are merged. The
+ * result is the same as sorting the whole list, but most of the sort work is done in parallel.
+ * </p>
+ */
+public class ParallelScanner {
+    private final int totalSegments;
+    private final ExecutorService executor;
+
+    /**
+     * @param totalSegments the number of scan segments (and worker threads).
+     */
+    public ParallelScanner(int totalSegments) {
+        if (totalSegments <= 0) {
+            throw new IllegalArgumentException("totalSegments must be greater than zero: " + totalSegments);
+        }
+        this.totalSegments = totalSegments;
+        this.executor = Executors.newFixedThreadPool(totalSegments, new ScanThreadFactory());
+    }
+
+    public int getTotalSegments() {
+        return totalSegments;
+    }
+
+    /**
+     * <p>
+     * Scan all of the segments in parallel.
+     * </p>
+     *
+     * @param scanner the function that executes a scan request (e.g., AmazonDynamoDB::scan)
+     * @param requestSupplier builds a new scan request. A new request is needed for each segment, since the
+     *                        segment and the ExclusiveStartKey are set on the request.
+     * @param decoder converts a DynamoDB row to a result object. A null return value is dropped.
+     * @param order the result ordering, or null if the result does not need to be sorted.
+     * @return the decoded rows from all of the segments.
+     */
+    public <T> List<T> scan(Function<ScanRequest, ScanResult> scanner,
+                            Supplier<ScanRequest> requestSupplier,
+                            Function<Map<String, AttributeValue>, T> decoder,
+                            Comparator<? super T> order) {
+        List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>( totalSegments );
+        for (int segment = 0; segment < totalSegments; segment++) {
+            ScanRequest request = requestSupplier.get().withSegment( segment ).withTotalSegments( totalSegments );
+            futures.add( executor.submit( () -> scanSegment(scanner, request, decoder, order) ) );
+        }
+        List<List<T>> segments = new ArrayList<List<T>>( totalSegments );
+        try {
+            for (Future<List<T>> future : futures) {
+                segments.add( future.get() );
+            }
+        } catch (InterruptedException e) {
+            futures.forEach( f -> f.cancel(true) );
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Parallel scan interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach( f -> f.cancel(true) );
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new IllegalStateException("Parallel scan failed", cause);
+        }
+        List<T> result;
+        if (order != null) {
+            result = mergeSorted( segments, order );
+        } else {
+            int size = segments.stream().mapToInt( List::size ).sum();
+            result = new ArrayList<T>( size );
+            for (List<T> segment : segments) {
+                result.addAll( segment );
+            }
+        }
+        return result;
+    }
+
+    private static <T> List<T> scanSegment(Function<ScanRequest, ScanResult> scanner,
+                                           ScanRequest request,
+                                           Function<Map<String, AttributeValue>, T> decoder,
+                                           Comparator<? super T> order) {
+        List<T> rows = new ArrayList<T>();
+        ScanItemIterator items = new ScanItemIterator( scanner, request );
+        items.stream().map( decoder ).filter( Objects::nonNull ).forEach( rows::add );
+        if (order != null) {
+            rows.sort( order );
+        }
+        return rows;
+    }
+
+    /**
+     * A k-way merge of lists that are each sorted by order.
+     */
+    public static <T> List<T> mergeSorted(List<List<T>> sortedLists, Comparator<? super T> order) {
+        int size = 0;
+        PriorityQueue<MergeHead<T>> heads = new PriorityQueue<MergeHead<T>>( Math.max(1, sortedLists.size()),
+                (a, b) -> order.compare(a.value, b.value) );
+        for (List<T> list : sortedLists) {
+            size += list.size();
+            Iterator<T> iter = list.iterator();
+            if (iter.hasNext()) {
+                heads.add( new MergeHead<T>( iter ) );
+            }
+        }
+        List<T> merged = new ArrayList<T>( size );
+        while (! heads.isEmpty()) {
+            MergeHead<T> head = heads.poll();
+            merged.add( head.value );
+            if (head.advance()) {
+                heads.add( head );
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Stop the worker threads. Scans that are in progress are allowed to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static class MergeHead<T> {
+        private final Iterator<T> iter;
+        private T value;
+
+        MergeHead(Iterator<T> iter) {
+            this.iter = iter;
+            this.value = iter.next();
+        }
+
+        boolean advance() {
+            boolean more = iter.hasNext();
+            if (more) {
+                value = iter.next();
+            }
+            return more;
+        }
+    }
+
+    private static class ScanThreadFactory implements ThreadFactory {
+        private static final AtomicInteger poolNumber = new AtomicInteger(1);
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String prefix = "parallel-scan-" + poolNumber.getAndIncrement() + "-";
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread( r, prefix + threadNumber.getAndIncrement() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
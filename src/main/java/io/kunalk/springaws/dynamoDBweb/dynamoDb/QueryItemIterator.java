@@ -0,0 +1,34 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * <h4>
+ * QueryItemIterator
+ * </h4>
+ * <p>
+ * A PagedItemIterator for a DynamoDB query. The query request is re-issued with the ExclusiveStartKey of each
+ * page. The query function is usually AmazonDynamoDB::query.
+ * </p>
+ */
+public class QueryItemIterator extends PagedItemIterator {
+    private final Function<QueryRequest, QueryResult> query;
+    private final QueryRequest queryRequest;
+
+    public QueryItemIterator(Function<QueryRequest, QueryResult> query, QueryRequest queryRequest) {
+        super( queryRequest.getExclusiveStartKey() );
+        this.query = query;
+        this.queryRequest = queryRequest;
+    }
+
+    @Override
+    protected void readPage(Map<String, AttributeValue> exclusiveStartKey) {
+        QueryResult result = query.apply( queryRequest.withExclusiveStartKey( exclusiveStartKey ) );
+        setPage( result.getItems(), result.getLastEvaluatedKey() );
+    }
+}
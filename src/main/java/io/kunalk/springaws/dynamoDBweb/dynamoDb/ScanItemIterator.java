@@ -0,0 +1,34 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * <h4>
+ * ScanItemIterator
+ * </h4>
+ * <p>
+ * A PagedItemIterator for a DynamoDB scan. The scan request is re-issued with the ExclusiveStartKey of each
+ * page. The scanner function is usually AmazonDynamoDB::scan.
+ * </p>
+ */
+public class ScanItemIterator extends PagedItemIterator {
+    private final Function<ScanRequest, ScanResult> scanner;
+    private final ScanRequest scanRequest;
+
+    public ScanItemIterator(Function<ScanRequest, ScanResult> scanner, ScanRequest scanRequest) {
+        super( scanRequest.getExclusiveStartKey() );
+        this.scanner = scanner;
+        this.scanRequest = scanRequest;
+    }
+
+    @Override
+    protected void readPage(Map<String, AttributeValue> exclusiveStartKey) {
+        ScanResult result = scanner.apply( scanRequest.withExclusiveStartKey( exclusiveStartKey ) );
+        setPage( result.getItems(), result.getLastEvaluatedKey() );
+    }
+}
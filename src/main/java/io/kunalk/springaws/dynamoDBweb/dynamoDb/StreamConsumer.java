@@ -0,0 +1,384 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.ExpiredIteratorException;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.amazonaws.services.dynamodbv2.model.StreamDescription;
+import com.amazonaws.services.dynamodbv2.model.TrimmedDataAccessException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * <h4>
+ * StreamConsumer
+ * </h4>
+ * <p>
+ * Reads the records of a DynamoDB stream and passes each record to the listeners, so that an application
+ * instance sees the writes made by the other instances. One background thread polls the shards of the stream
+ * every poll interval, with GetRecords requests on the shard iterators. The shard list is read again with
+ * DescribeStream once a minute and when a shard is closed, so the shards that replace a closed shard are found.
+ * A child shard is read after its parent shard is finished, so the records of an item are delivered in the order
+ * they were written.
+ * </p>
+ * <p>
+ * The sequence number of the last record delivered from each shard (the checkpoint) is written to a properties
+ * file after each poll that read records. When the consumer is started again, each shard is read from the record
+ * after its checkpoint. A shard that is not in the checkpoint file is read from the oldest record in the stream
+ * (TRIM_HORIZON), except on the first start (no checkpoint file), which reads only new records (LATEST). The
+ * checkpoint is written after the records are delivered, so a record can be delivered twice after a crash, but is
+ * not skipped: listeners must apply a record so that applying it again does no harm.
+ * </p>
+ * <p>
+ * A stream keeps its records for 24 hours. A consumer that was stopped for longer than that starts from the oldest
+ * record that is still in the stream, and records are lost: the listener state should be brought up to date
+ * another way (e.g., a catalog snapshot catch-up) when the application starts.
+ * </p>
+ */
+public class StreamConsumer {
+    /** The records that a listener is passed, in the order they were written to an item */
+    public interface Listener {
+        void onRecord(Record record);
+    }
+
+    private final static long DESCRIBE_INTERVAL_MSEC = 60 * 1000;
+    /** The most GetRecords requests made for a shard in one poll, when the shard has a backlog */
+    private final static int MAX_READS_PER_POLL = 10;
+    private final static String STREAM_KEY = "stream";
+    private final static String SHARD_PREFIX = "shard.";
+    private final static String FINISHED = "FINISHED";
+
+    private final AmazonDynamoDBStreams streams;
+    private final String streamArn;
+    private final Path checkpointFile;
+    private final long pollIntervalMsec;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private final ScheduledExecutorService poller;
+    private final Logger log;
+    /** The shards of the stream, in the DescribeStream order (parents before children). Used by the poller thread. */
+    private final Map<String, ShardState> shards = new LinkedHashMap<String, ShardState>();
+    private Properties checkpoints = new Properties();
+    private boolean firstStart = false;
+    private boolean describeNeeded = true;
+    private long lastDescribeMsec = 0;
+    private volatile long recordCount = 0;
+
+    /**
+     * @param streams the DynamoDB Streams client
+     * @param streamArn the ARN of the stream (see TableBootstrap.getLatestStreamArn())
+     * @param checkpointFile the checkpoint file, or null to read new records only on every start
+     * @param pollIntervalMsec the time between polls
+     */
+    public StreamConsumer(AmazonDynamoDBStreams streams, String streamArn, Path checkpointFile, long pollIntervalMsec) {
+        this.streams = streams;
+        this.streamArn = streamArn;
+        this.checkpointFile = checkpointFile;
+        this.pollIntervalMsec = pollIntervalMsec;
+        this.log = Logger.getLogger( getClass().getName() );
+        this.poller = Executors.newSingleThreadScheduledExecutor( r -> {
+            Thread thread = new Thread( r, "stream-consumer" );
+            thread.setDaemon( true );
+            return thread;
+        });
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add( listener );
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove( listener );
+    }
+
+    public String getStreamArn() {
+        return streamArn;
+    }
+
+    /**
+     * @return the number of records that have been passed to the listeners
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Read the checkpoint file and start polling the stream.
+     */
+    public void start() throws IOException {
+        loadCheckpoints();
+        poller.scheduleWithFixedDelay( this::poll, 0, pollIntervalMsec, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Read the checkpoint file. start() calls this before the first poll.
+     */
+    void loadCheckpoints() throws IOException {
+        Properties saved = readCheckpoints( checkpointFile );
+        if (saved != null && ! streamArn.equals( saved.getProperty( STREAM_KEY ) )) {
+            // the table was deleted and created again: its stream is a new stream
+            log.info("The stream checkpoints in " + checkpointFile + " are for another stream and are not used");
+            saved = null;
+        }
+        firstStart = (saved == null);
+        checkpoints = (saved != null) ? saved : new Properties();
+        checkpoints.setProperty( STREAM_KEY, streamArn );
+    }
+
+    /**
+     * Stop polling and write the checkpoints.
+     */
+    public void shutdown() {
+        poller.shutdown();
+        try {
+            if (poller.awaitTermination( pollIntervalMsec + 10000, TimeUnit.MILLISECONDS )) {
+                writeCheckpoints();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * One poll of the stream: find new shards if needed, then read the shards that can be read.
+     */
+    void poll() {
+        try {
+            long nowMsec = System.currentTimeMillis();
+            if (describeNeeded || nowMsec - lastDescribeMsec >= DESCRIBE_INTERVAL_MSEC) {
+                describeShards();
+                lastDescribeMsec = nowMsec;
+                describeNeeded = false;
+            }
+            boolean advanced = false;
+            for (ShardState shard : shards.values()) {
+                if (! shard.finished && parentFinished( shard )) {
+                    advanced |= readShard( shard );
+                }
+            }
+            if (advanced) {
+                writeCheckpoints();
+            }
+        } catch (AmazonClientException e) {
+            log.warning("Stream poll failed: " + e.getLocalizedMessage());
+        } catch (RuntimeException e) {
+            // an exception would cancel the scheduled poll
+            log.severe("Stream poll failed: " + e);
+        }
+    }
+
+    /**
+     * Read the shard list (DescribeStream pages of up to 100 shards) and add the new shards. Shards that are no
+     * longer in the stream (their records have been trimmed) are dropped, with their checkpoints.
+     */
+    private void describeShards() {
+        List<Shard> described = new ArrayList<Shard>();
+        String startShardId = null;
+        do {
+            StreamDescription description = streams.describeStream( new DescribeStreamRequest().withStreamArn( streamArn )
+                                                                                               .withExclusiveStartShardId( startShardId ) )
+                                                   .getStreamDescription();
+            described.addAll( description.getShards() );
+            startShardId = description.getLastEvaluatedShardId();
+        } while (startShardId != null);
+
+        Set<String> shardIds = new HashSet<String>();
+        for (Shard shard : described) {
+            shardIds.add( shard.getShardId() );
+            if (! shards.containsKey( shard.getShardId() )) {
+                shards.put( shard.getShardId(), newShard( shard ) );
+            }
+        }
+        shards.keySet().retainAll( shardIds );
+        for (String name : checkpoints.stringPropertyNames()) {
+            if (name.startsWith( SHARD_PREFIX ) && ! shardIds.contains( name.substring( SHARD_PREFIX.length() ) )) {
+                checkpoints.remove( name );
+            }
+        }
+        firstStart = false;
+    }
+
+    private ShardState newShard(Shard shard) {
+        ShardState state = new ShardState( shard.getShardId(), shard.getParentShardId() );
+        String checkpoint = checkpoints.getProperty( SHARD_PREFIX + shard.getShardId() );
+        if (FINISHED.equals( checkpoint )) {
+            state.finished = true;
+        } else if (checkpoint != null) {
+            state.sequenceNumber = checkpoint;
+        } else if (firstStart) {
+            // the records written before the first start are not read; a closed shard has only those
+            boolean closed = shard.getSequenceNumberRange() != null
+                             && shard.getSequenceNumberRange().getEndingSequenceNumber() != null;
+            state.finished = closed;
+            state.startType = ShardIteratorType.LATEST;
+        }
+        return state;
+    }
+
+    /**
+     * @return true if the shard has no parent or the parent shard has been read to its end. A parent that is no
+     *         longer in the stream has been trimmed, so the child is read.
+     */
+    private boolean parentFinished(ShardState shard) {
+        ShardState parent = (shard.parentShardId != null) ? shards.get( shard.parentShardId ) : null;
+        return parent == null || parent.finished;
+    }
+
+    /**
+     * Read the records of a shard, up to MAX_READS_PER_POLL pages, and pass them to the listeners.
+     *
+     * @return true if the checkpoint of the shard changed
+     */
+    private boolean readShard(ShardState shard) {
+        boolean advanced = false;
+        for (int i = 0; i < MAX_READS_PER_POLL && ! shard.finished; i++) {
+            if (shard.iterator == null) {
+                shard.iterator = shardIterator( shard );
+                if (shard.iterator == null) {
+                    return true;
+                }
+            }
+            GetRecordsResult result;
+            try {
+                result = streams.getRecords( new GetRecordsRequest().withShardIterator( shard.iterator ) );
+            } catch (ExpiredIteratorException e) {
+                // an iterator expires 15 minutes after it is returned: get one at the checkpoint
+                shard.iterator = null;
+                continue;
+            } catch (TrimmedDataAccessException e) {
+                log.warning("Records of shard " + shard.shardId + " were trimmed before they were read");
+                shard.iterator = null;
+                shard.sequenceNumber = null;
+                shard.startType = ShardIteratorType.TRIM_HORIZON;
+                continue;
+            }
+            List<Record> records = result.getRecords();
+            for (Record record : records) {
+                deliver( record );
+                shard.sequenceNumber = record.getDynamodb().getSequenceNumber();
+                checkpoints.setProperty( SHARD_PREFIX + shard.shardId, shard.sequenceNumber );
+                advanced = true;
+            }
+            shard.iterator = result.getNextShardIterator();
+            if (shard.iterator == null) {
+                shardFinished( shard );
+                advanced = true;
+            } else if (records.isEmpty()) {
+                break;
+            }
+        }
+        return advanced;
+    }
+
+    /**
+     * @return an iterator at the checkpoint of the shard, or at its start type, or null if the shard no longer
+     *         exists (the shard is then finished)
+     */
+    private String shardIterator(ShardState shard) {
+        GetShardIteratorRequest request = new GetShardIteratorRequest().withStreamArn( streamArn )
+                                                                       .withShardId( shard.shardId );
+        if (shard.sequenceNumber != null) {
+            request.withShardIteratorType( ShardIteratorType.AFTER_SEQUENCE_NUMBER )
+                   .withSequenceNumber( shard.sequenceNumber );
+        } else {
+            request.withShardIteratorType( shard.startType );
+        }
+        try {
+            return streams.getShardIterator( request ).getShardIterator();
+        } catch (TrimmedDataAccessException e) {
+            log.warning("The checkpoint of shard " + shard.shardId + " has been trimmed: reading from the oldest record");
+            shard.sequenceNumber = null;
+            shard.startType = ShardIteratorType.TRIM_HORIZON;
+            return streams.getShardIterator( request.withShardIteratorType( ShardIteratorType.TRIM_HORIZON )
+                                                    .withSequenceNumber( null ) ).getShardIterator();
+        } catch (ResourceNotFoundException e) {
+            shardFinished( shard );
+            return null;
+        }
+    }
+
+    private void shardFinished(ShardState shard) {
+        shard.finished = true;
+        shard.iterator = null;
+        checkpoints.setProperty( SHARD_PREFIX + shard.shardId, FINISHED );
+        // the children of the shard are in the next DescribeStream result
+        describeNeeded = true;
+    }
+
+    private void deliver(Record record) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onRecord( record );
+            } catch (RuntimeException e) {
+                log.warning("Stream listener failed on record " + record.getDynamodb().getSequenceNumber() + ": " + e);
+            }
+        }
+        recordCount++;
+    }
+
+    private static Properties readCheckpoints(Path file) throws IOException {
+        if (file == null || ! Files.exists( file )) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream( file )) {
+            properties.load( in );
+        }
+        return properties;
+    }
+
+    /**
+     * Write the checkpoints to a temporary file that is then renamed, so the file is never partly written.
+     */
+    private void writeCheckpoints() {
+        if (checkpointFile == null) {
+            return;
+        }
+        Path tempFile = checkpointFile.resolveSibling( checkpointFile.getFileName() + ".tmp" );
+        try {
+            try (OutputStream out = Files.newOutputStream( tempFile )) {
+                checkpoints.store( out, "DynamoDB stream checkpoints" );
+            }
+            Files.move( tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch (IOException e) {
+            log.warning("Stream checkpoints were not written: " + e.getLocalizedMessage());
+        }
+    }
+
+    private static class ShardState {
+        private final String shardId;
+        private final String parentShardId;
+        private ShardIteratorType startType = ShardIteratorType.TRIM_HORIZON;
+        private String sequenceNumber = null;
+        private String iterator = null;
+        private boolean finished = false;
+
+        ShardState(String shardId, String parentShardId) {
+            this.shardId = shardId;
+            this.parentShardId = parentShardId;
+        }
+    }
+}
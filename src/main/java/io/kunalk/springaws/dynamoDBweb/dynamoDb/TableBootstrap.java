@@ -0,0 +1,219 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.IndexStatus;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ResourceInUseException;
+import com.amazonaws.services.dynamodbv2.model.StreamSpecification;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.TableStatus;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <h4>
+ * TableBootstrap
+ * </h4>
+ * <p>
+ * Makes sure that a DynamoDB table exists and is ACTIVE, without blocking the caller. The table status is read
+ * with a single DescribeTable request on a background thread. If the table does not exist, it is created and the
+ * status is polled until the table is ACTIVE. DynamoDB errors (e.g., no network) and any other runtime exception
+ * (e.g., a bad table description) are logged and the check is retried with a growing delay, so the check does not
+ * stop with the table not ready and getReady() never completed.
+ * </p>
+ * <p>
+ * The future returned by getReady() completes when the table is ACTIVE. Until then, isReady() is false.
+ * </p>
+ */
+public class TableBootstrap {
+    private final static long POLL_INTERVAL_MSEC = 1000;
+    private final static long MAX_RETRY_DELAY_MSEC = 30 * 1000;
+
+    public enum State { CHECKING, CREATING, ACTIVE }
+
+    private final AmazonDynamoDB client;
+    private final CreateTableBase table;
+    private final long readThroughput;
+    private final long writeThroughput;
+    private final CompletableFuture<Void> ready = new CompletableFuture<Void>();
+    private final ScheduledExecutorService executor;
+    private final Logger log;
+    private volatile State state = State.CHECKING;
+    private volatile String tableStatus = null;
+    private volatile TableDescription tableDescription = null;
+    private volatile Exception lastError = null;
+    private long retryDelayMsec = POLL_INTERVAL_MSEC;
+
+    /**
+     * @param client the DynamoDB client
+     * @param table builds the table, if it does not exist
+     * @param readThroughput the provisioned read throughput for a new table
+     * @param writeThroughput the provisioned write throughput for a new table
+     */
+    public TableBootstrap(AmazonDynamoDB client, CreateTableBase table, long readThroughput, long writeThroughput) {
+        this.client = client;
+        this.table = table;
+        this.readThroughput = readThroughput;
+        this.writeThroughput = writeThroughput;
+        this.log = Logger.getLogger( getClass().getName() );
+        this.executor = Executors.newSingleThreadScheduledExecutor( r -> {
+            Thread thread = new Thread( r, "table-bootstrap-" + table.getTableName() );
+            thread.setDaemon( true );
+            return thread;
+        });
+    }
+
+    /**
+     * Start checking the table on the background thread.
+     * @return the future that completes when the table is ACTIVE.
+     */
+    public CompletableFuture<Void> start() {
+        executor.execute( this::check );
+        return ready;
+    }
+
+    public CompletableFuture<Void> getReady() {
+        return ready;
+    }
+
+    public boolean isReady() {
+        return state == State.ACTIVE;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getTableName() {
+        return table.getTableName();
+    }
+
+    /**
+     * @return the DynamoDB table status from the last DescribeTable request, or null if it is not known.
+     */
+    public String getTableStatus() {
+        return tableStatus;
+    }
+
+    /**
+     * @return the table description from the last DescribeTable request, or null if it is not known.
+     */
+    public TableDescription getTableDescription() {
+        return tableDescription;
+    }
+
+    /**
+     * @return true if the last DescribeTable request showed the global secondary index as ACTIVE. An index that
+     *         is added to the table after it became ACTIVE is not seen until the application is restarted.
+     */
+    public boolean hasActiveIndex(String indexName) {
+        GlobalSecondaryIndexDescription index = indexDescription( indexName );
+        return index != null && IndexStatus.ACTIVE.toString().equals( index.getIndexStatus() );
+    }
+
+    /**
+     * @return the projection of a global secondary index from the last DescribeTable request, or null if the table 
+     *         does not have the index or the table description is not known.
+     */
+    public Projection getIndexProjection(String indexName) {
+        GlobalSecondaryIndexDescription index = indexDescription( indexName );
+        return (index != null) ? index.getProjection() : null;
+    }
+
+    /**
+     * @return the ARN of the table's stream from the last DescribeTable request, or null if the stream is not
+     *         enabled or the table description is not known.
+     */
+    public String getLatestStreamArn() {
+        TableDescription description = tableDescription;
+        if (description == null) {
+            return null;
+        }
+        StreamSpecification stream = description.getStreamSpecification();
+        boolean enabled = stream != null && Boolean.TRUE.equals( stream.getStreamEnabled() );
+        return enabled ? description.getLatestStreamArn() : null;
+    }
+
+    private GlobalSecondaryIndexDescription indexDescription(String indexName) {
+        TableDescription description = tableDescription;
+        if (description != null && description.getGlobalSecondaryIndexes() != null) {
+            for (GlobalSecondaryIndexDescription index : description.getGlobalSecondaryIndexes()) {
+                if (indexName.equals( index.getIndexName() )) {
+                    return index;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the error from the last failed DynamoDB request, or null if the last request succeeded.
+     */
+    public Exception getLastError() {
+        return lastError;
+    }
+
+    private void check() {
+        try {
+            TableDescription description = table.describeTable( client );
+            String status = (description != null) ? description.getTableStatus() : null;
+            lastError = null;
+            retryDelayMsec = POLL_INTERVAL_MSEC;
+            tableDescription = description;
+            tableStatus = status;
+            if (status == null) {
+                log.info("Creating " + table.getTableName() + " table");
+                state = State.CREATING;
+                client.createTable( table.buildCreateTableRequest( readThroughput, writeThroughput ) );
+                schedule( POLL_INTERVAL_MSEC );
+            } else if (TableStatus.ACTIVE.toString().equals( status )) {
+                log.info("Table " + table.getTableName() + " is ACTIVE");
+                state = State.ACTIVE;
+                executor.shutdown();
+                ready.complete( null );
+            } else {
+                state = State.CREATING;
+                schedule( POLL_INTERVAL_MSEC );
+            }
+        } catch (ResourceInUseException e) {
+            // another instance is creating the table
+            schedule( POLL_INTERVAL_MSEC );
+        } catch (AmazonClientException e) {
+            lastError = e;
+            log.warning("Table check for " + table.getTableName() + " failed (retry in " + retryDelayMsec + " msec): " 
+                        + e.getLocalizedMessage());
+            retry();
+        } catch (RuntimeException e) {
+            // not a DynamoDB error: a scheduled task that throws is not run again, so retry it here
+            lastError = e;
+            log.log(Level.SEVERE, "Table check for " + table.getTableName() + " failed (retry in " + retryDelayMsec 
+                                  + " msec)", e);
+            retry();
+        }
+    }
+
+    private void retry() {
+        schedule( retryDelayMsec );
+        retryDelayMsec = Math.min( retryDelayMsec * 2, MAX_RETRY_DELAY_MSEC );
+    }
+
+    private void schedule(long delayMsec) {
+        if (! executor.isShutdown()) {
+            executor.schedule( this::check, delayMsec, TimeUnit.MILLISECONDS );
+        }
+    }
+
+    /**
+     * Stop checking the table (e.g., when the application is shut down before the table is ACTIVE).
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
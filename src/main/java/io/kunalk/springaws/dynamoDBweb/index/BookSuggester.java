@@ -0,0 +1,269 @@
+package io.kunalk.springaws.dynamoDBweb.index;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookField;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * <h4>
+ * BookSuggester
+ * </h4>
+ * <p>
+ * In-memory typeahead completions for the author and title search forms. The authors and the titles of the
+ * books are each kept in a SuggestionTrie, so a completion is a walk of the prefix and does not read DynamoDB.
+ * The completions are ranked by popularity: the weight of an author is the number of books by the author and of
+ * a title the number of books with the title, plus the number of searches for the author or title. Searches
+ * are counted without a lock (recordSearch()) and added to the weights in bulk by applySearches(), which the
+ * owner calls on a schedule, so a search POST does not wait for the suggestions to be read.
+ * </p>
+ * <p>
+ * Authors, titles and prefixes are normalised before they are compared (see normalize()): the case, accents and
+ * repeated spaces don't matter, so "les mis" completes to "Les Mis&eacute;rables". Each book is counted once: the
+ * suggester keeps the title and author of the books that it has counted, so a book that is written again does not
+ * change the weights.
+ * </p>
+ * <p>
+ * As with TitleTrigramIndex, the books of a load that runs while the suggester is in use are added with
+ * beginLoad() and addLoaded() (see LoadTracker), so a book that was removed while the load ran is not counted
+ * again.
+ * </p>
+ */
+public class BookSuggester {
+    /** The default number of completions kept for each prefix */
+    public static final int DEFAULT_TOP_COUNT = 10;
+    private static final Set<BookField> SUGGEST_FIELDS = EnumSet.of( BookField.AUTHOR, BookField.TITLE );
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int topCount;
+    private final SuggestionTrie authors;
+    private final SuggestionTrie titles;
+    private final Set<String> bookKeys = new HashSet<String>();
+    private final LoadTracker loads = new LoadTracker();
+    /** The searches recorded since the last applySearches(), by normalised author and title */
+    private final ConcurrentMap<String, Long> authorSearches = new ConcurrentHashMap<String, Long>();
+    private final ConcurrentMap<String, Long> titleSearches = new ConcurrentHashMap<String, Long>();
+    private volatile boolean ready = false;
+
+    /**
+     * @param topCount the number of completions kept for each prefix: the largest number that suggest() returns
+     */
+    public BookSuggester(int topCount) {
+        this.topCount = topCount;
+        this.authors = new SuggestionTrie( topCount );
+        this.titles = new SuggestionTrie( topCount );
+    }
+
+    public int getTopCount() {
+        return topCount;
+    }
+
+    /**
+     * @return true when the books have been loaded
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * @return the number of books that have been counted
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return bookKeys.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addAll(Collection<BookInfo> infos) {
+        lock.writeLock().lock();
+        try {
+            for (BookInfo info : infos) {
+                addLocked( info );
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Count a book, if it has not been counted.
+     */
+    public void add(BookInfo info) {
+        lock.writeLock().lock();
+        try {
+            if (info != null) {
+                loads.changed( info.getTitle(), info.getAuthor() );
+            }
+            addLocked( info );
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Start a load. The books that are added or removed from now on are not changed by addLoaded().
+     */
+    public LoadTracker.Load beginLoad() {
+        lock.writeLock().lock();
+        try {
+            return loads.begin();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Count the books of a load, except the books that were added or removed since the load was started, and
+     * end the load.
+     */
+    public void addLoaded(LoadTracker.Load load, Collection<BookInfo> infos) {
+        lock.writeLock().lock();
+        try {
+            for (BookInfo info : loads.end( load, infos )) {
+                addLocked( info );
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addLocked(BookInfo info) {
+        if (info == null || info.getTitle() == null || info.getTitle().length() == 0) {
+            return;
+        }
+        if (bookKeys.add( LoadTracker.key( info.getTitle(), info.getAuthor() ) )) {
+            authors.addCount( normalize( info.getAuthor() ), info.getAuthor(), 1 );
+            titles.addCount( normalize( info.getTitle() ), info.getTitle(), 1 );
+        }
+    }
+
+    /**
+     * Remove a book (e.g., a book that was deleted from the book table).
+     */
+    public void remove(String title, String author) {
+        lock.writeLock().lock();
+        try {
+            loads.changed( title, author );
+            if (bookKeys.remove( LoadTracker.key( title, author ) )) {
+                authors.addCount( normalize( author ), author, -1 );
+                titles.addCount( normalize( title ), title, -1 );
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Count a search for an author or title. This does not lock the suggester: the count is added to the
+     * popularity of the author or title by the next applySearches().
+     *
+     * @param field AUTHOR or TITLE
+     * @param text the author or title
+     */
+    public void recordSearch(BookField field, String text) {
+        if (text == null || ! SUGGEST_FIELDS.contains( field )) {
+            return;
+        }
+        String key = normalize( text );
+        if (! key.isEmpty()) {
+            (field == BookField.AUTHOR ? authorSearches : titleSearches).merge( key, 1L, Long::sum );
+        }
+    }
+
+    /**
+     * Add the searches that were recorded since the last call to the popularity of the authors and titles. A
+     * search for an author or title that no book has is dropped.
+     */
+    public void applySearches() {
+        if (authorSearches.isEmpty() && titleSearches.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            applySearches( authorSearches, authors );
+            applySearches( titleSearches, titles );
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void applySearches(ConcurrentMap<String, Long> searches, SuggestionTrie trie) {
+        for (String key : searches.keySet()) {
+            // remove() takes the count and a concurrent recordSearch() starts a new one, so no search is lost
+            Long hits = searches.remove( key );
+            if (hits != null) {
+                trie.addHits( key, hits );
+            }
+        }
+    }
+
+    /**
+     * @param prefix the start of an author or title
+     * @param fields AUTHOR and/or TITLE, or null for both
+     * @param limit the maximum number of completions. At most topCount are returned.
+     * @return the completions, most popular first
+     * @throws IllegalArgumentException if the fields are not AUTHOR or TITLE
+     */
+    public List<Suggestion> suggest(String prefix, Set<BookField> fields, int limit) {
+        Set<BookField> suggestFields = (fields != null) ? fields : SUGGEST_FIELDS;
+        if (! SUGGEST_FIELDS.containsAll( suggestFields )) {
+            throw new IllegalArgumentException("Suggestions are made for the author and title fields only: " + fields);
+        }
+        String key = normalize( prefix );
+        if (key.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<Suggestion> result = new ArrayList<Suggestion>();
+        lock.readLock().lock();
+        try {
+            if (suggestFields.contains( BookField.AUTHOR )) {
+                result.addAll( authors.complete( key, limit, BookField.AUTHOR.getAttributeName() ) );
+            }
+            if (suggestFields.contains( BookField.TITLE )) {
+                result.addAll( titles.complete( key, limit, BookField.TITLE.getAttributeName() ) );
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (suggestFields.size() > 1) {
+            result.sort( Comparator.comparingLong( Suggestion::getWeight ).reversed() );
+        }
+        return (result.size() > limit) ? result.subList( 0, limit ) : result;
+    }
+
+    /**
+     * @return the string without accents, in lower case, with each run of white space replaced by one space and
+     *         no leading or trailing space.
+     */
+    public static String normalize(String s) {
+        if (s == null) {
+            return "";
+        }
+        String unaccented = MARKS.matcher( Normalizer.normalize( s, Normalizer.Form.NFD ) ).replaceAll("");
+        return SPACES.matcher( unaccented.toLowerCase( Locale.ROOT ).trim() ).replaceAll(" ");
+    }
+
+}
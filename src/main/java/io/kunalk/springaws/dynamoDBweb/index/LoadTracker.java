@@ -0,0 +1,85 @@
+package io.kunalk.springaws.dynamoDBweb.index;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <h4>
+ * LoadTracker
+ * </h4>
+ * <p>
+ * The loads in progress of an in-memory index of the books (TitleTrigramIndex, BookSuggester). A load (a table
+ * scan, or the books read to bring the index up to date) can run while the index is in use and writes add and
+ * remove books. The books that a load read may be older than those writes, so the index tells the tracker the key
+ * of every book that a write adds or removes (changed()), and end() leaves out the loaded books that were changed
+ * since the load began.
+ * </p>
+ * <p>
+ * The tracker is not thread safe: the index calls it with its write lock held.
+ * </p>
+ */
+public final class LoadTracker {
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final List<Load> loads = new ArrayList<Load>();
+
+    /**
+     * @return the key of a book in the index and in the loads
+     */
+    static String key(String title, String author) {
+        return title + KEY_SEPARATOR + author;
+    }
+
+    /**
+     * Start a load. The books that are changed from now on are left out of the load.
+     */
+    Load begin() {
+        Load load = new Load();
+        loads.add( load );
+        return load;
+    }
+
+    /**
+     * Record that a write added or removed a book.
+     */
+    void changed(String title, String author) {
+        if (loads.isEmpty()) {
+            return;
+        }
+        String key = key( title, author );
+        for (Load load : loads) {
+            load.changedKeys.add( key );
+        }
+    }
+
+    /**
+     * End a load.
+     *
+     * @return the books of the load that were not changed since the load began
+     */
+    List<BookInfo> end(Load load, Collection<BookInfo> infos) {
+        loads.remove( load );
+        List<BookInfo> unchanged = new ArrayList<BookInfo>( infos.size() );
+        for (BookInfo info : infos) {
+            if (info != null && ! load.changedKeys.contains( key( info.getTitle(), info.getAuthor() ) )) {
+                unchanged.add( info );
+            }
+        }
+        return unchanged;
+    }
+
+    /**
+     * A load in progress: the keys of the books that were added or removed since it was started.
+     */
+    public static final class Load {
+        private final Set<String> changedKeys = new HashSet<String>();
+
+        private Load() {
+        }
+    }
+}
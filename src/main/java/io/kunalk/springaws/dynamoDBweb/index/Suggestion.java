@@ -0,0 +1,39 @@
+package io.kunalk.springaws.dynamoDBweb.index;
+
+/**
+ * <h4>
+ * Suggestion
+ * </h4>
+ * <p>
+ * A typeahead completion: an author or title, the field it completes and its weight (the number of books, plus
+ * the number of searches for it). Higher weights are more popular.
+ * </p>
+ */
+public class Suggestion {
+    private final String text;
+    private final String field;
+    private final long weight;
+
+    public Suggestion(String text, String field, long weight) {
+        this.text = text;
+        this.field = field;
+        this.weight = weight;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return field + ":" + text + " (" + weight + ")";
+    }
+}
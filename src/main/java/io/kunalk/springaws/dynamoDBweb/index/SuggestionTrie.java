@@ -0,0 +1,323 @@
+package io.kunalk.springaws.dynamoDBweb.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h4>
+ * SuggestionTrie
+ * </h4>
+ * <p>
+ * A radix trie of normalised terms (e.g., author names) with a weight for each term, which returns the highest
+ * weight completions of a prefix. Each edge of the trie is a string, so a chain of nodes with one child is one
+ * node and the trie has at most two nodes per term. Every node keeps the topCount highest weight terms below it,
+ * so a completion walks the prefix (one binary search of the children per edge) and returns the list of the node
+ * where the prefix ends: the time depends on the length of the prefix, not on the number of terms.
+ * </p>
+ * <p>
+ * When the weight of a term goes up, the term is moved up (or into) the list of each node on the path to the term,
+ * which is at most topCount steps per node. When it goes down, a term below the node may now be in its top list,
+ * so the lists on the path are built again, from the bottom, by merging the lists of the children. Weights only
+ * go down when books are removed. The trie is not thread safe (see BookSuggester).
+ * </p>
+ */
+class SuggestionTrie {
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+    /** Higher weight first, then in term order, so that equal weights are returned in a stable order */
+    private static final Comparator<Entry> RANK = (a, b) -> (a.weight() != b.weight()) ? Long.compare( b.weight(), a.weight() )
+                                                                                      : a.key.compareTo( b.key );
+
+    private final int topCount;
+    private final Node root = new Node("");
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * @param topCount the number of completions kept for each prefix (the largest limit of complete())
+     */
+    SuggestionTrie(int topCount) {
+        if (topCount <= 0) {
+            throw new IllegalArgumentException("topCount must be greater than zero: " + topCount);
+        }
+        this.topCount = topCount;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Change the count of a term (e.g., the number of books by an author). A term is added when its count
+     * becomes positive and removed when it falls to zero.
+     *
+     * @param key the normalised term
+     * @param text the term as it is shown (the last text given for a term is kept)
+     * @param delta the change in the count
+     */
+    void addCount(String key, String text, int delta) {
+        Entry entry = entries.get( key );
+        if (entry == null) {
+            if (delta <= 0 || key.isEmpty()) {
+                return;
+            }
+            entry = new Entry( key );
+            entries.put( key, entry );
+        }
+        entry.text = text;
+        entry.count = Math.max( 0, entry.count + delta );
+        List<Node> path = path( key, true );
+        if (entry.count == 0) {
+            entries.remove( key );
+            path.get( path.size() - 1 ).entry = null;
+            prune( path );
+        } else {
+            path.get( path.size() - 1 ).entry = entry;
+        }
+        if (delta > 0) {
+            promote( path, entry );
+        } else {
+            updateTops( path );
+        }
+    }
+
+    /**
+     * Add to the hit count of a term (e.g., the searches for the author), if the trie has the term.
+     */
+    void addHits(String key, long hits) {
+        Entry entry = entries.get( key );
+        if (entry != null && hits > 0) {
+            entry.hits += hits;
+            promote( path( key, false ), entry );
+        }
+    }
+
+    /**
+     * @param prefix a normalised prefix
+     * @param limit the maximum number of completions (at most topCount are returned)
+     * @param field the field name of the completions (e.g., "author")
+     * @return the completions, highest weight first.
+     */
+    List<Suggestion> complete(String prefix, int limit, String field) {
+        Node node = findPrefix( prefix );
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        Entry[] top = node.top;
+        int n = Math.min( limit, top.length );
+        List<Suggestion> result = new ArrayList<Suggestion>( n );
+        for (int i = 0; i < n; i++) {
+            result.add( new Suggestion( top[i].text, field, top[i].weight() ) );
+        }
+        return result;
+    }
+
+    /**
+     * @return the node where the prefix ends (the prefix may end inside the node's edge), or null if no term
+     *         starts with the prefix.
+     */
+    private Node findPrefix(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int c = childIndex( node, prefix.charAt( i ) );
+            if (c < 0) {
+                return null;
+            }
+            Node child = node.children[c];
+            int common = commonLength( child.label, prefix, i );
+            if (i + common == prefix.length()) {
+                return child;
+            }
+            if (common < child.label.length()) {
+                return null;
+            }
+            node = child;
+            i += common;
+        }
+        return node;
+    }
+
+    /**
+     * @param create add the nodes for the key, splitting an edge if the key ends inside it
+     * @return the nodes from the root to the node of the key, or null if create is false and there is no node
+     */
+    private List<Node> path(String key, boolean create) {
+        List<Node> path = new ArrayList<Node>();
+        Node node = root;
+        path.add( node );
+        int i = 0;
+        while (i < key.length()) {
+            int c = childIndex( node, key.charAt( i ) );
+            if (c < 0) {
+                if (! create) {
+                    return null;
+                }
+                Node leaf = new Node( key.substring( i ) );
+                insertChild( node, -c - 1, leaf );
+                path.add( leaf );
+                return path;
+            }
+            Node child = node.children[c];
+            int common = commonLength( child.label, key, i );
+            if (common < child.label.length()) {
+                if (! create) {
+                    return null;
+                }
+                // split the edge: the new node has the common part and the old node keeps the rest
+                Node middle = new Node( child.label.substring( 0, common ) );
+                child.label = child.label.substring( common );
+                middle.children = new Node[] { child };
+                middle.top = child.top;
+                node.children[c] = middle;
+                child = middle;
+            }
+            path.add( child );
+            node = child;
+            i += common;
+        }
+        return path;
+    }
+
+    /**
+     * Remove the nodes at the end of the path that have no term and no children.
+     */
+    private static void prune(List<Node> path) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node node = path.get( i );
+            if (node.entry != null || node.children.length > 0) {
+                return;
+            }
+            Node parent = path.get( i - 1 );
+            int c = childIndex( parent, node.label.charAt( 0 ) );
+            Node[] children = new Node[ parent.children.length - 1 ];
+            System.arraycopy( parent.children, 0, children, 0, c );
+            System.arraycopy( parent.children, c + 1, children, c, children.length - c );
+            parent.children = (children.length > 0) ? children : NO_CHILDREN;
+            path.remove( i );
+        }
+    }
+
+    /**
+     * Move an entry whose weight went up into its place in the top lists of the nodes on a path. A list is
+     * replaced, not changed, as a split node may share its list with its child.
+     */
+    private void promote(List<Node> path, Entry entry) {
+        for (Node node : path) {
+            Entry[] top = node.top;
+            int pos = -1;
+            for (int i = 0; i < top.length; i++) {
+                if (top[i] == entry) {
+                    pos = i;
+                    break;
+                }
+            }
+            Entry[] updated;
+            if (pos >= 0) {
+                updated = top.clone();
+            } else if (top.length < topCount) {
+                updated = Arrays.copyOf( top, top.length + 1 );
+                pos = top.length;
+            } else if (RANK.compare( entry, top[top.length - 1] ) < 0) {
+                updated = top.clone();
+                pos = top.length - 1;
+            } else {
+                continue;
+            }
+            updated[pos] = entry;
+            for (; pos > 0 && RANK.compare( updated[pos], updated[pos - 1] ) < 0; pos--) {
+                Entry swap = updated[pos - 1];
+                updated[pos - 1] = updated[pos];
+                updated[pos] = swap;
+            }
+            node.top = updated;
+        }
+    }
+
+    /**
+     * Build the top lists of the nodes on a path again, from the bottom up.
+     */
+    private void updateTops(List<Node> path) {
+        if (path == null) {
+            return;
+        }
+        List<Entry> candidates = new ArrayList<Entry>();
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get( i );
+            candidates.clear();
+            if (node.entry != null) {
+                candidates.add( node.entry );
+            }
+            for (Node child : node.children) {
+                candidates.addAll( Arrays.asList( child.top ) );
+            }
+            candidates.sort( RANK );
+            int n = Math.min( topCount, candidates.size() );
+            node.top = (n > 0) ? candidates.subList( 0, n ).toArray( new Entry[ n ] ) : NO_ENTRIES;
+        }
+    }
+
+    private static int childIndex(Node node, char first) {
+        int low = 0;
+        int high = node.children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char c = node.children[mid].label.charAt( 0 );
+            if (c < first) {
+                low = mid + 1;
+            } else if (c > first) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static void insertChild(Node node, int index, Node child) {
+        Node[] children = new Node[ node.children.length + 1 ];
+        System.arraycopy( node.children, 0, children, 0, index );
+        children[index] = child;
+        System.arraycopy( node.children, index, children, index + 1, node.children.length - index );
+        node.children = children;
+    }
+
+    private static int commonLength(String label, String key, int from) {
+        int n = Math.min( label.length(), key.length() - from );
+        int i = 0;
+        while (i < n && label.charAt( i ) == key.charAt( from + i )) {
+            i++;
+        }
+        return i;
+    }
+
+    private static class Node {
+        private String label;
+        private Node[] children = NO_CHILDREN;
+        private Entry entry = null;
+        private Entry[] top = NO_ENTRIES;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private static class Entry {
+        private final String key;
+        private String text;
+        private int count = 0;
+        private long hits = 0;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        long weight() {
+            return count + hits;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package io.kunalk.springaws.dynamoDBweb.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * <h4>
+ * TitleTokens
+ * </h4>
+ * <p>
+ * Splits book titles (and title searches) into the words that the title token table is keyed on. A title is
+ * normalised like the typeahead terms (see BookSuggester.normalize(): no case, no accents) and split at every
+ * character that is not a letter or a digit, so "The Peripheral" and "the peripheral" have the same tokens, and
+ * "Ender's Game" has "ender", "s" and "game".
+ * </p>
+ * <p>
+ * Every word of a title is a token. A search leaves out the common words (STOP_WORDS), unless it has no other
+ * words: the books of "the" are most of the catalog, and a search for "the peripheral" only needs the books of
+ * "peripheral". The titles of the books that are found are then checked for all of the search words (see
+ * matches()).
+ * </p>
+ */
+public final class TitleTokens {
+    /** The longest book key that can be a DynamoDB range key, in UTF-8 bytes */
+    public static final int MAX_BOOK_KEY_BYTES = 1024;
+    /** Words that are not queried when a search has other words */
+    public static final Set<String> STOP_WORDS = Collections.unmodifiableSet( new HashSet<String>( Arrays.asList(
+            "a", "an", "and", "at", "by", "for", "from", "in", "is", "of", "on", "or", "the", "to", "with" ) ) );
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private TitleTokens() {
+    }
+
+    /**
+     * @return the distinct tokens of the text, in the order they first appear. Empty if the text has no letters
+     *         or digits.
+     */
+    public static List<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<String>();
+        for (String word : SEPARATORS.split( BookSuggester.normalize( text ) )) {
+            if (! word.isEmpty()) {
+                tokens.add( word );
+            }
+        }
+        return new ArrayList<String>( tokens );
+    }
+
+    /**
+     * @return the tokens of a search that are queried: the tokens without the stop words, or all of the tokens if
+     *         they are all stop words.
+     */
+    public static List<String> queryTokens(List<String> searchTokens) {
+        List<String> tokens = new ArrayList<String>( searchTokens.size() );
+        for (String token : searchTokens) {
+            if (! STOP_WORDS.contains( token )) {
+                tokens.add( token );
+            }
+        }
+        return tokens.isEmpty() ? searchTokens : tokens;
+    }
+
+    /**
+     * @return true if the title has all of the search tokens.
+     */
+    public static boolean matches(String title, List<String> searchTokens) {
+        return tokenize( title ).containsAll( searchTokens );
+    }
+
+    /**
+     * @return the range key of the token items of a book.
+     */
+    public static String bookKey(String title, String author) {
+        return title + KEY_SEPARATOR + author;
+    }
+
+    /**
+     * @return true if the book key is short enough to be a DynamoDB range key.
+     */
+    public static boolean isIndexable(String bookKey) {
+        return bookKey.getBytes( StandardCharsets.UTF_8 ).length <= MAX_BOOK_KEY_BYTES;
+    }
+}
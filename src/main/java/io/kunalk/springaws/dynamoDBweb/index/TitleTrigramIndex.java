@@ -0,0 +1,375 @@
+package io.kunalk.springaws.dynamoDBweb.index;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <h4>
+ * TitleTrigramIndex
+ * </h4>
+ * <p>
+ * An in-memory inverted index that answers book title substring searches without a DynamoDB scan.
+ * </p>
+ * <p>
+ * Each book is given an integer document id. Every three character sequence (trigram) of the lower case title
+ * maps to a posting list of the ids of the books whose titles contain the trigram. A search string with three or
+ * more characters is answered by intersecting the posting lists of its trigrams and then checking that each
+ * candidate title really contains the search string. Shorter search strings are checked against every title.
+ * </p>
+ * <p>
+ * Document ids are allocated in increasing order, so the posting lists are sorted by construction. The title is
+ * part of the DynamoDB key, so a book that is written again keeps its id and its trigrams. A book that is removed
+ * leaves an empty slot: its id stays in the posting lists and is skipped by searches. When more than half of the
+ * slots are empty the index is compacted (compact()): the books are given new ids in the same order and the
+ * posting lists are rebuilt, so the slots of removed books don't grow the index for as long as it is in use.
+ * </p>
+ * <p>
+ * A load (a table scan, or the books read to bring the index up to date) can run while the index is in use and
+ * writes add and remove books. The books that a load read may be older than those writes, so a load is started
+ * with beginLoad() and its books are added with addLoaded(): a book that was added or removed since beginLoad()
+ * is left as the write made it (see LoadTracker).
+ * </p>
+ */
+public class TitleTrigramIndex {
+    private static final int GRAM_SIZE = 3;
+    /** The index is not compacted for fewer empty slots than this */
+    private static final int MIN_COMPACT_SLOTS = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> keyToId = new HashMap<String, Integer>();
+    private final List<BookInfo> books = new ArrayList<BookInfo>();
+    private final List<String> foldedTitles = new ArrayList<String>();
+    private final Map<String, PostingList> postings = new HashMap<String, PostingList>();
+    private final LoadTracker loads = new LoadTracker();
+    private volatile boolean ready = false;
+
+    /**
+     * @return true when the index has been fully loaded and can be used to answer searches.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return keyToId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a copy of the indexed books (e.g., to write a catalog snapshot), in the order they were added.
+     */
+    public List<BookInfo> getBooks() {
+        lock.readLock().lock();
+        try {
+            List<BookInfo> copy = new ArrayList<BookInfo>( keyToId.size() );
+            for (BookInfo info : books) {
+                if (info != null) {
+                    copy.add( info );
+                }
+            }
+            return copy;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void addAll(Collection<BookInfo> infos) {
+        lock.writeLock().lock();
+        try {
+            for (BookInfo info : infos) {
+                addLocked( info );
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a book to the index, or replace the stored book if a book with the same title and author is already
+     * in the index.
+     */
+    public void add(BookInfo info) {
+        lock.writeLock().lock();
+        try {
+            if (info != null) {
+                loads.changed( info.getTitle(), info.getAuthor() );
+            }
+            addLocked( info );
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Start a load. The books that are added or removed from now on are not changed by addLoaded().
+     */
+    public LoadTracker.Load beginLoad() {
+        lock.writeLock().lock();
+        try {
+            return loads.begin();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add the books of a load, except the books that were added or removed since the load was started, and end
+     * the load.
+     */
+    public void addLoaded(LoadTracker.Load load, Collection<BookInfo> infos) {
+        lock.writeLock().lock();
+        try {
+            for (BookInfo info : loads.end( load, infos )) {
+                addLocked( info );
+            }
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the book with a title and author (e.g., a book that was deleted from the book table).
+     *
+     * @return true if the book was in the index
+     */
+    public boolean remove(String title, String author) {
+        lock.writeLock().lock();
+        try {
+            loads.changed( title, author );
+            Integer id = keyToId.remove( LoadTracker.key( title, author ) );
+            if (id == null) {
+                return false;
+            }
+            books.set( id, null );
+            compactIfSparse();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compact the index if more than half of its slots are empty. The cost of a compaction is paid for by the
+     * removals that emptied the slots.
+     */
+    private void compactIfSparse() {
+        int empty = books.size() - keyToId.size();
+        if (empty >= MIN_COMPACT_SLOTS && empty > keyToId.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Drop the empty slots of the removed books: give the books new ids, in the same order, and rebuild the
+     * posting lists.
+     */
+    private void compact() {
+        List<BookInfo> liveBooks = new ArrayList<BookInfo>( keyToId.size() );
+        List<String> liveTitles = new ArrayList<String>( keyToId.size() );
+        for (int id = 0; id < books.size(); id++) {
+            if (books.get(id) != null) {
+                liveBooks.add( books.get(id) );
+                liveTitles.add( foldedTitles.get(id) );
+            }
+        }
+        keyToId.clear();
+        books.clear();
+        foldedTitles.clear();
+        postings.clear();
+        for (int i = 0; i < liveBooks.size(); i++) {
+            BookInfo info = liveBooks.get(i);
+            addNew( LoadTracker.key( info.getTitle(), info.getAuthor() ), info, liveTitles.get(i) );
+        }
+    }
+
+    private void addLocked(BookInfo info) {
+        if (info == null || info.getTitle() == null || info.getTitle().length() == 0) {
+            return;
+        }
+        String key = LoadTracker.key( info.getTitle(), info.getAuthor() );
+        Integer id = keyToId.get( key );
+        if (id != null) {
+            books.set( id, info );
+        } else {
+            addNew( key, info, fold( info.getTitle() ) );
+        }
+    }
+
+    private void addNew(String key, BookInfo info, String folded) {
+        int newId = books.size();
+        keyToId.put( key, newId );
+        books.add( info );
+        foldedTitles.add( folded );
+        for (String gram : trigrams( folded )) {
+            postings.computeIfAbsent( gram, g -> new PostingList() ).add( newId );
+        }
+    }
+
+    /**
+     * <p>
+     * Find the books whose titles contain titleWords. The match is not case sensitive.
+     * </p>
+     * @param titleWords the search string
+     * @return the matching books, in the order that they were added to the index.
+     */
+    public List<BookInfo> search(String titleWords) {
+        List<BookInfo> result = new ArrayList<BookInfo>();
+        if (titleWords == null || titleWords.length() == 0) {
+            return result;
+        }
+        String query = fold( titleWords );
+        lock.readLock().lock();
+        try {
+            if (query.length() < GRAM_SIZE) {
+                for (int id = 0; id < foldedTitles.size(); id++) {
+                    if (books.get(id) != null && foldedTitles.get(id).contains( query )) {
+                        result.add( books.get(id) );
+                    }
+                }
+            } else {
+                int[] candidates = intersect( query );
+                for (int id : candidates) {
+                    if (books.get(id) != null && foldedTitles.get(id).contains( query )) {
+                        result.add( books.get(id) );
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Intersect the posting lists for the trigrams in the query, smallest list first.
+     */
+    private int[] intersect(String query) {
+        Set<String> grams = trigrams( query );
+        PostingList[] lists = new PostingList[ grams.size() ];
+        int n = 0;
+        for (String gram : grams) {
+            PostingList list = postings.get( gram );
+            if (list == null) {
+                return new int[0];
+            }
+            lists[n++] = list;
+        }
+        Arrays.sort( lists, (a, b) -> Integer.compare(a.size, b.size) );
+        int[] current = Arrays.copyOf( lists[0].ids, lists[0].size );
+        int currentSize = current.length;
+        for (int i = 1; i < lists.length && currentSize > 0; i++) {
+            PostingList other = lists[i];
+            int j = 0, k = 0, out = 0;
+            while (j < currentSize && k < other.size) {
+                int a = current[j];
+                int b = other.ids[k];
+                if (a == b) {
+                    current[out++] = a;
+                    j++;
+                    k++;
+                } else if (a < b) {
+                    j++;
+                } else {
+                    k++;
+                }
+            }
+            currentSize = out;
+        }
+        return Arrays.copyOf( current, currentSize );
+    }
+
+    /**
+     * <p>
+     * An estimate of the heap used by the index, in bytes. The estimate assumes a 64-bit JVM with compressed
+     * object pointers and counts the index structures, the folded titles and the strings in the stored books.
+     * </p>
+     */
+    public long memoryFootprint() {
+        final long objectHeader = 16;
+        final long reference = 4;
+        final long mapEntry = 32;
+        long bytes = 0;
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+                bytes += mapEntry + stringSize( entry.getKey() );
+                bytes += objectHeader + 8 + objectHeader + (4L * entry.getValue().ids.length);
+            }
+            for (String key : keyToId.keySet()) {
+                bytes += mapEntry + stringSize( key ) + objectHeader; // the key and the boxed id
+            }
+            for (int id = 0; id < books.size(); id++) {
+                BookInfo info = books.get(id);
+                bytes += 2 * reference + stringSize( foldedTitles.get(id) );
+                if (info == null) {
+                    continue;
+                }
+                bytes += objectHeader + 6 * reference;
+                bytes += stringSize( info.getTitle() ) + stringSize( info.getAuthor() ) + stringSize( info.getGenre() );
+                bytes += stringSize( info.getPublisher() ) + stringSize( info.getYear() ) + stringSize( info.getPrice() );
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return bytes;
+    }
+
+    private static long stringSize(String s) {
+        // String object + char/byte array header + contents
+        return (s == null) ? 0 : 24 + 16 + 2L * s.length();
+    }
+
+    /**
+     * @return the string as the index compares it: in lower case. A title matches a search if its folded title
+     *         contains the folded search.
+     */
+    public static String fold(String s) {
+        return s.toLowerCase( Locale.ROOT );
+    }
+
+    static Set<String> trigrams(String folded) {
+        Set<String> grams = new LinkedHashSet<String>();
+        for (int i = 0; i + GRAM_SIZE <= folded.length(); i++) {
+            grams.add( folded.substring(i, i + GRAM_SIZE) );
+        }
+        return grams;
+    }
+
+    /**
+     * A growable, sorted, array of document ids.
+     */
+    private static class PostingList {
+        private int[] ids = new int[2];
+        private int size = 0;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf( ids, size + (size >> 1) + 1 );
+            }
+            ids[size++] = id;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.kunalk.springaws.dynamoDBweb.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <h4>
+ * BookField
+ * </h4>
+ * <p>
+ * The BookInfo fields and their DynamoDB attribute names. A set of fields is the projection of a read: the
+ * BookTableService methods that take a field set only read those attributes, and the other BookInfo fields are
+ * left null. The title and author (the table key) are always read, so a book can always be identified.
+ * </p>
+ */
+public enum BookField {
+    TITLE("title"),
+    AUTHOR("author"),
+    GENRE("genre"),
+    PUBLISHER("publisher"),
+    YEAR("year"),
+    PRICE("price")
+    ;
+
+    /** The table key fields, which are read by every projection */
+    public static final Set<BookField> KEY_FIELDS = EnumSet.of( TITLE, AUTHOR );
+    /** The fields that the catalog sort order (BookSortKey) needs */
+    public static final Set<BookField> SORT_FIELDS = EnumSet.of( GENRE, AUTHOR, TITLE );
+
+    private final String attributeName;
+
+    private BookField(String attributeName) {
+        this.attributeName = attributeName;
+    }
+
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    /**
+     * @param name a field name or attribute name, e.g., "title" (not case sensitive)
+     * @return the field
+     * @throws IllegalArgumentException if there is no field with the name
+     */
+    public static BookField fromName(String name) {
+        String trimmed = (name != null) ? name.trim() : "";
+        for (BookField field : values()) {
+            if (field.attributeName.equalsIgnoreCase( trimmed ) || field.name().equalsIgnoreCase( trimmed )) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown book field: " + name);
+    }
+
+    /**
+     * @param names a comma separated list of field names, e.g., "title,author,year"
+     * @return the fields, or null (all of the fields) if names is null or empty.
+     * @throws IllegalArgumentException if a name is not a field name
+     */
+    public static Set<BookField> parse(String names) {
+        if (names == null || names.trim().isEmpty()) {
+            return null;
+        }
+        Set<BookField> fields = EnumSet.noneOf( BookField.class );
+        for (String name : names.split(",")) {
+            if (! name.trim().isEmpty()) {
+                fields.add( fromName( name ) );
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @param fields the fields to read, or null for all of them
+     * @return the DynamoDB attribute names to read (with the key attributes), or null if all of the fields are read.
+     */
+    public static List<String> attributeNames(Collection<BookField> fields) {
+        if (fields == null) {
+            return null;
+        }
+        Set<BookField> projection = EnumSet.copyOf( KEY_FIELDS );
+        projection.addAll( fields );
+        if (projection.size() == values().length) {
+            return null;
+        }
+        List<String> names = new ArrayList<String>( projection.size() );
+        for (BookField field : projection) {
+            names.add( field.attributeName );
+        }
+        return names;
+    }
+
+    /**
+     * @return the fields with the fields that the catalog sort needs added, or null if fields is null (all fields).
+     */
+    public static Set<BookField> withSortFields(Collection<BookField> fields) {
+        if (fields == null) {
+            return null;
+        }
+        Set<BookField> sortable = EnumSet.copyOf( SORT_FIELDS );
+        sortable.addAll( fields );
+        return sortable;
+    }
+}
@@ -9,6 +9,7 @@
 package io.kunalk.springaws.dynamoDBweb.model;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import javax.validation.constraints.Digits;
 import javax.validation.constraints.NotBlank;
@@ -30,6 +31,11 @@ import javax.validation.constraints.Pattern;
  */
 @DynamoDBTable(tableName="book_table")
 public class BookInfo {
+    /** Sorts before the characters of an author name, so that "Ada" sorts before "Adam" in author_title */
+    private static final char AUTHOR_TITLE_SEPARATOR = '\u0001';
+    /** The name of the optimistic locking version attribute */
+    public static final String VERSION_ATTRIBUTE = "version";
+    
     @NotBlank(message="A book title is required")
     private String title;
     @NotBlank(message="An author name is required")
@@ -41,6 +47,7 @@ public class BookInfo {
     private String year;
     @Pattern(regexp="^\\d{0,8}(\\.\\d{1,4})?$", message="Please enter a price i.e., 16, 16.00, 15.95")
     private String price;
+    private Long version;
     
     @DynamoDBHashKey(attributeName="title")
     public String getTitle() {
@@ -91,6 +98,42 @@ public class BookInfo {
         this.price = trimString( price );
     }
     
+    /**
+     * The optimistic locking version: the number of versioned writes of the book (see
+     * BookTableService.putVersioned()), or null for a book that has not been written with a version.
+     */
+    @DynamoDBVersionAttribute(attributeName=VERSION_ATTRIBUTE)
+    public Long getVersion() {
+        return version;
+    }
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    /**
+     * The genre index hash key: the GenreEnum name for the genre (BAD_ENUM for a genre that is not in GenreEnum), so
+     * that one query per GenreEnum value reads every book. It is derived from the genre, so it has no setter. The
+     * mapper can't read an attribute without a setter, so it is not mapped: BookTableService adds it to the items
+     * that it writes.
+     */
+    @DynamoDBIgnore
+    @JsonIgnore
+    public String getGenreKey() {
+        return GenreEnum.stringToEnum( genre ).name();
+    }
+    
+    /**
+     * The genre index range key: the case folded author and title (see BookSortKey), so that a genre index query
+     * returns the books of a genre in the catalog order: DynamoDB orders the key by its UTF-8 bytes, which is the
+     * code point order that BookSortKey compares. It is derived from the author and title, so like getGenreKey()
+     * it has no setter and is not mapped.
+     */
+    @DynamoDBIgnore
+    @JsonIgnore
+    public String getAuthorTitle() {
+        return BookSortKey.fold( author ) + AUTHOR_TITLE_SEPARATOR + BookSortKey.fold( title );
+    }
+    
     @DynamoDBIgnore
     private String trimString(String input) {
         String rslt = "";
@@ -10,6 +10,16 @@ package io.kunalk.springaws.dynamoDBweb.model;
 
 import java.util.Comparator;
 
+/**
+ * <h4>
+ * BookInfoComparator
+ * </h4>
+ * <p>
+ * The catalog order of books. To sort many books use BookSorter, which computes the sort key of each book once
+ * (BookSortKey) instead of for every comparison. The author and title are compared without case, in code point
+ * order (see BookSortKey).
+ * </p>
+ */
 public class BookInfoComparator implements Comparator<BookInfo> {
 
     /**
@@ -32,9 +42,9 @@ public class BookInfoComparator implements Comparator<BookInfo> {
         GenreEnum e2 = GenreEnum.stringToEnum( o2.getGenre() );
         int compareRslt = e1.compareTo(e2);
         if (compareRslt == 0) {
-            compareRslt = o1.getAuthor().compareToIgnoreCase( o2.getAuthor());
+            compareRslt = BookSortKey.compareCodePoints( BookSortKey.fold( o1.getAuthor() ), BookSortKey.fold( o2.getAuthor() ) );
             if (compareRslt == 0) {
-                compareRslt = o1.getTitle().compareToIgnoreCase( o2.getTitle());
+                compareRslt = BookSortKey.compareCodePoints( BookSortKey.fold( o1.getTitle() ), BookSortKey.fold( o2.getTitle() ) );
             }
         }
         return compareRslt;
@@ -0,0 +1,98 @@
+package io.kunalk.springaws.dynamoDBweb.model;
+
+/**
+ * <h4>
+ * BookSortKey
+ * </h4>
+ * <p>
+ * A book with its catalog sort key (genre, author, title) computed once: the genre ordinal and the case-folded
+ * author and title. Comparing two keys is an int comparison and at most two String.compareTo() calls, so a sort
+ * does not repeat the genre lookup and the case-insensitive comparisons for every comparison. The order is the
+ * same as BookInfoComparator: the strings are folded per character like String.compareToIgnoreCase().
+ * </p>
+ * <p>
+ * The folded strings are compared in code point order (compareCodePoints()), not by String.compareTo(), because
+ * the genre index returns the books in the order of their author_title range key (see BookInfo.getAuthorTitle())
+ * and DynamoDB orders string keys by their UTF-8 bytes, which is the code point order. String.compareTo() compares
+ * UTF-16 chars, which puts a supplementary character (a surrogate pair) before the characters U+E000 to U+FFFF,
+ * so a page of a sorted scan would not start at the same book as the same page of the index.
+ * </p>
+ */
+public final class BookSortKey implements Comparable<BookSortKey> {
+    private final int genre;
+    private final String author;
+    private final String title;
+    private final BookInfo book;
+
+    public BookSortKey(BookInfo book) {
+        this.genre = GenreEnum.stringToEnum( book.getGenre() ).ordinal();
+        this.author = fold( book.getAuthor() );
+        this.title = fold( book.getTitle() );
+        this.book = book;
+    }
+
+    public BookInfo getBook() {
+        return book;
+    }
+
+    @Override
+    public int compareTo(BookSortKey other) {
+        int compareRslt = Integer.compare( genre, other.genre );
+        if (compareRslt == 0) {
+            compareRslt = compareCodePoints( author, other.author );
+            if (compareRslt == 0) {
+                compareRslt = compareCodePoints( title, other.title );
+            }
+        }
+        return compareRslt;
+    }
+
+    /**
+     * Compare two strings in code point order, which is the order of their UTF-8 bytes (the DynamoDB string key
+     * order).
+     */
+    public static int compareCodePoints(String s1, String s2) {
+        int n = Math.min( s1.length(), s2.length() );
+        for (int i = 0; i < n; i++) {
+            char c1 = s1.charAt( i );
+            char c2 = s2.charAt( i );
+            if (c1 != c2) {
+                return Integer.compare( codePointOrder( c1 ), codePointOrder( c2 ) );
+            }
+        }
+        return Integer.compare( s1.length(), s2.length() );
+    }
+
+    /**
+     * At the first char where two strings differ, only a surrogate and a char from U+E000 to U+FFFF compare in the
+     * wrong order, so the surrogates are moved above those chars.
+     */
+    private static int codePointOrder(char c) {
+        if (c >= '\uE000') {
+            return c - 0x800;
+        }
+        return (c >= '\uD800') ? c + 0x2000 : c;
+    }
+
+    /**
+     * Fold the case of each character the way String.compareToIgnoreCase() does, so that compareTo() on the folded
+     * strings gives the compareToIgnoreCase() order. The string is only copied if a character changes.
+     */
+    static String fold(String s) {
+        if (s == null) {
+            return "";
+        }
+        char[] chars = null;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt( i );
+            char folded = Character.toLowerCase( Character.toUpperCase( c ) );
+            if (folded != c) {
+                if (chars == null) {
+                    chars = s.toCharArray();
+                }
+                chars[ i ] = folded;
+            }
+        }
+        return (chars != null) ? new String( chars ) : s;
+    }
+}
@@ -0,0 +1,161 @@
+package io.kunalk.springaws.dynamoDBweb.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <h4>
+ * BookSorter
+ * </h4>
+ * <p>
+ * Sorts books in catalog order (genre, author, title; the BookInfoComparator order). A BookSortKey is built once
+ * per book and the keys are sorted, with Arrays.parallelSort() when there are at least parallelThreshold books.
+ * </p>
+ * <p>
+ * top() returns one page of the sorted catalog without sorting the catalog: it keeps the first offset + limit
+ * books in a bounded heap, which is O(n log k) time and O(k) memory. topAfter() does the same for the page after
+ * a key, in any order, so a cursor page costs the same however far into the result it is.
+ * </p>
+ */
+public final class BookSorter {
+    /** Below this size a sequential sort is faster than a parallel sort */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 8192;
+
+    private BookSorter() {
+    }
+
+    public static List<BookInfo> sort(Collection<BookInfo> books) {
+        return sort( books, DEFAULT_PARALLEL_THRESHOLD );
+    }
+
+    /**
+     * @param books the books to sort
+     * @param parallelThreshold the number of books at which the sort is parallel.
+     * @return a new list with the books in catalog order
+     */
+    public static List<BookInfo> sort(Collection<BookInfo> books, int parallelThreshold) {
+        BookSortKey[] keys = new BookSortKey[ books.size() ];
+        int i = 0;
+        for (BookInfo book : books) {
+            keys[ i++ ] = new BookSortKey( book );
+        }
+        sortKeys( keys, parallelThreshold );
+        return toBooks( Arrays.asList( keys ) );
+    }
+
+    /**
+     * Sort an array of keys in place, in parallel if there are at least parallelThreshold keys.
+     */
+    public static void sortKeys(BookSortKey[] keys, int parallelThreshold) {
+        if (keys.length >= parallelThreshold) {
+            Arrays.parallelSort( keys );
+        } else {
+            Arrays.sort( keys );
+        }
+    }
+
+    /**
+     * <p>
+     * Return a page of the catalog: the books at positions offset to offset + limit - 1 in catalog order. Only
+     * offset + limit books are held and sorted, however many books there are.
+     * </p>
+     * @param books the books, in any order
+     * @param offset the number of books to skip
+     * @param limit the page size
+     * @return the page, which is shorter than limit at the end of the catalog.
+     */
+    public static List<BookInfo> top(Iterable<BookInfo> books, int offset, int limit) {
+        Iterator<BookInfo> iterator = books.iterator();
+        return topKeys( () -> new Iterator<BookSortKey>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public BookSortKey next() {
+                return new BookSortKey( iterator.next() );
+            }
+        }, offset, limit );
+    }
+
+    /**
+     * top() for books whose sort keys have already been built.
+     */
+    public static List<BookInfo> topKeys(Iterable<BookSortKey> keys, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative: " + offset + ", " + limit);
+        }
+        if (limit == 0) {
+            return Collections.<BookInfo>emptyList();
+        }
+        int k = (int)Math.min( Integer.MAX_VALUE - 1, (long)offset + limit );
+        // a max heap of the k smallest keys seen so far
+        PriorityQueue<BookSortKey> heap = new PriorityQueue<BookSortKey>( Math.min( k, 1024 ) + 1, Comparator.reverseOrder() );
+        for (BookSortKey key : keys) {
+            if (heap.size() < k) {
+                heap.add( key );
+            } else if (key.compareTo( heap.peek() ) < 0) {
+                heap.poll();
+                heap.add( key );
+            }
+        }
+        BookSortKey[] sorted = heap.toArray( new BookSortKey[ heap.size() ] );
+        Arrays.sort( sorted );
+        if (offset >= sorted.length) {
+            return Collections.<BookInfo>emptyList();
+        }
+        return toBooks( Arrays.asList( sorted ).subList( offset, sorted.length ) );
+    }
+
+    /**
+     * <p>
+     * Return the first limit items that are after an item in an order, sorted. Only limit items are held and
+     * sorted, however many items there are.
+     * </p>
+     * @param items the items, in any order
+     * @param order the order
+     * @param after the items up to and including this one are skipped, or null to start at the first item.
+     *        It does not need to be one of the items.
+     * @param limit the page size
+     * @return the page, which is shorter than limit at the end of the items.
+     */
+    public static <T> List<T> topAfter(Iterable<T> items, Comparator<? super T> order, T after, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        }
+        if (limit == 0) {
+            return Collections.<T>emptyList();
+        }
+        // a max heap of the limit smallest items after the start
+        PriorityQueue<T> heap = new PriorityQueue<T>( Math.min( limit, 1024 ) + 1, order.reversed() );
+        for (T item : items) {
+            if (after != null && order.compare( item, after ) <= 0) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add( item );
+            } else if (order.compare( item, heap.peek() ) < 0) {
+                heap.poll();
+                heap.add( item );
+            }
+        }
+        List<T> sorted = new ArrayList<T>( heap );
+        sorted.sort( order );
+        return sorted;
+    }
+
+    public static List<BookInfo> toBooks(List<BookSortKey> keys) {
+        List<BookInfo> books = new ArrayList<BookInfo>( keys.size() );
+        for (BookSortKey key : keys) {
+            books.add( key.getBook() );
+        }
+        return books;
+    }
+}
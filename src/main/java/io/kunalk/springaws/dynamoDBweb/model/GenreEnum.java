@@ -8,6 +8,9 @@
  */
 package io.kunalk.springaws.dynamoDBweb.model;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * <h4>
  * GenreEnum
@@ -32,6 +35,13 @@ public enum GenreEnum {
     NONFICTION("Nonfiction")
     ;
     
+    private static final Map<String, GenreEnum> NAME_TO_ENUM = new HashMap<String, GenreEnum>();
+    static {
+        for (GenreEnum genre : values()) {
+            NAME_TO_ENUM.put( genre.name, genre );
+        }
+    }
+    
     private final String name;
     
     private GenreEnum(String name) {
@@ -42,32 +52,13 @@ public enum GenreEnum {
         return this.name;
     }
     
-    static GenreEnum stringToEnum(String name) {
-        GenreEnum enumVal = BAD_ENUM;
-        if (name.equals(SCIENCE_FICTION.toString())) {
-            enumVal = SCIENCE_FICTION;
-        } else if (name.equals(FICTION.toString())) {
-            enumVal = FICTION;
-        } else if (name.equals(HISTORY.toString())) {
-            enumVal = HISTORY;
-        } else if (name.equals(COMPUTER_SCIENCE.toString())) {
-            enumVal = COMPUTER_SCIENCE;
-        } else if (name.equals(FINANCE.toString())) {
-            enumVal = FINANCE;
-        } else if (name.equals(MATHEMATICS.toString())) {
-            enumVal = MATHEMATICS;
-        } else if (name.equals(CURRENT_EVENTS.toString())) {
-            enumVal = CURRENT_EVENTS;
-        } else if (name.equals(SCIENCE.toString())) {
-            enumVal = SCIENCE;
-        } else if (name.equals(COOKING.toString())) {
-            enumVal = COOKING;
-        } else if (name.equals(TRAVEL.toString())) {
-            enumVal = TRAVEL;
-        } else if (name.equals(NONFICTION.toString())) {
-            enumVal = NONFICTION;
-        }
-        return enumVal;
+    /**
+     * Return the genre with the display name (e.g., "Science Fiction"), or BAD_ENUM if there is no such genre.
+     * This is a hash lookup, since it is called for every comparison in a sort.
+     */
+    public static GenreEnum stringToEnum(String name) {
+        GenreEnum enumVal = (name != null) ? NAME_TO_ENUM.get( name ) : null;
+        return (enumVal != null) ? enumVal : BAD_ENUM;
     }
 
     @Override
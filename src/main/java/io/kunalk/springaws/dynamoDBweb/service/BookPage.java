@@ -0,0 +1,43 @@
+package io.kunalk.springaws.dynamoDBweb.service;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h4>
+ * BookPage
+ * </h4>
+ * <p>
+ * One page of a paged book read: the books and the key to start the next page after. The key is a DynamoDB
+ * ExclusiveStartKey (see PageCursor). A page may have fewer books than were asked for, even when it is not the
+ * last page: the number of DynamoDB requests per page is bounded, so a filtered scan that finds few matches
+ * returns a short page.
+ * </p>
+ */
+public class BookPage {
+    private final List<BookInfo> books;
+    private final Map<String, AttributeValue> lastEvaluatedKey;
+
+    public BookPage(List<BookInfo> books, Map<String, AttributeValue> lastEvaluatedKey) {
+        this.books = books;
+        this.lastEvaluatedKey = (lastEvaluatedKey != null && ! lastEvaluatedKey.isEmpty()) ? lastEvaluatedKey : null;
+    }
+
+    public List<BookInfo> getBooks() {
+        return books;
+    }
+
+    /**
+     * @return the key to start the next page after, or null if this is the last page.
+     */
+    public Map<String, AttributeValue> getLastEvaluatedKey() {
+        return lastEvaluatedKey;
+    }
+
+    public boolean isLastPage() {
+        return lastEvaluatedKey == null;
+    }
+}
@@ -9,22 +9,68 @@
 package io.kunalk.springaws.dynamoDBweb.service;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.model.*;
+import io.kunalk.springaws.dynamoDBweb.cache.ResultCache;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.AsyncCalls;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.BatchItemReader;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.BatchItemWriter;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.BatchWriteResult;
 import io.kunalk.springaws.dynamoDBweb.dynamoDb.CreateBookTable;
 import io.kunalk.springaws.dynamoDBweb.dynamoDb.DynamoDBUtil;
 import io.kunalk.springaws.dynamoDBweb.dynamoDb.IDynamoDBKeys;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.PagedItemIterator;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.ParallelScanner;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.QueryItemIterator;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.ScanItemIterator;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.StreamConsumer;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.TableBootstrap;
+import io.kunalk.springaws.dynamoDBweb.index.BookSuggester;
+import io.kunalk.springaws.dynamoDBweb.index.LoadTracker;
+import io.kunalk.springaws.dynamoDBweb.index.Suggestion;
+import io.kunalk.springaws.dynamoDBweb.index.TitleTokens;
+import io.kunalk.springaws.dynamoDBweb.index.TitleTrigramIndex;
+import io.kunalk.springaws.dynamoDBweb.model.BookField;
 import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
-import io.kunalk.springaws.dynamoDBweb.model.BookInfoComparator;
+import io.kunalk.springaws.dynamoDBweb.model.BookSortKey;
+import io.kunalk.springaws.dynamoDBweb.model.BookSorter;
+import io.kunalk.springaws.dynamoDBweb.model.GenreEnum;
+import io.kunalk.springaws.dynamoDBweb.wal.WriteAheadLog;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 
@@ -36,270 +82,2487 @@ import java.util.logging.Logger;
  * This service provides read, write and search functions that access a book table that is stored in a database. In this case
  * the table is stored in DynamoDB.
  * </p>
+ * <p>
+ * The table is checked (and created, if it does not exist) on a background thread, so the constructor does not
+ * wait for DynamoDB. Until the table is ACTIVE the book read and write methods throw a TableNotReadyException.
+ * </p>
+ * <p>
+ * Some of the read methods take a set of BookFields. These reads only ask DynamoDB for those attributes (and the
+ * table key), so a list view that shows a few fields does not transfer and decode whole items. The other BookInfo
+ * fields are left null. The projection is sent as AttributesToGet: the requests use the KeyConditions and
+ * ScanFilter parameters and DynamoDB does not allow these to be mixed with expression parameters
+ * (ProjectionExpression).
+ * </p>
+ * <p>
+ * A write that depends on whether the book is already stored (putIfAbsent(), replaceIfExists(), putVersioned()) is
+ * one PutItem request with a condition on the stored item, so there is no read before the write and no window
+ * between the check and the write in which another writer can get in. The conditions are sent as the legacy
+ * Expected parameter, like the other requests of this service. The unconditional writes (writeToBookTable(),
+ * writeBooks()) and replaceIfExists() store the book without a version: a versioned writer that held an older
+ * version gets a VERSION_CONFLICT.
+ * </p>
 
  */
 public class BookTableService implements IDynamoDBKeys {
+    /**
+     * The condition of a book write (see writeBook()).
+     */
+    public enum WriteMode {
+        /** Write the book, replacing a book with the same title and author */
+        OVERWRITE,
+        /** Write the book only if there is no book with the title and author */
+        PUT_IF_ABSENT,
+        /** Write the book only if there is a book with the title and author */
+        REPLACE_IF_EXISTS,
+        /** Write the book only if the stored version is the version of the book (optimistic locking) */
+        VERSIONED
+    }
+
+    /**
+     * How a title search matches the titles (see getTitleMatch()).
+     */
+    public enum TitleMatch {
+        /** The titles that contain the search string, without regard to case ("ripher" finds "The Peripheral") */
+        SUBSTRING,
+        /** The titles that have all of the words of the search, as whole words, without regard to case or accents */
+        WORDS
+    }
+
     /** DynamoDB read throughput */
-    private final static long READ_THROUGHPUT = 4;
+    public final static long READ_THROUGHPUT = 4;
     /** DynamoDB write throughput */
-    private final static long WRITE_THROUGHPUT = 2;
+    public final static long WRITE_THROUGHPUT = 2;
+    /** The default number of items read per scan or query page */
+    public final static int DEFAULT_PAGE_LIMIT = 200;
+    /** The default number of BatchWriteItem requests that writeBooks() sends concurrently */
+    public final static int DEFAULT_BATCH_WRITE_THREADS = 4;
+    /** The maximum number of DynamoDB pages that are read for one BookPage */
+    public final static int MAX_READS_PER_BOOK_PAGE = 10;
+    /** The number of blocking calls of the *Async() methods that can wait for a thread, per thread */
+    private final static int BLOCKING_CALL_QUEUE_PER_THREAD = 20;
+    /** The number of times unprocessed batch items are retried, and the backoff delays */
+    private final static int BATCH_RETRIES = 8;
+    private final static long BATCH_BASE_DELAY_MSEC = 50;
+    private final static long BATCH_MAX_DELAY_MSEC = 5000;
+    /** 
+     * The books written in this time before the catalog timestamp are read again when the catalog is brought up
+     * to date: a write is stamped before it is visible, and the clocks of the instances differ.
+     */
+    private final static long CATALOG_OVERLAP_MSEC = 5 * 60 * 1000;
+    /** A catalog that is older than this is brought up to date with a scan, not with one query per day and shard */
+    private final static int MAX_CATALOG_DELTA_DAYS = 31;
+    /** The order of the pages of an in-memory result: title, then author (the order of the title and author keys) */
+    private final static Comparator<BookInfo> BOOK_KEY_ORDER = 
+        Comparator.comparing( BookInfo::getTitle, Comparator.nullsFirst( Comparator.<String>naturalOrder() ) )
+                  .thenComparing( BookInfo::getAuthor, Comparator.nullsFirst( Comparator.<String>naturalOrder() ) );
     /** The name of the DynamoDB table used to store the book information */
     private final String tableName;
-    private static DynamoDBService dynamoDBService = null;
+    private int pageLimit = DEFAULT_PAGE_LIMIT;
+    /** The parallel scan engine, or null when scans run on the caller's thread */
+    private volatile ParallelScanner parallelScanner = null;
+    private BatchItemWriter batchItemWriter = null;
+    private final BatchItemReader batchItemReader;
+    /** The in-memory title index, or null if title searches always scan the table */
+    private volatile TitleTrigramIndex titleIndex = null;
+    private volatile int suggestTopCount = 0;
+    private volatile BookSuggester suggester = null;
+    /** Adds the recorded searches to the suggestion popularity (see BookSuggester.applySearches()) */
+    private ScheduledExecutorService suggestionSearchExecutor = null;
+    private volatile TitleTokenIndex titleTokens = null;
+    /** Result caches for the author and title/author lookups, or null when results are not cached */
+    private volatile ResultCache<String, List<BookInfo>> authorCache = null;
+    private volatile ResultCache<String, List<BookInfo>> titleAuthorCache = null;
+    private volatile boolean asyncMode = false;
+    /** The threads that run the calls of the *Async() methods that use the synchronous client */
+    private ExecutorService blockingCallExecutor = null;
+    private volatile boolean genreIndexEnabled = false;
+    private volatile WriteBehindWriter writeBehindWriter = null;
+    /** The time the title index was last read from the table (epoch milliseconds) */
+    private volatile long catalogTimestamp = 0;
+    /** The books read by the last catch-up that are in the overlap of the next one: key to updated time */
+    private volatile Map<String, Long> catalogOverlapRead = Collections.emptyMap();
+    private volatile Path catalogSnapshotFile = null;
+    private ScheduledExecutorService catalogSnapshotExecutor = null;
+    private boolean streamConsumerEnabled = false;
+    private volatile StreamConsumer streamConsumer = null;
+    private final DynamoDBService dynamoDBService;
+    private final TableBootstrap tableBootstrap;
     final private Logger log;
     
     private String getTableName() {
         return tableName;
     }
     
+    public int getPageLimit() {
+        return pageLimit;
+    }
+    
     /**
-     * 
-     * @param bookTableName the name of the DynamoDB table that stores the book information.
+     * @param pageLimit the maximum number of items that DynamoDB returns per scan or query page (the request Limit).
      */
-    public BookTableService(final String bookTableName ) {
-        tableName = bookTableName;
-        log = Logger.getLogger( this.getClass().getName() );
-        if (dynamoDBService == null) {
-            dynamoDBService = new DynamoDBService( region, full_dynamodb_access_ID, IDynamoDBKeys.full_dynamodb_access_KEY);
+    public void setPageLimit(int pageLimit) {
+        if (pageLimit <= 0) {
+            throw new IllegalArgumentException("pageLimit must be greater than zero: " + pageLimit);
         }
-        // check to see if the book table exists. If it doesn't, create it.
-        checkBookTable();
+        this.pageLimit = pageLimit;
     }
-
-
-    /** 
-     * Check to see if the DynamoDB book table exists. If it doesn't exist, create it.
-     * 
+    
+    /**
+     * @return the number of parallel scan segments. A value of 1 means that scans are not parallel.
      */
-    protected void checkBookTable() {
-        AmazonDynamoDB client = dynamoDBService.getClient();
-        CreateBookTable createBookTable = new CreateBookTable( getTableName() );
-        if (! createBookTable.tableExists(client)) {
-            createBookTable.createTable(client, READ_THROUGHPUT, WRITE_THROUGHPUT);
+    public int getScanSegments() {
+        return (parallelScanner != null) ? parallelScanner.getTotalSegments() : 1;
+    }
+    
+    /**
+     * <p>
+     * Set the number of segments used by getBooks() and findBookByTitle(). Each segment is scanned by its own
+     * worker thread. A value of 1 turns parallel scans off.
+     * </p>
+     * @param scanSegments the DynamoDB TotalSegments value
+     */
+    public synchronized void setScanSegments(int scanSegments) {
+        if (scanSegments <= 0) {
+            throw new IllegalArgumentException("scanSegments must be greater than zero: " + scanSegments);
+        }
+        if (scanSegments != getScanSegments()) {
+            if (parallelScanner != null) {
+                parallelScanner.shutdown();
+            }
+            parallelScanner = (scanSegments > 1) ? new ParallelScanner( scanSegments ) : null;
         }
     }
     
     /**
-     * A query on title and author (note the withHashKeyValues clause).
-     * @param bookInfo
-     * @return
+     * <p>
+     * Turn on the in-memory title index. The index is loaded from a full table scan and then kept up to date by
+     * writeToBookTable(). Until the load is complete, findBookByTitle() uses a table scan.
+     * </p>
+     * <p>
+     * Note that writes made by other application instances are not seen by this index, unless the table stream
+     * is read (see enableStreamConsumer()) or a catalog snapshot is kept (see enableCatalogSnapshot()).
+     * </p>
+     * <p>
+     * The book table must be ACTIVE. Use buildTitleIndexWhenReady() at startup.
+     * </p>
      */
-    protected DynamoDBQueryExpression<BookInfo> buildBookInfoAuthorEQQuery(BookInfo bookInfo) {
-        Condition rangeCondition = new Condition();
-        rangeCondition.setComparisonOperator("EQ");
-        AttributeValue attribute = new AttributeValue( bookInfo.getAuthor() );
-        ArrayList<AttributeValue> attrs = new ArrayList<AttributeValue>();
-        attrs.add( attribute );
-        rangeCondition.setAttributeValueList( attrs );
-        DynamoDBQueryExpression<BookInfo> queryExpression = new DynamoDBQueryExpression<BookInfo>()
-                .withHashKeyValues(bookInfo)
-                .withRangeKeyCondition("author", rangeCondition);
-        return queryExpression;
+    public void buildTitleIndex() {
+        // the index is published before the scan, so the writes made during the scan are added to it; they are
+        // newer than the scanned books, which are added as a load (see TitleTrigramIndex.addLoaded())
+        TitleTrigramIndex index = new TitleTrigramIndex();
+        LoadTracker.Load indexLoad = index.beginLoad();
+        BookSuggester suggestions = newSuggester();
+        LoadTracker.Load suggestionsLoad = (suggestions != null) ? suggestions.beginLoad() : null;
+        titleIndex = index;
+        suggester = suggestions;
+        long startMsec = System.currentTimeMillis();
+        List<BookInfo> books = Collections.emptyList();
+        try {
+            books = scanAllBooks();
+        } finally {
+            // a failed scan still ends the loads
+            index.addLoaded( indexLoad, books );
+            if (suggestions != null) {
+                suggestions.addLoaded( suggestionsLoad, books );
+            }
+        }
+        index.setReady( true );
+        if (suggestions != null) {
+            suggestions.setReady( true );
+        }
+        catalogTimestamp = startMsec;
+        long endMsec = System.currentTimeMillis();
+        log.info("Title index loaded: " + index.size() + " books, approximately " + (index.memoryFootprint() / 1024) 
+                 + " KB (" + (endMsec - startMsec) + " msec)");
     }
     
+    private List<BookInfo> scanAllBooks() {
+        ParallelScanner scanner = parallelScanner;
+        if (scanner != null) {
+            AmazonDynamoDB client = dynamoDBService.getClient();
+            return scanner.scan( client::scan, this::buildBookScanRequest, this::toBookInfo, null );
+        }
+        try (Stream<BookInfo> books = streamBooks()) {
+            return books.collect( Collectors.toList() );
+        }
+    }
     
     /**
-     * Write a BookInfo object to a book information table, but override the table
-     * name. This is used for testing, so that test data can be written to a temporary table.
+     * <p>
+     * Keep a snapshot of the title index (the book catalog) in a local file, so that the next start of the 
+     * service (e.g., after a deploy) does not scan the table. The snapshot is written every interval and when the
+     * service is shut down. Before it is written, the books written since the last refresh (by any instance)
+     * are read from the updated index and added to the title index.
+     * </p>
+     * <p>
+     * At startup, buildTitleIndexWhenReady() loads the snapshot and the title index is ready at once. When the
+     * table is ACTIVE the books written since the snapshot time are read from the updated index (one query per
+     * day and shard, then a BatchGetItem of the keys), so the startup reads are the changed books, not the table. A
+     * table without the updated index (created before the index was added), a snapshot that is older than
+     * MAX_CATALOG_DELTA_DAYS, or a missing or damaged snapshot file, is brought up to date with a scan.
+     * </p>
+     * <p>
+     * Call this before buildTitleIndexWhenReady().
+     * </p>
+     * <p>
+     * The catch-up only sees writes. This service does not delete books, but a book that is deleted from the
+     * table by another tool has no updated index entry, so a snapshot taken before the delete brings the book
+     * back into the title index (and the typeahead suggestions) at the next start. Searches then return the book
+     * until the table stream delivers the REMOVE record (see enableStreamConsumer(); a consumer that starts
+     * without a checkpoint reads only new records) or the index is rebuilt with a scan. Delete the snapshot
+     * file after deleting books, or read the stream with a checkpoint file.
+     * </p>
      * 
-     * @param info the book table information
-     * @param tableName the name of the DynamoDbTable
+     * @param file the snapshot file. Only one service may use a file.
+     * @param intervalMsec the time between snapshots
      */
-    public void writeToBookTable(BookInfo info, String tableName ) {
-        if (info != null) {
-            DynamoDBMapper mapper = dynamoDBService.getMapper();
-            mapper.save( info, new DynamoDBMapperConfig.TableNameOverride( tableName ).config());
+    public synchronized void enableCatalogSnapshot( Path file, long intervalMsec ) {
+        if (catalogSnapshotExecutor != null) {
+            throw new IllegalStateException("The catalog snapshot is already enabled");
         }
+        catalogSnapshotFile = file;
+        catalogSnapshotExecutor = Executors.newSingleThreadScheduledExecutor( r -> {
+            Thread thread = new Thread( r, "catalog-snapshot-" + getTableName() );
+            thread.setDaemon( true );
+            return thread;
+        });
+        catalogSnapshotExecutor.scheduleWithFixedDelay( this::refreshCatalogSnapshot, intervalMsec, intervalMsec, 
+                                                        TimeUnit.MILLISECONDS );
     }
-
-
+    
+    /**
+     * @return the time the title index was last brought up to date with the book table, or zero if it has not
+     *         been loaded.
+     */
+    public long getCatalogTimestamp() {
+        return catalogTimestamp;
+    }
+    
+    /**
+     * Load the title index from the catalog snapshot file.
+     * 
+     * @return true if the index was loaded, false if there is no snapshot or it could not be read.
+     */
+    private boolean loadCatalogSnapshot() {
+        Path file = catalogSnapshotFile;
+        if (file == null) {
+            return false;
+        }
+        long startMsec = System.currentTimeMillis();
+        CatalogSnapshot snapshot;
+        try {
+            snapshot = CatalogSnapshot.read( file );
+        } catch (IOException e) {
+            log.warning("The catalog snapshot was not loaded: " + e.getLocalizedMessage());
+            return false;
+        }
+        if (snapshot == null) {
+            return false;
+        }
+        TitleTrigramIndex index = new TitleTrigramIndex();
+        index.addAll( snapshot.getBooks() );
+        index.setReady( true );
+        BookSuggester suggestions = newSuggester();
+        if (suggestions != null) {
+            suggestions.addAll( snapshot.getBooks() );
+            suggestions.setReady( true );
+        }
+        catalogTimestamp = snapshot.getTimestamp();
+        titleIndex = index;
+        suggester = suggestions;
+        log.info("Title index loaded from " + file + ": " + index.size() + " books as of " 
+                 + Instant.ofEpochMilli( snapshot.getTimestamp() ) + " (" + (System.currentTimeMillis() - startMsec) + " msec)");
+        return true;
+    }
+    
     /**
      * <p>
-     * Write a BookInfo object to DynamoDB. Note that if the object with the title and author already
-     * exists, it will be overwritten.
+     * Add the books that were written since the catalog timestamp (less CATALOG_OVERLAP_MSEC) to the title index.
+     * The books are read from the updated index. If the table does not have the index, or the catalog is too
+     * old, the table is scanned when scanIfNeeded is true and nothing is read otherwise.
+     * </p>
+     * <p>
+     * The updated index is queried for the days since the last catch-up only (one query per shard, or two per
+     * shard in the overlap after midnight), and a book of the overlap that the last catch-up read, with the same
+     * updated time, is not read again. So a periodic refresh reads the books written since the last refresh.
      * </p>
      * 
-     * @param info
+     * @return true if the index is up to date
      */
-    public void writeToBookTable(BookInfo info) {
-        if (info != null) {
-            DynamoDBMapper mapper = dynamoDBService.getMapper();
-            mapper.save( info );
+    protected boolean catchUpTitleIndex( boolean scanIfNeeded ) {
+        TitleTrigramIndex index = titleIndex;
+        if (index == null || ! index.isReady()) {
+            return false;
         }
+        long startMsec = System.currentTimeMillis();
+        long sinceMsec = catalogTimestamp - CATALOG_OVERLAP_MSEC;
+        boolean delta = tableBootstrap.hasActiveIndex( CreateBookTable.UPDATED_INDEX_NAME )
+                        && updateDay( sinceMsec ).plusDays( MAX_CATALOG_DELTA_DAYS ).isAfter( updateDay( startMsec ) );
+        if (! delta && ! scanIfNeeded) {
+            return false;
+        }
+        LoadTracker.Load indexLoad = index.beginLoad();
+        BookSuggester suggestions = suggester;
+        LoadTracker.Load suggestionsLoad = (suggestions != null) ? suggestions.beginLoad() : null;
+        List<BookInfo> books = Collections.emptyList();
+        Map<String, Long> overlapRead = Collections.emptyMap();
+        try {
+            if (delta) {
+                Map<String, Long> lastRead = catalogOverlapRead;
+                overlapRead = new HashMap<String, Long>();
+                List<Map<String, AttributeValue>> keys = new ArrayList<Map<String, AttributeValue>>();
+                for (Map<String, AttributeValue> item : queryUpdatedSince( sinceMsec, startMsec )) {
+                    String key = titleAuthorKey( item );
+                    Long updated = updatedMsec( item );
+                    if (updated != null && updated > startMsec - CATALOG_OVERLAP_MSEC) {
+                        overlapRead.put( key, updated );
+                    }
+                    if (updated == null || ! updated.equals( lastRead.get( key ) )) {
+                        keys.add( tableKey( item ) );
+                    }
+                }
+                books = readBooksByKey( keys, null );
+            } else {
+                books = scanAllBooks();
+            }
+        } finally {
+            index.addLoaded( indexLoad, books );
+            if (suggestions != null) {
+                suggestions.addLoaded( suggestionsLoad, books );
+            }
+        }
+        catalogOverlapRead = overlapRead;
+        catalogTimestamp = startMsec;
+        log.info("Title index brought up to date with " + (delta ? "the updated index: " : "a scan: ") + books.size() 
+                 + " books read (" + (System.currentTimeMillis() - startMsec) + " msec)");
+        return true;
     }
     
-    public boolean hasBookEntry(BookInfo bookInfo, String tableName ) {
-        boolean foundBook = false;
-        DynamoDBQueryExpression<BookInfo> queryExpression = buildBookInfoAuthorEQQuery( bookInfo );
-        List<BookInfo> itemList = dynamoDBService.getMapper(tableName).query(BookInfo.class, queryExpression);
-        if (itemList != null && itemList.size() > 0) {
-            foundBook = true;
+    /**
+     * Read the books written after sinceMsec: the updated index is queried, then the books are read by key.
+     */
+    private List<BookInfo> readBooksUpdatedSince( long sinceMsec, long nowMsec ) {
+        List<Map<String, AttributeValue>> keys = new ArrayList<Map<String, AttributeValue>>();
+        for (Map<String, AttributeValue> item : queryUpdatedSince( sinceMsec, nowMsec )) {
+            keys.add( tableKey( item ) );
         }
-        return foundBook;
+        return readBooksByKey( keys, null );
     }
     
     /**
-     * Return true if a book with that title and author alreadys exists in the database.
+     * Query the updated index for the books written after sinceMsec: one query for each shard of each day from
+     * the day of sinceMsec to the day of nowMsec, sent concurrently on the asynchronous client.
      * 
-     * @param title
-     * @param author
-     * @return
+     * @return the index items (the table key and the updated time of each book)
      */
-    public boolean hasBookEntry(BookInfo bookInfo ) {
-        boolean foundBook = hasBookEntry(bookInfo, getTableName() );
-        return foundBook;
+    private List<Map<String, AttributeValue>> queryUpdatedSince( long sinceMsec, long nowMsec ) {
+        AmazonDynamoDBAsync client = dynamoDBService.getAsyncClient();
+        List<CompletableFuture<List<Map<String, AttributeValue>>>> queries = new ArrayList<CompletableFuture<List<Map<String, AttributeValue>>>>();
+        LocalDate lastDay = updateDay( nowMsec );
+        for (LocalDate day = updateDay( sinceMsec ); ! day.isAfter( lastDay ); day = day.plusDays( 1 )) {
+            for (int shard = 0; shard < CreateBookTable.UPDATED_SHARDS; shard++) {
+                queries.add( AsyncCalls.queryAll( client, buildUpdatedQueryRequest( day, shard, sinceMsec ), 
+                                                  new ArrayList<Map<String, AttributeValue>>() ) );
+            }
+        }
+        List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+        for (CompletableFuture<List<Map<String, AttributeValue>>> query : queries) {
+            items.addAll( await( query ) );
+        }
+        return items;
     }
     
-   
-
+    private static Long updatedMsec( Map<String, AttributeValue> item ) {
+        AttributeValue updated = item.get( CreateBookTable.UPDATED_RANGE_NAME );
+        return (updated != null && updated.getN() != null) ? Long.valueOf( updated.getN() ) : null;
+    }
     
     /**
-     * <p>
-     * Find one or more DynamoDB table BookInfo entries by searching for the author.
-     * </p>
-     * <p>
-     * The author attribute is a global secondary index. This query is designed to return values
-     * on the basis of this secondary index (the main index is on the {title, author} pair).
-     * </p>
-     * @param author
-     * @param tableName
-     * @return
+     * Read the books written after sinceMsec: from the updated index if the table has it, otherwise with a scan
+     * that filters on the updated time (every write stamps it, see stampUpdated()).
      */
-    public List<BookInfo> findBookByAuthor( String author, String tableName ) {
-        List<BookInfo> bookList = new ArrayList<BookInfo>();
+    private List<BookInfo> readBooksWrittenSince( long sinceMsec ) {
+        if (tableBootstrap.hasActiveIndex( CreateBookTable.UPDATED_INDEX_NAME )) {
+            return readBooksUpdatedSince( sinceMsec, System.currentTimeMillis() );
+        }
+        Map<String, Condition> scanFilter = new HashMap<String, Condition>();
+        scanFilter.put(CreateBookTable.UPDATED_RANGE_NAME, new Condition().withComparisonOperator( ComparisonOperator.GT )
+                                               .withAttributeValueList( new AttributeValue().withN( Long.toString( sinceMsec ) ) ));
         AmazonDynamoDB client = dynamoDBService.getClient();
-
-        Condition hashKeyCondition = new Condition();
-        Condition authorCondition = new Condition();
-        authorCondition.setComparisonOperator("EQ");
-        hashKeyCondition.withComparisonOperator( ComparisonOperator.EQ )
-                        .withAttributeValueList(new AttributeValue().withS(author));
-
+        try (Stream<BookInfo> books = toBookStream( new ScanItemIterator( client::scan, buildBookScanRequest().withScanFilter( scanFilter ) ) )) {
+            return books.collect( Collectors.toList() );
+        }
+    }
+    
+    /**
+     * A query on the updated index: the keys of the books of one shard written on a day, after a time.
+     */
+    protected QueryRequest buildUpdatedQueryRequest( LocalDate day, int shard, long afterMsec ) {
         Map<String, Condition> keyConditions = new HashMap<String, Condition>();
-        keyConditions.put(CreateBookTable.AUTHOR_HASH_NAME, hashKeyCondition);
-
-        QueryRequest queryRequest = new QueryRequest();
-        queryRequest.withTableName( tableName );
-        queryRequest.withIndexName(CreateBookTable.AUTHOR_INDEX_NAME);
-        queryRequest.withKeyConditions(keyConditions);
-
-        QueryResult result = client.query(queryRequest);
-        if (result.getCount() > 0) {
-            // The itemList is a set of one or more DynamoDB row values stored in a attribute name/value map.
-            List<Map<String, AttributeValue>> itemList = result.getItems();
-            try {
-                for (Map<String, AttributeValue> item : itemList) {
-                    BookInfo info = new BookInfo();
-                    DynamoDBUtil.attributesToObject(info, item);
-                    bookList.add(info);
-                }
-            }
-            catch (ReflectiveOperationException e) {
-                log.severe("findBookByAuthor: " + e.getLocalizedMessage());
+        keyConditions.put(CreateBookTable.UPDATED_HASH_NAME, new Condition().withComparisonOperator( ComparisonOperator.EQ )
+                                                  .withAttributeValueList( new AttributeValue().withS( CreateBookTable.updateDayKey( day, shard ) ) ));
+        keyConditions.put(CreateBookTable.UPDATED_RANGE_NAME, new Condition().withComparisonOperator( ComparisonOperator.GT )
+                                                  .withAttributeValueList( new AttributeValue().withN( Long.toString( afterMsec ) ) ));
+        return new QueryRequest().withTableName( getTableName() )
+                                 .withIndexName( CreateBookTable.UPDATED_INDEX_NAME )
+                                 .withKeyConditions( keyConditions )
+                                 .withLimit( getPageLimit() );
+    }
+    
+    /**
+     * Bring the title index up to date (with the updated index only: a periodic refresh does not scan) and write
+     * the snapshot.
+     */
+    private void refreshCatalogSnapshot() {
+        try {
+            if (tableBootstrap.isReady()) {
+                catchUpTitleIndex( false );
             }
+            writeCatalogSnapshot();
+        } catch (RuntimeException e) {
+            log.warning("Catalog snapshot refresh failed: " + e.getLocalizedMessage());
         }
-        return bookList;
     }
     
+    /**
+     * Write the books of the title index to the snapshot file, if the index is ready.
+     */
+    protected void writeCatalogSnapshot() {
+        Path file = catalogSnapshotFile;
+        TitleTrigramIndex index = titleIndex;
+        if (file == null || index == null || ! index.isReady()) {
+            return;
+        }
+        // the timestamp is read first: the books include every write before it
+        long timestamp = catalogTimestamp;
+        long startMsec = System.currentTimeMillis();
+        try {
+            new CatalogSnapshot( timestamp, index.getBooks() ).write( file );
+            log.fine("Catalog snapshot written to " + file + " (" + (System.currentTimeMillis() - startMsec) + " msec)");
+        } catch (IOException e) {
+            log.warning("The catalog snapshot was not written: " + e.getLocalizedMessage());
+        }
+    }
     
     /**
-     * Find all the books by a particular author. This query uses the global secondary author index.
-     * @param author the name of the author to be searched for.
-     * @return A list of zero or more books.
+     * @return the UTC day of a time (the day of the updated index hash key)
      */
-    public List<BookInfo> findBookByAuthor( String author ) {
-        List<BookInfo> bookList = findBookByAuthor(author, getTableName() );
-        return bookList;
+    private static LocalDate updateDay( long msec ) {
+        return Instant.ofEpochMilli( msec ).atZone( ZoneOffset.UTC ).toLocalDate();
     }
     
+    /**
+     * Set the genre index attributes of an item that is about to be written. They are derived from the book (see
+     * BookInfo.getGenreKey() and getAuthorTitle()) and are not mapped, so the codec does not write them.
+     */
+    private static void putGenreIndexKeys( Map<String, AttributeValue> item, BookInfo info ) {
+        item.put( CreateBookTable.GENRE_HASH_NAME, new AttributeValue().withS( info.getGenreKey() ) );
+        item.put( CreateBookTable.GENRE_RANGE_NAME, new AttributeValue().withS( info.getAuthorTitle() ) );
+    }
     
-    public List<BookInfo> findBookByTitleAuthor(String author, String title) {
-        BookInfo searchObj = new BookInfo();
-        searchObj.setAuthor(author);
-        searchObj.setTitle(title);
-        DynamoDBQueryExpression<BookInfo> queryExp = buildBookInfoAuthorEQQuery( searchObj );
-        List<BookInfo> info = dynamoDBService.getMapper(tableName).query(BookInfo.class, queryExp );
-        return info;
+    /**
+     * Set the updated index attributes of an item that is about to be written. The hash key is the day and the
+     * shard of the book (see CreateBookTable).
+     */
+    private static void stampUpdated( Map<String, AttributeValue> item, long msec ) {
+        AttributeValue title = item.get("title");
+        AttributeValue author = item.get(CreateBookTable.AUTHOR_HASH_NAME);
+        if (title == null || title.getS() == null || author == null || author.getS() == null) {
+            throw new IllegalArgumentException("A book must have a title and an author");
+        }
+        int shard = CreateBookTable.updatedShard( item.get("title").getS(), item.get(CreateBookTable.AUTHOR_HASH_NAME).getS() );
+        item.put( CreateBookTable.UPDATED_HASH_NAME, new AttributeValue().withS( CreateBookTable.updateDayKey( updateDay( msec ), shard ) ) );
+        item.put( CreateBookTable.UPDATED_RANGE_NAME, new AttributeValue().withN( Long.toString( msec ) ) );
     }
     
     /**
      * <p>
-     * Find one or more books by title or partial title. For example, if there is a book titled "The Peripheral",
-     * searching for "Peripheral" will return the book. Similarly, if there are two books, "Bangkok 8" and "Bangkok Haunts"
-     * searching for "Bangkok" will return both books.
+     * Keep typeahead completions of the authors and titles in memory (see BookSuggester), for getSuggestions().
+     * The completions are loaded with the title index (from the same scan or catalog snapshot) and are kept up to
+     * date by the writes, and by the table stream if it is read. Call this before buildTitleIndexWhenReady().
      * </p>
      * <p>
-     * This query performs a table scan.
+     * The searches that recordSearch() counts are added to the popularity of the completions every
+     * searchIntervalMsec, so the searches don't wait for the lock of the suggestions.
      * </p>
      * 
-     * @param titleWords a string to search for in the book titles.
-     * @return
+     * @param topCount the number of completions kept for each prefix (the largest limit of getSuggestions())
+     * @param searchIntervalMsec the time between updates of the popularity with the recorded searches
      */
-    public List<BookInfo> findBookByTitle(String titleWords ) {
-        List<BookInfo> bookList = new ArrayList<BookInfo>();
-        Map<String, AttributeValue> expressionAttributeValues = new HashMap<String, AttributeValue>();
-        Condition containsCondition = new Condition()
-                                      .withComparisonOperator(ComparisonOperator.CONTAINS.toString())
-                                      .withAttributeValueList(new AttributeValue().withS( titleWords ));
-        Map<String, Condition> keyConditions = new HashMap<String, Condition>();
-        keyConditions.put("title", containsCondition);
-        
-        ScanRequest scanRequest = new ScanRequest()
-                                      .withTableName( getTableName() )
-                                      .withScanFilter(keyConditions);
-
-        AmazonDynamoDB client = dynamoDBService.getClient();
-        ScanResult result = client.scan(scanRequest);
-        if (result.getCount() > 0) {
-            // The itemList is a set of one or more DynamoDB row values stored in a attribute name/value map.
-            List<Map<String, AttributeValue>> itemList = result.getItems();
-            try {
-                for (Map<String, AttributeValue> item : itemList) {
-                    BookInfo info = new BookInfo();
-                    DynamoDBUtil.attributesToObject(info, item);
-                    bookList.add(info);
-                }
-            }
-            catch (ReflectiveOperationException e) {
-                log.severe("findBookByTitle: " + e.getLocalizedMessage());
+    public synchronized void enableSuggestions( int topCount, long searchIntervalMsec ) {
+        if (topCount <= 0) {
+            throw new IllegalArgumentException("topCount must be greater than zero: " + topCount);
+        }
+        if (searchIntervalMsec <= 0) {
+            throw new IllegalArgumentException("searchIntervalMsec must be greater than zero: " + searchIntervalMsec);
+        }
+        if (suggestionSearchExecutor != null) {
+            throw new IllegalStateException("Suggestions are already enabled");
+        }
+        suggestTopCount = topCount;
+        suggestionSearchExecutor = Executors.newSingleThreadScheduledExecutor( r -> {
+            Thread thread = new Thread( r, "suggestion-searches-" + getTableName() );
+            thread.setDaemon( true );
+            return thread;
+        });
+        suggestionSearchExecutor.scheduleWithFixedDelay( this::applySuggestionSearches, searchIntervalMsec, 
+                                                         searchIntervalMsec, TimeUnit.MILLISECONDS );
+    }
+    
+    private void applySuggestionSearches() {
+        try {
+            BookSuggester suggestions = suggester;
+            if (suggestions != null) {
+                suggestions.applySearches();
             }
+        } catch (RuntimeException e) {
+            // keep the schedule running
+            log.warning("The suggestions were not updated with the recorded searches: " + e.getLocalizedMessage());
         }
-        return bookList;
+    }
+    
+    private BookSuggester newSuggester() {
+        int topCount = suggestTopCount;
+        return (topCount > 0) ? new BookSuggester( topCount ) : null;
     }
     
     /**
-     * Read the entire book database. This function does a scan, which can be expensive on DynamoDB. However,
-     * the assumption here is that the size of the book database is in the thousands, not millions (e.g., it's
-     * not the Library of Congress).
+     * The completions of the start of an author or title, most popular first. This reads memory only: it does not
+     * wait for the book table and does not read DynamoDB.
      * 
-     * @return
+     * @param prefix the start of an author or title (case and accents don't matter)
+     * @param fields AUTHOR and/or TITLE, or null for both
+     * @param limit the maximum number of completions
+     * @return the completions, or an empty list if suggestions are not enabled or not loaded yet.
+     * @throws IllegalArgumentException if the fields are not AUTHOR or TITLE
      */
-    public List<BookInfo> getBooks() {
-        AmazonDynamoDB client = dynamoDBService.getClient();
-        ScanRequest scanRequest = new ScanRequest().withTableName( getTableName() );
-        ScanResult result = client.scan(scanRequest);
-        List<BookInfo> bookList = new ArrayList<BookInfo>();
-        if (result.getCount() > 0) {
-            // The itemList is a set of one or more DynamoDB row values stored in a attribute name/value map.
-            List<Map<String, AttributeValue>> itemList = result.getItems();
-            try {
-                for (Map<String, AttributeValue> item : itemList) {
-                    BookInfo info = new BookInfo();
-                    DynamoDBUtil.attributesToObject(info, item);
-                    bookList.add(info);
-                }
-                if (bookList.size() > 1) {
-                    BookInfo[] infoArray = bookList.toArray( new BookInfo[1] );
-                    Arrays.sort(infoArray, new BookInfoComparator() );
-                    bookList.clear();
-                    bookList.addAll(Arrays.asList( infoArray ) );
-                }
+    public List<Suggestion> getSuggestions( String prefix, Set<BookField> fields, int limit ) {
+        BookSuggester suggestions = suggester;
+        if (suggestions == null || ! suggestions.isReady()) {
+            return Collections.emptyList();
+        }
+        return suggestions.suggest( prefix, fields, limit );
+    }
+    
+    /**
+     * Count a search for an author or title in its suggestion popularity. The count is added at the next update
+     * (see enableSuggestions()).
+     */
+    public void recordSearch( BookField field, String text ) {
+        BookSuggester suggestions = suggester;
+        if (suggestions != null) {
+            suggestions.recordSearch( field, text );
+        }
+    }
+    
+    /**
+     * @return the title index, or null if the index is not used.
+     */
+    public TitleTrigramIndex getTitleIndex() {
+        return titleIndex;
+    }
+    
+    /**
+     * <p>
+     * Answer title searches from the title token table (see TitleTokenIndex): one query per search word, so the
+     * cost of a search depends on the number of books found and not on the size of the table, and every instance
+     * gives the same answer without holding an index in memory. The table is created if it does not exist. From
+     * then on every book write writes the tokens of the book first.
+     * </p>
+     * <p>
+     * When both tables are ACTIVE, a token table that has not been filled is filled from a scan of the book table
+     * (once, by whichever instance gets there first). The title searches match whole words from then on (see
+     * TitleMatch.WORDS), on every path: until the table is filled the searches scan the book table and check the
+     * titles for the words, and the in-memory title index is not used for searches, so every instance gives the
+     * same answer. Use the token table with the title index turned off, to keep the catalog out of the heap.
+     * </p>
+     * 
+     * @param tokenTableName the name of the token table
+     * @param readThroughput the provisioned read throughput, if the table is created
+     * @param writeThroughput the provisioned write throughput, if the table is created. A book write is one token
+     *                        write per word of the title.
+     */
+    public synchronized void enableTitleTokens( String tokenTableName, long readThroughput, long writeThroughput ) {
+        if (titleTokens != null) {
+            throw new IllegalStateException("The title token table is already enabled");
+        }
+        TitleTokenIndex tokens = new TitleTokenIndex( tokenTableName, dynamoDBService, readThroughput, writeThroughput,
+                                                      DEFAULT_BATCH_WRITE_THREADS );
+        titleTokens = tokens;
+        tokens.start().thenAcceptBothAsync( getTableReady(), (tokensReady, booksReady) -> fillTitleTokens( tokens ) )
+                      .whenComplete( (v, e) -> {
+                          if (e != null) {
+                              log.severe("The title token table was not filled: " + e.getLocalizedMessage());
+                          }
+                      });
+    }
+    
+    /**
+     * <p>
+     * Write the tokens of all of the books, if the token table does not have the marker of a finished fill.
+     * </p>
+     * <p>
+     * A write that found the token table not ACTIVE did not write its tokens, and its book may have been written
+     * after the scan read that part of the table. Such a write was stamped before the fill started, so the books
+     * written since the fill started (less CATALOG_OVERLAP_MSEC) are read again after the scan and their tokens
+     * are written before the table is marked as filled.
+     * </p>
+     */
+    private void fillTitleTokens( TitleTokenIndex tokens ) {
+        if (! tokens.isBackfilled()) {
+            long startMsec = System.currentTimeMillis();
+            List<BookInfo> books = scanAllBooks();
+            BatchWriteResult result = tokens.writeTokens( books );
+            if (result.getFailed() == 0) {
+                List<BookInfo> written = readBooksWrittenSince( startMsec - CATALOG_OVERLAP_MSEC );
+                result.add( tokens.writeTokens( written ) );
             }
-            catch (ReflectiveOperationException e) {
-                log.severe("getBooks: " + e.getLocalizedMessage());
+            if (result.getFailed() > 0) {
+                log.severe("The title token table was not filled: " + result + ". Title searches scan the " 
+                           + getTableName() + " table");
+                return;
             }
+            tokens.markBackfilled();
+            long endMsec = System.currentTimeMillis();
+            log.info("Title token table " + tokens.getTableName() + " filled: " + books.size() + " books, " 
+                     + result.getWritten() + " tokens (" + (endMsec - startMsec) + " msec)");
         }
-        return bookList;
+        tokens.setReady( true );
+    }
+    
+    /**
+     * @return the title token table, or null if it is not enabled.
+     */
+    public TitleTokenIndex getTitleTokens() {
+        return titleTokens;
+    }
+    
+    /**
+     * @return WORDS if the title token table is enabled (whether or not it has been filled), SUBSTRING otherwise.
+     *         Every title search path of this service matches the titles this way.
+     */
+    public TitleMatch getTitleMatch() {
+        return (titleTokens != null) ? TitleMatch.WORDS : TitleMatch.SUBSTRING;
     }
     
+    /**
+     * @return true if a title search should query the token table: it is filled and the search has a word.
+     */
+    private boolean useTitleTokens( String titleWords ) {
+        TitleTokenIndex tokens = titleTokens;
+        return tokens != null && tokens.isReady() && TitleTokenIndex.canSearch( titleWords );
+    }
+    
+    /**
+     * @return the in-memory title index, if it is loaded and the title searches match substrings (the index does
+     *         not answer searches when the token table is enabled), or null.
+     */
+    private TitleTrigramIndex titleSearchIndex() {
+        TitleTrigramIndex index = titleIndex;
+        return (index != null && index.isReady() && titleTokens == null) ? index : null;
+    }
+    
+    /**
+     * @return the check of a title for a search, when the search scans the table: the match of getTitleMatch().
+     *         The scan can't filter the titles without regard to case, so the titles are checked as they are read.
+     */
+    private Predicate<String> titleMatcher( String titleWords ) {
+        if (getTitleMatch() == TitleMatch.WORDS) {
+            List<String> searchTokens = TitleTokens.tokenize( titleWords );
+            return title -> title != null && ! searchTokens.isEmpty() && TitleTokens.matches( title, searchTokens );
+        }
+        String folded = TitleTrigramIndex.fold( titleWords );
+        return title -> title != null && TitleTrigramIndex.fold( title ).contains( folded );
+    }
+    
+    private CompletableFuture<List<BookInfo>> findBookByTitleTokens( String titleWords, List<String> attributes ) {
+        return titleTokens.findBookKeys( titleWords ).thenApply( keys -> readBooksByKey( keys, attributes ) );
+    }
+    
+    /**
+     * Write the title tokens of a book, before the book is written, if the token table is enabled and ACTIVE. 
+     * Until the table is ACTIVE the tokens are not written: the fill (see fillTitleTokens()) reads the book.
+     */
+    private void writeTitleTokens( BookInfo info ) {
+        TitleTokenIndex tokens = titleTokens;
+        if (tokens != null && tokens.isTableReady()) {
+            await( tokens.writeTokensAsync( info ) );
+        }
+    }
+    
+    /**
+     * Delete the title tokens of a book whose write failed after the tokens were written, unless the book is in
+     * the table: the title is part of the key, so a stored book with the key has the same tokens. If the book is
+     * written by another request while the tokens are deleted, they are written again.
+     */
+    private void removeOrphanTokens( BookInfo info ) {
+        TitleTokenIndex tokens = titleTokens;
+        if (tokens == null || ! tokens.isTableReady()) {
+            return;
+        }
+        try {
+            if (! bookExists( info )) {
+                tokens.deleteTokens( info );
+                if (bookExists( info )) {
+                    await( tokens.writeTokensAsync( info ) );
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warning("The title tokens of a book that was not written were not deleted: " + e.getLocalizedMessage());
+        }
+    }
+    
+    /**
+     * @return true if the book table has a book with the title and author (a consistent read of the key).
+     */
+    private boolean bookExists( BookInfo info ) {
+        GetItemRequest request = new GetItemRequest().withTableName( getTableName() )
+                                                     .withKey( tableKey( info ) )
+                                                     .withProjectionExpression( "title" )
+                                                     .withConsistentRead( true );
+        Map<String, AttributeValue> item = dynamoDBService.getClient().getItem( request ).getItem();
+        return item != null && ! item.isEmpty();
+    }
+    
+    /**
+     * <p>
+     * Cache the results of findBookByAuthor(), findBookByTitleAuthor() and hasBookEntry() for the book table.
+     * Empty results are cached as well. writeToBookTable() invalidates the entries for the author and the
+     * title/author pair of the book that is written.
+     * </p>
+     * <p>
+     * Writes made by other application instances do not invalidate this cache, so their books may not be seen
+     * until the cached entry expires, unless the table stream is read (see enableStreamConsumer()).
+     * </p>
+     * <p>
+     * The author lookups read the author index, which is updated shortly after the table, so a lookup just after
+     * a write may not have the book. For the settle time after a write the lookups of the author and of the book
+     * are not cached, so that a result without the book is not kept for the whole time to live.
+     * </p>
+     * @param maxSize the maximum number of entries in each cache.
+     * @param ttlSeconds the time to live for a cache entry, in seconds.
+     * @param settleMillis the time after a write during which the lookups of the book are not cached, in milliseconds.
+     */
+    public void enableResultCache(int maxSize, long ttlSeconds, long settleMillis) {
+        long ttlMillis = TimeUnit.SECONDS.toMillis( ttlSeconds );
+        authorCache = new ResultCache<String, List<BookInfo>>( "book.author", maxSize, ttlMillis, settleMillis, 
+                                                               TimeUnit.MILLISECONDS );
+        titleAuthorCache = new ResultCache<String, List<BookInfo>>( "book.title_author", maxSize, ttlMillis, settleMillis, 
+                                                                    TimeUnit.MILLISECONDS );
+    }
+    
+    public ResultCache<String, List<BookInfo>> getAuthorCache() {
+        return authorCache;
+    }
+    
+    public ResultCache<String, List<BookInfo>> getTitleAuthorCache() {
+        return titleAuthorCache;
+    }
+    
+    private static String titleAuthorKey(String title, String author) {
+        return title + '\u0000' + author;
+    }
+    
+    private static String titleAuthorKey(Map<String, AttributeValue> item) {
+        return titleAuthorKey( item.get("title").getS(), item.get(CreateBookTable.AUTHOR_HASH_NAME).getS() );
+    }
+    
+    /**
+     * @param threads the number of BatchWriteItem requests that writeBooks() sends concurrently.
+     */
+    public synchronized void setBatchWriteThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be greater than zero: " + threads);
+        }
+        if (batchItemWriter != null) {
+            batchItemWriter.shutdown();
+        }
+        AmazonDynamoDB client = dynamoDBService.getClient();
+        batchItemWriter = new BatchItemWriter( client::batchWriteItem, getTableName(), threads, 
+                                               BATCH_RETRIES, BATCH_BASE_DELAY_MSEC, BATCH_MAX_DELAY_MSEC );
+    }
+    
+    private synchronized BatchItemWriter getBatchItemWriter() {
+        if (batchItemWriter == null) {
+            setBatchWriteThreads( DEFAULT_BATCH_WRITE_THREADS );
+        }
+        return batchItemWriter;
+    }
+    
+    /**
+     * Release the scan and batch write worker threads.
+     */
+    public synchronized void shutdown() {
+        if (writeBehindWriter != null) {
+            // flush the pending writes while the batch writer is still running
+            writeBehindWriter.shutdown();
+            writeBehindWriter = null;
+        }
+        streamConsumerEnabled = false;
+        if (streamConsumer != null) {
+            streamConsumer.shutdown();
+            streamConsumer = null;
+        }
+        if (catalogSnapshotExecutor != null) {
+            catalogSnapshotExecutor.shutdownNow();
+            catalogSnapshotExecutor = null;
+            writeCatalogSnapshot();
+        }
+        if (suggestionSearchExecutor != null) {
+            suggestionSearchExecutor.shutdownNow();
+            suggestionSearchExecutor = null;
+        }
+        if (blockingCallExecutor != null) {
+            blockingCallExecutor.shutdown();
+            blockingCallExecutor = null;
+        }
+        tableBootstrap.shutdown();
+        if (titleTokens != null) {
+            titleTokens.shutdown();
+            titleTokens = null;
+        }
+        if (parallelScanner != null) {
+            parallelScanner.shutdown();
+            parallelScanner = null;
+        }
+        if (batchItemWriter != null) {
+            batchItemWriter.shutdown();
+            batchItemWriter = null;
+        }
+    }
+    
+    /**
+     * 
+     * @param bookTableName the name of the DynamoDB table that stores the book information.
+     */
+    public BookTableService(final String bookTableName ) {
+        this( bookTableName, null );
+    }
+    
+    /**
+     * 
+     * @param bookTableName the name of the DynamoDB table that stores the book information.
+     * @param service the DynamoDB client and mapper registry (with its HTTP client configuration), or null to use 
+     *                a shared registry with the default configuration.
+     */
+    public BookTableService(final String bookTableName, DynamoDBService service ) {
+        this( bookTableName, service, null );
+    }
+    
+    /**
+     * 
+     * @param bookTableName the name of the DynamoDB table that stores the book information.
+     * @param service the DynamoDB client and mapper registry, or null to use a shared registry.
+     * @param authorIndexProjection the author index projection, if the table is created, or null for ALL (see 
+     *                              CreateBookTable.indexProjection()). The projection of an existing table is not 
+     *                              changed.
+     */
+    public BookTableService(final String bookTableName, DynamoDBService service, Projection authorIndexProjection ) {
+        tableName = bookTableName;
+        log = Logger.getLogger( this.getClass().getName() );
+        dynamoDBService = (service != null) ? service : DefaultDynamoDBService.INSTANCE;
+        AmazonDynamoDB client = dynamoDBService.getClient();
+        batchItemReader = new BatchItemReader( client::batchGetItem, getTableName(), 
+                                               BATCH_RETRIES, BATCH_BASE_DELAY_MSEC, BATCH_MAX_DELAY_MSEC );
+        tableBootstrap = new TableBootstrap( client, new CreateBookTable( getTableName(), authorIndexProjection ), 
+                                             READ_THROUGHPUT, WRITE_THROUGHPUT );
+        // check to see if the book table exists. If it doesn't, create it.
+        checkBookTable();
+    }
+
+
+    /** 
+     * Start checking to see if the DynamoDB book table exists. If it doesn't exist, create it. The check runs on a 
+     * background thread and this method returns immediately.
+     * 
+     */
+    protected void checkBookTable() {
+        tableBootstrap.start();
+    }
+    
+    /**
+     * @return the book table check, which reports the table status.
+     */
+    public TableBootstrap getTableBootstrap() {
+        return tableBootstrap;
+    }
+    
+    public boolean isTableReady() {
+        return tableBootstrap.isReady();
+    }
+    
+    /**
+     * @return a future that completes when the book table is ACTIVE.
+     */
+    public CompletableFuture<Void> getTableReady() {
+        return tableBootstrap.getReady();
+    }
+    
+    /**
+     * Build the title index (see buildTitleIndex()) once the book table is ACTIVE. The index is built on a background
+     * thread. If a catalog snapshot is enabled and the file can be read, the index is loaded from it instead and
+     * then brought up to date (see enableCatalogSnapshot()).
+     */
+    public void buildTitleIndexWhenReady() {
+        // a snapshot is loaded while the table is checked, then brought up to date when the table is ready
+        CompletableFuture<Boolean> snapshotLoaded = CompletableFuture.supplyAsync( this::loadCatalogSnapshot );
+        snapshotLoaded.thenAcceptBothAsync( getTableReady(), (loaded, ready) -> {
+            if (loaded) {
+                catchUpTitleIndex( true );
+            } else {
+                buildTitleIndex();
+            }
+        }).whenComplete( (v, e) -> {
+            if (e != null) {
+                log.severe("Title index load failed: " + e.getLocalizedMessage());
+            }
+        });
+    }
+    
+    private void checkTableReady() {
+        if (! tableBootstrap.isReady()) {
+            throw new TableNotReadyException( getTableName() );
+        }
+    }
+    
+    /**
+     * A query on title and author (note the withHashKeyValues clause).
+     * @param bookInfo
+     * @return
+     */
+    protected DynamoDBQueryExpression<BookInfo> buildBookInfoAuthorEQQuery(BookInfo bookInfo) {
+        Condition rangeCondition = new Condition();
+        rangeCondition.setComparisonOperator("EQ");
+        AttributeValue attribute = new AttributeValue( bookInfo.getAuthor() );
+        ArrayList<AttributeValue> attrs = new ArrayList<AttributeValue>();
+        attrs.add( attribute );
+        rangeCondition.setAttributeValueList( attrs );
+        DynamoDBQueryExpression<BookInfo> queryExpression = new DynamoDBQueryExpression<BookInfo>()
+                .withHashKeyValues(bookInfo)
+                .withRangeKeyCondition("author", rangeCondition);
+        return queryExpression;
+    }
+    
+    
+    /**
+     * Write a BookInfo object to a book information table, but override the table
+     * name. This is used for testing, so that test data can be written to a temporary table.
+     * 
+     * @param info the book table information
+     * @param tableName the name of the DynamoDbTable
+     */
+    public void writeToBookTable(BookInfo info, String tableName ) {
+        if (info != null) {
+            PutItemRequest request = buildPutRequest( info, WriteMode.OVERWRITE, tableName );
+            boolean bookTable = tableName.equals( getTableName() );
+            if (bookTable) {
+                flushPendingWrite( info );
+                writeTitleTokens( info );
+            }
+            dynamoDBService.getClient().putItem( request );
+            if (bookTable) {
+                bookWritten( info );
+            }
+        }
+    }
+
+
+    /**
+     * <p>
+     * Write a BookInfo object to DynamoDB. Note that if the object with the title and author already
+     * exists, it will be overwritten.
+     * </p>
+     * 
+     * @param info
+     */
+    public void writeToBookTable(BookInfo info) {
+        checkTableReady();
+        if (info != null) {
+            writeBook( info, WriteMode.OVERWRITE );
+        }
+    }
+    
+    /**
+     * Write the book if there is no book with the same title and author. This replaces a hasBookEntry() check
+     * followed by a write: the check and the write are one conditional PutItem request.
+     * 
+     * @return WRITTEN (the book is stored with version 1) or ALREADY_EXISTS
+     */
+    public BookWriteResult putIfAbsent(BookInfo info) {
+        return writeBook( info, WriteMode.PUT_IF_ABSENT );
+    }
+    
+    /**
+     * Replace the book with the same title and author, if there is one.
+     * 
+     * @return WRITTEN or NOT_FOUND
+     */
+    public BookWriteResult replaceIfExists(BookInfo info) {
+        return writeBook( info, WriteMode.REPLACE_IF_EXISTS );
+    }
+    
+    /**
+     * <p>
+     * Write the book if the stored book has the version of info (the version that was read), or if info has
+     * no version and the stored book (if any) has none either. The book is stored with the next version. This
+     * is the DynamoDBMapper optimistic locking check, done with one PutItem request.
+     * </p>
+     * 
+     * @return WRITTEN (getVersion() is the new version) or VERSION_CONFLICT, in which case the book should be
+     *         read again.
+     */
+    public BookWriteResult putVersioned(BookInfo info) {
+        return writeBook( info, WriteMode.VERSIONED );
+    }
+    
+    /**
+     * Write a book with one PutItem request. The write condition of the mode is checked by DynamoDB, and a
+     * failed condition is returned as the status of the result.
+     * 
+     * @param info the book to write
+     * @param mode the write condition
+     * @return the outcome of the write
+     */
+    public BookWriteResult writeBook(BookInfo info, WriteMode mode) {
+        checkTableReady();
+        PutItemRequest request = buildPutRequest( info, mode, getTableName() );
+        flushPendingWrite( info );
+        writeTitleTokens( info );
+        try {
+            dynamoDBService.getClient().putItem( request );
+        } catch (ConditionalCheckFailedException e) {
+            removeOrphanTokens( info );
+            return conditionFailed( info, mode );
+        } catch (RuntimeException e) {
+            removeOrphanTokens( info );
+            throw e;
+        }
+        bookWritten( info );
+        return new BookWriteResult( BookWriteResult.Status.WRITTEN, info, storedVersion( request ) );
+    }
+    
+    /**
+     * Before a direct write of a book, flush a write-behind write of the book, so that the flush can't replace the
+     * direct write with the older value.
+     * 
+     * @throws IllegalStateException if the pending write could not be flushed
+     */
+    private void flushPendingWrite(BookInfo info) {
+        WriteBehindWriter writer = writeBehindWriter;
+        if (writer != null && writer.isPending( info )) {
+            writer.drain();
+            if (writer.isPending( info )) {
+                throw new IllegalStateException("A write-behind write of the book could not be flushed: "
+                                                + info.getTitle() + " / " + info.getAuthor());
+            }
+        }
+    }
+    
+    /**
+     * <p>
+     * Build the PutItem request for a write mode. The conditions are legacy Expected conditions: an
+     * ExpectedAttributeValue with a value checks that the stored attribute is equal to the value (so the item
+     * exists), and Exists=false checks that the stored item does not have the attribute. Every item has a
+     * title, so "no title" means "no item".
+     * </p>
+     * <p>
+     * The writes without a version condition (OVERWRITE and REPLACE_IF_EXISTS) store the next version of the
+     * book's version (1 if it has none), as the DynamoDBMapper CLOBBER save does, so a versioned book that is
+     * overwritten keeps a version and a later putVersioned() of an older read is a conflict.
+     * </p>
+     * 
+     * @throws IllegalArgumentException if the book has no title or no author (the table key)
+     */
+    protected PutItemRequest buildPutRequest(BookInfo info, WriteMode mode, String tableName) {
+        checkBookKey( info );
+        Map<String, AttributeValue> item;
+        try {
+            item = DynamoDBUtil.objectToAttributes( info );
+            putGenreIndexKeys( item, info );
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BookInfo can't be encoded: " + e.getLocalizedMessage(), e);
+        }
+        Map<String, ExpectedAttributeValue> expected = new HashMap<String, ExpectedAttributeValue>();
+        Long version = info.getVersion();
+        switch (mode) {
+        case PUT_IF_ABSENT:
+            expected.put( "title", new ExpectedAttributeValue( false ) );
+            item.put( BookInfo.VERSION_ATTRIBUTE, new AttributeValue().withN("1") );
+            break;
+        case REPLACE_IF_EXISTS:
+            expected.put( "title", new ExpectedAttributeValue( new AttributeValue( info.getTitle() ) ) );
+            putNextVersion( item, version );
+            break;
+        case VERSIONED:
+            if (version == null) {
+                expected.put( BookInfo.VERSION_ATTRIBUTE, new ExpectedAttributeValue( false ) );
+            } else {
+                expected.put( BookInfo.VERSION_ATTRIBUTE, 
+                              new ExpectedAttributeValue( new AttributeValue().withN( version.toString() ) ) );
+            }
+            long next = (version == null) ? 1 : version + 1;
+            item.put( BookInfo.VERSION_ATTRIBUTE, new AttributeValue().withN( Long.toString( next ) ) );
+            break;
+        default:
+            putNextVersion( item, version );
+            break;
+        }
+        stampUpdated( item, System.currentTimeMillis() );
+        return new PutItemRequest().withTableName( tableName )
+                                   .withItem( item )
+                                   .withExpected( expected.isEmpty() ? null : expected );
+    }
+    
+    /**
+     * Set the version attribute of an item that is written without a version condition: the next version of the
+     * book's version, or 1.
+     */
+    private static void putNextVersion(Map<String, AttributeValue> item, Long version) {
+        long next = (version == null) ? 1 : version + 1;
+        item.put( BookInfo.VERSION_ATTRIBUTE, new AttributeValue().withN( Long.toString( next ) ) );
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the book is null or has no title or author. They are the table key.
+     */
+    private static void checkBookKey(BookInfo info) {
+        if (info == null) {
+            throw new IllegalArgumentException("The book is null");
+        }
+        if (info.getTitle() == null || info.getTitle().isEmpty() || info.getAuthor() == null || info.getAuthor().isEmpty()) {
+            throw new IllegalArgumentException("A book must have a title and an author: " + info.getTitle() + " / " + info.getAuthor());
+        }
+    }
+    
+    private static Long storedVersion(PutItemRequest request) {
+        AttributeValue version = request.getItem().get( BookInfo.VERSION_ATTRIBUTE );
+        return (version != null) ? Long.valueOf( version.getN() ) : null;
+    }
+    
+    private static BookWriteResult conditionFailed(BookInfo info, WriteMode mode) {
+        BookWriteResult.Status status;
+        switch (mode) {
+        case PUT_IF_ABSENT:
+            status = BookWriteResult.Status.ALREADY_EXISTS;
+            break;
+        case REPLACE_IF_EXISTS:
+            status = BookWriteResult.Status.NOT_FOUND;
+            break;
+        default:
+            status = BookWriteResult.Status.VERSION_CONFLICT;
+            break;
+        }
+        return new BookWriteResult( status, info, null );
+    }
+    
+    /**
+     * <p>
+     * Write a collection of books with BatchWriteItem requests of up to 25 books. The requests are sent
+     * concurrently and unprocessed items are retried with a jittered exponential backoff. As with writeToBookTable(),
+     * an existing book with the same title and author is overwritten. If the collection contains more than one
+     * book with the same title and author, the last one is written.
+     * </p>
+     * <p>
+     * A book that has no title or author, or can't be converted to a table item, is not sent. It is one of the
+     * failed items of the result, with only its title and author attributes. So is a book with a write-behind
+     * write that could not be flushed first.
+     * </p>
+     * 
+     * @param books the books to write
+     * @return the number of books written and the books that could not be written.
+     */
+    public BatchWriteResult writeBooks(Collection<BookInfo> books) {
+        checkTableReady();
+        WriteBehindWriter writer = writeBehindWriter;
+        if (writer == null) {
+            return writeBatch( books );
+        }
+        boolean drained = false;
+        List<BookInfo> direct = new ArrayList<BookInfo>( books.size() );
+        List<Map<String, AttributeValue>> stillPending = new ArrayList<Map<String, AttributeValue>>();
+        for (BookInfo info : books) {
+            if (info != null && writer.isPending( info )) {
+                if (! drained) {
+                    writer.drain();
+                    drained = true;
+                }
+                if (writer.isPending( info )) {
+                    stillPending.add( tableKey( info ) );
+                    continue;
+                }
+            }
+            direct.add( info );
+        }
+        BatchWriteResult result = writeBatch( direct );
+        result.addFailed( stillPending );
+        return result;
+    }
+    
+    /**
+     * writeBooks() without the write-behind check. This is the write of the write-behind flush.
+     */
+    private BatchWriteResult writeBatch(Collection<BookInfo> books) {
+        checkTableReady();
+        Map<String, BookInfo> uniqueBooks = new LinkedHashMap<String, BookInfo>();
+        List<Map<String, AttributeValue>> notSent = new ArrayList<Map<String, AttributeValue>>();
+        for (BookInfo info : books) {
+            if (info == null) {
+                continue;
+            }
+            try {
+                checkBookKey( info );
+                uniqueBooks.put( titleAuthorKey( info.getTitle(), info.getAuthor() ), info );
+            } catch (IllegalArgumentException e) {
+                // the book can't be written: it is one of the failed items, with the key attributes it has
+                log.warning("writeBooks: " + e.getLocalizedMessage());
+                notSent.add( tableKey( info ) );
+            }
+        }
+        // the books whose tokens were not written are not written either
+        Set<String> tokensFailed = Collections.emptySet();
+        TitleTokenIndex tokens = titleTokens;
+        if (tokens != null && tokens.isTableReady()) {
+            tokensFailed = TitleTokenIndex.failedBookKeys( tokens.writeTokens( uniqueBooks.values() ) );
+        }
+        List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>( uniqueBooks.size() );
+        long nowMsec = System.currentTimeMillis();
+        for (BookInfo info : uniqueBooks.values()) {
+            try {
+                Map<String, AttributeValue> item = DynamoDBUtil.objectToAttributes( info );
+                putGenreIndexKeys( item, info );
+                // a batch write is not conditional: it stores the next version, as an OVERWRITE write does
+                putNextVersion( item, info.getVersion() );
+                stampUpdated( item, nowMsec );
+                if (tokensFailed.contains( TitleTokens.bookKey( info.getTitle(), info.getAuthor() ) )) {
+                    notSent.add( item );
+                } else {
+                    items.add( item );
+                }
+            }
+            catch (ReflectiveOperationException e) {
+                // the book can't be written: report its key as failed, so it is not treated as written
+                log.severe("writeBooks: " + e.getLocalizedMessage());
+                notSent.add( tableKey( info ) );
+            }
+        }
+        BatchWriteResult result = getBatchItemWriter().writeAll( items );
+        result.addFailed( notSent );
+        Set<String> failedKeys = new HashSet<String>();
+        for (Map<String, AttributeValue> item : result.getFailedItems()) {
+            if (item.get("title") != null && item.get(CreateBookTable.AUTHOR_HASH_NAME) != null) {
+                failedKeys.add( titleAuthorKey( item ) );
+            }
+        }
+        for (Map.Entry<String, BookInfo> entry : uniqueBooks.entrySet()) {
+            if (! failedKeys.contains( entry.getKey() )) {
+                bookWritten( entry.getValue() );
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Bring the in-memory state up to date after a book has been written to the book table.
+     */
+    private void bookWritten(BookInfo info) {
+        TitleTrigramIndex index = titleIndex;
+        if (index != null) {
+            index.add( info );
+        }
+        BookSuggester suggestions = suggester;
+        if (suggestions != null) {
+            suggestions.add( info );
+        }
+        invalidateCaches( info.getTitle(), info.getAuthor() );
+    }
+    
+    private void invalidateCaches(String title, String author) {
+        ResultCache<String, List<BookInfo>> cache = authorCache;
+        if (cache != null) {
+            cache.invalidate( author );
+        }
+        cache = titleAuthorCache;
+        if (cache != null) {
+            cache.invalidate( titleAuthorKey( title, author ) );
+        }
+    }
+    
+    /**
+     * <p>
+     * Read the book table stream, so that the books written (or deleted) by other application instances are
+     * applied to the title index and invalidate the result cache entries, without a scan. Each stream record
+     * is passed to applyStreamRecord(). The consumer is started when the book table is ACTIVE; other in-memory
+     * state can be kept up to date by adding a listener to getStreamConsumer().
+     * </p>
+     * <p>
+     * The table must have a stream with the new images of the items: a table created by this service has one
+     * (see CreateBookTable). A table created before the stream was added does not, and the stream is not read.
+     * Records are applied a few hundred milliseconds (the poll interval, plus the stream delay) after the write.
+     * </p>
+     * 
+     * @param checkpointFile the file of the stream position (see StreamConsumer), or null to start with the new
+     *                       records. Only one service may use a file.
+     * @param pollIntervalMsec the time between reads of the stream
+     */
+    public synchronized void enableStreamConsumer( Path checkpointFile, long pollIntervalMsec ) {
+        if (streamConsumerEnabled) {
+            throw new IllegalStateException("The stream consumer is already enabled");
+        }
+        streamConsumerEnabled = true;
+        getTableReady().thenRunAsync( () -> startStreamConsumer( checkpointFile, pollIntervalMsec ) );
+    }
+    
+    private synchronized void startStreamConsumer( Path checkpointFile, long pollIntervalMsec ) {
+        if (! streamConsumerEnabled) {
+            return;
+        }
+        String streamArn = tableBootstrap.getLatestStreamArn();
+        if (streamArn == null) {
+            log.warning("The " + getTableName() + " table does not have a stream: writes by other instances will not be seen"
+                        + " until the cache entries expire (enable a " + CreateBookTable.STREAM_VIEW_TYPE + " stream on the table)");
+            return;
+        }
+        StreamConsumer consumer = new StreamConsumer( dynamoDBService.getStreamsClient(), streamArn, checkpointFile, 
+                                                      pollIntervalMsec );
+        consumer.addListener( this::applyStreamRecord );
+        try {
+            consumer.start();
+        } catch (IOException e) {
+            log.severe("The stream consumer was not started: " + e.getLocalizedMessage());
+            return;
+        }
+        streamConsumer = consumer;
+        log.info("Reading the " + getTableName() + " stream " + streamArn);
+    }
+    
+    /**
+     * @return the book table stream consumer, or null if it is not enabled or not started yet.
+     */
+    public StreamConsumer getStreamConsumer() {
+        return streamConsumer;
+    }
+    
+    /**
+     * Apply a book table stream record to the in-memory state: an INSERT or MODIFY record adds the new image to
+     * the title index and the suggestions, a REMOVE record removes the book, and each invalidates the cache entries of the book. A
+     * record can be delivered more than once and applying it again does not change the result. The records of
+     * this instance's own writes are applied as well.
+     */
+    protected void applyStreamRecord( Record record ) {
+        StreamRecord change = record.getDynamodb();
+        Map<String, AttributeValue> keys = (change != null) ? change.getKeys() : null;
+        if (keys == null || keys.get("title") == null || keys.get(CreateBookTable.AUTHOR_HASH_NAME) == null) {
+            return;
+        }
+        String title = keys.get("title").getS();
+        String author = keys.get(CreateBookTable.AUTHOR_HASH_NAME).getS();
+        if (OperationType.REMOVE.toString().equals( record.getEventName() )) {
+            TitleTrigramIndex index = titleIndex;
+            if (index != null) {
+                index.remove( title, author );
+            }
+            BookSuggester suggestions = suggester;
+            if (suggestions != null) {
+                suggestions.remove( title, author );
+            }
+            invalidateCaches( title, author );
+        } else if (change.getNewImage() != null) {
+            BookInfo info = toBookInfo( change.getNewImage() );
+            if (info != null) {
+                bookWritten( info );
+            } else {
+                invalidateCaches( title, author );
+            }
+        }
+    }
+    
+    public boolean hasBookEntry(BookInfo bookInfo, String tableName ) {
+        boolean foundBook = false;
+        DynamoDBQueryExpression<BookInfo> queryExpression = buildBookInfoAuthorEQQuery( bookInfo );
+        List<BookInfo> itemList = dynamoDBService.getMapper(tableName).query(BookInfo.class, queryExpression);
+        if (itemList != null && itemList.size() > 0) {
+            foundBook = true;
+        }
+        return foundBook;
+    }
+    
+    /**
+     * Return true if a book with that title and author alreadys exists in the database.
+     * 
+     * @param title
+     * @param author
+     * @return
+     */
+    public boolean hasBookEntry(BookInfo bookInfo ) {
+        checkTableReady();
+        boolean foundBook;
+        if (titleAuthorCache != null) {
+            foundBook = findBookByTitleAuthor( bookInfo.getAuthor(), bookInfo.getTitle() ).size() > 0;
+        } else {
+            foundBook = hasBookEntry(bookInfo, getTableName() );
+        }
+        return foundBook;
+    }
+    
+   
+
+    
+    /**
+     * <p>
+     * Find one or more DynamoDB table BookInfo entries by searching for the author.
+     * </p>
+     * <p>
+     * The author attribute is a global secondary index. This query is designed to return values
+     * on the basis of this secondary index (the main index is on the {title, author} pair).
+     * </p>
+     * @param author
+     * @param tableName
+     * @return
+     */
+    public List<BookInfo> findBookByAuthor( String author, String tableName ) {
+        List<BookInfo> bookList = streamBookByAuthor(author, tableName).collect( Collectors.toList() );
+        return bookList;
+    }
+    
+    
+    /**
+     * <p>
+     * A lazy version of findBookByAuthor(). The query pages are read as the stream is consumed.
+     * </p>
+     * @param author
+     * @param tableName
+     * @return a stream of zero or more books.
+     */
+    public Stream<BookInfo> streamBookByAuthor( String author, String tableName ) {
+        return streamBookByAuthor( author, tableName, null );
+    }
+    
+    /**
+     * <p>
+     * Query the author index for the attributes. If the index does not project all of them (a KEYS_ONLY or 
+     * INCLUDE index), the book keys are read from the index and the books are read from the table with 
+     * BatchGetItem. In that case all of the keys are read before the first book is returned.
+     * </p>
+     * @param attributes the attributes to read, or null for all of them.
+     */
+    private Stream<BookInfo> streamBookByAuthor( String author, String tableName, List<String> attributes ) {
+        AmazonDynamoDB client = dynamoDBService.getClient();
+        QueryRequest request = buildAuthorQueryRequest( author, tableName ).withAttributesToGet( attributes );
+        if (! tableName.equals( getTableName() ) || authorIndexProjects( attributes )) {
+            return toBookStream( new QueryItemIterator( client::query, request ) );
+        }
+        request.withAttributesToGet( BookField.attributeNames( BookField.KEY_FIELDS ) );
+        List<Map<String, AttributeValue>> keys;
+        try (Stream<Map<String, AttributeValue>> keyStream = new QueryItemIterator( client::query, request ).stream()) {
+            keys = keyStream.collect( Collectors.toList() );
+        }
+        return readBooksByKey( keys, attributes ).stream();
+    }
+    
+    /**
+     * @param attributes the attributes that a query needs, or null for all of the attributes.
+     * @return true if the author index of the book table has the attributes. A table that is not ACTIVE yet is 
+     *         assumed to have an ALL index.
+     */
+    protected boolean authorIndexProjects( List<String> attributes ) {
+        Projection projection = tableBootstrap.getIndexProjection( CreateBookTable.AUTHOR_INDEX_NAME );
+        if (projection == null || ProjectionType.ALL.toString().equals( projection.getProjectionType() )) {
+            return true;
+        }
+        if (attributes == null) {
+            return false;
+        }
+        List<String> projected = new ArrayList<String>( BookField.attributeNames( BookField.KEY_FIELDS ) );
+        if (ProjectionType.INCLUDE.toString().equals( projection.getProjectionType() ) 
+            && projection.getNonKeyAttributes() != null) {
+            projected.addAll( projection.getNonKeyAttributes() );
+        }
+        return projected.containsAll( attributes );
+    }
+    
+    /**
+     * Read books from the table by key with BatchGetItem. The books are returned in the order of the keys.
+     * 
+     * @param keys the title and author keys
+     * @param attributes the attributes to read, or null for all of them.
+     */
+    private List<BookInfo> readBooksByKey( List<Map<String, AttributeValue>> keys, List<String> attributes ) {
+        Map<String, Map<String, AttributeValue>> uniqueKeys = new LinkedHashMap<String, Map<String, AttributeValue>>();
+        for (Map<String, AttributeValue> key : keys) {
+            uniqueKeys.put( titleAuthorKey( key ), key );
+        }
+        List<Map<String, AttributeValue>> items = batchItemReader.readAll( new ArrayList<Map<String, AttributeValue>>( uniqueKeys.values() ),
+                                                                           attributes );
+        Map<String, Map<String, AttributeValue>> itemsByKey = new HashMap<String, Map<String, AttributeValue>>( items.size() * 2 );
+        for (Map<String, AttributeValue> item : items) {
+            itemsByKey.put( titleAuthorKey( item ), item );
+        }
+        List<BookInfo> bookList = new ArrayList<BookInfo>( items.size() );
+        for (String key : uniqueKeys.keySet()) {
+            Map<String, AttributeValue> item = itemsByKey.get( key );
+            BookInfo info = (item != null) ? toBookInfo( item ) : null;
+            if (info != null) {
+                bookList.add( info );
+            }
+        }
+        return bookList;
+    }
+    
+    /**
+     * A query on the author global secondary index.
+     */
+    protected QueryRequest buildAuthorQueryRequest( String author, String tableName ) {
+        Condition hashKeyCondition = new Condition();
+        hashKeyCondition.withComparisonOperator( ComparisonOperator.EQ )
+                        .withAttributeValueList(new AttributeValue().withS(author));
+
+        Map<String, Condition> keyConditions = new HashMap<String, Condition>();
+        keyConditions.put(CreateBookTable.AUTHOR_HASH_NAME, hashKeyCondition);
+
+        QueryRequest queryRequest = new QueryRequest();
+        queryRequest.withTableName( tableName );
+        queryRequest.withIndexName(CreateBookTable.AUTHOR_INDEX_NAME);
+        queryRequest.withKeyConditions(keyConditions);
+        queryRequest.withLimit( getPageLimit() );
+        return queryRequest;
+    }
+    
+    /**
+     * A query on the table key: title and author.
+     */
+    protected QueryRequest buildTitleAuthorQueryRequest( String author, String title ) {
+        Map<String, Condition> keyConditions = new HashMap<String, Condition>();
+        keyConditions.put("title", new Condition().withComparisonOperator( ComparisonOperator.EQ )
+                                                  .withAttributeValueList( new AttributeValue().withS( title ) ));
+        keyConditions.put(CreateBookTable.AUTHOR_HASH_NAME, new Condition().withComparisonOperator( ComparisonOperator.EQ )
+                                                  .withAttributeValueList( new AttributeValue().withS( author ) ));
+        return new QueryRequest().withTableName( getTableName() ).withKeyConditions( keyConditions );
+    }
+    
+    
+    public Stream<BookInfo> streamBookByAuthor( String author ) {
+        checkTableReady();
+        return streamBookByAuthor(author, getTableName() );
+    }
+    
+    
+    /**
+     * Find all the books by a particular author. This query uses the global secondary author index.
+     * @param author the name of the author to be searched for.
+     * @return A list of zero or more books.
+     */
+    public List<BookInfo> findBookByAuthor( String author ) {
+        checkTableReady();
+        List<BookInfo> bookList;
+        ResultCache<String, List<BookInfo>> cache = authorCache;
+        if (cache != null) {
+            bookList = cache.get( author, a -> Collections.unmodifiableList( findBookByAuthor(a, getTableName()) ) );
+        } else {
+            bookList = findBookByAuthor(author, getTableName() );
+        }
+        return bookList;
+    }
+    
+    /**
+     * <p>
+     * Find the books by an author, reading only some of the book fields. The result cache is not used, since it 
+     * holds whole books. If the author index does not project the fields, they are read from the table (see 
+     * CreateBookTable).
+     * </p>
+     * @param author the name of the author to be searched for.
+     * @param fields the fields to read (the title and author are always read), or null for all of the fields.
+     * @return A list of zero or more books.
+     */
+    public List<BookInfo> findBookByAuthor( String author, Set<BookField> fields ) {
+        checkTableReady();
+        if (fields == null) {
+            return findBookByAuthor( author );
+        }
+        try (Stream<BookInfo> books = streamBookByAuthor( author, getTableName(), BookField.attributeNames( fields ) )) {
+            return books.collect( Collectors.toList() );
+        }
+    }
+    
+    
+    /**
+     * Find the book with a particular title and author. If the result cache is on, the result may come from the cache.
+     * 
+     * @param author the book author
+     * @param title the book title
+     * @return a list with zero or one books.
+     */
+    public List<BookInfo> findBookByTitleAuthor(String author, String title) {
+        checkTableReady();
+        List<BookInfo> bookList;
+        ResultCache<String, List<BookInfo>> cache = titleAuthorCache;
+        if (cache != null) {
+            bookList = cache.get( titleAuthorKey(title, author), 
+                                  k -> Collections.unmodifiableList( new ArrayList<BookInfo>( queryTitleAuthor(author, title) ) ) );
+        } else {
+            bookList = queryTitleAuthor(author, title);
+        }
+        return bookList;
+    }
+    
+    private List<BookInfo> queryTitleAuthor(String author, String title) {
+        BookInfo searchObj = new BookInfo();
+        searchObj.setAuthor(author);
+        searchObj.setTitle(title);
+        DynamoDBQueryExpression<BookInfo> queryExp = buildBookInfoAuthorEQQuery( searchObj );
+        List<BookInfo> info = dynamoDBService.getMapper(tableName).query(BookInfo.class, queryExp );
+        return info;
+    }
+    
+    /**
+     * <p>
+     * Find one or more books by title or partial title. For example, if there is a book titled "The Peripheral",
+     * searching for "Peripheral" will return the book. Similarly, if there are two books, "Bangkok 8" and "Bangkok Haunts"
+     * searching for "Bangkok" will return both books.
+     * </p>
+     * <p>
+     * The match does not depend on the path that answers the search (see getTitleMatch()). When the title token
+     * table is enabled (see enableTitleTokens()), the search finds the titles that have all of the words, as whole
+     * words, without regard to case or accents: with a query for each word once the table is filled, and with a
+     * table scan until then. Otherwise the search finds the titles that contain the string, without regard to case:
+     * from memory when the title index has been loaded, and with a table scan until then. A scan (in parallel, if
+     * scan segments have been set) reads every book and checks its title.
+     * </p>
+     * 
+     * @param titleWords a string to search for in the book titles.
+     * @return
+     */
+    public List<BookInfo> findBookByTitle(String titleWords ) {
+        checkTableReady();
+        List<BookInfo> bookList;
+        ParallelScanner scanner = parallelScanner;
+        TitleTrigramIndex index = titleSearchIndex();
+        if (index != null) {
+            bookList = index.search( titleWords );
+        } else if (useTitleTokens( titleWords )) {
+            bookList = await( findBookByTitleTokens( titleWords, null ) );
+        } else if (scanner != null) {
+            AmazonDynamoDB client = dynamoDBService.getClient();
+            Predicate<String> matcher = titleMatcher( titleWords );
+            // a row whose title does not match is decoded as null, which the scan leaves out
+            bookList = scanner.scan( client::scan, this::buildBookScanRequest, 
+                                     item -> (item.get("title") != null && matcher.test( item.get("title").getS() )) ? toBookInfo( item ) : null, 
+                                     null );
+        } else {
+            bookList = streamBookByTitle(titleWords).collect( Collectors.toList() );
+        }
+        return bookList;
+    }
+    
+    /**
+     * A lazy version of findBookByTitle(). The scan pages are read as the stream is consumed.
+     * 
+     * @param titleWords a string to search for in the book titles.
+     * @return a stream of zero or more books.
+     */
+    public Stream<BookInfo> streamBookByTitle(String titleWords ) {
+        checkTableReady();
+        TitleTrigramIndex index = titleSearchIndex();
+        if (index != null) {
+            return index.search( titleWords ).stream();
+        }
+        if (useTitleTokens( titleWords )) {
+            return await( findBookByTitleTokens( titleWords, null ) ).stream();
+        }
+        AmazonDynamoDB client = dynamoDBService.getClient();
+        Predicate<String> matcher = titleMatcher( titleWords );
+        return toBookStream( new ScanItemIterator( client::scan, buildBookScanRequest() ) )
+               .filter( info -> matcher.test( info.getTitle() ) );
+    }
+    
+    /**
+     * Read the entire book database, sorted by genre, author and title. When the genre index is used, the books
+     * are read in order from the index (see queryAllGenresAsync()). Otherwise this function does a scan, which can
+     * be expensive on DynamoDB. All of the scan pages are read and the result is sorted, so the whole table is held
+     * in memory. Use streamBooks() when the books don't need to be sorted, or getBooks(offset, limit) for one page
+     * of the sorted books. If scan segments have been set, the segments are scanned and sorted in parallel and then
+     * merged. The sort key of each book is computed once, when the row is decoded (see BookSortKey).
+     * 
+     * @return
+     */
+    public List<BookInfo> getBooks() {
+        checkTableReady();
+        List<BookInfo> bookList;
+        ParallelScanner scanner = parallelScanner;
+        if (useGenreIndex()) {
+            bookList = await( queryAllGenresAsync() );
+        } else if (scanner != null) {
+            AmazonDynamoDB client = dynamoDBService.getClient();
+            List<BookSortKey> keys = scanner.scan( client::scan, this::buildBookScanRequest, this::toBookSortKey,
+                                                   Comparator.<BookSortKey>naturalOrder() );
+            bookList = BookSorter.toBooks( keys );
+        } else {
+            bookList = BookSorter.sort( streamBooks().collect( Collectors.toList() ) );
+        }
+        return bookList;
+    }
+    
+    /**
+     * <p>
+     * Return one page of the book database in sorted order (the getBooks() order): the books at positions offset
+     * to offset + limit - 1. When the genre index is used, the genres are queried in order and the reads stop when
+     * the page is full. Otherwise the table is scanned one page at a time and only the first offset + limit books
+     * are kept, so the whole table is neither held in memory nor sorted.
+     * </p>
+     * 
+     * @param offset the number of books to skip
+     * @param limit the maximum number of books to return
+     * @return the page of books, which is shorter than limit at the end of the table.
+     */
+    public List<BookInfo> getBooks(int offset, int limit) {
+        return getBooks( offset, limit, null );
+    }
+    
+    /**
+     * The same as getBooks(offset, limit), but only the fields (and the genre, author and title, which the sort 
+     * needs) are read.
+     * 
+     * @param fields the fields to read, or null for all of the fields.
+     */
+    public List<BookInfo> getBooks(int offset, int limit, Set<BookField> fields) {
+        checkTableReady();
+        List<String> attributes = BookField.attributeNames( BookField.withSortFields( fields ) );
+        if (useGenreIndex()) {
+            return readGenresInOrder( offset, limit, attributes );
+        }
+        try (Stream<BookInfo> books = scanBooks( attributes )) {
+            return BookSorter.top( books::iterator, offset, limit );
+        }
+    }
+    
+    /**
+     * <p>
+     * Read the entire book database, one page at a time. The next page is only read when the stream consumer
+     * needs it, so memory use is bounded by the page limit. The books are returned in table order, not sorted.
+     * </p>
+     * 
+     * @return a stream over all of the books in the table.
+     */
+    public Stream<BookInfo> streamBooks() {
+        return streamBooks( null );
+    }
+    
+    /**
+     * A version of streamBooks() that only reads some of the book fields.
+     * 
+     * @param fields the fields to read (the title and author are always read), or null for all of the fields.
+     * @return a stream over all of the books in the table.
+     */
+    public Stream<BookInfo> streamBooks( Set<BookField> fields ) {
+        checkTableReady();
+        return scanBooks( BookField.attributeNames( fields ) );
+    }
+    
+    private Stream<BookInfo> scanBooks( List<String> attributes ) {
+        AmazonDynamoDB client = dynamoDBService.getClient();
+        return toBookStream( new ScanItemIterator( client::scan, buildBookScanRequest().withAttributesToGet( attributes ) ) );
+    }
+    
+    protected ScanRequest buildBookScanRequest() {
+        return new ScanRequest().withTableName( getTableName() ).withLimit( getPageLimit() );
+    }
+    
+    // Paged reads for clients that page through a result with a cursor (see BookPage and PageCursor). Each page
+    // reads at most MAX_READS_PER_BOOK_PAGE DynamoDB pages, so the latency of a page is bounded.
+    
+    /**
+     * <p>
+     * Read one page of the book table, in table (not sorted) order.
+     * </p>
+     * @param limit the maximum number of books in the page
+     * @param startKey the LastEvaluatedKey of the previous page, or null for the first page.
+     * @param fields the fields to read (the title and author are always read), or null for all of the fields.
+     */
+    public BookPage getBookPage( int limit, Map<String, AttributeValue> startKey, Set<BookField> fields ) {
+        checkTableReady();
+        checkPageLimit( limit );
+        ScanRequest request = buildBookScanRequest().withLimit( Math.min( limit, getPageLimit() ) )
+                                                    .withAttributesToGet( BookField.attributeNames( fields ) )
+                                                    .withExclusiveStartKey( startKey );
+        AmazonDynamoDB client = dynamoDBService.getClient();
+        return readBookPage( new ScanItemIterator( client::scan, request ), limit, this::toBookList );
+    }
+    
+    /**
+     * Read one page of the books by an author from the author index. If the index does not project the fields,
+     * the keys of the page are read from the index and the books are read from the table.
+     */
+    public BookPage findBookPageByAuthor( String author, int limit, Map<String, AttributeValue> startKey, Set<BookField> fields ) {
+        checkTableReady();
+        checkPageLimit( limit );
+        List<String> attributes = BookField.attributeNames( fields );
+        QueryRequest request = buildAuthorQueryRequest( author, getTableName() ).withLimit( Math.min( limit, getPageLimit() ) )
+                                                                                .withExclusiveStartKey( startKey );
+        AmazonDynamoDB client = dynamoDBService.getClient();
+        if (authorIndexProjects( attributes )) {
+            request.withAttributesToGet( attributes );
+            return readBookPage( new QueryItemIterator( client::query, request ), limit, this::toBookList );
+        }
+        request.withAttributesToGet( BookField.attributeNames( BookField.KEY_FIELDS ) );
+        return readBookPage( new QueryItemIterator( client::query, request ), limit, keys -> readBooksByKey( keys, attributes ) );
+    }
+    
+    /**
+     * <p>
+     * Read one page of a title search (the match is that of findBookByTitle()). When the title index answers
+     * the search, or the token table is filled, the page is in title and author order (and the title index
+     * returns all of the fields). Otherwise the table is scanned and the titles are checked as the rows are read,
+     * and a page may be short (see BookPage). A cursor from a scan can't be used once the index or the token
+     * table answers the searches, since the order is not the same.
+     * </p>
+     */
+    public BookPage findBookPageByTitle( String titleWords, int limit, Map<String, AttributeValue> startKey, Set<BookField> fields ) {
+        checkTableReady();
+        checkPageLimit( limit );
+        TitleTrigramIndex index = titleSearchIndex();
+        if (index != null) {
+            return pageOfList( index.search( titleWords ), limit, startKey );
+        }
+        if (useTitleTokens( titleWords )) {
+            // page the keys, then read the books of the page
+            List<BookInfo> keyBooks = toBookList( await( titleTokens.findBookKeys( titleWords ) ) );
+            BookPage keyPage = pageOfList( keyBooks, limit, startKey );
+            List<Map<String, AttributeValue>> keys = new ArrayList<Map<String, AttributeValue>>( keyPage.getBooks().size() );
+            for (BookInfo info : keyPage.getBooks()) {
+                keys.add( tableKey( info ) );
+            }
+            return new BookPage( readBooksByKey( keys, BookField.attributeNames( fields ) ), keyPage.getLastEvaluatedKey() );
+        }
+        ScanRequest request = buildBookScanRequest().withAttributesToGet( BookField.attributeNames( fields ) )
+                                                    .withExclusiveStartKey( startKey );
+        AmazonDynamoDB client = dynamoDBService.getClient();
+        Predicate<String> matcher = titleMatcher( titleWords );
+        return readBookPage( new ScanItemIterator( client::scan, request ), limit, this::toBookList,
+                             item -> item.get("title") != null && matcher.test( item.get("title").getS() ) );
+    }
+    
+    private static void checkPageLimit( int limit ) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be greater than zero: " + limit);
+        }
+    }
+    
+    private BookPage readBookPage( PagedItemIterator items, int limit, 
+                                   Function<List<Map<String, AttributeValue>>, List<BookInfo>> decoder ) {
+        return readBookPage( items, limit, decoder, item -> true );
+    }
+    
+    /**
+     * <p>
+     * Read up to limit rows that pass the filter and decode them. If the page ends inside a DynamoDB page, the
+     * next page starts after the title and author key of the last row (the rows of the book table and of the
+     * author index both have the table key). Otherwise it starts after the LastEvaluatedKey of the last DynamoDB
+     * page.
+     * </p>
+     */
+    private BookPage readBookPage( PagedItemIterator items, int limit, 
+                                   Function<List<Map<String, AttributeValue>>, List<BookInfo>> decoder,
+                                   Predicate<Map<String, AttributeValue>> filter ) {
+        List<Map<String, AttributeValue>> pageItems = new ArrayList<Map<String, AttributeValue>>( Math.min( limit, getPageLimit() ) );
+        while (pageItems.size() < limit) {
+            if (items.hasBufferedItems()) {
+                Map<String, AttributeValue> item = items.next();
+                if (filter.test( item )) {
+                    pageItems.add( item );
+                }
+            } else if (items.getPagesRead() >= MAX_READS_PER_BOOK_PAGE || ! items.readNextPage()) {
+                break;
+            }
+        }
+        Map<String, AttributeValue> lastKey;
+        if (items.hasBufferedItems()) {
+            lastKey = tableKey( pageItems.get( pageItems.size() - 1 ) );
+        } else {
+            lastKey = items.getLastEvaluatedKey();
+        }
+        return new BookPage( decoder.apply( pageItems ), lastKey );
+    }
+    
+    /**
+     * <p>
+     * A page of an in-memory result, in title and then author order, so the pages do not depend on the order in
+     * which the books were added to the index, which is not the same on every instance. The start key is the
+     * title and author of the last book of the previous page: the page is the first books after that key, so a
+     * cursor still works when its book has been removed since the previous page. The result is not sorted: the
+     * page (and one more book, to know if there is a next page) is selected with a bounded heap (see
+     * BookSorter.topAfter()), so a page costs the same however far into the result it is.
+     * </p>
+     */
+    private static BookPage pageOfList( List<BookInfo> books, int limit, Map<String, AttributeValue> startKey ) {
+        BookInfo after = null;
+        if (startKey != null) {
+            AttributeValue title = startKey.get("title");
+            AttributeValue author = startKey.get(CreateBookTable.AUTHOR_HASH_NAME);
+            if (title == null || title.getS() == null || author == null || author.getS() == null) {
+                throw new IllegalArgumentException("The cursor does not match the search result");
+            }
+            after = new BookInfo();
+            after.setTitle( title.getS() );
+            after.setAuthor( author.getS() );
+        }
+        List<BookInfo> page = BookSorter.topAfter( books, BOOK_KEY_ORDER, after, (int)Math.min( Integer.MAX_VALUE, (long)limit + 1 ) );
+        Map<String, AttributeValue> lastKey = null;
+        if (page.size() > limit) {
+            page = new ArrayList<BookInfo>( page.subList( 0, limit ) );
+            BookInfo last = page.get( page.size() - 1 );
+            lastKey = new HashMap<String, AttributeValue>();
+            lastKey.put( "title", new AttributeValue().withS( last.getTitle() ) );
+            lastKey.put( CreateBookTable.AUTHOR_HASH_NAME, new AttributeValue().withS( last.getAuthor() ) );
+        }
+        return new BookPage( page, lastKey );
+    }
+    
+    /**
+     * @return the title and author key attributes of a row.
+     */
+    private static Map<String, AttributeValue> tableKey( BookInfo info ) {
+        Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+        key.put( "title", new AttributeValue().withS( info.getTitle() ) );
+        key.put( CreateBookTable.AUTHOR_HASH_NAME, new AttributeValue().withS( info.getAuthor() ) );
+        return key;
+    }
+    
+    private static Map<String, AttributeValue> tableKey( Map<String, AttributeValue> item ) {
+        Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+        key.put( "title", item.get("title") );
+        key.put( CreateBookTable.AUTHOR_HASH_NAME, item.get(CreateBookTable.AUTHOR_HASH_NAME) );
+        return key;
+    }
+    
+    /**
+     * <p>
+     * Use the genre global secondary index for findBooksByGenre() and for the sorted listings (getBooks()). The
+     * index is only used if the table has it: a table that was created before the index was added to
+     * CreateBookTable is still read with scans.
+     * </p>
+     */
+    public void setGenreIndexEnabled(boolean genreIndexEnabled) {
+        this.genreIndexEnabled = genreIndexEnabled;
+    }
+    
+    public boolean isGenreIndexEnabled() {
+        return genreIndexEnabled;
+    }
+    
+    /**
+     * @return true if the genre index is turned on and the book table has an ACTIVE genre index.
+     */
+    protected boolean useGenreIndex() {
+        return genreIndexEnabled && tableBootstrap.hasActiveIndex( CreateBookTable.GENRE_INDEX_NAME );
+    }
+    
+    /**
+     * A query on the genre global secondary index. The books are returned in author, title order.
+     */
+    protected QueryRequest buildGenreQueryRequest( GenreEnum genre ) {
+        Map<String, Condition> keyConditions = new HashMap<String, Condition>();
+        keyConditions.put(CreateBookTable.GENRE_HASH_NAME, new Condition().withComparisonOperator( ComparisonOperator.EQ )
+                                                  .withAttributeValueList( new AttributeValue().withS( genre.name() ) ));
+        return new QueryRequest().withTableName( getTableName() )
+                                 .withIndexName( CreateBookTable.GENRE_INDEX_NAME )
+                                 .withKeyConditions( keyConditions )
+                                 .withLimit( getPageLimit() );
+    }
+    
+    private Stream<BookInfo> queryGenre( GenreEnum genre ) {
+        return queryGenre( genre, null );
+    }
+    
+    private Stream<BookInfo> queryGenre( GenreEnum genre, List<String> attributes ) {
+        AmazonDynamoDB client = dynamoDBService.getClient();
+        return toBookStream( new QueryItemIterator( client::query, buildGenreQueryRequest( genre ).withAttributesToGet( attributes ) ) );
+    }
+    
+    private static Predicate<BookInfo> inGenre( GenreEnum genre ) {
+        return book -> GenreEnum.stringToEnum( book.getGenre() ) == genre;
+    }
+    
+    /**
+     * <p>
+     * Find the books in a genre, sorted by author and title. A genre that is not a GenreEnum name finds the books
+     * whose genre is not a GenreEnum name (GenreEnum.BAD_ENUM). Without the genre index this is a table scan and
+     * a sort.
+     * </p>
+     * 
+     * @param genre the genre name, e.g., "Science Fiction"
+     * @return a list of zero or more books.
+     */
+    public List<BookInfo> findBooksByGenre( String genre ) {
+        checkTableReady();
+        GenreEnum genreEnum = GenreEnum.stringToEnum( genre );
+        if (useGenreIndex()) {
+            try (Stream<BookInfo> books = queryGenre( genreEnum )) {
+                return books.collect( Collectors.toList() );
+            }
+        }
+        try (Stream<BookInfo> books = streamBooks()) {
+            return BookSorter.sort( books.filter( inGenre( genreEnum ) ).collect( Collectors.toList() ) );
+        }
+    }
+    
+    /**
+     * Return one page of findBooksByGenre(): the books at positions offset to offset + limit - 1. With the genre
+     * index, only the index pages up to the end of the page are read.
+     */
+    public List<BookInfo> findBooksByGenre( String genre, int offset, int limit ) {
+        checkTableReady();
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative: " + offset + ", " + limit);
+        }
+        GenreEnum genreEnum = GenreEnum.stringToEnum( genre );
+        if (useGenreIndex()) {
+            try (Stream<BookInfo> books = queryGenre( genreEnum )) {
+                return books.skip( offset ).limit( limit ).collect( Collectors.toList() );
+            }
+        }
+        try (Stream<BookInfo> books = streamBooks()) {
+            Stream<BookInfo> genreBooks = books.filter( inGenre( genreEnum ) );
+            return BookSorter.top( genreBooks::iterator, offset, limit );
+        }
+    }
+    
+    /**
+     * Read a page of the sorted catalog from the genre index: the genres are read in GenreEnum order until the
+     * page is full.
+     * 
+     * @param attributes the attributes to read, or null for all of them.
+     */
+    private List<BookInfo> readGenresInOrder( int offset, int limit, List<String> attributes ) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative: " + offset + ", " + limit);
+        }
+        List<BookInfo> page = new ArrayList<BookInfo>( Math.min( limit, getPageLimit() ) );
+        int skip = offset;
+        for (GenreEnum genre : GenreEnum.values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            try (Stream<BookInfo> books = queryGenre( genre, attributes )) {
+                Iterator<BookInfo> iter = books.iterator();
+                while (iter.hasNext() && page.size() < limit) {
+                    BookInfo book = iter.next();
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        page.add( book );
+                    }
+                }
+            }
+        }
+        return page;
+    }
+    
+    /**
+     * <p>
+     * Read the whole catalog in order from the genre index, with one query per GenreEnum value. The queries are
+     * all in flight at the same time on the asynchronous client. Each query returns its genre in author, title
+     * order and the genre is the first sort key, so the k-way merge of the query results is their concatenation
+     * in GenreEnum order: no sort is needed.
+     * </p>
+     */
+    private CompletableFuture<List<BookInfo>> queryAllGenresAsync() {
+        AmazonDynamoDBAsync client = dynamoDBService.getAsyncClient();
+        GenreEnum[] genres = GenreEnum.values();
+        List<CompletableFuture<List<Map<String, AttributeValue>>>> futures =
+            new ArrayList<CompletableFuture<List<Map<String, AttributeValue>>>>( genres.length );
+        for (GenreEnum genre : genres) {
+            futures.add( AsyncCalls.queryAll( client, buildGenreQueryRequest( genre ), new ArrayList<Map<String, AttributeValue>>() ) );
+        }
+        return CompletableFuture.allOf( futures.toArray( new CompletableFuture<?>[0] ) ).thenApply( v -> {
+            int size = futures.stream().mapToInt( f -> f.join().size() ).sum();
+            List<BookInfo> bookList = new ArrayList<BookInfo>( size );
+            for (CompletableFuture<List<Map<String, AttributeValue>>> future : futures) {
+                bookList.addAll( toBookList( future.join() ) );
+            }
+            return bookList;
+        });
+    }
+    
+    // CompletableFuture versions of the read and write methods. In async mode the DynamoDB requests are made with the
+    // asynchronous client and no thread is held while a request is in flight. Otherwise the synchronous method
+    // is called and the returned future is already complete.
+    
+    /**
+     * <p>
+     * The *Async() methods that can't use the asynchronous client (all of them, when asyncMode is false) make
+     * their synchronous client calls on a pool of asyncThreads threads, so they don't hold the caller's thread 
+     * either. When the pool's queue is full, the future of a call fails with a RejectedExecutionException.
+     * </p>
+     * @param asyncMode true to use the asynchronous DynamoDB client for the *Async() methods.
+     * @param asyncThreads the size of the asynchronous client's thread pool, and of the pool for the synchronous 
+     *        calls.
+     */
+    public void setAsyncMode(boolean asyncMode, int asyncThreads) {
+        if (asyncThreads <= 0) {
+            throw new IllegalArgumentException("asyncThreads must be greater than zero: " + asyncThreads);
+        }
+        dynamoDBService.setAsyncThreads( asyncThreads );
+        synchronized (this) {
+            if (blockingCallExecutor != null) {
+                blockingCallExecutor.shutdown();
+            }
+            blockingCallExecutor = newBlockingCallExecutor( asyncThreads );
+        }
+        this.asyncMode = asyncMode;
+    }
+    
+    private ExecutorService newBlockingCallExecutor( int threads ) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS, 
+                                                              new ArrayBlockingQueue<Runnable>( threads * BLOCKING_CALL_QUEUE_PER_THREAD ),
+                                                              r -> {
+            Thread thread = new Thread( r, "book-call-" + getTableName() + "-" + threadCount.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+    
+    private synchronized ExecutorService getBlockingCallExecutor() {
+        if (blockingCallExecutor == null) {
+            blockingCallExecutor = newBlockingCallExecutor( DynamoDBService.DEFAULT_ASYNC_THREADS );
+        }
+        return blockingCallExecutor;
+    }
+    
+    public boolean isAsyncMode() {
+        return asyncMode;
+    }
+    
+    public CompletableFuture<List<BookInfo>> findBookByAuthorAsync( String author ) {
+        checkTableReady();
+        if (! asyncMode || ! authorIndexProjects( null )) {
+            // the books of a KEYS_ONLY or INCLUDE index are read from the table with the synchronous client
+            return callAsync( () -> findBookByAuthor( author ) );
+        }
+        ResultCache<String, List<BookInfo>> cache = authorCache;
+        Function<String, CompletableFuture<List<BookInfo>>> query = a -> {
+            QueryRequest request = buildAuthorQueryRequest( a, getTableName() );
+            return AsyncCalls.queryAll( dynamoDBService.getAsyncClient(), request, new ArrayList<Map<String, AttributeValue>>() )
+                             .thenApply( items -> Collections.unmodifiableList( toBookList( items ) ) );
+        };
+        return (cache != null) ? cache.getAsync( author, query ) : query.apply( author );
+    }
+    
+    public CompletableFuture<List<BookInfo>> findBookByTitleAuthorAsync( String author, String title ) {
+        checkTableReady();
+        if (! asyncMode) {
+            return callAsync( () -> findBookByTitleAuthor( author, title ) );
+        }
+        ResultCache<String, List<BookInfo>> cache = titleAuthorCache;
+        Function<String, CompletableFuture<List<BookInfo>>> query = k -> {
+            QueryRequest request = buildTitleAuthorQueryRequest( author, title );
+            return AsyncCalls.queryAll( dynamoDBService.getAsyncClient(), request, new ArrayList<Map<String, AttributeValue>>() )
+                             .thenApply( items -> Collections.unmodifiableList( toBookList( items ) ) );
+        };
+        return (cache != null) ? cache.getAsync( titleAuthorKey( title, author ), query ) : query.apply( null );
+    }
+    
+    public CompletableFuture<Boolean> hasBookEntryAsync( BookInfo bookInfo ) {
+        return findBookByTitleAuthorAsync( bookInfo.getAuthor(), bookInfo.getTitle() ).thenApply( list -> list.size() > 0 );
+    }
+    
+    public CompletableFuture<List<BookInfo>> findBookByTitleAsync( String titleWords ) {
+        checkTableReady();
+        if (titleSearchIndex() != null) {
+            // an in-memory search
+            return completed( () -> findBookByTitle( titleWords ) );
+        }
+        if (! asyncMode) {
+            return callAsync( () -> findBookByTitle( titleWords ) );
+        }
+        if (useTitleTokens( titleWords )) {
+            return findBookByTitleTokens( titleWords, null );
+        }
+        Predicate<String> matcher = titleMatcher( titleWords );
+        return scanSegmentsAsync( this::buildBookScanRequest, false ).thenApply( keys -> {
+            List<BookInfo> books = BookSorter.toBooks( keys );
+            books.removeIf( info -> ! matcher.test( info.getTitle() ) );
+            return books;
+        });
+    }
+    
+    public CompletableFuture<List<BookInfo>> getBooksAsync() {
+        checkTableReady();
+        if (! asyncMode) {
+            return callAsync( this::getBooks );
+        }
+        if (useGenreIndex()) {
+            return queryAllGenresAsync();
+        }
+        return scanSegmentsAsync( this::buildBookScanRequest, true ).thenApply( BookSorter::toBooks );
+    }
+    
+    /**
+     * The asynchronous version of getBooks(offset, limit). In async mode the segments are scanned with the
+     * asynchronous client and the page is selected from the scanned books without sorting them all.
+     */
+    public CompletableFuture<List<BookInfo>> getBooksAsync( int offset, int limit ) {
+        checkTableReady();
+        if (! asyncMode || useGenreIndex()) {
+            // with the genre index, a page is a few short queries
+            return callAsync( () -> getBooks( offset, limit ) );
+        }
+        return scanSegmentsAsync( this::buildBookScanRequest, false ).thenApply( keys -> BookSorter.topKeys( keys, offset, limit ) );
+    }
+    
+    /**
+     * <p>
+     * Turn on write-behind for writeToBookTableAsync(): a book is appended to a memory mapped write-ahead log in
+     * logDirectory and the write is acknowledged, and the books are written to DynamoDB in batches every flush
+     * interval (see WriteBehindWriter). Writes in the log that were not flushed when the service stopped are
+     * written first.
+     * </p>
+     * <p>
+     * The other writes (writeToBookTable(), writeBooks() and the conditional writes) go to DynamoDB directly. They
+     * flush a pending write-behind write of the book first, so that the flush can't replace the direct write with
+     * an older value. If the pending write can't be flushed, the direct write fails.
+     * </p>
+     * 
+     * @param logDirectory the directory of the log segments. Only one service may use a directory.
+     * @param segmentSize the size of a log segment file, in bytes
+     * @param flushIntervalMsec the time between flushes
+     * @param maxPending the maximum number of books waiting to be written. Above this, writes are not delayed.
+     * @param forceOnWrite force the log to disk on every write (see WriteBehindWriter)
+     */
+    public synchronized void enableWriteBehind( Path logDirectory, int segmentSize, long flushIntervalMsec, 
+                                                int maxPending, boolean forceOnWrite ) throws IOException {
+        if (writeBehindWriter != null) {
+            throw new IllegalStateException("Write-behind is already enabled");
+        }
+        WriteAheadLog writeAheadLog = new WriteAheadLog( logDirectory, segmentSize );
+        WriteBehindWriter writer = new WriteBehindWriter( writeAheadLog, this::writeBatch, flushIntervalMsec, 
+                                                          maxPending, forceOnWrite );
+        writer.start();
+        writeBehindWriter = writer;
+    }
+    
+    /**
+     * @return the write-behind writer, or null if write-behind is not enabled.
+     */
+    public WriteBehindWriter getWriteBehindWriter() {
+        return writeBehindWriter;
+    }
+    
+    /**
+     * Write a book. If write-behind is enabled, the write is done when the book is in the write-ahead log and 
+     * the book is written to DynamoDB later.
+     */
+    public CompletableFuture<Void> writeToBookTableAsync( BookInfo info ) {
+        checkTableReady();
+        if (info == null) {
+            return completed( () -> null );
+        }
+        WriteBehindWriter writer = writeBehindWriter;
+        if (writer != null && writer.submit( info )) {
+            return completed( () -> null );
+        }
+        return writeBookAsync( info, WriteMode.OVERWRITE ).thenAccept( result -> {} );
+    }
+    
+    /**
+     * The asynchronous version of writeBook(). A failed condition completes the future with the result status,
+     * not with an exception.
+     */
+    public CompletableFuture<BookWriteResult> writeBookAsync( BookInfo info, WriteMode mode ) {
+        checkTableReady();
+        WriteBehindWriter writer = writeBehindWriter;
+        // a pending write-behind write of the book is flushed first, by writeBook() on a blocking call thread
+        if (! asyncMode || (writer != null && info != null && writer.isPending( info ))) {
+            return callAsync( () -> writeBook( info, mode ) );
+        }
+        PutItemRequest request;
+        try {
+            request = buildPutRequest( info, mode, getTableName() );
+        } catch (RuntimeException e) {
+            CompletableFuture<BookWriteResult> failed = new CompletableFuture<BookWriteResult>();
+            failed.completeExceptionally( e );
+            return failed;
+        }
+        TitleTokenIndex tokens = titleTokens;
+        CompletableFuture<Void> tokensWritten = (tokens != null && tokens.isTableReady()) ? tokens.writeTokensAsync( info )
+                                                                                          : CompletableFuture.completedFuture( null );
+        CompletableFuture<BookWriteResult> written = new CompletableFuture<BookWriteResult>();
+        tokensWritten.thenCompose( v -> AsyncCalls.putItem( dynamoDBService.getAsyncClient(), request ) ).whenComplete( (result, e) -> {
+            Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+            if (cause == null) {
+                bookWritten( info );
+                written.complete( new BookWriteResult( BookWriteResult.Status.WRITTEN, info, storedVersion( request ) ) );
+                return;
+            }
+            // the tokens (if they were written) are deleted before the future completes
+            callAsync( () -> {
+                removeOrphanTokens( info );
+                return null;
+            }).whenComplete( (v, cleanupFailure) -> {
+                if (cause instanceof ConditionalCheckFailedException) {
+                    written.complete( conditionFailed( info, mode ) );
+                } else {
+                    written.completeExceptionally( cause );
+                }
+            });
+        });
+        return written;
+    }
+    
+    public CompletableFuture<List<BookInfo>> findBooksByGenreAsync( String genre ) {
+        checkTableReady();
+        if (! asyncMode || ! useGenreIndex()) {
+            return callAsync( () -> findBooksByGenre( genre ) );
+        }
+        QueryRequest request = buildGenreQueryRequest( GenreEnum.stringToEnum( genre ) );
+        return AsyncCalls.queryAll( dynamoDBService.getAsyncClient(), request, new ArrayList<Map<String, AttributeValue>>() )
+                         .thenApply( this::toBookList );
+    }
+    
+    /**
+     * The CompletableFuture version of findBooksByGenre(genre, offset, limit). A page is a few short reads, so it
+     * is read with the synchronous client (see callAsync()).
+     */
+    public CompletableFuture<List<BookInfo>> findBooksByGenreAsync( String genre, int offset, int limit ) {
+        checkTableReady();
+        return callAsync( () -> findBooksByGenre( genre, offset, limit ) );
+    }
+    
+    /**
+     * Scan the table with the asynchronous client, one scan per segment. If sorted is true each segment is sorted
+     * and the segments are merged.
+     */
+    private CompletableFuture<List<BookSortKey>> scanSegmentsAsync( Supplier<ScanRequest> requestSupplier, boolean sorted ) {
+        AmazonDynamoDBAsync client = dynamoDBService.getAsyncClient();
+        int segments = getScanSegments();
+        List<CompletableFuture<List<BookSortKey>>> futures = new ArrayList<CompletableFuture<List<BookSortKey>>>( segments );
+        for (int segment = 0; segment < segments; segment++) {
+            ScanRequest request = requestSupplier.get();
+            if (segments > 1) {
+                request.withSegment( segment ).withTotalSegments( segments );
+            }
+            futures.add( AsyncCalls.scanAll( client, request, new ArrayList<Map<String, AttributeValue>>() )
+                                   .thenApply( items -> {
+                                       List<BookSortKey> keys = toBookSortKeys( items );
+                                       if (sorted) {
+                                           keys.sort( Comparator.naturalOrder() );
+                                       }
+                                       return keys;
+                                   }));
+        }
+        return CompletableFuture.allOf( futures.toArray( new CompletableFuture<?>[0] ) ).thenApply( v -> {
+            List<List<BookSortKey>> segmentLists = futures.stream().map( CompletableFuture::join ).collect( Collectors.toList() );
+            List<BookSortKey> keys;
+            if (sorted) {
+                keys = ParallelScanner.mergeSorted( segmentLists, Comparator.<BookSortKey>naturalOrder() );
+            } else {
+                keys = segmentLists.stream().flatMap( List::stream ).collect( Collectors.toList() );
+            }
+            return keys;
+        });
+    }
+    
+    /**
+     * Wait for a future and throw the RuntimeException that it failed with (not the CompletionException wrapper).
+     */
+    private static <T> T await( CompletableFuture<T> future ) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Make a synchronous client call on the blocking call pool (see setAsyncMode()), so the caller's thread is not
+     * held. The future fails with a RejectedExecutionException if the pool's queue is full.
+     */
+    private <T> CompletableFuture<T> callAsync( Supplier<T> call ) {
+        try {
+            return CompletableFuture.supplyAsync( call, getBlockingCallExecutor() );
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<T>();
+            rejected.completeExceptionally( e );
+            return rejected;
+        }
+    }
+    
+    /**
+     * @return a future that is completed on the caller's thread. This is for calls that don't wait for DynamoDB.
+     */
+    private static <T> CompletableFuture<T> completed( Supplier<T> call ) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        try {
+            future.complete( call.get() );
+        } catch (RuntimeException e) {
+            future.completeExceptionally( e );
+        }
+        return future;
+    }
+    
+    private List<BookInfo> toBookList( List<Map<String, AttributeValue>> items ) {
+        List<BookInfo> bookList = new ArrayList<BookInfo>( items.size() );
+        for (Map<String, AttributeValue> item : items) {
+            BookInfo info = toBookInfo( item );
+            if (info != null) {
+                bookList.add( info );
+            }
+        }
+        return bookList;
+    }
+    
+    private List<BookSortKey> toBookSortKeys( List<Map<String, AttributeValue>> items ) {
+        List<BookSortKey> keys = new ArrayList<BookSortKey>( items.size() );
+        for (Map<String, AttributeValue> item : items) {
+            BookSortKey key = toBookSortKey( item );
+            if (key != null) {
+                keys.add( key );
+            }
+        }
+        return keys;
+    }
+    
+    /**
+     * @return the BookSortKey for a DynamoDB row, or null if the row could not be decoded.
+     */
+    private BookSortKey toBookSortKey( Map<String, AttributeValue> item ) {
+        BookInfo info = toBookInfo( item );
+        return (info != null) ? new BookSortKey( info ) : null;
+    }
+    
+    /**
+     * Decode the rows of a paged read into BookInfo objects as they are consumed.
+     */
+    protected Stream<BookInfo> toBookStream(PagedItemIterator items) {
+        return items.stream().map( this::toBookInfo ).filter( Objects::nonNull );
+    }
+    
+    /**
+     * @param item a DynamoDB row
+     * @return the BookInfo for the row, or null if the row could not be decoded.
+     */
+    protected BookInfo toBookInfo(Map<String, AttributeValue> item) {
+        BookInfo info = new BookInfo();
+        try {
+            DynamoDBUtil.attributesToObject(info, item);
+        }
+        catch (ReflectiveOperationException e) {
+            log.severe("toBookInfo: " + e.getLocalizedMessage());
+            info = null;
+        }
+        return info;
+    }
+    
+    
+    /**
+     * The registry used by services that are not given one. It is built on first use (class initialization is
+     * thread safe).
+     */
+    private static class DefaultDynamoDBService {
+        static final DynamoDBService INSTANCE = new DynamoDBService( region, full_dynamodb_access_ID, full_dynamodb_access_KEY );
+    }
 }
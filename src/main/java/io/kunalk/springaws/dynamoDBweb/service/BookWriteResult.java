@@ -0,0 +1,64 @@
+package io.kunalk.springaws.dynamoDBweb.service;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+/**
+ * <h4>
+ * BookWriteResult
+ * </h4>
+ * <p>
+ * The outcome of a conditional book write (see BookTableService.writeBook()). The write is one PutItem request
+ * with a condition, so a write that is not done because of the condition is a result, not an error: the status
+ * says which condition failed.
+ * </p>
+ */
+public class BookWriteResult {
+    public enum Status {
+        /** The book was written */
+        WRITTEN,
+        /** putIfAbsent: there is already a book with the title and author */
+        ALREADY_EXISTS,
+        /** replaceIfExists: there is no book with the title and author */
+        NOT_FOUND,
+        /** putVersioned: the stored version is not the version of the book that was written */
+        VERSION_CONFLICT
+    }
+
+    private final Status status;
+    private final BookInfo book;
+    private final Long version;
+
+    BookWriteResult(Status status, BookInfo book, Long version) {
+        this.status = status;
+        this.book = book;
+        this.version = version;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isWritten() {
+        return status == Status.WRITTEN;
+    }
+
+    /**
+     * @return the book that the write was for
+     */
+    public BookInfo getBook() {
+        return book;
+    }
+
+    /**
+     * @return the version that was stored with the book, or null if the book was not written or was written
+     *         without a version.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "BookWriteResult [status=" + status + ", version=" + version + "]";
+    }
+}
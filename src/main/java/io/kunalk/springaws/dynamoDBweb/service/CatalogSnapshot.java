@@ -0,0 +1,175 @@
+package io.kunalk.springaws.dynamoDBweb.service;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * <h4>
+ * CatalogSnapshot
+ * </h4>
+ * <p>
+ * The in-memory book catalog (the books of the title index) and the time it was read from the book table, as
+ * a binary file. A service that starts with a snapshot can answer title searches at once and then only read the
+ * books that were written since the snapshot time (see BookTableService.enableCatalogSnapshot()).
+ * </p>
+ * <p>
+ * The file is a 28 byte header followed by the books. The header is the magic number, the format version, the
+ * snapshot time (epoch milliseconds), the number of books, the length of the book data and its CRC32. A book is
+ * six strings (title, author, genre, publisher, year, price), each a length (-1 for null) and UTF-8 bytes. The
+ * file is written to a temporary file that is then renamed, so a reader never sees a partly written snapshot.
+ * It is read with a memory mapping, so the file is not copied to the heap before the books are decoded.
+ * </p>
+ */
+public class CatalogSnapshot {
+    private final static int MAGIC = 0x424b5331; // "BKS1"
+    private final static int FORMAT = 1;
+    private final static int HEADER_SIZE = 28;
+    private final static int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final long timestamp;
+    private final List<BookInfo> books;
+
+    /**
+     * @param timestamp the time the books were read: books written after this time may not be in the snapshot
+     * @param books the books
+     */
+    public CatalogSnapshot(long timestamp, List<BookInfo> books) {
+        this.timestamp = timestamp;
+        this.books = Collections.unmodifiableList( books );
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<BookInfo> getBooks() {
+        return books;
+    }
+
+    /**
+     * Write the snapshot to a file, replacing the file if it exists. The books are streamed to the file (the
+     * snapshot is not built in memory first), then the header is written at the start of the file.
+     *
+     * @throws IOException if the file can't be written, or the book data is larger than a snapshot can be
+     *         (2 GB, the largest buffer that read() can map).
+     */
+    public void write(Path file) throws IOException {
+        Path tempFile = file.resolveSibling( file.getFileName() + ".tmp" );
+        try (FileChannel channel = FileChannel.open( tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                     StandardOpenOption.TRUNCATE_EXISTING )) {
+            channel.position( HEADER_SIZE );
+            CRC32 crc = new CRC32();
+            // the stream is flushed, not closed: closing it would close the channel
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream(
+                    new CheckedOutputStream( Channels.newOutputStream( channel ), crc ), WRITE_BUFFER_SIZE ) );
+            for (BookInfo info : books) {
+                writeString( out, info.getTitle() );
+                writeString( out, info.getAuthor() );
+                writeString( out, info.getGenre() );
+                writeString( out, info.getPublisher() );
+                writeString( out, info.getYear() );
+                writeString( out, info.getPrice() );
+            }
+            out.flush();
+            long payloadLength = channel.position() - HEADER_SIZE;
+            if (payloadLength > Integer.MAX_VALUE - HEADER_SIZE) {
+                throw new IOException("The catalog snapshot is too large: " + payloadLength + " bytes");
+            }
+            ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+            header.putInt( MAGIC ).putInt( FORMAT ).putLong( timestamp ).putInt( books.size() )
+                  .putInt( (int)payloadLength ).putInt( (int)crc.getValue() );
+            header.flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write( header, position );
+            }
+            channel.force( true );
+        }
+        Files.move( tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * Read a snapshot file.
+     *
+     * @return the snapshot, or null if the file does not exist.
+     * @throws IOException if the file can't be read, or is not a valid snapshot (bad header or checksum).
+     */
+    public static CatalogSnapshot read(Path file) throws IOException {
+        if (! Files.exists( file )) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open( file, StandardOpenOption.READ )) {
+            buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+                throw new IOException(file + " is not a catalog snapshot");
+            }
+            long timestamp = buffer.getLong();
+            int count = buffer.getInt();
+            int payloadLength = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (count < 0 || payloadLength != buffer.remaining()) {
+                throw new IOException(file + " is truncated");
+            }
+            CRC32 crc = new CRC32();
+            crc.update( buffer.duplicate() );
+            if ((int)crc.getValue() != checksum) {
+                throw new IOException(file + " has a bad checksum");
+            }
+            List<BookInfo> books = new ArrayList<BookInfo>( count );
+            for (int i = 0; i < count; i++) {
+                BookInfo info = new BookInfo();
+                info.setTitle( readString( buffer ) );
+                info.setAuthor( readString( buffer ) );
+                info.setGenre( readString( buffer ) );
+                info.setPublisher( readString( buffer ) );
+                info.setYear( readString( buffer ) );
+                info.setPrice( readString( buffer ) );
+                books.add( info );
+            }
+            return new CatalogSnapshot( timestamp, books );
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(file + " is not a valid catalog snapshot", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt( -1 );
+        } else {
+            byte[] utf8 = value.getBytes( StandardCharsets.UTF_8 );
+            out.writeInt( utf8.length );
+            out.write( utf8 );
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[ length ];
+        buffer.get( utf8 );
+        return new String( utf8, StandardCharsets.UTF_8 );
+    }
+}
@@ -13,11 +13,25 @@ import com.amazonaws.Protocol;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsyncClientBuilder;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreamsClientBuilder;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.AsyncCalls;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.CapacityRateLimiter;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
 
 /**
  * <h4>
@@ -28,96 +42,305 @@ import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
  * Amazon Web Services ID and secret Key (from AWS IAM) that provides read/write and table creation access
  * to DynamoDB.
  * </p>
+ * <p>
+ * The service is a registry: there is one client (and one asynchronous client) per region and one mapper per
+ * table and region. Each is built the first time it is requested and is then shared, so a DynamoDBService can be
+ * used by several BookTableService objects that serve different tables. The registry maps are concurrent maps
+ * and the objects are built with computeIfAbsent(), so concurrent first requests build a single object.
+ * </p>
+ * <p>
+ * The HTTP client settings (connection pool size, timeouts, etc.), the request metric collector and the request
+ * handlers (e.g., DynamoDBMetrics) can be set before the first client is allocated. Otherwise the SDK defaults are used, with the HTTP protocol.
+ * </p>
+ * <p>
+ * An endpoint can be set (e.g., http://localhost:8000 for DynamoDB Local). The clients then send their requests
+ * to the endpoint, signed for the region, instead of to the AWS endpoint of the region.
+ * </p>
 
  */
 public class DynamoDBService {
-    private String AWS_ID = null;
-    private String AWS_KEY = null;
-    private Regions region = null;
-    private static BasicAWSCredentials credentials = null;
-    private static AmazonDynamoDB mClient = null;
-    private static DynamoDBMapper mMapper = null;
+    /** The default number of threads used by the asynchronous client */
+    public final static int DEFAULT_ASYNC_THREADS = 50;
+    private final Regions region;
+    private final AWSCredentials credentials;
+    private final ConcurrentMap<Regions, AmazonDynamoDB> clients = new ConcurrentHashMap<Regions, AmazonDynamoDB>();
+    private final ConcurrentMap<Regions, AmazonDynamoDBAsync> asyncClients = new ConcurrentHashMap<Regions, AmazonDynamoDBAsync>();
+    private final ConcurrentMap<Regions, AmazonDynamoDBStreams> streamsClients = new ConcurrentHashMap<Regions, AmazonDynamoDBStreams>();
+    private final ConcurrentMap<MapperKey, DynamoDBMapper> mappers = new ConcurrentHashMap<MapperKey, DynamoDBMapper>();
+    private volatile int asyncThreads = DEFAULT_ASYNC_THREADS;
+    private volatile ClientConfiguration clientConfiguration = null;
+    private volatile RequestMetricCollector requestMetricCollector = null;
+    private volatile RequestHandler2[] requestHandlers = new RequestHandler2[0];
+    private volatile String endpoint = null;
     
     public DynamoDBService(Regions region, String AWS_ID, String AWS_KEY) {
-        setRegion( region );
-        setAWS_ID( AWS_ID );
-        setAWS_KEY( AWS_KEY );
+        this.region = region;
+        this.credentials = new BasicAWSCredentials( AWS_ID, AWS_KEY );
     }
 
-    public String getAWS_ID() {
-        return AWS_ID;
+    /**
+     * @return the default region, used by the methods that do not take a region argument.
+     */
+    public Regions getRegion() {
+        return region;
     }
-
-    public void setAWS_ID(String aWS_ID) {
-        AWS_ID = aWS_ID;
+    
+    public int getAsyncThreads() {
+        return asyncThreads;
     }
-
-    public String getAWS_KEY() {
-        return AWS_KEY;
+    
+    /**
+     * @param asyncThreads the size of the asynchronous client's thread pool. This must be set before the first
+     *                     call to getAsyncClient().
+     */
+    public void setAsyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads;
     }
-
-    public void setAWS_KEY(String aWS_KEY) {
-        AWS_KEY = aWS_KEY;
+    
+    /**
+     * @return the HTTP client configuration used for the DynamoDB clients. 
+     */
+    public ClientConfiguration getClientConfiguration() {
+        ClientConfiguration config = clientConfiguration;
+        if (config == null) {
+            config = new ClientConfiguration();
+            config.setProtocol(Protocol.HTTP);
+        }
+        return config;
     }
-
-    public Regions getRegion() {
-        return region;
+    
+    /**
+     * @param clientConfiguration the HTTP client configuration. This must be set before the first call to 
+     *                            getClient() or getAsyncClient().
+     */
+    public void setClientConfiguration(ClientConfiguration clientConfiguration) {
+        this.clientConfiguration = clientConfiguration;
     }
-
-    public void setRegion(Regions region) {
-        this.region = region;
+    
+    public RequestMetricCollector getRequestMetricCollector() {
+        return requestMetricCollector;
     }
     
-    protected AWSCredentials getCredentials() {
-        if (credentials == null) {
-            credentials = new BasicAWSCredentials( getAWS_ID(), getAWS_KEY() );            
+    /**
+     * @param requestMetricCollector receives the SDK metrics for each request (e.g., connection pool state), or null.
+     *                               This must be set before the first client is allocated.
+     */
+    public void setRequestMetricCollector(RequestMetricCollector requestMetricCollector) {
+        this.requestMetricCollector = requestMetricCollector;
+    }
+    
+    public RequestHandler2[] getRequestHandlers() {
+        return requestHandlers.clone();
+    }
+    
+    /**
+     * @param requestHandlers the handlers that are called for each request made by the clients. This must be set 
+     *                        before the first client is allocated.
+     */
+    public void setRequestHandlers(RequestHandler2... requestHandlers) {
+        this.requestHandlers = requestHandlers.clone();
+    }
+    
+    public String getEndpoint() {
+        return endpoint;
+    }
+    
+    /**
+     * @param endpoint the DynamoDB endpoint URL (e.g., http://localhost:8000 for DynamoDB Local), or null or empty
+     *                 for the AWS endpoint of the region. This must be set before the first client is allocated.
+     */
+    public void setEndpoint(String endpoint) {
+        this.endpoint = (endpoint != null && endpoint.trim().length() > 0) ? endpoint.trim() : null;
+    }
+    
+    /**
+     * Point a client builder at the endpoint, if one is set, or at the region.
+     */
+    private <B extends AwsClientBuilder<B, ?>> B withLocation(B builder, Regions clientRegion) {
+        String url = getEndpoint();
+        if (url != null) {
+            return builder.withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(url, clientRegion.getName()));
         }
+        return builder.withRegion(clientRegion);
+    }
+    
+    protected AWSCredentials getCredentials() {
         return credentials;
     }
     
     /**
      * <p>
-     * Get a DynamoDB client. If the client does not exist, allocate the client. The client that is returned
-     * will be initialized with the credentials and region from the class constructor.
+     * Get the DynamoDB client for the default region. If the client does not exist, allocate the client. The client
+     * that is returned will be initialized with the credentials and region from the class constructor.
      * </p>
      * 
-     * @return the thread safe, static, AmazonDynamoDBClient
+     * @return the thread safe, shared, AmazonDynamoDBClient
      */
     public AmazonDynamoDB getClient() {
-        if (mClient == null) {
-            AWSCredentials credentials = getCredentials();
-            ClientConfiguration config = new ClientConfiguration();
-            config.setProtocol(Protocol.HTTP);
-            mClient = AmazonDynamoDBClientBuilder.standard().withCredentials(new AWSStaticCredentialsProvider(credentials))
-                      .withClientConfiguration(config)
-                      .withRegion(getRegion())
-                      .build();
+        return getClient( getRegion() );
+    }
+    
+    /**
+     * @param clientRegion the AWS region of the DynamoDB tables
+     * @return the thread safe, shared, AmazonDynamoDBClient for the region
+     */
+    public AmazonDynamoDB getClient(Regions clientRegion) {
+        return clients.computeIfAbsent( clientRegion, this::buildClient );
+    }
+    
+    private AmazonDynamoDB buildClient(Regions clientRegion) {
+        AmazonDynamoDBClientBuilder builder = AmazonDynamoDBClientBuilder.standard()
+                                          .withCredentials(new AWSStaticCredentialsProvider(getCredentials()))
+                                          .withClientConfiguration(getClientConfiguration())
+                                          .withMetricsCollector(getRequestMetricCollector())
+                                          .withRequestHandlers(getRequestHandlers());
+        return withLocation(builder, clientRegion).build();
+    }
+    
+    /**
+     * <p>
+     * Get the asynchronous DynamoDB client for the default region. If the client does not exist, allocate the client.
+     * </p>
+     * <p>
+     * Note that the AWS SDK (version 1) asynchronous client runs each request on a thread from its own fixed size
+     * pool. The request does not hold the caller's thread, but the number of requests that are in flight at the
+     * same time is limited by asyncThreads.
+     * </p>
+     * 
+     * @return the thread safe, shared, AmazonDynamoDBAsync client
+     */
+    public AmazonDynamoDBAsync getAsyncClient() {
+        return getAsyncClient( getRegion() );
+    }
+    
+    public AmazonDynamoDBAsync getAsyncClient(Regions clientRegion) {
+        return asyncClients.computeIfAbsent( clientRegion, this::buildAsyncClient );
+    }
+    
+    /**
+     * A CapacityRateLimiter request handler would wait on the threads of the client's pool, so the client gets its
+     * non-blocking handler and its requests are paced by AsyncCalls before they are submitted.
+     */
+    private AmazonDynamoDBAsync buildAsyncClient(Regions clientRegion) {
+        final int threads = getAsyncThreads();
+        RequestHandler2[] handlers = getRequestHandlers();
+        CapacityRateLimiter rateLimiter = null;
+        for (int i = 0; i < handlers.length; i++) {
+            if (handlers[i] instanceof CapacityRateLimiter) {
+                rateLimiter = (CapacityRateLimiter)handlers[i];
+                handlers[i] = rateLimiter.nonBlocking();
+            }
+        }
+        AmazonDynamoDBAsyncClientBuilder builder = AmazonDynamoDBAsyncClientBuilder.standard()
+                                               .withCredentials(new AWSStaticCredentialsProvider(getCredentials()))
+                                               .withClientConfiguration(getClientConfiguration())
+                                               .withMetricsCollector(getRequestMetricCollector())
+                                               .withRequestHandlers(handlers)
+                                               .withExecutorFactory(() -> Executors.newFixedThreadPool( threads ));
+        AmazonDynamoDBAsync client = withLocation(builder, clientRegion).build();
+        if (rateLimiter != null) {
+            AsyncCalls.pace( client, rateLimiter );
         }
-        return mClient;
+        return client;
     }
     
+    /**
+     * @return the thread safe, shared, DynamoDB Streams client for the default region (see StreamConsumer).
+     */
+    public AmazonDynamoDBStreams getStreamsClient() {
+        return getStreamsClient( getRegion() );
+    }
+    
+    public AmazonDynamoDBStreams getStreamsClient(Regions clientRegion) {
+        return streamsClients.computeIfAbsent( clientRegion, this::buildStreamsClient );
+    }
+    
+    private AmazonDynamoDBStreams buildStreamsClient(Regions clientRegion) {
+        AmazonDynamoDBStreamsClientBuilder builder = AmazonDynamoDBStreamsClientBuilder.standard()
+                                               .withCredentials(new AWSStaticCredentialsProvider(getCredentials()))
+                                               .withClientConfiguration(getClientConfiguration())
+                                               .withMetricsCollector(getRequestMetricCollector())
+                                               .withRequestHandlers(getRequestHandlers());
+        return withLocation(builder, clientRegion).build();
+    }
     
     /**
-     * Build a mapper for a specific table.  Note that this method does not set the mMapper class variable.
+     * Get the mapper for a specific table in the default region. The mapper is built on the first call and reused
+     * after that, so its table model is only built once.
      * 
-     * @param tableName
-     * @return
+     * @param tableName the DynamoDB table name, which overrides the table name in the class annotation.
+     * @return a thread safe, shared, mapper for the table.
      */
     public DynamoDBMapper getMapper( String tableName ) {
-        AmazonDynamoDB client = getClient();
-        DynamoDBMapper mapper = new DynamoDBMapper( client,  new DynamoDBMapperConfig.TableNameOverride( tableName ).config() );
-        return mapper;
+        return getMapper( tableName, getRegion() );
+    }
+    
+    /**
+     * @param tableName the DynamoDB table name, or null to use the table name in the class annotation.
+     * @param mapperRegion the AWS region of the table.
+     * @return a thread safe, shared, mapper for the table and region.
+     */
+    public DynamoDBMapper getMapper( String tableName, Regions mapperRegion ) {
+        return mappers.computeIfAbsent( new MapperKey( tableName, mapperRegion ), this::buildMapper );
+    }
+    
+    private DynamoDBMapper buildMapper( MapperKey key ) {
+        AmazonDynamoDB client = getClient( key.region );
+        if (key.tableName == null) {
+            return new DynamoDBMapper( client );
+        }
+        return new DynamoDBMapper( client,  new DynamoDBMapperConfig.TableNameOverride( key.tableName ).config() );
     }
     
     /**
      * 
-     * @return a DynamoDBMapper object, initialized with a static instance AmazonDynamoDB
+     * @return a DynamoDBMapper object, initialized with the default region client, that uses the table names
+     *         in the class annotations.
      */
     public DynamoDBMapper getMapper() {
-        if (mMapper == null) {
-            AmazonDynamoDB client = getClient();
-            mMapper = new DynamoDBMapper( client );
+        return getMapper( null, getRegion() );
+    }
+    
+    /**
+     * Shut down the clients. Spring calls this when the application context is closed.
+     */
+    public void shutdown() {
+        mappers.clear();
+        for (AmazonDynamoDBAsync client : asyncClients.values()) {
+            client.shutdown();
+        }
+        asyncClients.clear();
+        for (AmazonDynamoDBStreams client : streamsClients.values()) {
+            client.shutdown();
+        }
+        streamsClients.clear();
+        for (AmazonDynamoDB client : clients.values()) {
+            client.shutdown();
+        }
+        clients.clear();
+    }
+    
+    private static final class MapperKey {
+        private final String tableName;
+        private final Regions region;
+        
+        MapperKey(String tableName, Regions region) {
+            this.tableName = tableName;
+            this.region = Objects.requireNonNull( region, "region" );
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (! (other instanceof MapperKey)) {
+                return false;
+            }
+            MapperKey key = (MapperKey)other;
+            return Objects.equals( tableName, key.tableName ) && region == key.region;
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode( tableName ) + region.hashCode();
         }
-        return mMapper;
     }
 }
@@ -0,0 +1,23 @@
+package io.kunalk.springaws.dynamoDBweb.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * <h4>
+ * TableNotReadyException
+ * </h4>
+ * <p>
+ * Thrown by the BookTableService when a book request is made before the book table is ACTIVE (e.g., while the
+ * table is being created at startup). A controller request that fails with this exception gets an HTTP 503
+ * (service unavailable) response, so the client can retry.
+ * </p>
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "The book table is not ready")
+public class TableNotReadyException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public TableNotReadyException(String tableName) {
+        super("The " + tableName + " table is not ready");
+    }
+}
@@ -0,0 +1,327 @@
+package io.kunalk.springaws.dynamoDBweb.service;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
+import com.amazonaws.services.dynamodbv2.model.Condition;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.AsyncCalls;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.BatchItemWriter;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.BatchWriteResult;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.CreateBookTable;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.CreateTitleTokenTable;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.TableBootstrap;
+import io.kunalk.springaws.dynamoDBweb.index.TitleTokens;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * <h4>
+ * TitleTokenIndex
+ * </h4>
+ * <p>
+ * Reads and writes the title token table (see CreateTitleTokenTable), which answers title searches with queries
+ * instead of a scan of the book table. A search is one Query per word, sent at the same time on the asynchronous
+ * client, a page at a time, until the query of the rarest word has read all of its pages. The books of the rarest
+ * word that have all of the words in their titles are the result. The reads are the token items of the rarest word,
+ * and as many pages of the others, so the cost of a search depends on the number of books with the rarest word,
+ * not on the size of the catalog or on the number of books with a common word. The table is shared by all of the
+ * application instances and nothing is held in memory.
+ * </p>
+ * <p>
+ * The words of a title are whole words, compared without case and accents (see TitleTokens): "peripheral"
+ * finds "The Peripheral", but "periph" does not. A book's token items are written before the book, so a book in
+ * the book table always has its tokens. The title is part of the book key, so the tokens of a book never change.
+ * When a single book write fails after its tokens were written, its tokens are deleted unless the book is in the
+ * table (see BookTableService.writeBook()). A failed batch write can leave token items for a book that does not
+ * exist. These are harmless: the book is not found when the books are read by key.
+ * </p>
+ * <p>
+ * A new token table is filled from a scan of the book table (see BookTableService.enableTitleTokens()). When the
+ * scan has been written, a marker item (BACKFILL_TOKEN) is put in the table, so the other instances, and later
+ * starts, do not scan again.
+ * </p>
+ */
+public class TitleTokenIndex {
+    /** The token of the item that marks a filled table. Tokens are letters and digits, so no title has it. */
+    public final static String BACKFILL_TOKEN = "#backfill";
+    private final static int BATCH_RETRIES = 8;
+    private final static long BATCH_BASE_DELAY_MSEC = 50;
+    private final static long BATCH_MAX_DELAY_MSEC = 5000;
+    /** The token items read by a search query page, so the queries of the words advance at the same pace */
+    private final static int SEARCH_PAGE_LIMIT = 1000;
+
+    private final String tableName;
+    private final DynamoDBService dynamoDBService;
+    private final TableBootstrap tableBootstrap;
+    private final BatchItemWriter batchItemWriter;
+    private volatile boolean ready = false;
+    private final Logger log;
+
+    /**
+     * @param tableName the name of the token table
+     * @param service the DynamoDB clients
+     * @param readThroughput the provisioned read throughput, if the table is created
+     * @param writeThroughput the provisioned write throughput, if the table is created
+     * @param batchWriteThreads the number of BatchWriteItem requests that writeTokens() sends concurrently
+     */
+    public TitleTokenIndex(String tableName, DynamoDBService service, long readThroughput, long writeThroughput,
+                           int batchWriteThreads) {
+        this.tableName = tableName;
+        this.dynamoDBService = service;
+        this.log = Logger.getLogger( this.getClass().getName() );
+        AmazonDynamoDB client = service.getClient();
+        tableBootstrap = new TableBootstrap( client, new CreateTitleTokenTable( tableName ), readThroughput, writeThroughput );
+        batchItemWriter = new BatchItemWriter( client::batchWriteItem, tableName, batchWriteThreads,
+                                               BATCH_RETRIES, BATCH_BASE_DELAY_MSEC, BATCH_MAX_DELAY_MSEC );
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Start checking (and, if needed, creating) the token table on a background thread.
+     * @return the future that completes when the table is ACTIVE.
+     */
+    public CompletableFuture<Void> start() {
+        return tableBootstrap.start();
+    }
+
+    public TableBootstrap getTableBootstrap() {
+        return tableBootstrap;
+    }
+
+    /**
+     * @return true when the table is ACTIVE, so tokens can be written.
+     */
+    public boolean isTableReady() {
+        return tableBootstrap.isReady();
+    }
+
+    /**
+     * @return true when the table has the tokens of every book, so it can answer searches.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * @return true if a search for the words can be answered from the table (the words have a token).
+     */
+    public static boolean canSearch(String titleWords) {
+        return ! TitleTokens.tokenize( titleWords ).isEmpty();
+    }
+
+    /**
+     * @return the token items of a book, or an empty list if the book key is too long to be a range key (the
+     *         book is then not found by token searches).
+     */
+    protected List<Map<String, AttributeValue>> tokenItems(BookInfo info) {
+        String bookKey = TitleTokens.bookKey( info.getTitle(), info.getAuthor() );
+        if (! TitleTokens.isIndexable( bookKey )) {
+            log.warning("The title and author are too long for the title token table: " + info.getTitle());
+            return Collections.emptyList();
+        }
+        List<String> tokens = TitleTokens.tokenize( info.getTitle() );
+        List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>( tokens.size() );
+        for (String token : tokens) {
+            Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+            item.put( CreateTitleTokenTable.TOKEN_HASH_NAME, new AttributeValue().withS( token ) );
+            item.put( CreateTitleTokenTable.BOOK_KEY_RANGE_NAME, new AttributeValue().withS( bookKey ) );
+            item.put( "title", new AttributeValue().withS( info.getTitle() ) );
+            item.put( CreateBookTable.AUTHOR_HASH_NAME, new AttributeValue().withS( info.getAuthor() ) );
+            items.add( item );
+        }
+        return items;
+    }
+
+    /**
+     * Write the token items of a collection of books with different keys, with BatchWriteItem requests.
+     *
+     * @return the number of token items written and the items that could not be written.
+     */
+    public BatchWriteResult writeTokens(Collection<BookInfo> books) {
+        List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+        for (BookInfo info : books) {
+            items.addAll( tokenItems( info ) );
+        }
+        return batchItemWriter.writeAll( items );
+    }
+
+    /**
+     * @return the book keys (see TitleTokens.bookKey()) of the books that have a token item that was not written.
+     */
+    public static Set<String> failedBookKeys(BatchWriteResult result) {
+        Set<String> bookKeys = new HashSet<String>();
+        for (Map<String, AttributeValue> item : result.getFailedItems()) {
+            bookKeys.add( item.get( CreateTitleTokenTable.BOOK_KEY_RANGE_NAME ).getS() );
+        }
+        return bookKeys;
+    }
+
+    /**
+     * Write the token items of one book with concurrent PutItem requests on the asynchronous client.
+     *
+     * @return a future that completes when all of the items are written, or with the first failure.
+     */
+    public CompletableFuture<Void> writeTokensAsync(BookInfo info) {
+        AmazonDynamoDBAsync client = dynamoDBService.getAsyncClient();
+        List<Map<String, AttributeValue>> items = tokenItems( info );
+        CompletableFuture<?>[] puts = new CompletableFuture<?>[ items.size() ];
+        for (int i = 0; i < puts.length; i++) {
+            puts[i] = AsyncCalls.putItem( client, new PutItemRequest().withTableName( tableName ).withItem( items.get(i) ) );
+        }
+        return CompletableFuture.allOf( puts );
+    }
+
+    /**
+     * Delete the token items of a book.
+     */
+    public void deleteTokens(BookInfo info) {
+        AmazonDynamoDB client = dynamoDBService.getClient();
+        for (Map<String, AttributeValue> item : tokenItems( info )) {
+            Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+            key.put( CreateTitleTokenTable.TOKEN_HASH_NAME, item.get( CreateTitleTokenTable.TOKEN_HASH_NAME ) );
+            key.put( CreateTitleTokenTable.BOOK_KEY_RANGE_NAME, item.get( CreateTitleTokenTable.BOOK_KEY_RANGE_NAME ) );
+            client.deleteItem( new DeleteItemRequest().withTableName( tableName ).withKey( key ) );
+        }
+    }
+
+    /**
+     * @return true if the table has the marker item of a finished backfill (read with a consistent read).
+     */
+    public boolean isBackfilled() {
+        GetItemRequest request = new GetItemRequest().withTableName( tableName )
+                                                     .withKey( backfillKey() )
+                                                     .withConsistentRead( true );
+        Map<String, AttributeValue> item = dynamoDBService.getClient().getItem( request ).getItem();
+        return item != null && ! item.isEmpty();
+    }
+
+    /**
+     * Put the marker item of a finished backfill.
+     */
+    public void markBackfilled() {
+        Map<String, AttributeValue> item = backfillKey();
+        item.put( "finished", new AttributeValue().withN( Long.toString( System.currentTimeMillis() ) ) );
+        dynamoDBService.getClient().putItem( new PutItemRequest().withTableName( tableName ).withItem( item ) );
+    }
+
+    private static Map<String, AttributeValue> backfillKey() {
+        Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+        key.put( CreateTitleTokenTable.TOKEN_HASH_NAME, new AttributeValue().withS( BACKFILL_TOKEN ) );
+        key.put( CreateTitleTokenTable.BOOK_KEY_RANGE_NAME, new AttributeValue().withS( BACKFILL_TOKEN ) );
+        return key;
+    }
+
+    /**
+     * <p>
+     * Find the books whose titles have all of the words. The query tokens (see TitleTokens.queryTokens()) are
+     * queried in parallel, one page of each at a time, until a query has read its last page: that token is the
+     * rarest (to within a page) and the other queries are not continued. Its books are then checked against all
+     * of the words (including the stop words that were not queried), by their titles: a title with every word
+     * has every token.
+     * </p>
+     *
+     * @param titleWords one or more title words
+     * @return a future with the book table keys (title and author) of the books, in title order.
+     */
+    public CompletableFuture<List<Map<String, AttributeValue>>> findBookKeys(String titleWords) {
+        List<String> searchTokens = TitleTokens.tokenize( titleWords );
+        List<QueryRequest> requests = new ArrayList<QueryRequest>();
+        List<List<Map<String, AttributeValue>>> results = new ArrayList<List<Map<String, AttributeValue>>>();
+        for (String token : TitleTokens.queryTokens( searchTokens )) {
+            requests.add( buildTokenQueryRequest( token ).withLimit( SEARCH_PAGE_LIMIT ) );
+            results.add( new ArrayList<Map<String, AttributeValue>>() );
+        }
+        if (requests.isEmpty()) {
+            return CompletableFuture.completedFuture( new ArrayList<Map<String, AttributeValue>>() );
+        }
+        return queryRarest( dynamoDBService.getAsyncClient(), requests, results ).thenApply( items -> matching( items, searchTokens ) );
+    }
+
+    /**
+     * Read the next page of every query, until a query has no more pages.
+     *
+     * @return a future with the items of the shortest query that has read its last page.
+     */
+    private static CompletableFuture<List<Map<String, AttributeValue>>> queryRarest(AmazonDynamoDBAsync client,
+                                                                                   List<QueryRequest> requests,
+                                                                                   List<List<Map<String, AttributeValue>>> results) {
+        List<CompletableFuture<QueryResult>> pages = new ArrayList<CompletableFuture<QueryResult>>( requests.size() );
+        for (QueryRequest request : requests) {
+            pages.add( AsyncCalls.query( client, request ) );
+        }
+        return CompletableFuture.allOf( pages.toArray( new CompletableFuture<?>[ pages.size() ] ) ).thenCompose( v -> {
+            List<Map<String, AttributeValue>> rarest = null;
+            for (int i = 0; i < pages.size(); i++) {
+                QueryResult page = pages.get(i).join();
+                results.get(i).addAll( page.getItems() );
+                Map<String, AttributeValue> lastKey = page.getLastEvaluatedKey();
+                if (lastKey == null || lastKey.isEmpty()) {
+                    if (rarest == null || results.get(i).size() < rarest.size()) {
+                        rarest = results.get(i);
+                    }
+                } else {
+                    requests.get(i).setExclusiveStartKey( lastKey );
+                }
+            }
+            if (rarest != null) {
+                return CompletableFuture.completedFuture( rarest );
+            }
+            return queryRarest( client, requests, results );
+        });
+    }
+
+    /**
+     * @return the keys of the token items whose titles have all of the words.
+     */
+    private static List<Map<String, AttributeValue>> matching(List<Map<String, AttributeValue>> items,
+                                                              List<String> searchTokens) {
+        List<Map<String, AttributeValue>> keys = new ArrayList<Map<String, AttributeValue>>();
+        for (Map<String, AttributeValue> item : items) {
+            if (TitleTokens.matches( item.get("title").getS(), searchTokens )) {
+                Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+                key.put( "title", item.get("title") );
+                key.put( CreateBookTable.AUTHOR_HASH_NAME, item.get(CreateBookTable.AUTHOR_HASH_NAME) );
+                keys.add( key );
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * A query for the token items of one token.
+     */
+    protected QueryRequest buildTokenQueryRequest(String token) {
+        Map<String, Condition> keyConditions = new HashMap<String, Condition>();
+        keyConditions.put( CreateTitleTokenTable.TOKEN_HASH_NAME, new Condition().withComparisonOperator( ComparisonOperator.EQ )
+                                                                                 .withAttributeValueList( new AttributeValue().withS( token ) ) );
+        return new QueryRequest().withTableName( tableName ).withKeyConditions( keyConditions );
+    }
+
+    public void shutdown() {
+        tableBootstrap.shutdown();
+        batchItemWriter.shutdown();
+    }
+}
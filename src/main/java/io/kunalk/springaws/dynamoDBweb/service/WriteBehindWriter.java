@@ -0,0 +1,316 @@
+package io.kunalk.springaws.dynamoDBweb.service;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.BatchWriteResult;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+import io.kunalk.springaws.dynamoDBweb.wal.WriteAheadLog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * <h4>
+ * WriteBehindWriter
+ * </h4>
+ * <p>
+ * Book writes that are acknowledged when they are in a local WriteAheadLog, and written to DynamoDB later. A
+ * submitted book is appended to the log and added to the pending books. A drainer thread takes the pending books
+ * every flush interval and writes them with one writeBooks() call (concurrent BatchWriteItem requests). The pending
+ * books are keyed by title and author, so a book that is saved several times between flushes is written once,
+ * with its last value.
+ * </p>
+ * <p>
+ * When the drainer takes the pending books it rolls the log, so the records of those books are in the segments
+ * before the roll. Books that could not be written are pending again (unless a newer write of the book is
+ * pending) and their records are appended to the log again, after the roll. Then the segments before the roll are
+ * deleted, so the log only has the records of pending books (and older records of books that were saved again).
+ * A book that has been written is not written again when the service starts, where it could replace a later
+ * write of the book. When the service starts, the records in the log are pending books, so writes that were
+ * acknowledged but not flushed before a crash are written.
+ * </p>
+ * <p>
+ * A pending book is not in DynamoDB yet, so a read of the book table does not see it until it is flushed. The
+ * number of pending books is bounded (maxPending): when it is reached, submit() returns false and the caller
+ * writes the book itself. A caller that writes a book directly must first call drain() if isPending() is true for
+ * the book, or a flush could replace the direct write with the older pending value (see BookTableService).
+ * </p>
+ * <p>
+ * With forceOnWrite, submit() forces the log to the storage device before it returns, so an acknowledged write
+ * survives a crash of the machine. Each submit then waits for a write to the device (usually well under a
+ * millisecond on an SSD, much longer on a disk or network volume). Without it an append is only a memory copy, and
+ * a crash of the machine loses the writes since the last flush, though a crash of the process does not.
+ * </p>
+ */
+public class WriteBehindWriter {
+    private final static int RECORD_FORMAT = 1;
+
+    private final WriteAheadLog writeAheadLog;
+    private final Function<Collection<BookInfo>, BatchWriteResult> bookWriter;
+    private final long flushIntervalMsec;
+    private final int maxPending;
+    private final boolean forceOnWrite;
+    private final ScheduledExecutorService drainer;
+    /** Held for a flush, so that the shutdown flush does not overlap the drainer */
+    private final Object drainLock = new Object();
+    private LinkedHashMap<String, BookInfo> pending = new LinkedHashMap<String, BookInfo>();
+    /** The books that a flush is writing (guarded by this) */
+    private Map<String, BookInfo> inFlight = Collections.emptyMap();
+    private volatile long flushedCount = 0;
+    private final Logger log;
+
+    /**
+     * @param writeAheadLog the log of the submitted books
+     * @param bookWriter writes a collection of books with different keys (e.g., BookTableService::writeBooks)
+     * @param flushIntervalMsec the time between flushes
+     * @param maxPending the maximum number of books waiting to be written
+     * @param forceOnWrite force the log to the storage device on every submit, so that an acknowledged write
+     *                     survives a crash of the machine, not only of the process.
+     */
+    public WriteBehindWriter(WriteAheadLog writeAheadLog,
+                             Function<Collection<BookInfo>, BatchWriteResult> bookWriter,
+                             long flushIntervalMsec,
+                             int maxPending,
+                             boolean forceOnWrite) {
+        this.writeAheadLog = writeAheadLog;
+        this.bookWriter = bookWriter;
+        this.flushIntervalMsec = flushIntervalMsec;
+        this.maxPending = maxPending;
+        this.forceOnWrite = forceOnWrite;
+        this.log = Logger.getLogger( this.getClass().getName() );
+        this.drainer = Executors.newSingleThreadScheduledExecutor( r -> {
+            Thread thread = new Thread( r, "write-behind-" + writeAheadLog.getDirectory().getFileName() );
+            thread.setDaemon( true );
+            return thread;
+        });
+    }
+
+    /**
+     * Read the books that are in the log from the last run and start the drainer.
+     */
+    public void start() throws IOException {
+        List<byte[]> records = writeAheadLog.readRecords();
+        synchronized (this) {
+            for (byte[] record : records) {
+                try {
+                    BookInfo info = decode( record );
+                    pending.put( key( info ), info );
+                } catch (IOException e) {
+                    log.warning("Skipping a write-behind record: " + e.getLocalizedMessage());
+                }
+            }
+        }
+        if (! records.isEmpty()) {
+            log.info("Replaying " + records.size() + " book writes from " + writeAheadLog.getDirectory());
+        }
+        drainer.scheduleWithFixedDelay( this::drain, flushIntervalMsec, flushIntervalMsec, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Append the book to the log and add it to the pending books.
+     *
+     * @return true if the book will be written, false if there are too many pending books or the book could not
+     *         be written to the log. The caller must write the book.
+     */
+    public boolean submit(BookInfo info) {
+        String key = key( info );
+        try {
+            byte[] record = encode( info );
+            synchronized (this) {
+                if (pending.size() >= maxPending && ! pending.containsKey( key )) {
+                    return false;
+                }
+                writeAheadLog.append( record );
+                if (forceOnWrite) {
+                    writeAheadLog.force();
+                }
+                pending.put( key, info );
+            }
+        } catch (IOException e) {
+            log.severe("Write-behind log append failed: " + e.getLocalizedMessage());
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return true if a write of the book (the title and author) is pending or is being flushed.
+     */
+    public synchronized boolean isPending(BookInfo info) {
+        String key = key( info );
+        return pending.containsKey( key ) || inFlight.containsKey( key );
+    }
+
+    /**
+     * @return the number of books written to DynamoDB by the drainer
+     */
+    public long getFlushedCount() {
+        return flushedCount;
+    }
+
+    /**
+     * Write the pending books. This runs on the drainer thread, on shutdown and before a direct write of a pending
+     * book. The books are written without holding the lock that submit() takes. A drain() that is called during a
+     * flush waits for the flush, and then writes the books that were submitted since.
+     */
+    public void drain() {
+        synchronized (drainLock) {
+            flushPending();
+        }
+    }
+
+    private void flushPending() {
+        Map<String, BookInfo> batch;
+        long rollId;
+        synchronized (this) {
+            writeAheadLog.force();
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<String, BookInfo>();
+            inFlight = batch;
+            rollId = writeAheadLog.roll();
+        }
+        BatchWriteResult result = null;
+        try {
+            result = bookWriter.apply( batch.values() );
+        } catch (RuntimeException e) {
+            log.warning("Write-behind flush of " + batch.size() + " books failed: " + e.getLocalizedMessage());
+        }
+        synchronized (this) {
+            inFlight = Collections.emptyMap();
+            Map<String, BookInfo> failed;
+            if (result == null) {
+                failed = batch;
+            } else {
+                flushedCount += result.getWritten();
+                failed = new LinkedHashMap<String, BookInfo>();
+                for (Map<String, AttributeValue> item : result.getFailedItems()) {
+                    String key = key( item.get("title"), item.get("author") );
+                    if (batch.containsKey( key )) {
+                        failed.put( key, batch.get( key ) );
+                    }
+                }
+                if (! failed.isEmpty()) {
+                    log.warning("Write-behind flush: " + failed.size() + " books were not written and will be retried");
+                }
+            }
+            try {
+                requeue( failed );
+                writeAheadLog.deleteSegmentsBefore( rollId );
+            } catch (IOException e) {
+                log.warning("Write-behind log segments were not deleted: " + e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Make books that were not written pending again, and append them to the log after the roll, so that the
+     * segments before the roll can be deleted. A book that was saved again since the flush started is not replaced
+     * by the older write (its newer record is already in the log).
+     * 
+     * @throws IOException if a book could not be appended to the log. The books are pending, but the segments
+     *         before the roll must be kept.
+     */
+    private void requeue(Map<String, BookInfo> books) throws IOException {
+        LinkedHashMap<String, BookInfo> retry = new LinkedHashMap<String, BookInfo>( books );
+        for (Map.Entry<String, BookInfo> entry : pending.entrySet()) {
+            retry.remove( entry.getKey() );
+            retry.put( entry.getKey(), entry.getValue() );
+        }
+        LinkedHashMap<String, BookInfo> submitted = pending;
+        pending = retry;
+        boolean appended = false;
+        for (Map.Entry<String, BookInfo> entry : books.entrySet()) {
+            if (! submitted.containsKey( entry.getKey() )) {
+                writeAheadLog.append( encode( entry.getValue() ) );
+                appended = true;
+            }
+        }
+        if (appended) {
+            // the records are on the device before the segments that had them are deleted
+            writeAheadLog.force();
+        }
+    }
+
+    /**
+     * Stop the drainer and write the pending books. Books that can't be written stay in the log and are written
+     * when the service is started again.
+     */
+    public void shutdown() {
+        drainer.shutdown();
+        try {
+            drainer.awaitTermination( flushIntervalMsec + 10000, TimeUnit.MILLISECONDS );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        writeAheadLog.close();
+    }
+
+    private static String key(BookInfo info) {
+        return info.getTitle() + "\u0000" + info.getAuthor();
+    }
+
+    private static String key(AttributeValue title, AttributeValue author) {
+        return ((title != null) ? title.getS() : null) + "\u0000" + ((author != null) ? author.getS() : null);
+    }
+
+    static byte[] encode(BookInfo info) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream( 128 );
+        try (DataOutputStream out = new DataOutputStream( bytes )) {
+            out.writeByte( RECORD_FORMAT );
+            writeString( out, info.getTitle() );
+            writeString( out, info.getAuthor() );
+            writeString( out, info.getGenre() );
+            writeString( out, info.getPublisher() );
+            writeString( out, info.getYear() );
+            writeString( out, info.getPrice() );
+        }
+        return bytes.toByteArray();
+    }
+
+    static BookInfo decode(byte[] record) throws IOException {
+        try (DataInputStream in = new DataInputStream( new ByteArrayInputStream( record ) )) {
+            if (in.readByte() != RECORD_FORMAT) {
+                throw new IOException("Unknown write-behind record format");
+            }
+            BookInfo info = new BookInfo();
+            info.setTitle( readString( in ) );
+            info.setAuthor( readString( in ) );
+            info.setGenre( readString( in ) );
+            info.setPublisher( readString( in ) );
+            info.setYear( readString( in ) );
+            info.setPrice( readString( in ) );
+            return info;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean( value != null );
+        if (value != null) {
+            out.writeUTF( value );
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,153 @@
+package io.kunalk.springaws.dynamoDBweb.upload;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+/**
+ * <h4>
+ * BookCsvReader
+ * </h4>
+ * <p>
+ * Reads books from CSV text, one row at a time. The first row is a header that names the columns: title, author,
+ * genre, publisher, year and price (in any order, not case sensitive). Unknown columns are ignored. Fields may
+ * be quoted with double quotes, and a double quote inside a quoted field is written as two double quotes.
+ * Quoted fields may contain commas and line breaks.
+ * </p>
+ * <p>
+ * Only the current row is held in memory, so the size of the input is not limited by the heap.
+ * </p>
+ */
+public class BookCsvReader implements Iterator<BookInfo> {
+    private static final String[] COLUMNS = { "title", "author", "genre", "publisher", "year", "price" };
+
+    private final BufferedReader reader;
+    private final int[] columnIndex = new int[ COLUMNS.length ];
+    private List<String> nextRow = null;
+    private long rowNumber = 0;
+
+    public BookCsvReader(BufferedReader reader) throws IOException {
+        this.reader = reader;
+        List<String> header = readRow();
+        if (header == null) {
+            throw new IOException("The CSV input is empty");
+        }
+        for (int c = 0; c < COLUMNS.length; c++) {
+            columnIndex[c] = -1;
+            for (int h = 0; h < header.size(); h++) {
+                if (header.get(h).trim().toLowerCase(Locale.ROOT).equals( COLUMNS[c] )) {
+                    columnIndex[c] = h;
+                }
+            }
+        }
+        if (columnIndex[0] < 0 || columnIndex[1] < 0) {
+            throw new IOException("The CSV header must include title and author columns");
+        }
+    }
+
+    /**
+     * @return the number of data rows read so far.
+     */
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextRow == null) {
+            try {
+                nextRow = readRow();
+                // skip blank lines
+                while (nextRow != null && nextRow.size() == 1 && nextRow.get(0).trim().length() == 0) {
+                    nextRow = readRow();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException( e );
+            }
+        }
+        return nextRow != null;
+    }
+
+    @Override
+    public BookInfo next() {
+        if (! hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<String> row = nextRow;
+        nextRow = null;
+        rowNumber++;
+        BookInfo info = new BookInfo();
+        info.setTitle( field(row, 0) );
+        info.setAuthor( field(row, 1) );
+        info.setGenre( field(row, 2) );
+        info.setPublisher( field(row, 3) );
+        info.setYear( field(row, 4) );
+        info.setPrice( field(row, 5) );
+        return info;
+    }
+
+    private String field(List<String> row, int column) {
+        int index = columnIndex[column];
+        return (index >= 0 && index < row.size()) ? row.get(index) : null;
+    }
+
+    /**
+     * Read one CSV record, which may span more than one line if a quoted field contains a line break.
+     *
+     * @return the fields of the record, or null at the end of the input.
+     */
+    private List<String> readRow() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (quoted) {
+                    // the quoted field continues on the next line
+                    line = reader.readLine();
+                    if (line == null) {
+                        throw new IOException("Unterminated quoted field at the end of the CSV input");
+                    }
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+                fields.add( field.toString() );
+                break;
+            }
+            char ch = line.charAt(i++);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add( field.toString() );
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,73 @@
+package io.kunalk.springaws.dynamoDBweb.upload;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.BatchWriteResult;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+/**
+ * <h4>
+ * ChunkedBookWriter
+ * </h4>
+ * <p>
+ * Collects the books of an upload and writes them a chunk at a time. Only the counts of the books written and
+ * failed are kept from each chunk's result, so the memory used by an upload does not grow with the number of
+ * books that fail.
+ * </p>
+ */
+public class ChunkedBookWriter {
+    private final Function<List<BookInfo>, BatchWriteResult> bookWriter;
+    private final int chunkSize;
+    private final List<BookInfo> chunk;
+    private long written = 0;
+    private long failed = 0;
+
+    /**
+     * @param bookWriter writes a chunk of books (e.g., BookTableService::writeBooks)
+     * @param chunkSize the number of books in a chunk
+     */
+    public ChunkedBookWriter(Function<List<BookInfo>, BatchWriteResult> bookWriter, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than zero: " + chunkSize);
+        }
+        this.bookWriter = bookWriter;
+        this.chunkSize = chunkSize;
+        this.chunk = new ArrayList<BookInfo>( chunkSize );
+    }
+
+    /**
+     * Add a book, and write the chunk if it is full.
+     */
+    public void add(BookInfo info) {
+        chunk.add( info );
+        if (chunk.size() >= chunkSize) {
+            writeChunk();
+        }
+    }
+
+    /**
+     * Write the books of the last, partly full, chunk.
+     */
+    public void flush() {
+        if (chunk.size() > 0) {
+            writeChunk();
+        }
+    }
+
+    private void writeChunk() {
+        BatchWriteResult result = bookWriter.apply( chunk );
+        written += result.getWritten();
+        failed += result.getFailed();
+        chunk.clear();
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+}
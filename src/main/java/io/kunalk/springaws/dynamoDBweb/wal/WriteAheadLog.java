@@ -0,0 +1,242 @@
+package io.kunalk.springaws.dynamoDBweb.wal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * <h4>
+ * WriteAheadLog
+ * </h4>
+ * <p>
+ * An append-only log of byte records in a local directory. The log is a sequence of fixed size segment files
+ * (wal-&lt;segment id&gt;.log) and the segment that is being appended to is memory mapped, so an append is a copy
+ * into the page cache with no system call. A record that has been appended survives a crash of the process.
+ * A crash of the machine can lose the records since the last force() (or roll()).
+ * </p>
+ * <p>
+ * A segment starts with a magic number, followed by the records. A record is its length, the CRC32 of its bytes
+ * and its bytes. The length is written last, and the rest of a new segment is zero, so a record that was only
+ * partly written when the process stopped reads as the end of the segment. A record with a bad CRC also ends
+ * the segment.
+ * </p>
+ * <p>
+ * The segments that are in the directory when the log is opened are the records of the last run that were not
+ * deleted: readRecords() returns them. The writer rolls the log to a new segment when it takes the records it
+ * has appended so far, and deletes the segments before the roll when the records have been processed.
+ * </p>
+ * <p>
+ * A deleted segment stays mapped until the buffer is garbage collected. This is not a problem on Linux and macOS,
+ * where a mapped file can be deleted, but deleteSegmentsBefore() fails on Windows.
+ * </p>
+ */
+public class WriteAheadLog implements Closeable {
+    /** The smallest segment size */
+    public final static int MIN_SEGMENT_SIZE = 4096;
+
+    private final static int MAGIC = 0x57414c31; // "WAL1"
+    private final static int SEGMENT_HEADER_SIZE = 4;
+    private final static int RECORD_HEADER_SIZE = 8;
+    private final static String SEGMENT_PREFIX = "wal-";
+    private final static String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    /** The segment files in the directory, by segment id */
+    private final TreeMap<Long, Path> segments = new TreeMap<Long, Path>();
+    /** The segments before this one were written before the log was opened */
+    private final long firstSegmentId;
+    private long nextSegmentId;
+    private MappedByteBuffer current = null;
+    private long currentSegmentId = -1;
+    private boolean closed = false;
+    private final Logger log;
+
+    /**
+     * Open the log in a directory. The directory is created if it does not exist. No segment is created until
+     * the first append.
+     *
+     * @param directory the directory of the segment files
+     * @param segmentSize the size of a segment file, in bytes. A record must fit in one segment.
+     */
+    public WriteAheadLog(Path directory, int segmentSize) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("The segment size must be at least " + MIN_SEGMENT_SIZE + " bytes: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.log = Logger.getLogger( this.getClass().getName() );
+        Files.createDirectories( directory );
+        try (DirectoryStream<Path> files = Files.newDirectoryStream( directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX )) {
+            for (Path file : files) {
+                Long id = segmentId( file );
+                if (id != null) {
+                    segments.put( id, file );
+                }
+            }
+        }
+        this.firstSegmentId = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        this.nextSegmentId = firstSegmentId;
+    }
+
+    /**
+     * @return the records of the segments that were in the directory when the log was opened, in the order they
+     *         were appended.
+     */
+    public synchronized List<byte[]> readRecords() throws IOException {
+        List<byte[]> records = new ArrayList<byte[]>();
+        for (Map.Entry<Long, Path> segment : segments.headMap( firstSegmentId ).entrySet()) {
+            readSegment( segment.getValue(), records );
+        }
+        return records;
+    }
+
+    private void readSegment(Path file, List<byte[]> records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( file ) );
+        if (buffer.remaining() < SEGMENT_HEADER_SIZE || buffer.getInt() != MAGIC) {
+            log.warning("Skipping " + file + ": not a log segment");
+            return;
+        }
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] record = new byte[ length ];
+            buffer.get( record );
+            crc.reset();
+            crc.update( record, 0, length );
+            if ((int)crc.getValue() != checksum) {
+                log.warning("Bad record checksum in " + file + ": the rest of the segment is skipped");
+                break;
+            }
+            records.add( record );
+        }
+    }
+
+    /**
+     * Append a record to the current segment, or to a new segment if it does not fit.
+     *
+     * @return the id of the segment that holds the record
+     * @throws IllegalArgumentException if the record is empty or does not fit in a segment
+     */
+    public synchronized long append(byte[] record) throws IOException {
+        if (closed) {
+            throw new IOException("The log is closed");
+        }
+        int recordSize = RECORD_HEADER_SIZE + record.length;
+        if (record.length == 0 || recordSize > segmentSize - SEGMENT_HEADER_SIZE) {
+            throw new IllegalArgumentException("A record must be between 1 and " + (segmentSize - SEGMENT_HEADER_SIZE - RECORD_HEADER_SIZE)
+                                               + " bytes: " + record.length);
+        }
+        if (current == null || current.remaining() < recordSize) {
+            rollSegment();
+            openSegment();
+        }
+        CRC32 crc = new CRC32();
+        crc.update( record, 0, record.length );
+        int start = current.position();
+        current.position( start + RECORD_HEADER_SIZE );
+        current.put( record );
+        current.putInt( start + 4, (int)crc.getValue() );
+        // the record is complete when its length is set
+        current.putInt( start, record.length );
+        return currentSegmentId;
+    }
+
+    /**
+     * End the current segment: the next append starts a new segment.
+     *
+     * @return a segment id such that every record appended before the roll is in a segment before it
+     */
+    public synchronized long roll() {
+        rollSegment();
+        return nextSegmentId;
+    }
+
+    private void rollSegment() {
+        if (current != null) {
+            current.force();
+            current = null;
+        }
+    }
+
+    private void openSegment() throws IOException {
+        long id = nextSegmentId++;
+        Path file = directory.resolve( String.format( "%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX ) );
+        try (RandomAccessFile raf = new RandomAccessFile( file.toFile(), "rw" )) {
+            raf.setLength( segmentSize );
+            // the mapping stays valid after the channel is closed
+            current = raf.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, segmentSize );
+        }
+        current.putInt( MAGIC );
+        currentSegmentId = id;
+        segments.put( id, file );
+    }
+
+    /**
+     * Write the current segment to the storage device.
+     */
+    public synchronized void force() {
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    /**
+     * Delete the segments before a segment id (a value returned by roll()). The current segment is not deleted.
+     */
+    public synchronized void deleteSegmentsBefore(long segmentId) throws IOException {
+        Map<Long, Path> done = segments.headMap( segmentId );
+        for (Map.Entry<Long, Path> segment : new ArrayList<Map.Entry<Long, Path>>( done.entrySet() )) {
+            if (current != null && segment.getKey() == currentSegmentId) {
+                continue;
+            }
+            Files.deleteIfExists( segment.getValue() );
+            segments.remove( segment.getKey() );
+        }
+    }
+
+    /**
+     * @return the number of segment files, including the current segment.
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Force the current segment and stop appending. The segments are not deleted.
+     */
+    @Override
+    public synchronized void close() {
+        rollSegment();
+        closed = true;
+    }
+
+    private static Long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.valueOf( name.substring( SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length() ) );
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+}
@@ -75,7 +75,8 @@
 						</div>
 						<div class="col-sm-5 " style="width:100%;">
 						    <span>
-							<input type="text" class="form-control" id="title" name="title" placeholder="Title">
+							<input type="text" class="form-control" id="title" name="title" placeholder="Title"
+								list="title-suggestions" autocomplete="off" data-suggest="title">
 							</span>
 							<c:if test="${title_author_title_error != null && title_author_title_error.length() > 0}">
 								<span class="errorSpan">${title_author_title_error}</span>
@@ -83,7 +84,8 @@
 						</div>
 						<div class="col-sm-5">
 						    <span>
-							<input type="text" class="form-control" id="author" name="author" placeholder="Author">
+							<input type="text" class="form-control" id="author" name="author" placeholder="Author"
+								list="author-suggestions" autocomplete="off" data-suggest="author">
 							</span>
 							<c:if test="${title_author_author_error != null && title_author_author_error.length() > 0}">
 								<span class="errorSpan">${title_author_author_error}</span>
@@ -110,7 +112,7 @@
 						</div>
 						<div class="col-sm-5">
 							<input type="text" class="form-control" id="author" name="author"
-								placeholder="Author name">
+								placeholder="Author name" list="author-suggestions" autocomplete="off" data-suggest="author">
 						</div>
 						<div class="col-sm-6"></div>
 					</div>
@@ -134,7 +136,41 @@
 						</div>
 						<div class="col-sm-5">
 							<input type="text" class="form-control" id="title" name="title"
-								placeholder="Title">
+								placeholder="Title" list="title-suggestions" autocomplete="off" data-suggest="title">
+						</div>
+						<div class="col-sm-5"></div>
+					</div>
+				</form>
+			</div>
+		</div> <!-- row -->
+		<div class="row">
+			    <div class="col-md-1"></div>
+			    <div class="col-md-11 bold">
+			       Search by Genre 
+			    </div>
+		</div>
+		<div class="row">
+			<div class="col-md-1"></div>
+			<div class="col-md-11">
+				<form action="genre-search" method="post">
+					<div class="form-group row">
+						<div class="col-sm-2">
+							<button type="submit" class="btn btn-primary">Search</button>
+						</div>
+						<div class="col-sm-5">
+							<select class="custom-select" name="genre" id="genre">
+								<option value="Science Fiction">Science Fiction</option>
+								<option value="Fiction">Fiction</option>
+								<option value="History">History</option>
+								<option value="Computer Science">Computer Science</option>
+								<option value="Finance">Finance</option>
+								<option value="Mathematics">Mathematics</option>
+								<option value="Current Events">Current Events</option>
+								<option value="Science">Science</option>
+								<option value="Cooking">Cooking</option>
+								<option value="Travel">Travel</option>
+								<option value="Nonfiction">Nonfiction</option>
+							</select>
 						</div>
 						<div class="col-sm-5"></div>
 					</div>
@@ -184,5 +220,45 @@
 			<!-- row -->
 		</c:if>
 	</div>
+	<datalist id="author-suggestions"></datalist>
+	<datalist id="title-suggestions"></datalist>
+	<script>
+	  // typeahead: fill the datalist of an author or title field with the completions from /api/suggest
+	  (function() {
+	    var timer = null;
+	    function suggest(input) {
+	      var prefix = input.value.trim();
+	      var list = document.getElementById(input.getAttribute("list"));
+	      if (prefix.length == 0) {
+	        list.innerHTML = "";
+	        return;
+	      }
+	      var url = "<c:url value="/api/suggest" />?limit=10&fields=" + input.getAttribute("data-suggest")
+	                + "&prefix=" + encodeURIComponent(prefix);
+	      var request = new XMLHttpRequest();
+	      request.onload = function() {
+	        if (request.status != 200 || input.value.trim() != prefix) {
+	          return;
+	        }
+	        list.innerHTML = "";
+	        JSON.parse(request.responseText).suggestions.forEach(function(suggestion) {
+	          var option = document.createElement("option");
+	          option.value = suggestion.text;
+	          list.appendChild(option);
+	        });
+	      };
+	      request.open("GET", url);
+	      request.send();
+	    }
+	    var inputs = document.querySelectorAll("input[data-suggest]");
+	    for (var i = 0; i < inputs.length; i++) {
+	      inputs[i].addEventListener("input", function(event) {
+	        var input = event.target;
+	        clearTimeout(timer);
+	        timer = setTimeout(function() { suggest(input); }, 100);
+	      });
+	    }
+	  })();
+	</script>
 </body>
 </html>
\ No newline at end of file
@@ -0,0 +1,111 @@
+package io.kunalk.springaws.dynamoDBweb.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultCacheTest {
+    private final AtomicLong clock = new AtomicLong( 1000 );
+    private ResultCache<String, List<String>> cache;
+
+    @Before
+    public void setUp() {
+        cache = new ResultCache<String, List<String>>( "test", 2, 10, 0, TimeUnit.SECONDS, clock::get );
+    }
+
+    @Test
+    public void entriesExpireAfterTheTimeToLive() {
+        cache.put( "Gibson", Collections.singletonList("Neuromancer") );
+        clock.addAndGet( TimeUnit.SECONDS.toNanos( 9 ) );
+        assertEquals(Collections.singletonList("Neuromancer"), cache.getIfPresent("Gibson"));
+        clock.addAndGet( TimeUnit.SECONDS.toNanos( 1 ) );
+        assertNull(cache.getIfPresent("Gibson"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        cache.put( "Gibson", Collections.singletonList("Neuromancer") );
+        cache.put( "Stephenson", Collections.singletonList("Anathem") );
+        cache.getIfPresent("Gibson");
+        cache.put( "Le Guin", Collections.singletonList("The Dispossessed") );
+        assertEquals(2, cache.size());
+        assertNull(cache.getIfPresent("Stephenson"));
+        assertEquals(Collections.singletonList("Neuromancer"), cache.getIfPresent("Gibson"));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void emptyResultsAreCached() {
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            List<String> books = cache.get( "Nobody", k -> {
+                loads.incrementAndGet();
+                return Collections.<String>emptyList();
+            });
+            assertTrue(books.isEmpty());
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void invalidationDuringALoadIsNotLost() {
+        // the write invalidates the key after the load read the old result
+        List<String> loaded = cache.get( "Gibson", k -> {
+            cache.invalidate( k );
+            return Collections.singletonList("Neuromancer");
+        });
+        assertEquals(Collections.singletonList("Neuromancer"), loaded);
+        assertNull(cache.getIfPresent("Gibson"));
+
+        CompletableFuture<List<String>> pending = new CompletableFuture<List<String>>();
+        CompletableFuture<List<String>> result = cache.getAsync( "Gibson", k -> pending );
+        cache.invalidate("Gibson");
+        pending.complete( Collections.singletonList("Neuromancer") );
+        assertEquals(Collections.singletonList("Neuromancer"), result.join());
+        assertNull(cache.getIfPresent("Gibson"));
+
+        // a load that is not invalidated is cached
+        cache.get( "Gibson", k -> Collections.singletonList("Count Zero") );
+        assertEquals(Collections.singletonList("Count Zero"), cache.getIfPresent("Gibson"));
+    }
+
+    @Test
+    public void loadsAreNotCachedUntilAnInvalidatedKeySettles() {
+        ResultCache<String, List<String>> settling = new ResultCache<String, List<String>>( "test", 2, 10, 2, TimeUnit.SECONDS, 
+                                                                                            clock::get );
+        settling.get( "Gibson", k -> Collections.<String>emptyList() );
+        settling.invalidate("Gibson");
+        // the index has not caught up with the write yet
+        assertTrue(settling.get( "Gibson", k -> Collections.<String>emptyList() ).isEmpty());
+        assertNull(settling.getIfPresent("Gibson"));
+        // other keys are cached
+        settling.get( "Stephenson", k -> Collections.singletonList("Anathem") );
+        assertEquals(Collections.singletonList("Anathem"), settling.getIfPresent("Stephenson"));
+
+        clock.addAndGet( TimeUnit.SECONDS.toNanos( 2 ) );
+        settling.get( "Gibson", k -> Collections.singletonList("Neuromancer") );
+        assertEquals(Collections.singletonList("Neuromancer"), settling.getIfPresent("Gibson"));
+    }
+
+    @Test
+    public void hitsAndMissesAreCounted() {
+        cache.get( "Gibson", k -> Collections.singletonList("Neuromancer") );
+        cache.get( "Gibson", k -> Collections.singletonList("Neuromancer") );
+        cache.getIfPresent("Stephenson");
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(0, cache.evictionCount());
+    }
+}
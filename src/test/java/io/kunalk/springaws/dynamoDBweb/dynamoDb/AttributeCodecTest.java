@@ -0,0 +1,280 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+/**
+ * The codec is checked against the DynamoDBMapper conversion of the same objects: the items that the mapper writes
+ * must decode to the same object, and the codec's items must be the items that the mapper writes.
+ */
+public class AttributeCodecTest {
+    /** The mapper's model does not make requests, so the client is never called */
+    private static final DynamoDBMapper MAPPER = new DynamoDBMapper( new AbstractAmazonDynamoDB() {} );
+
+    /** A bean with each of the property types that the codec converts */
+    @DynamoDBTable(tableName = "edition")
+    public static class Edition {
+        private String isbn;
+        private Integer pages;
+        private int printing;
+        private Long copies;
+        private long sold;
+        private Double weight;
+        private double height;
+        private BigDecimal price;
+        private Boolean signed;
+        private String notes;
+
+        @DynamoDBHashKey(attributeName = "isbn")
+        public String getIsbn() { return isbn; }
+        public void setIsbn(String isbn) { this.isbn = isbn; }
+
+        @DynamoDBAttribute(attributeName = "page_count")
+        public Integer getPages() { return pages; }
+        public void setPages(Integer pages) { this.pages = pages; }
+
+        public int getPrinting() { return printing; }
+        public void setPrinting(int printing) { this.printing = printing; }
+
+        public Long getCopies() { return copies; }
+        public void setCopies(Long copies) { this.copies = copies; }
+
+        public long getSold() { return sold; }
+        public void setSold(long sold) { this.sold = sold; }
+
+        public Double getWeight() { return weight; }
+        public void setWeight(Double weight) { this.weight = weight; }
+
+        public double getHeight() { return height; }
+        public void setHeight(double height) { this.height = height; }
+
+        public BigDecimal getPrice() { return price; }
+        public void setPrice(BigDecimal price) { this.price = price; }
+
+        public Boolean getSigned() { return signed; }
+        public void setSigned(Boolean signed) { this.signed = signed; }
+
+        @DynamoDBIgnore
+        public String getNotes() { return notes; }
+        public void setNotes(String notes) { this.notes = notes; }
+    }
+
+    private static <T> Map<String, AttributeValue> mapperItem(Class<T> type, T obj) {
+        DynamoDBMapperTableModel<T> model = MAPPER.getTableModel( type );
+        return model.convert( obj );
+    }
+
+    private static <T> T mapperObject(Class<T> type, Map<String, AttributeValue> item) {
+        DynamoDBMapperTableModel<T> model = MAPPER.getTableModel( type );
+        return model.unconvert( item );
+    }
+
+    private static BookInfo book() {
+        BookInfo info = new BookInfo();
+        info.setTitle("Neuromancer");
+        info.setAuthor("William Gibson");
+        info.setGenre("Science Fiction");
+        info.setPublisher("Ace");
+        info.setYear("1984");
+        info.setPrice("7.99");
+        info.setVersion( 3L );
+        return info;
+    }
+
+    private static Edition edition() {
+        Edition edition = new Edition();
+        edition.setIsbn("0-441-56956-0");
+        edition.setPages( 271 );
+        edition.setPrinting( 12 );
+        edition.setCopies( 6500000000L );
+        edition.setSold( -1L );
+        edition.setWeight( 0.25 );
+        edition.setHeight( 17.5 );
+        edition.setPrice( new BigDecimal("0.00000001") );
+        edition.setSigned( Boolean.TRUE );
+        edition.setNotes("first printing");
+        return edition;
+    }
+
+    private static Map<String, AttributeValue> encode(Object obj) throws ReflectiveOperationException {
+        return DynamoDBUtil.objectToAttributes( obj );
+    }
+
+    @Test
+    public void aBookIsEncodedAsTheMapperEncodesIt() throws ReflectiveOperationException {
+        BookInfo info = book();
+        assertEquals(mapperItem( BookInfo.class, info ), encode( info ));
+    }
+
+    @Test
+    public void eachPropertyTypeIsEncodedAsTheMapperEncodesIt() throws ReflectiveOperationException {
+        Edition edition = edition();
+        Map<String, AttributeValue> item = encode( edition );
+        Map<String, AttributeValue> expected = mapperItem( Edition.class, edition );
+        // Booleans are BOOL attributes, where the mapper's default (V1 compatible) schema writes N 1 or 0
+        assertEquals(new AttributeValue().withBOOL( true ), item.remove("signed"));
+        assertEquals(new AttributeValue().withN("1"), expected.remove("signed"));
+        // a BigDecimal is written without an exponent (DynamoDB stores the same number either way)
+        assertEquals(new AttributeValue().withN("0.00000001"), item.remove("price"));
+        assertEquals(0, new BigDecimal( expected.remove("price").getN() ).compareTo( edition.getPrice() ));
+        assertEquals(expected, item);
+    }
+
+    @Test
+    public void aBookRoundTripsThroughTheCodecAndTheMapper() throws ReflectiveOperationException {
+        BookInfo info = book();
+        BookInfo decoded = new BookInfo();
+        DynamoDBUtil.attributesToObject( decoded, mapperItem( BookInfo.class, info ) );
+        assertEquals(info, decoded);
+        assertEquals(info.getVersion(), decoded.getVersion());
+
+        BookInfo unconverted = mapperObject( BookInfo.class, encode( info ) );
+        assertEquals(info, unconverted);
+        assertEquals(info.getVersion(), unconverted.getVersion());
+    }
+
+    @Test
+    public void eachPropertyTypeRoundTrips() throws ReflectiveOperationException {
+        Edition edition = edition();
+        Map<String, AttributeValue> item = encode( edition );
+        assertEquals(new AttributeValue().withN("271"), item.get("page_count"));
+        assertEquals(new AttributeValue().withN("6500000000"), item.get("copies"));
+        assertEquals(new AttributeValue().withN("0.00000001"), item.get("price"));
+        assertFalse(item.containsKey("notes"));
+
+        Edition decoded = new Edition();
+        DynamoDBUtil.attributesToObject( decoded, item );
+        assertEquals(edition.getIsbn(), decoded.getIsbn());
+        assertEquals(edition.getPages(), decoded.getPages());
+        assertEquals(edition.getPrinting(), decoded.getPrinting());
+        assertEquals(edition.getCopies(), decoded.getCopies());
+        assertEquals(edition.getSold(), decoded.getSold());
+        assertEquals(edition.getWeight(), decoded.getWeight());
+        assertEquals(edition.getHeight(), decoded.getHeight(), 0);
+        assertEquals(0, edition.getPrice().compareTo( decoded.getPrice() ));
+        assertEquals(edition.getSigned(), decoded.getSigned());
+        assertNull(decoded.getNotes());
+    }
+
+    @Test
+    public void theMapperItemsOfEachPropertyTypeDecode() throws ReflectiveOperationException {
+        Edition edition = edition();
+        Map<String, AttributeValue> item = mapperItem( Edition.class, edition );
+        Edition decoded = new Edition();
+        DynamoDBUtil.attributesToObject( decoded, item );
+        assertEquals(edition.getPages(), decoded.getPages());
+        assertEquals(edition.getPrinting(), decoded.getPrinting());
+        assertEquals(edition.getCopies(), decoded.getCopies());
+        assertEquals(edition.getSold(), decoded.getSold());
+        assertEquals(edition.getWeight(), decoded.getWeight());
+        assertEquals(edition.getHeight(), decoded.getHeight(), 0);
+        assertEquals(0, edition.getPrice().compareTo( decoded.getPrice() ));
+        // the mapper writes a Boolean as N 1 or 0 (or as BOOL, with the V2 conversion schema)
+        assertEquals(edition.getSigned(), decoded.getSigned());
+
+        Edition unconverted = mapperObject( Edition.class, encode( edition ) );
+        assertEquals(edition.getCopies(), unconverted.getCopies());
+        assertEquals(0, edition.getPrice().compareTo( unconverted.getPrice() ));
+        assertEquals(edition.getSigned(), unconverted.getSigned());
+    }
+
+    @Test
+    public void absentAndNullAttributesAreLeftOut() throws ReflectiveOperationException {
+        BookInfo info = new BookInfo();
+        info.setTitle("Neuromancer");
+        info.setAuthor("William Gibson");
+        // the BookInfo setters store an empty string for null, and DynamoDB does not store empty strings
+        info.setPublisher( null );
+        Map<String, AttributeValue> item = encode( info );
+        assertFalse(item.containsKey("publisher"));
+        assertFalse(item.containsKey("year"));
+        assertFalse(item.containsKey(BookInfo.VERSION_ATTRIBUTE));
+
+        Edition edition = new Edition();
+        edition.setIsbn("0-441-56956-0");
+        item = encode( edition );
+        assertFalse(item.containsKey("page_count"));
+        assertFalse(item.containsKey("signed"));
+        // primitives always have a value
+        assertEquals(new AttributeValue().withN("0"), item.get("printing"));
+
+        BookInfo decoded = new BookInfo();
+        Map<String, AttributeValue> keys = new HashMap<String, AttributeValue>();
+        keys.put("title", new AttributeValue().withS("Neuromancer"));
+        keys.put("author", new AttributeValue().withS("William Gibson"));
+        keys.put("year", null);
+        DynamoDBUtil.attributesToObject( decoded, keys );
+        assertEquals("Neuromancer", decoded.getTitle());
+        assertNull(decoded.getYear());
+        assertNull(decoded.getPrice());
+        assertNull(decoded.getVersion());
+    }
+
+    @Test
+    public void unknownAttributesAreSkipped() throws ReflectiveOperationException {
+        Map<String, AttributeValue> item = encode( book() );
+        item.put("isbn", new AttributeValue().withS("0-441-56956-0"));
+        item.put("shelf", new AttributeValue().withN("12"));
+        BookInfo decoded = new BookInfo();
+        DynamoDBUtil.attributesToObject( decoded, item );
+        assertEquals(book(), decoded);
+        assertFalse(AttributeCodec.forClass( BookInfo.class ).hasAttribute("isbn"));
+        assertTrue(AttributeCodec.forClass( BookInfo.class ).hasAttribute("author"));
+    }
+
+    @Test
+    public void numbersAndStringsConvertBothWays() throws ReflectiveOperationException {
+        Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+        item.put("isbn", new AttributeValue().withN("441569560"));
+        item.put("page_count", new AttributeValue().withS(" 271 "));
+        item.put("copies", new AttributeValue().withN("9223372036854775807"));
+        item.put("weight", new AttributeValue().withN("1E-3"));
+        item.put("price", new AttributeValue().withN("1.10"));
+        item.put("signed", new AttributeValue().withN("0"));
+        Edition decoded = new Edition();
+        DynamoDBUtil.attributesToObject( decoded, item );
+        // an N attribute is read into a String property as its text, and an S attribute into a number property
+        assertEquals("441569560", decoded.getIsbn());
+        assertEquals(Integer.valueOf( 271 ), decoded.getPages());
+        assertEquals(Long.valueOf( Long.MAX_VALUE ), decoded.getCopies());
+        assertEquals(Double.valueOf( 0.001 ), decoded.getWeight());
+        // the scale is kept
+        assertEquals(new BigDecimal("1.10"), decoded.getPrice());
+        assertEquals(Boolean.FALSE, decoded.getSigned());
+    }
+
+    @Test
+    public void numbersThatDontFitAreSkipped() throws ReflectiveOperationException {
+        Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+        item.put("page_count", new AttributeValue().withN("2147483648"));
+        item.put("printing", new AttributeValue().withN("1.5"));
+        item.put("copies", new AttributeValue().withS("many"));
+        item.put("sold", new AttributeValue().withS(""));
+        Edition decoded = new Edition();
+        decoded.setPrinting( 3 );
+        DynamoDBUtil.attributesToObject( decoded, item );
+        assertNull(decoded.getPages());
+        assertEquals(3, decoded.getPrinting());
+        assertNull(decoded.getCopies());
+        assertEquals(0, decoded.getSold());
+    }
+}
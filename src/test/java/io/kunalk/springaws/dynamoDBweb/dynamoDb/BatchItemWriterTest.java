@@ -0,0 +1,133 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+public class BatchItemWriterTest {
+    private static final String TABLE = "book";
+    private static final int RETRIES = 3;
+
+    private BatchItemWriter writer;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    private BatchItemWriter newWriter(Function<BatchWriteItemRequest, BatchWriteItemResult> batchWriter) {
+        writer = new BatchItemWriter( request -> {
+            requests.incrementAndGet();
+            return batchWriter.apply( request );
+        }, TABLE, 2, RETRIES, 1, 2 );
+        return writer;
+    }
+
+    private static List<Map<String, AttributeValue>> items(int count) {
+        List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+        for (int i = 0; i < count; i++) {
+            items.add( Collections.singletonMap( "title", new AttributeValue().withS( "Book " + i ) ) );
+        }
+        return items;
+    }
+
+    private static BatchWriteItemResult unprocessed(List<WriteRequest> writes) {
+        return new BatchWriteItemResult().withUnprocessedItems( Collections.singletonMap( TABLE, writes ) );
+    }
+
+    private static AmazonServiceException serviceException(String errorCode, int statusCode) {
+        AmazonServiceException e = new AmazonServiceException( errorCode );
+        e.setErrorCode( errorCode );
+        e.setStatusCode( statusCode );
+        return e;
+    }
+
+    @Test
+    public void itemsAreWrittenInBatchesOf25() {
+        List<Integer> batchSizes = Collections.synchronizedList( new ArrayList<Integer>() );
+        BatchItemWriter writer = newWriter( request -> {
+            batchSizes.add( request.getRequestItems().get( TABLE ).size() );
+            return new BatchWriteItemResult();
+        });
+        BatchWriteResult result = writer.writeAll( items( 60 ) );
+        assertEquals(60, result.getWritten());
+        assertEquals(0, result.getFailed());
+        Collections.sort( batchSizes );
+        assertEquals(Arrays.asList( 10, 25, 25 ), batchSizes);
+    }
+
+    @Test
+    public void unprocessedItemsAreRetriedUntilTheRetriesRunOut() {
+        // the first item of every request is unprocessed
+        BatchItemWriter writer = newWriter( request -> {
+            List<WriteRequest> writes = request.getRequestItems().get( TABLE );
+            return unprocessed( writes.subList( 0, 1 ) );
+        });
+        BatchWriteResult result = writer.writeAll( items( 5 ) );
+        assertEquals(1 + RETRIES, requests.get());
+        assertEquals(4, result.getWritten());
+        assertEquals(1, result.getFailed());
+        assertEquals(items( 1 ), result.getFailedItems());
+    }
+
+    @Test
+    public void throttledAndServerErrorRequestsAreRetried() {
+        AtomicInteger calls = new AtomicInteger();
+        BatchItemWriter writer = newWriter( request -> {
+            switch (calls.incrementAndGet()) {
+            case 1:
+                throw serviceException( "ProvisionedThroughputExceededException", 400 );
+            case 2:
+                throw serviceException( "InternalServerError", 500 );
+            case 3:
+                throw new SdkClientException("Unable to execute HTTP request: Read timed out");
+            default:
+                return new BatchWriteItemResult();
+            }
+        });
+        BatchWriteResult result = writer.writeAll( items( 5 ) );
+        assertEquals(4, requests.get());
+        assertEquals(5, result.getWritten());
+        assertEquals(0, result.getFailed());
+    }
+
+    @Test
+    public void aThrottledRequestFailsWhenTheRetriesRunOut() {
+        BatchItemWriter writer = newWriter( request -> {
+            throw serviceException( "ThrottlingException", 400 );
+        });
+        BatchWriteResult result = writer.writeAll( items( 5 ) );
+        assertEquals(1 + RETRIES, requests.get());
+        assertEquals(0, result.getWritten());
+        assertEquals(5, result.getFailed());
+    }
+
+    @Test
+    public void aRejectedRequestIsNotRetried() {
+        BatchItemWriter writer = newWriter( request -> {
+            throw serviceException( "ValidationException", 400 );
+        });
+        BatchWriteResult result = writer.writeAll( items( 5 ) );
+        assertEquals(1, requests.get());
+        assertEquals(5, result.getFailed());
+    }
+}
@@ -0,0 +1,87 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class CapacityLimiterTest {
+
+    @Test
+    public void requestsWithinTheBurstDoNotWait() throws InterruptedException {
+        CapacityLimiter limiter = new CapacityLimiter("test", 10, 1, 0);
+        long waited = 0;
+        for (int i = 0; i < 5; i++) {
+            waited += limiter.acquire(1, true);
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(waited) < 50);
+    }
+
+    @Test
+    public void debtIsRepaidAtTheProvisionedRate() throws InterruptedException {
+        CapacityLimiter limiter = new CapacityLimiter("test", 100, 1, 0);
+        limiter.acquire(120, true);
+        // 100 units in the bucket, so the balance is about -20: 200 msec at 100 units/second
+        long waited = TimeUnit.NANOSECONDS.toMillis(limiter.acquire(1, true));
+        assertTrue("waited " + waited, waited >= 150);
+    }
+
+    @Test
+    public void settleReplacesTheEstimateWithTheConsumedCapacity() throws InterruptedException {
+        CapacityLimiter limiter = new CapacityLimiter("test", 1, 10, 0);
+        limiter.acquire(10, true);
+        limiter.settle(10, 2);
+        assertEquals(8.0, limiter.getAvailable(), 0.1);
+    }
+
+    @Test
+    public void backgroundRequestsWaitForInteractiveRequests() throws InterruptedException {
+        CapacityLimiter limiter = new CapacityLimiter("test", 50, 1, 0.2);
+        limiter.acquire(60, true);
+        AtomicLong interactiveDone = new AtomicLong();
+        AtomicLong backgroundDone = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(2);
+        Thread background = new Thread(() -> {
+            try {
+                limiter.acquire(1, false);
+                backgroundDone.set(System.nanoTime());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        Thread interactive = new Thread(() -> {
+            try {
+                limiter.acquire(1, true);
+                interactiveDone.set(System.nanoTime());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        background.start();
+        interactive.start();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(interactiveDone.get() < backgroundDone.get());
+    }
+
+    @Test
+    public void delayNanosIsTheTimeToRepayTheDebt() {
+        CapacityLimiter limiter = new CapacityLimiter("test", 100, 1, 0.5);
+        assertEquals(0, limiter.delayNanos(true));
+        assertEquals(0, limiter.delayNanos(false));
+        // leaves about 40 units: an interactive request is sent, a background request waits for the 50 unit reserve
+        limiter.take(60);
+        assertEquals(0, limiter.delayNanos(true));
+        long backgroundMillis = TimeUnit.NANOSECONDS.toMillis(limiter.delayNanos(false));
+        assertTrue("delay " + backgroundMillis, backgroundMillis > 50 && backgroundMillis <= 100);
+        // a balance of about -20 is repaid in 200 msec
+        limiter.take(60);
+        long interactiveMillis = TimeUnit.NANOSECONDS.toMillis(limiter.delayNanos(true));
+        assertTrue("delay " + interactiveMillis, interactiveMillis > 150 && interactiveMillis <= 200);
+    }
+}
@@ -0,0 +1,66 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.metrics.MetricCollector;
+import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.metrics.ServiceMetricCollector;
+
+public class ConnectionPoolMetricsTest {
+
+    /** A collector that another library installed */
+    private static class OtherCollector extends MetricCollector {
+        @Override
+        public boolean start() {
+            return true;
+        }
+
+        @Override
+        public boolean stop() {
+            return true;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public RequestMetricCollector getRequestMetricCollector() {
+            return RequestMetricCollector.NONE;
+        }
+
+        @Override
+        public ServiceMetricCollector getServiceMetricCollector() {
+            return ServiceMetricCollector.NONE;
+        }
+    }
+
+    @After
+    public void removeCollector() {
+        AwsSdkMetrics.setMetricCollector( MetricCollector.NONE );
+    }
+
+    @Test
+    public void anInstalledCollectorIsNotReplaced() {
+        MetricCollector other = new OtherCollector();
+        AwsSdkMetrics.setMetricCollector( other );
+        assertFalse(new ConnectionPoolMetrics().install());
+        assertSame(other, AwsSdkMetrics.getMetricCollector());
+    }
+
+    @Test
+    public void theCollectorIsInstalledWhenThereIsNoOther() {
+        AwsSdkMetrics.setMetricCollector( MetricCollector.NONE );
+        assertTrue(new ConnectionPoolMetrics().install());
+        assertNotSame(MetricCollector.NONE, AwsSdkMetrics.getMetricCollector());
+        assertTrue(AwsSdkMetrics.isMetricsEnabled());
+    }
+}
@@ -0,0 +1,85 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+/**
+ * A scan function over rows with a numeric "id" key, in id order, that pages like DynamoDB: each call evaluates
+ * up to the request Limit rows after the ExclusiveStartKey, returns the rows that pass the filter and, when rows
+ * are left, the key of the last evaluated row. A row is in segment (id % TotalSegments).
+ */
+class FakeScanTable {
+    private final List<Map<String, AttributeValue>> rows = new ArrayList<Map<String, AttributeValue>>();
+    private final Predicate<Map<String, AttributeValue>> filter;
+    private final boolean keyOnLastPage;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    /**
+     * @param filter the rows that a page returns (a scan filter)
+     * @param keyOnLastPage return a LastEvaluatedKey when a page ends at the last row, as DynamoDB may do
+     */
+    FakeScanTable(Predicate<Map<String, AttributeValue>> filter, boolean keyOnLastPage) {
+        this.filter = filter;
+        this.keyOnLastPage = keyOnLastPage;
+    }
+
+    FakeScanTable() {
+        this(row -> true, false);
+    }
+
+    FakeScanTable addRows(int count) {
+        for (int i = 0; i < count; i++) {
+            rows.add(key(rows.size()));
+        }
+        return this;
+    }
+
+    static Map<String, AttributeValue> key(int id) {
+        return Collections.singletonMap("id", new AttributeValue().withN(Integer.toString(id)));
+    }
+
+    static int id(Map<String, AttributeValue> row) {
+        return Integer.parseInt(row.get("id").getN());
+    }
+
+    int getCalls() {
+        return calls.get();
+    }
+
+    ScanResult scan(ScanRequest request) {
+        calls.incrementAndGet();
+        List<Map<String, AttributeValue>> segment = new ArrayList<Map<String, AttributeValue>>();
+        for (Map<String, AttributeValue> row : rows) {
+            if (request.getTotalSegments() == null || id(row) % request.getTotalSegments() == request.getSegment()) {
+                segment.add(row);
+            }
+        }
+        int start = 0;
+        if (request.getExclusiveStartKey() != null) {
+            int after = id(request.getExclusiveStartKey());
+            while (start < segment.size() && id(segment.get(start)) <= after) {
+                start++;
+            }
+        }
+        int end = Math.min(segment.size(), start + request.getLimit());
+        List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+        for (Map<String, AttributeValue> row : segment.subList(start, end)) {
+            if (filter.test(row)) {
+                items.add(row);
+            }
+        }
+        ScanResult result = new ScanResult().withItems(items);
+        if (end > start && (end < segment.size() || keyOnLastPage)) {
+            result.withLastEvaluatedKey(segment.get(end - 1));
+        }
+        return result;
+    }
+}
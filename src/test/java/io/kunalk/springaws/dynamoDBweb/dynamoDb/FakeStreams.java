@@ -0,0 +1,154 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamResult;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorResult;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.SequenceNumberRange;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.amazonaws.services.dynamodbv2.model.StreamDescription;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+
+/**
+ * A DynamoDB Streams client for one stream, with shards that the test adds records to and closes. DescribeStream
+ * returns the shards in the order they were added, SHARDS_PER_DESCRIBE at a time, and GetRecords returns up to
+ * RECORDS_PER_READ records. The shard of each GetRecords request and each GetShardIterator request are kept.
+ */
+class FakeStreams extends AbstractAmazonDynamoDBStreams {
+    static final String STREAM_ARN = "arn:aws:dynamodb:us-east-1:123456789012:table/book/stream/2018-12-01T00:00:00.000";
+    private static final int SHARDS_PER_DESCRIBE = 2;
+    private static final int RECORDS_PER_READ = 2;
+
+    private final Map<String, FakeShard> shards = new LinkedHashMap<String, FakeShard>();
+    private final List<String> reads = new ArrayList<String>();
+    private final List<GetShardIteratorRequest> iteratorRequests = new ArrayList<GetShardIteratorRequest>();
+    private long nextSequenceNumber = 100;
+
+    private static class FakeShard {
+        private final String parentShardId;
+        private final List<Record> records = new ArrayList<Record>();
+        private String startingSequenceNumber = null;
+        private String endingSequenceNumber = null;
+
+        FakeShard(String parentShardId) {
+            this.parentShardId = parentShardId;
+        }
+    }
+
+    FakeStreams addShard(String shardId, String parentShardId) {
+        shards.put(shardId, new FakeShard(parentShardId));
+        return this;
+    }
+
+    /**
+     * Add a record of a book by William Gibson to an open shard.
+     *
+     * @return the sequence number of the record
+     */
+    String addRecord(String shardId, String eventName, String title) {
+        FakeShard shard = shards.get(shardId);
+        if (shard.endingSequenceNumber != null) {
+            throw new IllegalStateException("shard " + shardId + " is closed");
+        }
+        String sequenceNumber = Long.toString(nextSequenceNumber++);
+        Map<String, AttributeValue> keys = new HashMap<String, AttributeValue>();
+        keys.put("title", new AttributeValue().withS(title));
+        keys.put(CreateBookTable.AUTHOR_HASH_NAME, new AttributeValue().withS("William Gibson"));
+        shard.records.add(new Record().withEventName(eventName)
+                                      .withDynamodb(new StreamRecord().withSequenceNumber(sequenceNumber).withKeys(keys)));
+        if (shard.startingSequenceNumber == null) {
+            shard.startingSequenceNumber = sequenceNumber;
+        }
+        return sequenceNumber;
+    }
+
+    void closeShard(String shardId) {
+        shards.get(shardId).endingSequenceNumber = Long.toString(nextSequenceNumber++);
+    }
+
+    static String title(Record record) {
+        return record.getDynamodb().getKeys().get("title").getS();
+    }
+
+    /**
+     * @return the shard of each GetRecords request
+     */
+    List<String> getReads() {
+        return reads;
+    }
+
+    List<GetShardIteratorRequest> getIteratorRequests() {
+        return iteratorRequests;
+    }
+
+    @Override
+    public DescribeStreamResult describeStream(DescribeStreamRequest request) {
+        List<String> shardIds = new ArrayList<String>(shards.keySet());
+        int start = (request.getExclusiveStartShardId() != null) ? shardIds.indexOf(request.getExclusiveStartShardId()) + 1 : 0;
+        int end = Math.min(shardIds.size(), start + SHARDS_PER_DESCRIBE);
+        List<Shard> page = new ArrayList<Shard>();
+        for (String shardId : shardIds.subList(start, end)) {
+            FakeShard shard = shards.get(shardId);
+            page.add(new Shard().withShardId(shardId)
+                                .withParentShardId(shard.parentShardId)
+                                .withSequenceNumberRange(new SequenceNumberRange().withStartingSequenceNumber(shard.startingSequenceNumber)
+                                                                                  .withEndingSequenceNumber(shard.endingSequenceNumber)));
+        }
+        StreamDescription description = new StreamDescription().withStreamArn(STREAM_ARN).withShards(page);
+        if (end < shardIds.size()) {
+            description.withLastEvaluatedShardId(shardIds.get(end - 1));
+        }
+        return new DescribeStreamResult().withStreamDescription(description);
+    }
+
+    /**
+     * An iterator is the shard id and the index of the next record in the shard.
+     */
+    @Override
+    public GetShardIteratorResult getShardIterator(GetShardIteratorRequest request) {
+        iteratorRequests.add(request);
+        FakeShard shard = shards.get(request.getShardId());
+        int position;
+        if (ShardIteratorType.TRIM_HORIZON.toString().equals(request.getShardIteratorType())) {
+            position = 0;
+        } else if (ShardIteratorType.LATEST.toString().equals(request.getShardIteratorType())) {
+            position = shard.records.size();
+        } else if (ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString().equals(request.getShardIteratorType())) {
+            position = 0;
+            while (! shard.records.get(position).getDynamodb().getSequenceNumber().equals(request.getSequenceNumber())) {
+                position++;
+            }
+            position++;
+        } else {
+            throw new UnsupportedOperationException(request.getShardIteratorType());
+        }
+        return new GetShardIteratorResult().withShardIterator(request.getShardId() + "/" + position);
+    }
+
+    @Override
+    public GetRecordsResult getRecords(GetRecordsRequest request) {
+        String[] iterator = request.getShardIterator().split("/");
+        String shardId = iterator[0];
+        int start = Integer.parseInt(iterator[1]);
+        reads.add(shardId);
+        FakeShard shard = shards.get(shardId);
+        int end = Math.min(shard.records.size(), start + RECORDS_PER_READ);
+        GetRecordsResult result = new GetRecordsResult().withRecords(new ArrayList<Record>(shard.records.subList(start, end)));
+        if (shard.endingSequenceNumber == null || end < shard.records.size()) {
+            result.withNextShardIterator(shardId + "/" + end);
+        }
+        return result;
+    }
+}
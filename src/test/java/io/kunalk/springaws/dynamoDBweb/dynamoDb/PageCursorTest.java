@@ -0,0 +1,52 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+public class PageCursorTest {
+
+    @Test
+    public void roundTrip() {
+        Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+        key.put("title", new AttributeValue().withS("Bangkok 8 / \u00e9t\u00e9"));
+        key.put("author", new AttributeValue().withS("John Burdett"));
+        key.put("year", new AttributeValue().withN("2003"));
+        String cursor = PageCursor.encode("author\u0000John Burdett", key);
+        assertEquals(key, PageCursor.decode("author\u0000John Burdett", cursor));
+    }
+
+    @Test
+    public void noCursorAtTheEnd() {
+        assertNull(PageCursor.encode("books", null));
+        assertNull(PageCursor.encode("books", new HashMap<String, AttributeValue>()));
+        assertNull(PageCursor.decode("books", null));
+    }
+
+    @Test
+    public void cursorIsBoundToItsScope() {
+        Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+        key.put("title", new AttributeValue().withS("Neuromancer"));
+        key.put("author", new AttributeValue().withS("William Gibson"));
+        String cursor = PageCursor.encode("title\u0000Neuro", key);
+        try {
+            PageCursor.decode("books", cursor);
+            fail("decoded a cursor with another scope");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            PageCursor.decode("title\u0000Neuro", cursor.substring(0, cursor.length() - 4));
+            fail("decoded a truncated cursor");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
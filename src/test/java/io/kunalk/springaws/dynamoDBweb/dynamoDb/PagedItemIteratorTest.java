@@ -0,0 +1,104 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+
+public class PagedItemIteratorTest {
+
+    private static ScanRequest request(int limit) {
+        return new ScanRequest().withTableName("book").withLimit(limit);
+    }
+
+    private static List<Integer> ids(PagedItemIterator items) {
+        List<Integer> ids = new ArrayList<Integer>();
+        while (items.hasNext()) {
+            ids.add(FakeScanTable.id(items.next()));
+        }
+        return ids;
+    }
+
+    @Test
+    public void pagesAreFollowedToTheLastEvaluatedKey() {
+        FakeScanTable table = new FakeScanTable().addRows(7);
+        ScanItemIterator items = new ScanItemIterator(table::scan, request(3));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), ids(items));
+        assertEquals(3, items.getPagesRead());
+        assertNull(items.getLastEvaluatedKey());
+        try {
+            items.next();
+            fail("a row was returned after the last page");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void aKeyOnTheLastPageReadsOneEmptyPage() {
+        FakeScanTable table = new FakeScanTable(row -> true, true).addRows(6);
+        ScanItemIterator items = new ScanItemIterator(table::scan, request(3));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), ids(items));
+        assertEquals(3, items.getPagesRead());
+    }
+
+    @Test
+    public void emptyPagesWithAKeyAreSkipped() {
+        // the filter removes every row of the second and third pages
+        FakeScanTable table = new FakeScanTable(row -> FakeScanTable.id(row) < 2 || FakeScanTable.id(row) >= 6, false).addRows(8);
+        ScanItemIterator items = new ScanItemIterator(table::scan, request(2));
+        assertEquals(Arrays.asList(0, 1, 6, 7), ids(items));
+        assertEquals(4, items.getPagesRead());
+    }
+
+    @Test
+    public void anEmptyTableHasNoRows() {
+        FakeScanTable table = new FakeScanTable();
+        ScanItemIterator items = new ScanItemIterator(table::scan, request(3));
+        assertFalse(items.hasNext());
+        assertEquals(1, table.getCalls());
+    }
+
+    @Test
+    public void pagesAreReadOnlyWhenTheyAreNeeded() {
+        FakeScanTable table = new FakeScanTable().addRows(10);
+        ScanItemIterator items = new ScanItemIterator(table::scan, request(4));
+        assertEquals(0, table.getCalls());
+        assertEquals(Arrays.asList(0, 1), items.stream().limit(2).map(FakeScanTable::id).collect(Collectors.toList()));
+        assertEquals(1, table.getCalls());
+        assertTrue(items.hasBufferedItems());
+        // a page is not read while the current page has rows
+        assertFalse(items.readNextPage());
+        assertEquals(1, table.getCalls());
+
+        items.next();
+        items.next();
+        assertFalse(items.hasBufferedItems());
+        assertEquals(FakeScanTable.key(3), items.getLastEvaluatedKey());
+        assertTrue(items.readNextPage());
+        assertEquals(2, table.getCalls());
+        assertEquals(FakeScanTable.key(7), items.getLastEvaluatedKey());
+    }
+
+    @Test
+    public void theReadStartsAfterTheExclusiveStartKey() {
+        FakeScanTable table = new FakeScanTable().addRows(6);
+        Map<String, AttributeValue> startKey = FakeScanTable.key(3);
+        ScanItemIterator items = new ScanItemIterator(table::scan, request(4).withExclusiveStartKey(startKey));
+        assertEquals(startKey, items.getLastEvaluatedKey());
+        assertEquals(Arrays.asList(4, 5), ids(items));
+    }
+}
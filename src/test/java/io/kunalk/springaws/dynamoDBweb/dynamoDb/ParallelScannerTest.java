@@ -0,0 +1,120 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+
+public class ParallelScannerTest {
+
+    private ParallelScanner scanner = new ParallelScanner(4);
+
+    @After
+    public void tearDown() {
+        scanner.shutdown();
+    }
+
+    private static ScanRequest request() {
+        return new ScanRequest().withTableName("book").withLimit(2);
+    }
+
+    @Test
+    public void everySegmentIsReadToTheEnd() {
+        FakeScanTable table = new FakeScanTable().addRows(21);
+        List<Integer> ids = scanner.scan(table::scan, ParallelScannerTest::request, FakeScanTable::id, null);
+        assertEquals(21, ids.size());
+        Collections.sort(ids);
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i, (int) ids.get(i));
+        }
+        // 6, 5, 5 and 5 rows in pages of 2
+        assertEquals(3 + 3 + 3 + 3, table.getCalls());
+    }
+
+    @Test
+    public void emptySegmentsAreScannedOnce() {
+        // only segments 0 and 1 have rows
+        FakeScanTable table = new FakeScanTable().addRows(2);
+        List<Integer> ids = scanner.scan(table::scan, ParallelScannerTest::request, FakeScanTable::id, null);
+        Collections.sort(ids);
+        assertEquals(Arrays.asList(0, 1), ids);
+        assertEquals(4, table.getCalls());
+
+        assertTrue(scanner.scan(new FakeScanTable()::scan, ParallelScannerTest::request, FakeScanTable::id, null).isEmpty());
+    }
+
+    @Test
+    public void rowsDecodedAsNullAreDropped() {
+        FakeScanTable table = new FakeScanTable().addRows(10);
+        List<Integer> ids = scanner.scan(table::scan, ParallelScannerTest::request,
+                                         row -> (FakeScanTable.id(row) % 3 == 0) ? FakeScanTable.id(row) : null,
+                                         Comparator.<Integer>naturalOrder());
+        assertEquals(Arrays.asList(0, 3, 6, 9), ids);
+    }
+
+    @Test
+    public void orderedScansMergeTheSortedSegments() {
+        FakeScanTable table = new FakeScanTable().addRows(50);
+        // sort by the last digit, then by id, so that every segment has rows all through the order
+        Comparator<Integer> order = Comparator.<Integer>comparingInt(id -> id % 10).thenComparing(Comparator.naturalOrder());
+        List<Integer> ids = scanner.scan(table::scan, ParallelScannerTest::request, FakeScanTable::id, order);
+        List<Integer> expected = new ArrayList<Integer>(ids);
+        expected.sort(order);
+        assertEquals(expected, ids);
+        assertEquals(50, ids.size());
+    }
+
+    @Test
+    public void aFailedSegmentFailsTheScan() {
+        FakeScanTable table = new FakeScanTable().addRows(8);
+        try {
+            scanner.scan(request -> {
+                if (request.getSegment() == 2) {
+                    throw new IllegalStateException("segment 2 failed");
+                }
+                return table.scan(request);
+            }, ParallelScannerTest::request, FakeScanTable::id, null);
+            fail("the scan did not fail");
+        } catch (IllegalStateException e) {
+            assertEquals("segment 2 failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void mergeSortedInterleavesTheLists() {
+        List<Integer> merged = ParallelScanner.mergeSorted(
+                Arrays.asList(Arrays.asList(1, 4, 4, 9), Collections.<Integer>emptyList(), Arrays.asList(2, 3, 4, 10, 11),
+                              Arrays.asList(0), Arrays.asList(5, 6, 7, 8)),
+                Comparator.<Integer>naturalOrder());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 4, 4, 5, 6, 7, 8, 9, 10, 11), merged);
+    }
+
+    @Test
+    public void mergeSortedOfNoRows() {
+        assertTrue(ParallelScanner.mergeSorted(Collections.<List<String>>emptyList(), Comparator.<String>naturalOrder()).isEmpty());
+        assertTrue(ParallelScanner.mergeSorted(Arrays.asList(Collections.<String>emptyList(), Collections.<String>emptyList()),
+                                               Comparator.<String>naturalOrder()).isEmpty());
+        assertEquals(Arrays.asList("a", "b"), ParallelScanner.mergeSorted(Arrays.asList(Arrays.asList("a", "b")),
+                                                                          Comparator.<String>naturalOrder()));
+    }
+
+    @Test
+    public void segmentsMustBePositive() {
+        try {
+            new ParallelScanner(0);
+            fail("a scanner with no segments was made");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package io.kunalk.springaws.dynamoDBweb.dynamoDb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.OperationType;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+
+public class StreamConsumerTest {
+    /** Long enough that the poller does not run during a test: the tests call poll() */
+    private static final long POLL_INTERVAL_MSEC = 60 * 60 * 1000;
+
+    private Path directory;
+    private Path checkpointFile;
+    private final FakeStreams streams = new FakeStreams();
+    /** The titles of the records passed to the listener */
+    private final List<String> delivered = new ArrayList<String>();
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("stream-consumer-test");
+        checkpointFile = directory.resolve("stream.checkpoint");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private StreamConsumer newConsumer() throws IOException {
+        StreamConsumer consumer = new StreamConsumer(streams, FakeStreams.STREAM_ARN, checkpointFile, POLL_INTERVAL_MSEC);
+        consumer.addListener(record -> delivered.add(FakeStreams.title(record)));
+        consumer.loadCheckpoints();
+        return consumer;
+    }
+
+    /**
+     * Write a checkpoint file for a stream without shard checkpoints, as a consumer that was stopped before the
+     * shards were created leaves it. The shards are then read from their first record.
+     */
+    private void writeCheckpointFile(String streamArn) throws IOException {
+        Properties checkpoints = new Properties();
+        checkpoints.setProperty("stream", streamArn);
+        try (OutputStream out = Files.newOutputStream(checkpointFile)) {
+            checkpoints.store(out, null);
+        }
+    }
+
+    private GetShardIteratorRequest iteratorRequest(String shardId) {
+        for (GetShardIteratorRequest request : streams.getIteratorRequests()) {
+            if (shardId.equals(request.getShardId())) {
+                return request;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void aParentShardIsReadBeforeItsChild() throws IOException {
+        writeCheckpointFile(FakeStreams.STREAM_ARN);
+        // the child is described first, so the consumer must wait for the parent
+        streams.addShard("child", "parent").addShard("parent", null);
+        streams.addRecord("parent", "INSERT", "Neuromancer");
+        streams.addRecord("parent", "MODIFY", "Count Zero");
+        streams.addRecord("parent", "MODIFY", "Neuromancer");
+        streams.closeShard("parent");
+        streams.addRecord("child", "REMOVE", "Count Zero");
+
+        StreamConsumer consumer = newConsumer();
+        consumer.poll();
+        assertEquals(Arrays.asList("Neuromancer", "Count Zero", "Neuromancer"), delivered);
+        assertEquals(Arrays.asList("parent", "parent"), streams.getReads());
+
+        consumer.poll();
+        assertEquals(Arrays.asList("Neuromancer", "Count Zero", "Neuromancer", "Count Zero"), delivered);
+        assertEquals(4, consumer.getRecordCount());
+        consumer.shutdown();
+    }
+
+    @Test
+    public void theChildOfAClosedShardIsFound() throws IOException {
+        writeCheckpointFile(FakeStreams.STREAM_ARN);
+        streams.addShard("parent", null);
+        streams.addRecord("parent", "INSERT", "Neuromancer");
+        StreamConsumer consumer = newConsumer();
+        consumer.poll();
+        assertEquals(Collections.singletonList("Neuromancer"), delivered);
+
+        // the shard is split: its last records are read, then the shard list is read again
+        streams.addRecord("parent", "INSERT", "Count Zero");
+        streams.closeShard("parent");
+        streams.addShard("child", "parent");
+        streams.addRecord("child", "INSERT", "Mona Lisa Overdrive");
+        consumer.poll();
+        consumer.poll();
+        assertEquals(Arrays.asList("Neuromancer", "Count Zero", "Mona Lisa Overdrive"), delivered);
+        consumer.shutdown();
+    }
+
+    @Test
+    public void theFirstStartReadsOnlyNewRecords() throws IOException {
+        streams.addShard("closed", null).addShard("open", "closed");
+        streams.addRecord("closed", "INSERT", "Neuromancer");
+        streams.closeShard("closed");
+        streams.addRecord("open", "INSERT", "Count Zero");
+
+        StreamConsumer consumer = newConsumer();
+        consumer.poll();
+        assertTrue(delivered.isEmpty());
+        // a closed shard has only records written before the start, so it is not read
+        assertEquals(null, iteratorRequest("closed"));
+        assertEquals(ShardIteratorType.LATEST.toString(), iteratorRequest("open").getShardIteratorType());
+
+        streams.addRecord("open", "INSERT", "Mona Lisa Overdrive");
+        consumer.poll();
+        assertEquals(Collections.singletonList("Mona Lisa Overdrive"), delivered);
+        consumer.shutdown();
+        assertTrue(Files.exists(checkpointFile));
+    }
+
+    @Test
+    public void aRestartResumesAfterTheCheckpoint() throws IOException {
+        writeCheckpointFile(FakeStreams.STREAM_ARN);
+        streams.addShard("shard-1", null);
+        streams.addRecord("shard-1", "INSERT", "Neuromancer");
+        String checkpoint = streams.addRecord("shard-1", "INSERT", "Count Zero");
+        StreamConsumer consumer = newConsumer();
+        consumer.poll();
+        consumer.shutdown();
+        assertEquals(Arrays.asList("Neuromancer", "Count Zero"), delivered);
+
+        // records written while the consumer was stopped, and a shard that it has not seen
+        streams.addRecord("shard-1", "MODIFY", "Neuromancer");
+        streams.addShard("shard-2", null);
+        streams.addRecord("shard-2", "INSERT", "Burning Chrome");
+        streams.getIteratorRequests().clear();
+        delivered.clear();
+
+        StreamConsumer restarted = newConsumer();
+        restarted.poll();
+        assertEquals(Arrays.asList("Neuromancer", "Burning Chrome"), delivered);
+        GetShardIteratorRequest resumed = iteratorRequest("shard-1");
+        assertEquals(ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString(), resumed.getShardIteratorType());
+        assertEquals(checkpoint, resumed.getSequenceNumber());
+        assertEquals(ShardIteratorType.TRIM_HORIZON.toString(), iteratorRequest("shard-2").getShardIteratorType());
+        restarted.shutdown();
+    }
+
+    @Test
+    public void theCheckpointsOfAnotherStreamAreNotUsed() throws IOException {
+        // the table was deleted and created again
+        writeCheckpointFile(FakeStreams.STREAM_ARN.replace("2018", "2017"));
+        streams.addShard("shard-1", null);
+        streams.addRecord("shard-1", "INSERT", "Neuromancer");
+        StreamConsumer consumer = newConsumer();
+        consumer.poll();
+        assertTrue(delivered.isEmpty());
+        assertEquals(ShardIteratorType.LATEST.toString(), iteratorRequest("shard-1").getShardIteratorType());
+        consumer.shutdown();
+    }
+
+    @Test
+    public void aFailedListenerDoesNotStopTheOthers() throws IOException {
+        writeCheckpointFile(FakeStreams.STREAM_ARN);
+        streams.addShard("shard-1", null);
+        streams.addRecord("shard-1", OperationType.INSERT.toString(), "Neuromancer");
+        StreamConsumer consumer = new StreamConsumer(streams, FakeStreams.STREAM_ARN, checkpointFile, POLL_INTERVAL_MSEC);
+        consumer.addListener(record -> {
+            throw new IllegalStateException("listener failed");
+        });
+        consumer.addListener(record -> delivered.add(FakeStreams.title(record)));
+        consumer.loadCheckpoints();
+        consumer.poll();
+        assertEquals(Collections.singletonList("Neuromancer"), delivered);
+        assertEquals(1, consumer.getRecordCount());
+        consumer.shutdown();
+    }
+}
@@ -0,0 +1,118 @@
+package io.kunalk.springaws.dynamoDBweb.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookField;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BookSuggesterTest {
+
+    private BookSuggester suggester;
+
+    private static BookInfo book(String title, String author) {
+        BookInfo info = new BookInfo();
+        info.setTitle(title);
+        info.setAuthor(author);
+        info.setGenre("Fiction");
+        return info;
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        List<String> texts = new ArrayList<String>();
+        for (Suggestion suggestion : suggestions) {
+            texts.add(suggestion.getText());
+        }
+        return texts;
+    }
+
+    @Before
+    public void setUp() {
+        suggester = new BookSuggester(3);
+        suggester.addAll(Arrays.asList(book("Neuromancer", "William Gibson"),
+                                       book("The Peripheral", "William Gibson"),
+                                       book("Pattern Recognition", "William Gibson"),
+                                       book("Hamlet", "William Shakespeare"),
+                                       book("Les Mis\u00e9rables", "Victor Hugo"),
+                                       book("Bangkok 8", "John Burdett")));
+        suggester.setReady(true);
+    }
+
+    @Test
+    public void completionsAreRankedByBookCount() {
+        List<Suggestion> authors = suggester.suggest("wil", EnumSet.of(BookField.AUTHOR), 10);
+        assertEquals(Arrays.asList("William Gibson", "William Shakespeare"), texts(authors));
+        assertEquals(3, authors.get(0).getWeight());
+        assertEquals("author", authors.get(0).getField());
+    }
+
+    @Test
+    public void prefixesAreNormalised() {
+        assertEquals(Arrays.asList("Les Mis\u00e9rables"), texts(suggester.suggest("  LES   mis", null, 10)));
+        assertEquals(Arrays.asList("Les Mis\u00e9rables"), texts(suggester.suggest("les mise", null, 10)));
+        assertTrue(suggester.suggest("xyz", null, 10).isEmpty());
+        assertTrue(suggester.suggest("", null, 10).isEmpty());
+    }
+
+    @Test
+    public void searchesAndRemovalsChangeTheRanking() {
+        suggester.recordSearch(BookField.AUTHOR, "william shakespeare");
+        suggester.recordSearch(BookField.AUTHOR, "William Shakespeare");
+        suggester.recordSearch(BookField.AUTHOR, "William Shakespeare");
+        // the searches count when they are applied
+        assertEquals("William Gibson", suggester.suggest("william", EnumSet.of(BookField.AUTHOR), 1).get(0).getText());
+        suggester.applySearches();
+        assertEquals("William Shakespeare", suggester.suggest("william", EnumSet.of(BookField.AUTHOR), 1).get(0).getText());
+
+        suggester.remove("Hamlet", "William Shakespeare");
+        assertEquals(Arrays.asList("William Gibson"), texts(suggester.suggest("william", EnumSet.of(BookField.AUTHOR), 10)));
+        assertEquals(5, suggester.size());
+    }
+
+    @Test
+    public void aBookWrittenAgainIsCountedOnce() {
+        suggester.add(book("Neuromancer", "William Gibson"));
+        assertEquals(3, suggester.suggest("william g", EnumSet.of(BookField.AUTHOR), 1).get(0).getWeight());
+    }
+
+    @Test
+    public void eachPrefixKeepsTheTopCount() {
+        for (int i = 0; i < 20; i++) {
+            suggester.add(book("Title " + i, "Author " + i));
+        }
+        suggester.add(book("Another", "Author 7"));
+        List<Suggestion> top = suggester.suggest("author", EnumSet.of(BookField.AUTHOR), 10);
+        assertEquals(3, top.size());
+        assertEquals("Author 7", top.get(0).getText());
+        assertEquals(Arrays.asList("Author 1", "Author 10"), texts(suggester.suggest("author 1", EnumSet.of(BookField.AUTHOR), 2)));
+    }
+
+    @Test
+    public void onlyAuthorsAndTitlesAreSuggested() {
+        try {
+            suggester.suggest("wil", EnumSet.of(BookField.GENRE), 10);
+            fail("genre suggestions were made");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void aBookRemovedDuringALoadIsNotCountedAgain() {
+        LoadTracker.Load load = suggester.beginLoad();
+        suggester.remove("Hamlet", "William Shakespeare");
+        suggester.addLoaded(load, Arrays.asList(book("Hamlet", "William Shakespeare"), book("Macbeth", "William Shakespeare")));
+        List<Suggestion> authors = suggester.suggest("william s", EnumSet.of(BookField.AUTHOR), 10);
+        assertEquals(1, authors.get(0).getWeight());
+        assertEquals(Arrays.asList("Macbeth"), texts(suggester.suggest("ma", EnumSet.of(BookField.TITLE), 10)));
+        assertTrue(suggester.suggest("hamlet", null, 10).isEmpty());
+    }
+}
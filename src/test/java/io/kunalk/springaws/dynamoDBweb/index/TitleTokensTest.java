@@ -0,0 +1,35 @@
+package io.kunalk.springaws.dynamoDBweb.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class TitleTokensTest {
+
+    @Test
+    public void titlesAreSplitIntoNormalisedWords() {
+        assertEquals(Arrays.asList("the", "peripheral"), TitleTokens.tokenize("The  Peripheral"));
+        assertEquals(Arrays.asList("ender", "s", "game"), TitleTokens.tokenize("Ender's Game"));
+        assertEquals(Arrays.asList("les", "miserables"), TitleTokens.tokenize("Les Mis\u00e9rables"));
+        assertEquals(Arrays.asList("bangkok", "8"), TitleTokens.tokenize("Bangkok 8: Bangkok"));
+        assertEquals(Collections.emptyList(), TitleTokens.tokenize(" -- "));
+    }
+
+    @Test
+    public void stopWordsAreOnlyQueriedAlone() {
+        assertEquals(Arrays.asList("peripheral"), TitleTokens.queryTokens(TitleTokens.tokenize("the peripheral")));
+        assertEquals(Arrays.asList("the"), TitleTokens.queryTokens(TitleTokens.tokenize("The")));
+    }
+
+    @Test
+    public void titlesMatchWholeWords() {
+        assertTrue(TitleTokens.matches("The Peripheral", TitleTokens.tokenize("peripheral THE")));
+        assertFalse(TitleTokens.matches("Peripheral", TitleTokens.tokenize("the peripheral")));
+        assertFalse(TitleTokens.matches("The Peripheral", TitleTokens.tokenize("periph")));
+    }
+}
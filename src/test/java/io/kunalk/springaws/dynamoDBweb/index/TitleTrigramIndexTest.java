@@ -0,0 +1,140 @@
+package io.kunalk.springaws.dynamoDBweb.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TitleTrigramIndexTest {
+
+    private TitleTrigramIndex index;
+
+    private static BookInfo book(String title, String author) {
+        BookInfo info = new BookInfo();
+        info.setTitle(title);
+        info.setAuthor(author);
+        info.setGenre("Fiction");
+        return info;
+    }
+
+    @Before
+    public void setUp() {
+        index = new TitleTrigramIndex();
+        index.addAll(Arrays.asList(book("The Peripheral", "William Gibson"),
+                                   book("Bangkok 8", "John Burdett"),
+                                   book("Bangkok Haunts", "John Burdett"),
+                                   book("Neuromancer", "William Gibson")));
+        index.setReady(true);
+    }
+
+    @Test
+    public void substringSearchIsCaseInsensitive() {
+        List<BookInfo> result = index.search("peripheral");
+        assertEquals(1, result.size());
+        assertEquals("The Peripheral", result.get(0).getTitle());
+        assertEquals(2, index.search("BANGKOK").size());
+    }
+
+    @Test
+    public void trigramsMustAppearAsASubstring() {
+        // "ban" and "kok" are both in "Bangkok", but "bankok" is not
+        assertTrue(index.search("bankok").isEmpty());
+        assertTrue(index.search("no such title").isEmpty());
+    }
+
+    @Test
+    public void shortQueriesAreCheckedAgainstEveryTitle() {
+        assertEquals(1, index.search("8").size());
+        assertEquals("Neuromancer", index.search("ro").get(0).getTitle());
+    }
+
+    @Test
+    public void rewritingABookReplacesIt() {
+        BookInfo updated = book("Neuromancer", "William Gibson");
+        updated.setPrice("9.99");
+        index.add(updated);
+        assertEquals(4, index.size());
+        assertEquals("9.99", index.search("neuro").get(0).getPrice());
+        assertTrue(index.memoryFootprint() > 0);
+    }
+
+    @Test
+    public void removedBooksAreNotFound() {
+        assertTrue(index.remove("Bangkok 8", "John Burdett"));
+        assertEquals(3, index.size());
+        assertEquals(3, index.getBooks().size());
+        assertEquals(1, index.search("bangkok").size());
+        assertTrue(index.search("8").isEmpty());
+        assertTrue(index.memoryFootprint() > 0);
+
+        index.add(book("Bangkok 8", "John Burdett"));
+        assertEquals(2, index.search("bangkok").size());
+    }
+
+    @Test
+    public void theSlotsOfRemovedBooksAreCompacted() {
+        List<BookInfo> added = new ArrayList<BookInfo>();
+        for (int i = 0; i < 300; i++) {
+            added.add(book("Title " + i, "Author"));
+        }
+        index.addAll(added);
+        long footprint = index.memoryFootprint();
+        TitleTrigramIndex live = new TitleTrigramIndex();
+        live.addAll(Arrays.asList(book("The Peripheral", "William Gibson"),
+                                  book("Bangkok 8", "John Burdett"),
+                                  book("Bangkok Haunts", "John Burdett"),
+                                  book("Neuromancer", "William Gibson")));
+        for (int i = 0; i < 300; i++) {
+            if (i % 10 != 0) {
+                index.remove("Title " + i, "Author");
+            } else {
+                live.add(added.get(i));
+            }
+        }
+        assertEquals(34, index.size());
+        // without compaction the 270 empty slots and their posting list ids would be kept
+        assertTrue(index.memoryFootprint() < footprint / 2);
+        assertEquals(titles(live.getBooks()), titles(index.getBooks()));
+        assertEquals(Arrays.asList("Title 10", "Title 100"), titles(index.search("title 10")));
+        assertEquals(Arrays.asList("Title 290"), titles(index.search("290")));
+        assertTrue(index.search("title 211").isEmpty());
+
+        index.add(book("Title 211", "Author"));
+        assertEquals(Arrays.asList("Title 211"), titles(index.search("title 211")));
+    }
+
+    private static List<String> titles(List<BookInfo> books) {
+        List<String> titles = new ArrayList<String>();
+        for (BookInfo book : books) {
+            titles.add(book.getTitle());
+        }
+        return titles;
+    }
+
+    @Test
+    public void aLoadDoesNotReplaceNewerWrites() {
+        LoadTracker.Load load = index.beginLoad();
+        // written while the load read the table
+        BookInfo updated = book("Neuromancer", "William Gibson");
+        updated.setPrice("9.99");
+        index.add(updated);
+        index.remove("Bangkok 8", "John Burdett");
+
+        BookInfo scanned = book("Neuromancer", "William Gibson");
+        scanned.setPrice("7.99");
+        index.addLoaded(load, Arrays.asList(scanned, book("Bangkok 8", "John Burdett"), book("Count Zero", "William Gibson")));
+        assertEquals("9.99", index.search("neuro").get(0).getPrice());
+        assertTrue(index.search("8").isEmpty());
+        assertEquals(1, index.search("count zero").size());
+
+        // a later load replaces the books
+        index.addLoaded(index.beginLoad(), Arrays.asList(scanned));
+        assertEquals("7.99", index.search("neuro").get(0).getPrice());
+    }
+}
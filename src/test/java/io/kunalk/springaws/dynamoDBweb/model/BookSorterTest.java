@@ -0,0 +1,147 @@
+package io.kunalk.springaws.dynamoDBweb.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class BookSorterTest {
+
+    private static List<BookInfo> books(int count) {
+        String[] genres = { "Fiction", "History", "Science", "Cooking", "Unknown Genre" };
+        String[] authors = { "ursula le guin", "Ursula Le Guin", "Neal Stephenson", "neal stephenson", "Ada" };
+        Random random = new Random(42);
+        List<BookInfo> books = new ArrayList<BookInfo>();
+        for (int i = 0; i < count; i++) {
+            BookInfo book = new BookInfo();
+            book.setGenre(genres[random.nextInt(genres.length)]);
+            book.setAuthor(authors[random.nextInt(authors.length)]);
+            book.setTitle((random.nextBoolean() ? "The " : "the ") + "Book " + random.nextInt(count));
+            books.add(book);
+        }
+        return books;
+    }
+
+    private static List<String> keys(List<BookInfo> books) {
+        List<String> keys = new ArrayList<String>();
+        for (BookInfo book : books) {
+            keys.add(book.getGenre() + "/" + book.getAuthor().toLowerCase() + "/" + book.getTitle().toLowerCase());
+        }
+        return keys;
+    }
+
+    @Test
+    public void sortMatchesTheComparatorOrder() {
+        List<BookInfo> books = books(2000);
+        List<BookInfo> expected = new ArrayList<BookInfo>(books);
+        expected.sort(new BookInfoComparator());
+        assertEquals(keys(expected), keys(BookSorter.sort(books, Integer.MAX_VALUE)));
+        assertEquals(keys(expected), keys(BookSorter.sort(books, 1)));
+    }
+
+    @Test
+    public void topReturnsAPageOfTheSortedBooks() {
+        List<BookInfo> books = books(1000);
+        List<BookInfo> sorted = BookSorter.sort(books);
+        assertEquals(keys(sorted.subList(0, 25)), keys(BookSorter.top(books, 0, 25)));
+        assertEquals(keys(sorted.subList(500, 550)), keys(BookSorter.top(books, 500, 50)));
+        assertEquals(keys(sorted.subList(990, 1000)), keys(BookSorter.top(books, 990, 50)));
+        assertEquals(0, BookSorter.top(books, 1000, 50).size());
+    }
+
+    @Test
+    public void topAfterReturnsThePageAfterAKey() {
+        Comparator<BookInfo> order = Comparator.comparing(BookInfo::getTitle).thenComparing(BookInfo::getAuthor);
+        // the title and author are a key, as in the book table
+        TreeSet<BookInfo> unique = new TreeSet<BookInfo>(order);
+        unique.addAll(books(1000));
+        List<BookInfo> sorted = new ArrayList<BookInfo>(unique);
+        List<BookInfo> books = new ArrayList<BookInfo>(unique);
+        Collections.shuffle(books, new Random(7));
+        assertEquals(keys(sorted.subList(0, 25)), keys(BookSorter.topAfter(books, order, null, 25)));
+        // paging through the books with the last book of each page as the key reads every book once
+        List<BookInfo> paged = new ArrayList<BookInfo>();
+        BookInfo after = null;
+        List<BookInfo> page;
+        while (! (page = BookSorter.topAfter(books, order, after, 64)).isEmpty()) {
+            paged.addAll(page);
+            after = page.get(page.size() - 1);
+        }
+        assertEquals(keys(sorted), keys(paged));
+        // the key does not have to be one of the books
+        BookInfo between = new BookInfo();
+        between.setTitle(sorted.get(500).getTitle());
+        between.setAuthor("");
+        int first = 500;
+        while (first > 0 && sorted.get(first - 1).getTitle().equals(between.getTitle())) {
+            first--;
+        }
+        assertEquals(keys(sorted.subList(first, first + 10)), keys(BookSorter.topAfter(books, order, between, 10)));
+    }
+
+    /** DynamoDB's string key order: the unsigned UTF-8 bytes */
+    private static int compareUtf8(String s1, String s2) {
+        byte[] b1 = s1.getBytes(StandardCharsets.UTF_8);
+        byte[] b2 = s2.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < Math.min(b1.length, b2.length); i++) {
+            if (b1[i] != b2[i]) {
+                return Integer.compare(b1[i] & 0xff, b2[i] & 0xff);
+            }
+        }
+        return Integer.compare(b1.length, b2.length);
+    }
+
+    private static List<BookInfo> byIndexKeys(List<BookInfo> books) {
+        List<BookInfo> byIndexKeys = new ArrayList<BookInfo>(books);
+        byIndexKeys.sort((b1, b2) -> {
+            int compareRslt = Integer.compare(GenreEnum.valueOf(b1.getGenreKey()).ordinal(),
+                                              GenreEnum.valueOf(b2.getGenreKey()).ordinal());
+            return (compareRslt != 0) ? compareRslt : compareUtf8(b1.getAuthorTitle(), b2.getAuthorTitle());
+        });
+        return byIndexKeys;
+    }
+
+    @Test
+    public void genreIndexKeysFollowTheSortOrder() {
+        List<BookInfo> books = books(2000);
+        assertEquals(keys(BookSorter.sort(books)), keys(byIndexKeys(books)));
+    }
+
+    @Test
+    public void supplementaryCharactersSortInUtf8Order() {
+        // U+1D400 is a surrogate pair in UTF-16, which sorts before U+FB01 by String.compareTo()
+        String[] authors = { "\uD835\uDC00da", "\uFB01tzgerald", "Zadie Smith", "\u00c9mile Zola", "\uD835\uDC00" };
+        List<BookInfo> books = new ArrayList<BookInfo>();
+        for (String author : authors) {
+            for (String title : authors) {
+                BookInfo book = new BookInfo();
+                book.setGenre("Fiction");
+                book.setAuthor(author);
+                book.setTitle(title);
+                books.add(book);
+            }
+        }
+        Collections.shuffle(books, new Random(7));
+        List<BookInfo> sorted = BookSorter.sort(books);
+        assertEquals(keys(byIndexKeys(books)), keys(sorted));
+        assertEquals("\uFB01tzgerald", sorted.get(10).getAuthor());
+        assertEquals("\uD835\uDC00", sorted.get(15).getAuthor());
+        List<BookInfo> byComparator = new ArrayList<BookInfo>(books);
+        byComparator.sort(new BookInfoComparator());
+        assertEquals(keys(sorted), keys(byComparator));
+    }
+
+    @Test
+    public void genreLookup() {
+        assertEquals(GenreEnum.BAD_ENUM, GenreEnum.stringToEnum("Not A Genre"));
+        assertEquals(GenreEnum.SCIENCE_FICTION, GenreEnum.stringToEnum("Science Fiction"));
+        assertEquals(GenreEnum.BAD_ENUM, GenreEnum.stringToEnum(null));
+    }
+}
@@ -0,0 +1,127 @@
+package io.kunalk.springaws.dynamoDBweb.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.TableStatus;
+
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.CreateBookTable;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+/**
+ * The result cache of the author lookups, with an author index that is updated after the table, as a global
+ * secondary index is.
+ */
+public class BookTableServiceCacheTest {
+    private static final String AUTHOR = "William Gibson";
+
+    private BookTableService service;
+    /** The items written to the table */
+    private final List<Map<String, AttributeValue>> table = new ArrayList<Map<String, AttributeValue>>();
+    /** The items that the author index has (see catchUp()) */
+    private final List<Map<String, AttributeValue>> authorIndex = new ArrayList<Map<String, AttributeValue>>();
+
+    /** An ACTIVE book table whose author index has the items that were written before the last catchUp() */
+    private class LaggingIndexTable extends AbstractAmazonDynamoDB {
+        @Override
+        public DescribeTableResult describeTable(DescribeTableRequest request) {
+            return new DescribeTableResult().withTable( new TableDescription().withTableName( request.getTableName() )
+                                                                              .withTableStatus( TableStatus.ACTIVE ) );
+        }
+
+        @Override
+        public PutItemResult putItem(PutItemRequest request) {
+            table.add( request.getItem() );
+            return new PutItemResult();
+        }
+
+        @Override
+        public QueryResult query(QueryRequest request) {
+            AttributeValue author = request.getKeyConditions().get( CreateBookTable.AUTHOR_HASH_NAME ).getAttributeValueList().get(0);
+            List<Map<String, AttributeValue>> items = new ArrayList<Map<String, AttributeValue>>();
+            for (Map<String, AttributeValue> item : authorIndex) {
+                if (author.equals( item.get( CreateBookTable.AUTHOR_HASH_NAME ) )) {
+                    items.add( item );
+                }
+            }
+            return new QueryResult().withItems( items );
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        AmazonDynamoDB client = new LaggingIndexTable();
+        DynamoDBService dynamoDB = new DynamoDBService( Regions.US_EAST_1, "test", "test" ) {
+            @Override
+            public AmazonDynamoDB getClient() {
+                return client;
+            }
+        };
+        service = new BookTableService( "book", dynamoDB );
+        service.getTableReady().get( 10, TimeUnit.SECONDS );
+        // a settle time that does not end during the test
+        service.enableResultCache( 100, 600, TimeUnit.MINUTES.toMillis( 10 ) );
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    /** The author index is updated with the items written to the table */
+    private void catchUp() {
+        authorIndex.clear();
+        authorIndex.addAll( table );
+    }
+
+    private static BookInfo book(String title) {
+        BookInfo info = new BookInfo();
+        info.setTitle( title );
+        info.setAuthor( AUTHOR );
+        info.setGenre("Science Fiction");
+        info.setPrice("7.99");
+        return info;
+    }
+
+    @Test
+    public void aLookupBeforeTheIndexHasAWrittenBookIsNotCached() {
+        service.writeToBookTable( book("Neuromancer") );
+        catchUp();
+        assertEquals(1, service.findBookByAuthor( AUTHOR ).size());
+
+        service.writeToBookTable( book("Count Zero") );
+        // the index does not have the book yet
+        assertEquals(1, service.findBookByAuthor( AUTHOR ).size());
+        catchUp();
+        assertEquals(2, service.findBookByAuthor( AUTHOR ).size());
+    }
+
+    @Test
+    public void lookupsOfAnAuthorThatWasNotWrittenAreCached() {
+        service.writeToBookTable( book("Neuromancer") );
+        catchUp();
+        assertTrue(service.findBookByAuthor("Neal Stephenson").isEmpty());
+        assertTrue(service.findBookByAuthor("Neal Stephenson").isEmpty());
+        assertEquals(1, service.getAuthorCache().hitCount());
+    }
+}
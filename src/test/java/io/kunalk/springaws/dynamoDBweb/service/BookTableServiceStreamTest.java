@@ -0,0 +1,178 @@
+package io.kunalk.springaws.dynamoDBweb.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.OperationType;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.TableStatus;
+
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.CreateBookTable;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.DynamoDBUtil;
+import io.kunalk.springaws.dynamoDBweb.index.Suggestion;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+/**
+ * The stream records of the book table applied to the title index, the suggestions and the result caches (see
+ * BookTableService.applyStreamRecord()). The service reads an ACTIVE, empty book table that is not in DynamoDB.
+ */
+public class BookTableServiceStreamTest {
+    private static final String AUTHOR = "William Gibson";
+
+    private BookTableService service;
+    private long nextSequenceNumber = 100;
+
+    /** An ACTIVE book table without items */
+    private static class EmptyBookTable extends AbstractAmazonDynamoDB {
+        @Override
+        public DescribeTableResult describeTable(DescribeTableRequest request) {
+            return new DescribeTableResult().withTable( new TableDescription().withTableName( request.getTableName() )
+                                                                              .withTableStatus( TableStatus.ACTIVE ) );
+        }
+
+        @Override
+        public ScanResult scan(ScanRequest request) {
+            return new ScanResult().withItems( Collections.<Map<String, AttributeValue>>emptyList() );
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        AmazonDynamoDB client = new EmptyBookTable();
+        DynamoDBService dynamoDB = new DynamoDBService( Regions.US_EAST_1, "test", "test" ) {
+            @Override
+            public AmazonDynamoDB getClient() {
+                return client;
+            }
+        };
+        service = new BookTableService( "book", dynamoDB );
+        service.getTableReady().get( 10, TimeUnit.SECONDS );
+        service.enableResultCache( 100, 600, 0 );
+        service.enableSuggestions( 10, 60000 );
+        service.buildTitleIndex();
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    private static BookInfo book(String title, String price) {
+        BookInfo info = new BookInfo();
+        info.setTitle( title );
+        info.setAuthor( AUTHOR );
+        info.setGenre("Science Fiction");
+        info.setPrice( price );
+        return info;
+    }
+
+    private static Map<String, AttributeValue> keys(String title) {
+        Map<String, AttributeValue> keys = new HashMap<String, AttributeValue>();
+        keys.put( "title", new AttributeValue().withS( title ) );
+        keys.put( CreateBookTable.AUTHOR_HASH_NAME, new AttributeValue().withS( AUTHOR ) );
+        return keys;
+    }
+
+    private Record record(OperationType operation, String title, BookInfo newImage) throws ReflectiveOperationException {
+        StreamRecord change = new StreamRecord().withSequenceNumber( Long.toString( nextSequenceNumber++ ) )
+                                                .withKeys( keys( title ) );
+        if (newImage != null) {
+            change.withNewImage( DynamoDBUtil.objectToAttributes( newImage ) );
+        }
+        return new Record().withEventName( operation ).withDynamodb( change );
+    }
+
+    /** Put results in the caches, as a lookup of the author and of the book would */
+    private void cacheLookups(String title) {
+        service.getAuthorCache().put( AUTHOR, Collections.<BookInfo>emptyList() );
+        service.getTitleAuthorCache().put( title + '\u0000' + AUTHOR, Collections.<BookInfo>emptyList() );
+    }
+
+    private void assertLookupsInvalidated(String title) {
+        assertNull(service.getAuthorCache().getIfPresent( AUTHOR ));
+        assertNull(service.getTitleAuthorCache().getIfPresent( title + '\u0000' + AUTHOR ));
+    }
+
+    private List<String> titleSuggestions(String prefix) {
+        List<String> texts = new ArrayList<String>();
+        for (Suggestion suggestion : service.getSuggestions( prefix, null, 10 )) {
+            texts.add( suggestion.getText() );
+        }
+        return texts;
+    }
+
+    @Test
+    public void anInsertIsIndexedAndInvalidatesTheLookups() throws Exception {
+        cacheLookups("Neuromancer");
+        service.applyStreamRecord( record( OperationType.INSERT, "Neuromancer", book( "Neuromancer", "7.99" ) ) );
+
+        List<BookInfo> found = service.getTitleIndex().search("neuromancer");
+        assertEquals(1, found.size());
+        assertEquals("7.99", found.get(0).getPrice());
+        assertEquals(Collections.singletonList("Neuromancer"), titleSuggestions("neuro"));
+        assertLookupsInvalidated("Neuromancer");
+    }
+
+    @Test
+    public void aModifyReplacesTheIndexedBook() throws Exception {
+        service.applyStreamRecord( record( OperationType.INSERT, "Neuromancer", book( "Neuromancer", "7.99" ) ) );
+        cacheLookups("Neuromancer");
+        Record modify = record( OperationType.MODIFY, "Neuromancer", book( "Neuromancer", "9.99" ) );
+        service.applyStreamRecord( modify );
+        // a record that is delivered again does not change the result
+        service.applyStreamRecord( modify );
+
+        List<BookInfo> found = service.getTitleIndex().search("neuromancer");
+        assertEquals(1, found.size());
+        assertEquals("9.99", found.get(0).getPrice());
+        assertEquals(1, service.getTitleIndex().size());
+        assertEquals(Collections.singletonList("Neuromancer"), titleSuggestions("neuro"));
+        assertLookupsInvalidated("Neuromancer");
+    }
+
+    @Test
+    public void aRemoveDropsTheBook() throws Exception {
+        service.applyStreamRecord( record( OperationType.INSERT, "Neuromancer", book( "Neuromancer", "7.99" ) ) );
+        service.applyStreamRecord( record( OperationType.INSERT, "Count Zero", book( "Count Zero", "8.99" ) ) );
+        cacheLookups("Neuromancer");
+        // a REMOVE record has the keys but no new image
+        service.applyStreamRecord( record( OperationType.REMOVE, "Neuromancer", null ) );
+
+        assertTrue(service.getTitleIndex().search("neuromancer").isEmpty());
+        assertEquals(1, service.getTitleIndex().size());
+        assertTrue(titleSuggestions("neuro").isEmpty());
+        assertEquals(Collections.singletonList("Count Zero"), titleSuggestions("count"));
+        assertLookupsInvalidated("Neuromancer");
+    }
+
+    @Test
+    public void aRecordWithoutTheBookKeyIsIgnored() throws Exception {
+        Record record = record( OperationType.INSERT, "Neuromancer", book( "Neuromancer", "7.99" ) );
+        record.getDynamodb().getKeys().remove( CreateBookTable.AUTHOR_HASH_NAME );
+        service.applyStreamRecord( record );
+        service.applyStreamRecord( new Record().withEventName( OperationType.REMOVE ) );
+        assertEquals(0, service.getTitleIndex().size());
+    }
+}
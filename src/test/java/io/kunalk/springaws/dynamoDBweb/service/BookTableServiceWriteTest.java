@@ -0,0 +1,207 @@
+package io.kunalk.springaws.dynamoDBweb.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.TableStatus;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.BatchWriteResult;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.CreateBookTable;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+/**
+ * The write modes of writeBook(), with a table that checks the Expected conditions of PutItem as DynamoDB does.
+ */
+public class BookTableServiceWriteTest {
+    private static final String AUTHOR = "William Gibson";
+
+    private BookTableService service;
+    /** The items of the table, by title and author */
+    private final Map<String, Map<String, AttributeValue>> table = new HashMap<String, Map<String, AttributeValue>>();
+
+    private class ConditionalTable extends AbstractAmazonDynamoDB {
+        @Override
+        public DescribeTableResult describeTable(DescribeTableRequest request) {
+            return new DescribeTableResult().withTable( new TableDescription().withTableName( request.getTableName() )
+                                                                              .withTableStatus( TableStatus.ACTIVE ) );
+        }
+
+        @Override
+        public PutItemResult putItem(PutItemRequest request) {
+            String key = key( request.getItem() );
+            Map<String, AttributeValue> stored = table.get( key );
+            if (request.getExpected() != null) {
+                for (Map.Entry<String, ExpectedAttributeValue> condition : request.getExpected().entrySet()) {
+                    AttributeValue value = (stored != null) ? stored.get( condition.getKey() ) : null;
+                    ExpectedAttributeValue expected = condition.getValue();
+                    boolean passed = (expected.getValue() != null) ? expected.getValue().equals( value ) : value == null;
+                    if (! passed) {
+                        throw new ConditionalCheckFailedException("The conditional request failed");
+                    }
+                }
+            }
+            table.put( key, request.getItem() );
+            return new PutItemResult();
+        }
+
+        @Override
+        public BatchWriteItemResult batchWriteItem(BatchWriteItemRequest request) {
+            for (List<WriteRequest> writes : request.getRequestItems().values()) {
+                for (WriteRequest write : writes) {
+                    table.put( key( write.getPutRequest().getItem() ), write.getPutRequest().getItem() );
+                }
+            }
+            return new BatchWriteItemResult();
+        }
+    }
+
+    private static String key(Map<String, AttributeValue> item) {
+        return item.get("title").getS() + "/" + item.get(CreateBookTable.AUTHOR_HASH_NAME).getS();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        AmazonDynamoDB client = new ConditionalTable();
+        DynamoDBService dynamoDB = new DynamoDBService( Regions.US_EAST_1, "test", "test" ) {
+            @Override
+            public AmazonDynamoDB getClient() {
+                return client;
+            }
+        };
+        service = new BookTableService( "book", dynamoDB );
+        service.getTableReady().get( 10, TimeUnit.SECONDS );
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    private static BookInfo book(String title, String price, Long version) {
+        BookInfo info = new BookInfo();
+        info.setTitle( title );
+        info.setAuthor( AUTHOR );
+        info.setGenre("Science Fiction");
+        info.setPrice( price );
+        info.setVersion( version );
+        return info;
+    }
+
+    private String storedPrice(String title) {
+        return table.get( title + "/" + AUTHOR ).get("price").getS();
+    }
+
+    private String storedVersion(String title) {
+        return table.get( title + "/" + AUTHOR ).get( BookInfo.VERSION_ATTRIBUTE ).getN();
+    }
+
+    @Test
+    public void putIfAbsentDoesNotReplaceABook() {
+        BookWriteResult result = service.putIfAbsent( book( "Neuromancer", "7.99", null ) );
+        assertEquals(BookWriteResult.Status.WRITTEN, result.getStatus());
+        assertEquals(Long.valueOf( 1 ), result.getVersion());
+
+        result = service.putIfAbsent( book( "Neuromancer", "9.99", null ) );
+        assertEquals(BookWriteResult.Status.ALREADY_EXISTS, result.getStatus());
+        assertNull(result.getVersion());
+        assertEquals("7.99", storedPrice( "Neuromancer" ));
+    }
+
+    @Test
+    public void replaceIfExistsDoesNotCreateABook() {
+        BookWriteResult result = service.replaceIfExists( book( "Neuromancer", "7.99", null ) );
+        assertEquals(BookWriteResult.Status.NOT_FOUND, result.getStatus());
+        assertEquals(0, table.size());
+
+        service.putIfAbsent( book( "Neuromancer", "7.99", null ) );
+        result = service.replaceIfExists( book( "Neuromancer", "9.99", 1L ) );
+        assertEquals(BookWriteResult.Status.WRITTEN, result.getStatus());
+        assertEquals("9.99", storedPrice( "Neuromancer" ));
+        assertEquals("2", storedVersion( "Neuromancer" ));
+    }
+
+    @Test
+    public void putVersionedFailsWhenTheBookWasWrittenSinceItWasRead() {
+        BookWriteResult first = service.putVersioned( book( "Neuromancer", "7.99", null ) );
+        assertEquals(BookWriteResult.Status.WRITTEN, first.getStatus());
+        assertEquals(Long.valueOf( 1 ), first.getVersion());
+
+        // two writers read version 1: the first write wins
+        BookWriteResult second = service.putVersioned( book( "Neuromancer", "8.99", 1L ) );
+        assertEquals(BookWriteResult.Status.WRITTEN, second.getStatus());
+        assertEquals(Long.valueOf( 2 ), second.getVersion());
+        BookWriteResult conflict = service.putVersioned( book( "Neuromancer", "9.99", 1L ) );
+        assertEquals(BookWriteResult.Status.VERSION_CONFLICT, conflict.getStatus());
+        assertEquals("8.99", storedPrice( "Neuromancer" ));
+
+        // a book without a version is only written if the stored book has no version
+        assertEquals(BookWriteResult.Status.VERSION_CONFLICT,
+                     service.putVersioned( book( "Neuromancer", "9.99", null ) ).getStatus());
+    }
+
+    @Test
+    public void anOverwriteKeepsTheVersion() {
+        service.putVersioned( book( "Neuromancer", "7.99", null ) );
+        service.writeToBookTable( book( "Neuromancer", "8.99", 1L ) );
+        assertEquals("2", storedVersion( "Neuromancer" ));
+        // a write of the version that was read before the overwrite is a conflict
+        assertEquals(BookWriteResult.Status.VERSION_CONFLICT,
+                     service.putVersioned( book( "Neuromancer", "9.99", 1L ) ).getStatus());
+        assertEquals("8.99", storedPrice( "Neuromancer" ));
+    }
+
+    @Test
+    public void writtenItemsHaveTheGenreIndexKeys() {
+        BookInfo info = book( "Neuromancer", "7.99", null );
+        service.writeToBookTable( info );
+        service.writeBooks( Arrays.asList( book( "Count Zero", "8.99", null ) ) );
+        for (String title : Arrays.asList( "Neuromancer", "Count Zero" )) {
+            Map<String, AttributeValue> item = table.get( title + "/" + AUTHOR );
+            assertEquals("SCIENCE_FICTION", item.get( CreateBookTable.GENRE_HASH_NAME ).getS());
+        }
+        assertEquals(info.getAuthorTitle(), table.get( "Neuromancer/" + AUTHOR ).get( CreateBookTable.GENRE_RANGE_NAME ).getS());
+    }
+
+    @Test
+    public void aBookWithoutATitleOrAuthorIsRejected() {
+        BookInfo noAuthor = book( "Neuromancer", "7.99", null );
+        noAuthor.setAuthor( null );
+        for (BookInfo info : Arrays.asList( book( null, "7.99", null ), noAuthor )) {
+            try {
+                service.writeBook( info, BookTableService.WriteMode.OVERWRITE );
+                fail("wrote a book without a title or author");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        BatchWriteResult result = service.writeBooks( Arrays.asList( noAuthor, book( "Count Zero", "8.99", null ) ) );
+        assertEquals(1, result.getWritten());
+        assertEquals(1, result.getFailed());
+        assertEquals(1, table.size());
+    }
+}
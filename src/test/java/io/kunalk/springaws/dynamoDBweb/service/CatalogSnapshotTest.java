@@ -0,0 +1,88 @@
+package io.kunalk.springaws.dynamoDBweb.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+public class CatalogSnapshotTest {
+    private Path file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = Files.createTempDirectory("snapshot-test").resolve("catalog.snapshot");
+        file.toFile().deleteOnExit();
+        file.getParent().toFile().deleteOnExit();
+    }
+
+    private static BookInfo book(String title, String author, String publisher) {
+        BookInfo info = new BookInfo();
+        info.setTitle( title );
+        info.setAuthor( author );
+        info.setGenre("Science Fiction");
+        info.setPublisher( publisher );
+        info.setYear("1984");
+        info.setPrice("9.99");
+        return info;
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        List<BookInfo> books = new ArrayList<BookInfo>();
+        books.add( book( "Neuromancer", "William Gibson", "Ace" ) );
+        books.add( book( "Les Mis\u00e9rables", "Victor Hugo", null ) );
+        new CatalogSnapshot( 1522195200000L, books ).write( file );
+
+        CatalogSnapshot snapshot = CatalogSnapshot.read( file );
+        assertEquals(1522195200000L, snapshot.getTimestamp());
+        assertEquals(books, snapshot.getBooks());
+    }
+
+    @Test
+    public void aSnapshotLargerThanTheWriteBufferIsReadBack() throws IOException {
+        List<BookInfo> books = new ArrayList<BookInfo>();
+        for (int i = 0; i < 5000; i++) {
+            books.add( book( "Book " + i, "Author " + (i % 100), "Publisher" ) );
+        }
+        // replaces the snapshot of a smaller catalog
+        new CatalogSnapshot( 1L, books.subList( 0, 10 ) ).write( file );
+        new CatalogSnapshot( 1522195200000L, books ).write( file );
+
+        CatalogSnapshot snapshot = CatalogSnapshot.read( file );
+        assertEquals(1522195200000L, snapshot.getTimestamp());
+        assertEquals(books, snapshot.getBooks());
+    }
+
+    @Test
+    public void noFileIsNoSnapshot() throws IOException {
+        assertNull(CatalogSnapshot.read( file.resolveSibling("missing.snapshot") ));
+    }
+
+    @Test
+    public void damagedSnapshotIsRejected() throws IOException {
+        List<BookInfo> books = new ArrayList<BookInfo>();
+        books.add( book( "Neuromancer", "William Gibson", "Ace" ) );
+        new CatalogSnapshot( 1522195200000L, books ).write( file );
+        try (RandomAccessFile raf = new RandomAccessFile( file.toFile(), "rw" )) {
+            raf.seek( raf.length() - 1 );
+            raf.write( 'X' );
+        }
+        try {
+            CatalogSnapshot.read( file );
+            fail("a damaged snapshot was read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
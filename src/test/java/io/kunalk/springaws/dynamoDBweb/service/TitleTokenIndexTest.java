@@ -0,0 +1,127 @@
+package io.kunalk.springaws.dynamoDBweb.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBAsync;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.CreateBookTable;
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.CreateTitleTokenTable;
+import io.kunalk.springaws.dynamoDBweb.index.TitleTokens;
+
+public class TitleTokenIndexTest {
+    private TitleTokenIndex index;
+    /** The token items of each token, in book key order */
+    private final Map<String, List<Map<String, AttributeValue>>> tokenItems = new HashMap<String, List<Map<String, AttributeValue>>>();
+    /** The number of query pages read for each token */
+    private final Map<String, Integer> pagesRead = new HashMap<String, Integer>();
+
+    /** A token table that answers queries a page (of the request limit) at a time */
+    private class TokenTable extends AbstractAmazonDynamoDBAsync {
+        @Override
+        public Future<QueryResult> queryAsync(QueryRequest request, AsyncHandler<QueryRequest, QueryResult> handler) {
+            String token = request.getKeyConditions().get( CreateTitleTokenTable.TOKEN_HASH_NAME ).getAttributeValueList().get(0).getS();
+            pagesRead.merge( token, 1, Integer::sum );
+            List<Map<String, AttributeValue>> items = tokenItems.getOrDefault( token, new ArrayList<Map<String, AttributeValue>>() );
+            int start = 0;
+            if (request.getExclusiveStartKey() != null) {
+                start = items.indexOf( request.getExclusiveStartKey() ) + 1;
+            }
+            int end = Math.min( items.size(), start + request.getLimit() );
+            QueryResult result = new QueryResult().withItems( new ArrayList<Map<String, AttributeValue>>( items.subList( start, end ) ) );
+            if (end < items.size()) {
+                result.setLastEvaluatedKey( items.get( end - 1 ) );
+            }
+            handler.onSuccess( request, result );
+            return CompletableFuture.completedFuture( result );
+        }
+    }
+
+    private void addBook(String title, String author) {
+        for (String token : TitleTokens.tokenize( title )) {
+            Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+            item.put( CreateTitleTokenTable.TOKEN_HASH_NAME, new AttributeValue().withS( token ) );
+            item.put( CreateTitleTokenTable.BOOK_KEY_RANGE_NAME, new AttributeValue().withS( TitleTokens.bookKey( title, author ) ) );
+            item.put( "title", new AttributeValue().withS( title ) );
+            item.put( CreateBookTable.AUTHOR_HASH_NAME, new AttributeValue().withS( author ) );
+            tokenItems.computeIfAbsent( token, t -> new ArrayList<Map<String, AttributeValue>>() ).add( item );
+        }
+    }
+
+    private static List<String> titles(List<Map<String, AttributeValue>> keys) {
+        List<String> titles = new ArrayList<String>();
+        for (Map<String, AttributeValue> key : keys) {
+            titles.add( key.get("title").getS() );
+        }
+        return titles;
+    }
+
+    @Before
+    public void setUp() {
+        AmazonDynamoDB client = new AbstractAmazonDynamoDB() {};
+        AmazonDynamoDBAsync asyncClient = new TokenTable();
+        DynamoDBService dynamoDB = new DynamoDBService( Regions.US_EAST_1, "test", "test" ) {
+            @Override
+            public AmazonDynamoDB getClient() {
+                return client;
+            }
+
+            @Override
+            public AmazonDynamoDBAsync getAsyncClient() {
+                return asyncClient;
+            }
+        };
+        index = new TitleTokenIndex( "book-title-token", dynamoDB, 1, 1, 1 );
+    }
+
+    @After
+    public void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    public void theCommonWordIsNotReadPastTheRarestWord() {
+        for (int i = 0; i < 2500; i++) {
+            addBook( String.format( "Count %04d", i ), "Author" );
+        }
+        addBook( "Count Zero", "William Gibson" );
+        addBook( "Zero History", "William Gibson" );
+        addBook( "The Count of Zero", "Someone" );
+
+        // "the" is a stop word: it is not queried, but the titles must have it
+        assertEquals(Arrays.asList( "The Count of Zero" ), titles( index.findBookKeys( "the count zero" ).join() ));
+        assertEquals(Arrays.asList( "Count Zero", "The Count of Zero" ), titles( index.findBookKeys( "count zero" ).join() ));
+        // "zero" has one page, so one page of "count" is read for each search
+        assertEquals(Integer.valueOf( 2 ), pagesRead.get("count"));
+        assertEquals(null, pagesRead.get("the"));
+    }
+
+    @Test
+    public void everyPageOfTheRarestWordIsRead() {
+        for (int i = 0; i < 2500; i++) {
+            addBook( String.format( "Neuromancer %04d", i ), "William Gibson" );
+        }
+        List<Map<String, AttributeValue>> keys = index.findBookKeys( "neuromancer" ).join();
+        assertEquals(2500, keys.size());
+        assertEquals(Integer.valueOf( 3 ), pagesRead.get("neuromancer"));
+    }
+}
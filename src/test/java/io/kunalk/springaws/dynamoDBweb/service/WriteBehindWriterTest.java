@@ -0,0 +1,279 @@
+package io.kunalk.springaws.dynamoDBweb.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.BatchWriteResult;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+import io.kunalk.springaws.dynamoDBweb.wal.WriteAheadLog;
+
+public class WriteBehindWriterTest {
+    /** Long enough that the drainer does not run during a test: the tests call drain() */
+    private static final long FLUSH_INTERVAL_MSEC = 60 * 60 * 1000;
+
+    private Path directory;
+    /** The books of each writeBooks() call */
+    private final List<List<BookInfo>> batches = new ArrayList<List<BookInfo>>();
+    /** The titles that the next writeBooks() call fails */
+    private final Set<String> failTitles = new HashSet<String>();
+    private boolean failBatch = false;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("write-behind-test");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream( directory )) {
+            for (Path file : files) {
+                Files.delete( file );
+            }
+        }
+        Files.delete( directory );
+    }
+
+    private static BookInfo book(String title, String price) {
+        BookInfo info = new BookInfo();
+        info.setTitle( title );
+        info.setAuthor( "William Gibson" );
+        info.setGenre( "Science Fiction" );
+        info.setPrice( price );
+        return info;
+    }
+
+    private BatchWriteResult writeBooks(Collection<BookInfo> books) {
+        batches.add( new ArrayList<BookInfo>( books ) );
+        if (failBatch) {
+            throw new IllegalStateException("DynamoDB is not reachable");
+        }
+        List<Map<String, AttributeValue>> failed = new ArrayList<Map<String, AttributeValue>>();
+        for (BookInfo info : books) {
+            if (failTitles.contains( info.getTitle() )) {
+                Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+                key.put( "title", new AttributeValue().withS( info.getTitle() ) );
+                key.put( "author", new AttributeValue().withS( info.getAuthor() ) );
+                failed.add( key );
+            }
+        }
+        BatchWriteResult result = new BatchWriteResult();
+        result.addFailed( failed );
+        return result;
+    }
+
+    private WriteBehindWriter newWriter(WriteAheadLog log) {
+        return new WriteBehindWriter( log, this::writeBooks, FLUSH_INTERVAL_MSEC, 100, false );
+    }
+
+    private static List<String> titles(List<BookInfo> books) {
+        List<String> titles = new ArrayList<String>();
+        for (BookInfo info : books) {
+            titles.add( info.getTitle() + " " + info.getPrice() );
+        }
+        Collections.sort( titles );
+        return titles;
+    }
+
+    @Test
+    public void aBookSavedAgainBeforeAFlushIsWrittenOnce() throws IOException {
+        WriteAheadLog log = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        WriteBehindWriter writer = newWriter( log );
+        assertTrue(writer.submit( book( "Neuromancer", "7.99" ) ));
+        assertTrue(writer.submit( book( "Count Zero", "8.99" ) ));
+        assertTrue(writer.submit( book( "Neuromancer", "9.99" ) ));
+        assertEquals(2, writer.getPendingCount());
+
+        writer.drain();
+        assertEquals(1, batches.size());
+        assertEquals(titles( Arrays.asList( book( "Count Zero", "8.99" ), book( "Neuromancer", "9.99" ) ) ),
+                     titles( batches.get(0) ));
+        assertEquals(0, writer.getPendingCount());
+        assertEquals(0, log.getSegmentCount());
+
+        // nothing is pending, so nothing is written
+        writer.drain();
+        assertEquals(1, batches.size());
+        log.close();
+    }
+
+    @Test
+    public void failedBooksArePendingAgainAndOnlyTheyStayInTheLog() throws IOException {
+        WriteAheadLog log = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        WriteBehindWriter writer = newWriter( log );
+        writer.submit( book( "Neuromancer", "7.99" ) );
+        writer.submit( book( "Count Zero", "8.99" ) );
+        failTitles.add( "Neuromancer" );
+        writer.drain();
+        assertEquals(1, writer.getPendingCount());
+        // the segment of both books is deleted, and the failed book is in the segment after the roll
+        assertEquals(1, log.getSegmentCount());
+
+        failBatch = true;
+        writer.drain();
+        assertEquals(1, writer.getPendingCount());
+        assertEquals(1, log.getSegmentCount());
+
+        failBatch = false;
+        failTitles.clear();
+        writer.drain();
+        assertEquals(3, batches.size());
+        assertEquals(titles( Collections.singletonList( book( "Neuromancer", "7.99" ) ) ), titles( batches.get(2) ));
+        assertEquals(0, writer.getPendingCount());
+        assertEquals(0, log.getSegmentCount());
+        log.close();
+    }
+
+    @Test
+    public void writtenBooksAreNotReplayedAfterAFailedFlush() throws IOException {
+        WriteAheadLog log = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        WriteBehindWriter writer = newWriter( log );
+        writer.submit( book( "Neuromancer", "7.99" ) );
+        writer.submit( book( "Count Zero", "8.99" ) );
+        failTitles.add( "Neuromancer" );
+        writer.drain();
+        // the process stops before the retry
+
+        WriteAheadLog reopened = reopen( log );
+        WriteBehindWriter restarted = newWriter( reopened );
+        restarted.start();
+        assertEquals(1, restarted.getPendingCount());
+        assertFalse(restarted.isPending( book( "Count Zero", "8.99" ) ));
+        assertTrue(restarted.isPending( book( "Neuromancer", "7.99" ) ));
+        failTitles.clear();
+        restarted.shutdown();
+        assertEquals(titles( Collections.singletonList( book( "Neuromancer", "7.99" ) ) ), titles( batches.get(1) ));
+    }
+
+    @Test
+    public void aBookIsPendingUntilItsFlushIsDone() throws IOException {
+        WriteAheadLog log = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        List<Boolean> pendingDuringFlush = new ArrayList<Boolean>();
+        WriteBehindWriter[] writer = new WriteBehindWriter[1];
+        writer[0] = new WriteBehindWriter( log, books -> {
+            pendingDuringFlush.add( writer[0].isPending( book( "Neuromancer", "7.99" ) ) );
+            return writeBooks( books );
+        }, FLUSH_INTERVAL_MSEC, 100, false );
+        assertFalse(writer[0].isPending( book( "Neuromancer", "7.99" ) ));
+        writer[0].submit( book( "Neuromancer", "7.99" ) );
+        // the title and author are the key
+        assertTrue(writer[0].isPending( book( "Neuromancer", "9.99" ) ));
+        writer[0].drain();
+        assertEquals(Collections.singletonList( true ), pendingDuringFlush);
+        assertFalse(writer[0].isPending( book( "Neuromancer", "7.99" ) ));
+        log.close();
+    }
+
+    @Test
+    public void aFailedBookDoesNotReplaceANewerSave() throws IOException {
+        WriteAheadLog log = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        AtomicBoolean saveAgain = new AtomicBoolean( true );
+        WriteBehindWriter[] writer = new WriteBehindWriter[1];
+        writer[0] = new WriteBehindWriter( log, books -> {
+            // the book is saved again while the flush of the older save is running, and the older save fails
+            if (saveAgain.getAndSet( false )) {
+                writer[0].submit( book( "Neuromancer", "9.99" ) );
+                failTitles.add( "Neuromancer" );
+            }
+            return writeBooks( books );
+        }, FLUSH_INTERVAL_MSEC, 100, false );
+        writer[0].submit( book( "Neuromancer", "7.99" ) );
+        writer[0].drain();
+        assertEquals(1, writer[0].getPendingCount());
+
+        failTitles.clear();
+        writer[0].drain();
+        assertEquals(2, batches.size());
+        assertEquals(titles( Collections.singletonList( book( "Neuromancer", "9.99" ) ) ), titles( batches.get(1) ));
+        assertEquals(0, log.getSegmentCount());
+        log.close();
+    }
+
+    @Test
+    public void unflushedBooksAreReplayedOnStart() throws IOException {
+        WriteAheadLog log = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        WriteBehindWriter writer = newWriter( log );
+        writer.submit( book( "Neuromancer", "7.99" ) );
+        writer.submit( book( "Count Zero", "8.99" ) );
+        writer.submit( book( "Neuromancer", "9.99" ) );
+        // the process stops without a flush
+
+        WriteAheadLog reopened = reopen( log );
+        WriteBehindWriter restarted = newWriter( reopened );
+        restarted.start();
+        assertEquals(2, restarted.getPendingCount());
+        restarted.drain();
+        assertEquals(titles( Arrays.asList( book( "Count Zero", "8.99" ), book( "Neuromancer", "9.99" ) ) ),
+                     titles( batches.get(0) ));
+        // the segments of the last run are deleted once their books are written
+        assertEquals(0, reopened.getSegmentCount());
+        restarted.shutdown();
+    }
+
+    @Test
+    public void shutdownFlushesThePendingBooks() throws IOException {
+        WriteAheadLog log = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        WriteBehindWriter writer = newWriter( log );
+        writer.start();
+        writer.submit( book( "Neuromancer", "7.99" ) );
+        writer.shutdown();
+        assertEquals(1, batches.size());
+        WriteAheadLog reopened = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        assertTrue(reopened.readRecords().isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    public void booksThatShutdownCantWriteStayInTheLog() throws IOException {
+        WriteAheadLog log = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        WriteBehindWriter writer = newWriter( log );
+        writer.start();
+        writer.submit( book( "Neuromancer", "7.99" ) );
+        failBatch = true;
+        writer.shutdown();
+        WriteAheadLog reopened = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        assertEquals(1, reopened.readRecords().size());
+        reopened.close();
+    }
+
+    @Test
+    public void submitIsRefusedWhenTooManyBooksArePending() throws IOException {
+        WriteAheadLog log = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        WriteBehindWriter writer = new WriteBehindWriter( log, this::writeBooks, FLUSH_INTERVAL_MSEC, 2, false );
+        assertTrue(writer.submit( book( "Neuromancer", "7.99" ) ));
+        assertTrue(writer.submit( book( "Count Zero", "8.99" ) ));
+        assertFalse(writer.submit( book( "Mona Lisa Overdrive", "9.99" ) ));
+        // a book that is already pending can be saved again
+        assertTrue(writer.submit( book( "Neuromancer", "9.99" ) ));
+        log.close();
+    }
+
+    /**
+     * Close a log (as a stopped process would leave it) and open it again.
+     */
+    private WriteAheadLog reopen(WriteAheadLog log) throws IOException {
+        log.close();
+        return new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+    }
+}
@@ -0,0 +1,115 @@
+package io.kunalk.springaws.dynamoDBweb.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+import io.kunalk.springaws.dynamoDBweb.dynamoDb.BatchWriteResult;
+import io.kunalk.springaws.dynamoDBweb.model.BookInfo;
+
+public class BookCsvReaderTest {
+
+    private static BookCsvReader reader(String csv) throws IOException {
+        return new BookCsvReader( new BufferedReader( new StringReader( csv ) ) );
+    }
+
+    private static List<BookInfo> readAll(String csv) throws IOException {
+        List<BookInfo> books = new ArrayList<BookInfo>();
+        BookCsvReader reader = reader( csv );
+        while (reader.hasNext()) {
+            books.add( reader.next() );
+        }
+        return books;
+    }
+
+    @Test
+    public void columnsAreFoundByTheirHeaderNames() throws IOException {
+        List<BookInfo> books = readAll("Price,AUTHOR, title ,isbn\n"
+                                       + "7.99,William Gibson,Neuromancer,0-441-56956-0\n"
+                                       + "\n"
+                                       + "8.99,William Gibson,Count Zero\n");
+        assertEquals(2, books.size());
+        assertEquals("Neuromancer", books.get(0).getTitle());
+        assertEquals("William Gibson", books.get(0).getAuthor());
+        assertEquals("7.99", books.get(0).getPrice());
+        // the genre column is missing
+        assertEquals("", books.get(0).getGenre());
+        assertEquals("Count Zero", books.get(1).getTitle());
+    }
+
+    @Test
+    public void quotedFieldsMayHaveCommasQuotesAndLineBreaks() throws IOException {
+        List<BookInfo> books = readAll("title,author,publisher\n"
+                                       + "\"Bangkok 8, a novel\",John Burdett,\"Alfred \"\"A.\"\" Knopf\"\n"
+                                       + "\"The Difference\nEngine\",\"William Gibson, Bruce Sterling\",\n");
+        assertEquals(2, books.size());
+        assertEquals("Bangkok 8, a novel", books.get(0).getTitle());
+        assertEquals("Alfred \"A.\" Knopf", books.get(0).getPublisher());
+        assertEquals("The Difference\nEngine", books.get(1).getTitle());
+        assertEquals("William Gibson, Bruce Sterling", books.get(1).getAuthor());
+        assertEquals("", books.get(1).getPublisher());
+    }
+
+    @Test
+    public void anUnterminatedQuoteIsAnError() throws IOException {
+        BookCsvReader reader = reader("title,author\n\"Neuromancer,William Gibson\n");
+        try {
+            reader.hasNext();
+            fail("read an unterminated quoted field");
+        } catch (UncheckedIOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void theHeaderMustNameTheKeyColumns() {
+        for (String csv : Arrays.asList( "", "title,genre\nNeuromancer,Science Fiction\n" )) {
+            try {
+                reader( csv );
+                fail("read CSV without a title and author header: " + csv);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void theLastShortChunkIsWritten() throws IOException {
+        List<Integer> chunkSizes = new ArrayList<Integer>();
+        ChunkedBookWriter writer = new ChunkedBookWriter( chunk -> {
+            chunkSizes.add( chunk.size() );
+            BatchWriteResult result = new BatchWriteResult();
+            // one book of each chunk fails
+            result.addFailed( Collections.singletonList( Collections.<String, AttributeValue>emptyMap() ) );
+            return result;
+        }, 2 );
+        StringBuilder csv = new StringBuilder("title,author\n");
+        for (int i = 0; i < 5; i++) {
+            csv.append("Book ").append(i).append(",Author\n");
+        }
+        BookCsvReader reader = reader( csv.toString() );
+        while (reader.hasNext()) {
+            writer.add( reader.next() );
+        }
+        assertEquals(Arrays.asList( 2, 2 ), chunkSizes);
+        writer.flush();
+        assertEquals(Arrays.asList( 2, 2, 1 ), chunkSizes);
+        assertEquals(3, writer.getFailed());
+        assertEquals(5, reader.getRowNumber());
+        // nothing is left to write
+        writer.flush();
+        assertEquals(3, chunkSizes.size());
+    }
+}
@@ -0,0 +1,97 @@
+package io.kunalk.springaws.dynamoDBweb.wal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WriteAheadLogTest {
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("wal-test");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream( directory )) {
+            for (Path file : files) {
+                Files.delete( file );
+            }
+        }
+        Files.delete( directory );
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes( StandardCharsets.UTF_8 );
+    }
+
+    @Test
+    public void recordsAreReadAfterReopen() throws IOException {
+        WriteAheadLog log = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        for (int i = 0; i < 200; i++) {
+            // 200 records of 40 bytes don't fit in one 4K segment
+            log.append( bytes( String.format( "record %032d", i ) ) );
+        }
+        log.close();
+        assertTrue(log.getSegmentCount() > 1);
+
+        WriteAheadLog reopened = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        List<byte[]> records = reopened.readRecords();
+        assertEquals(200, records.size());
+        for (int i = 0; i < 200; i++) {
+            assertArrayEquals(bytes( String.format( "record %032d", i ) ), records.get( i ));
+        }
+        // new records go to a new segment, and are not records of the last run
+        reopened.append( bytes("new") );
+        assertEquals(200, reopened.readRecords().size());
+        reopened.close();
+    }
+
+    @Test
+    public void segmentsBeforeARollAreDeleted() throws IOException {
+        WriteAheadLog log = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        log.append( bytes("flushed") );
+        long rollId = log.roll();
+        log.append( bytes("pending") );
+        log.deleteSegmentsBefore( rollId );
+        assertEquals(1, log.getSegmentCount());
+        log.close();
+
+        List<byte[]> records = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE ).readRecords();
+        assertEquals(1, records.size());
+        assertArrayEquals(bytes("pending"), records.get( 0 ));
+    }
+
+    @Test
+    public void corruptRecordEndsTheSegment() throws IOException {
+        WriteAheadLog log = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE );
+        log.append( bytes("first") );
+        log.append( bytes("second") );
+        log.close();
+        Path segment;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream( directory )) {
+            segment = files.iterator().next();
+        }
+        try (RandomAccessFile file = new RandomAccessFile( segment.toFile(), "rw" )) {
+            // the segment header, the first record (8 + 5 bytes), the second record header, then the data
+            file.seek( 4 + 8 + 5 + 8 );
+            file.write( 'X' );
+        }
+        List<byte[]> records = new WriteAheadLog( directory, WriteAheadLog.MIN_SEGMENT_SIZE ).readRecords();
+        assertEquals(1, records.size());
+        assertArrayEquals(bytes("first"), records.get( 0 ));
+    }
+}